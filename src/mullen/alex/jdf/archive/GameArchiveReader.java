@@ -0,0 +1,202 @@
+package mullen.alex.jdf.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Reads games one at a time from an archive written by
+ * {@link GameArchiveWriter}.
+ * <p>
+ * Each ply is decoded by generating the legal moves for the position and
+ * taking the one at the stored index, so reading costs little more than the
+ * move generation needed to replay the games anyway.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameArchiveReader implements Closeable {
+    /** The value at the start of every archive ("JDFA"). */
+    public static final int MAGIC = 0x4A444641;
+    /** The version of the archive layout. */
+    public static final int FORMAT_VERSION = 1;
+    /** The number of bits the board width is shifted by in the header. */
+    static final int WIDTH_SHIFT = 16;
+    /** The number of low bits of a game's first number holding its result. */
+    static final int RESULT_BITS = 2;
+    /** The bits of a variable length number held in each byte. */
+    static final int VARINT_MASK = 0x7F;
+    /** The bit set on every byte of a variable length number but the last. */
+    static final int VARINT_MORE = 0x80;
+    /** The number of bits held in each byte of a variable length number. */
+    static final int VARINT_SHIFT = 7;
+    /** The number of bytes read from the stream at a time. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** The mask for an unsigned byte. */
+    private static final int BYTE_MASK = 0xFF;
+    /** The mask for the board height in the header. */
+    private static final int HEIGHT_MASK = 0xFFFF;
+    /** Holds the stream being read. */
+    private final InputStream in;
+    /** Holds the bytes read from the stream but not yet decoded. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /** Holds the board the moves of each game are replayed on. */
+    private final Board board;
+    /** Holds the pieces in their starting positions. */
+    private final Piece[] startingPieces;
+    /** Holds the colour that moves first. */
+    private final int firstColour;
+    /** Holds the move generator for finding legal moves. */
+    private final MoveGenerator moveGenerator;
+    /** Holds the move performer for replaying moves. */
+    private final MovePerformer movePerformer;
+    /** Holds the index of the next byte to decode in the buffer. */
+    private int bufferPosition;
+    /** Holds the number of bytes in the buffer. */
+    private int bufferLimit;
+    /**
+     * Creates a new reader of games played under the rules of the specified
+     * game and checks the header.
+     *
+     * @param stream    the stream to read from
+     * @param template  a game in its starting position, which supplies the
+     *                  board, rules and who moves first but is not changed
+     *
+     * @throws IOException  if the header could not be read or does not match
+     *                      the game
+     */
+    public GameArchiveReader(final InputStream stream, final Game template)
+            throws IOException {
+        in = stream;
+        board = template.getBoard();
+        startingPieces = board.pieces.clone();
+        firstColour = template.getTurn().getColour();
+        moveGenerator = template.getMoveGenerator();
+        movePerformer = template.getMovePerformer();
+        if (getInt() != MAGIC) {
+            throw new IOException("not a game archive");
+        }
+        if (getInt() != FORMAT_VERSION) {
+            throw new IOException("unsupported archive format version");
+        }
+        final int size = getInt();
+        if (size >>> WIDTH_SHIFT != board.width
+                || (size & HEIGHT_MASK) != board.height) {
+            throw new IOException("archive is for a different board size");
+        }
+    }
+    /**
+     * Reads the next game.
+     *
+     * @return  the game, or <code>null</code> if there are no more games
+     *
+     * @throws IOException  if the stream could not be read or the game is
+     *                      corrupt
+     */
+    public final GameRecord read() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        final int header = getVarint();
+        final int plies = header >>> RESULT_BITS;
+        final int result = header & ((1 << RESULT_BITS) - 1);
+        final List<Move> moves = new ArrayList<>(plies);
+        System.arraycopy(startingPieces, 0, board.pieces, 0,
+                startingPieces.length);
+        int colour = firstColour;
+        for (int ply = 0; ply < plies; ply++) {
+            final List<Move> legalMoves =
+                    moveGenerator.findMoves(board, colour);
+            final int legalMovesSize = legalMoves.size();
+            final int index = legalMovesSize > 1 ? getVarint() : 0;
+            if (index >= legalMovesSize) {
+                throw new IOException("corrupt move at ply " + ply);
+            }
+            final Move move = legalMoves.get(index);
+            movePerformer.perform(move, board);
+            moves.add(move);
+            colour = Piece.getOpposingColourOf(colour);
+        }
+        return new GameRecord(moves, result);
+    }
+    @Override
+    public final void close() throws IOException {
+        in.close();
+    }
+    /**
+     * Decodes a big-endian number.
+     *
+     * @return  the number
+     *
+     * @throws IOException  if the stream ended or could not be read
+     */
+    private int getInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < Integer.SIZE / Byte.SIZE; i++) {
+            value = (value << Byte.SIZE) | getByte();
+        }
+        return value;
+    }
+    /**
+     * Decodes a variable length number.
+     *
+     * @return  the number
+     *
+     * @throws IOException  if the stream ended, could not be read or the
+     *                      number is too long
+     */
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += VARINT_SHIFT) {
+            final int b = getByte();
+            value |= (b & VARINT_MASK) << shift;
+            if ((b & VARINT_MORE) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("corrupt number in archive");
+    }
+    /**
+     * Decodes a byte.
+     *
+     * @return  the byte, from <code>0</code> to <code>255</code>
+     *
+     * @throws IOException  if the stream ended or could not be read
+     */
+    private int getByte() throws IOException {
+        if (!fill()) {
+            throw new IOException("archive is truncated");
+        }
+        return buffer[bufferPosition++] & BYTE_MASK;
+    }
+    /**
+     * Makes sure there is at least one byte in the buffer, reading more from
+     * the stream if needed.
+     *
+     * @return  <code>true</code> if there is; <code>false</code> at the end
+     *          of the stream
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private boolean fill() throws IOException {
+        while (bufferPosition == bufferLimit) {
+            final int read = in.read(buffer, 0, BUFFER_SIZE);
+            if (read < 0) {
+                return false;
+            }
+            bufferPosition = 0;
+            bufferLimit = read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,195 @@
+package mullen.alex.jdf.archive;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Writes games to a compact binary archive that {@link GameArchiveReader}
+ * reads back.
+ * <p>
+ * Rather than the squares a move goes between, each ply is stored as its
+ * index in the list of legal moves, which the move generator always gives in
+ * the same order for a position. The index is written as a variable length
+ * number, so it takes one byte unless there are more than 127 legal moves,
+ * and a ply with only one legal move, such as a forced capture, takes none
+ * at all. Each game starts with its number of plies and result packed into
+ * another variable length number.
+ * <p>
+ * The archive starts with a header holding {@link GameArchiveReader#MAGIC},
+ * {@link GameArchiveReader#FORMAT_VERSION} and the size of the board, so
+ * archives of one variant are not read as another.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameArchiveWriter implements Closeable, Flushable {
+    /** The number of bytes gathered before writing them to the stream. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** The most bytes a variable length number takes. */
+    private static final int MAX_VARINT_BYTES = 5;
+    /** The number of plies there is room for before the indexes grow. */
+    private static final int INITIAL_PLY_CAPACITY = 128;
+    /** Holds the stream being written to. */
+    private final OutputStream out;
+    /** Holds the bytes not yet written to the stream. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /** Holds the board the moves of each game are replayed on. */
+    private final Board board;
+    /** Holds the pieces in their starting positions. */
+    private final Piece[] startingPieces;
+    /** Holds the colour that moves first. */
+    private final int firstColour;
+    /** Holds the move generator for finding legal moves. */
+    private final MoveGenerator moveGenerator;
+    /** Holds the move performer for replaying moves. */
+    private final MovePerformer movePerformer;
+    /** Holds the number of bytes in the buffer. */
+    private int buffered;
+    /**
+     * Holds the index of each ply of the game being written, or -1 for a
+     * ply with only one legal move, so nothing is written until the whole
+     * game is known to be legal.
+     */
+    private int[] indexes = new int[INITIAL_PLY_CAPACITY];
+    /**
+     * Creates a new writer of games played under the rules of the specified
+     * game and writes the header.
+     *
+     * @param stream    the stream to write to
+     * @param template  a game in its starting position, which supplies the
+     *                  board, rules and who moves first but is not changed
+     *
+     * @throws IOException  if the header could not be written
+     */
+    public GameArchiveWriter(final OutputStream stream, final Game template)
+            throws IOException {
+        out = stream;
+        board = template.getBoard();
+        startingPieces = board.pieces.clone();
+        firstColour = template.getTurn().getColour();
+        moveGenerator = template.getMoveGenerator();
+        movePerformer = template.getMovePerformer();
+        putInt(GameArchiveReader.MAGIC);
+        putInt(GameArchiveReader.FORMAT_VERSION);
+        putInt((board.width << GameArchiveReader.WIDTH_SHIFT) | board.height);
+    }
+    /**
+     * Writes a game.
+     *
+     * @param record  the game
+     *
+     * @throws IOException               if the stream could not be written
+     * @throws IllegalArgumentException  if the game has an illegal move
+     */
+    public final void write(final GameRecord record) throws IOException {
+        final List<Move> moves = record.moves;
+        final int movesSize = moves.size();
+        if (indexes.length < movesSize) {
+            indexes = new int[Math.max(movesSize, indexes.length * 2)];
+        }
+        System.arraycopy(startingPieces, 0, board.pieces, 0,
+                startingPieces.length);
+        int colour = firstColour;
+        for (int ply = 0; ply < movesSize; ply++) {
+            final Move move = moves.get(ply);
+            final List<Move> legalMoves =
+                    moveGenerator.findMoves(board, colour);
+            final int index = legalMoves.indexOf(move);
+            if (index < 0) {
+                throw new IllegalArgumentException("illegal move at ply "
+                        + ply);
+            }
+            indexes[ply] = legalMoves.size() > 1 ? index : -1;
+            movePerformer.perform(legalMoves.get(index), board);
+            colour = Piece.getOpposingColourOf(colour);
+        }
+        putVarint((movesSize << GameArchiveReader.RESULT_BITS)
+                | record.result);
+        for (int ply = 0; ply < movesSize; ply++) {
+            if (indexes[ply] >= 0) {
+                putVarint(indexes[ply]);
+            }
+        }
+    }
+    @Override
+    public final void flush() throws IOException {
+        out.write(buffer, 0, buffered);
+        buffered = 0;
+        out.flush();
+    }
+    @Override
+    public final void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+    /**
+     * Adds a number to the buffer in big-endian order.
+     *
+     * @param value  the number
+     *
+     * @throws IOException  if the buffer needed writing and could not be
+     */
+    private void putInt(final int value) throws IOException {
+        for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0;
+                shift -= Byte.SIZE) {
+            putByte(value >>> shift);
+        }
+    }
+    /**
+     * Adds a non-negative number to the buffer as seven bits per byte, least
+     * significant first, with the top bit set on every byte but the last.
+     *
+     * @param value  the number
+     *
+     * @throws IOException  if the buffer needed writing and could not be
+     */
+    private void putVarint(final int value) throws IOException {
+        if (buffered > BUFFER_SIZE - MAX_VARINT_BYTES) {
+            drain();
+        }
+        int remaining = value;
+        while ((remaining & ~GameArchiveReader.VARINT_MASK) != 0) {
+            buffer[buffered++] = (byte) ((remaining
+                    & GameArchiveReader.VARINT_MASK)
+                    | GameArchiveReader.VARINT_MORE);
+            remaining >>>= GameArchiveReader.VARINT_SHIFT;
+        }
+        buffer[buffered++] = (byte) remaining;
+    }
+    /**
+     * Adds a byte to the buffer.
+     *
+     * @param value  the byte, in the low eight bits
+     *
+     * @throws IOException  if the buffer needed writing and could not be
+     */
+    private void putByte(final int value) throws IOException {
+        if (buffered == BUFFER_SIZE) {
+            drain();
+        }
+        buffer[buffered++] = (byte) value;
+    }
+    /**
+     * Writes the buffer to the stream.
+     *
+     * @throws IOException  if the stream could not be written
+     */
+    private void drain() throws IOException {
+        out.write(buffer, 0, buffered);
+        buffered = 0;
+    }
+}
@@ -0,0 +1,235 @@
+package mullen.alex.jdf.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * A read-only index from positions to the games of an archive that reached
+ * them, backed by a memory-mapped file written by a
+ * {@link PositionIndexBuilder}.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes followed by
+ * fixed size postings of {@link #RECORD_SIZE} bytes, sorted by position hash
+ * and then by game and ply. A query binary searches the mapped postings, so
+ * it takes a few dozen reads however many games are indexed.
+ * <p>
+ * Header layout, big-endian:
+ * <pre>
+ * int  magic number ({@link #MAGIC})
+ * int  file format version ({@link #FORMAT_VERSION})
+ * int  hashing scheme version ({@link ZobristHasher#SCHEME_VERSION})
+ * int  record size ({@link #RECORD_SIZE})
+ * long number of postings
+ * </pre>
+ * Posting layout, big-endian:
+ * <pre>
+ * long hash of the position
+ * long game number in the archive, shifted left {@link #PLY_BITS}, with the
+ *      ply the position was reached at in the low bits
+ * </pre>
+ * Instances are safe to share between threads.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PositionIndex {
+    /** The magic number at the start of every index file ("JDFI"). */
+    public static final int MAGIC = 0x4A444649;
+    /** The version of the file layout. */
+    public static final int FORMAT_VERSION = 1;
+    /** The number of bytes in the header. */
+    public static final int HEADER_SIZE = 24;
+    /** The number of bytes in each posting. */
+    public static final int RECORD_SIZE = 16;
+    /** The number of low bits of a posting's value holding the ply. */
+    public static final int PLY_BITS = 16;
+    /** The offset of the value within a posting. */
+    static final int VALUE_OFFSET = 8;
+    /**
+     * The number of postings in each mapped segment, keeping each one well
+     * under the 2GB limit of a single mapping.
+     */
+    private static final int SEGMENT_RECORDS = 1 << 26;
+    /** Holds the mapped segments of postings. */
+    private final ByteBuffer[] segments;
+    /** Holds the number of postings in the index. */
+    private final long recordCount;
+    /**
+     * Opens the specified index file.
+     *
+     * @param file  the index file
+     *
+     * @throws IOException  if the file could not be read or is not an index
+     *                      written with the current format and hashing
+     *                      scheme
+     */
+    public PositionIndex(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("index header is truncated");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a position index");
+            }
+            if (header.getInt() != FORMAT_VERSION) {
+                throw new IOException("unsupported index format version");
+            }
+            if (header.getInt() != ZobristHasher.SCHEME_VERSION) {
+                throw new IOException("index uses a different hash scheme");
+            }
+            if (header.getInt() != RECORD_SIZE) {
+                throw new IOException("unexpected index record size");
+            }
+            recordCount = header.getLong();
+            if (recordCount < 0 || channel.size()
+                    != HEADER_SIZE + (recordCount * RECORD_SIZE)) {
+                throw new IOException("index length does not match header");
+            }
+            final int segmentCount = (int) ((recordCount + SEGMENT_RECORDS - 1)
+                    / SEGMENT_RECORDS);
+            segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                final long first = (long) i * SEGMENT_RECORDS;
+                final long records =
+                        Math.min(SEGMENT_RECORDS, recordCount - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (first * RECORD_SIZE),
+                        records * RECORD_SIZE);
+            }
+        }
+    }
+    /**
+     * Gets the number of postings in the index.
+     *
+     * @return  the number of postings
+     */
+    public final long size() {
+        return recordCount;
+    }
+    /**
+     * Finds the games that reached the specified position.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @return        the games, ordered by game number and then ply, or an
+     *                empty list if no game reached it
+     */
+    public final List<Posting> find(final Board board, final int colour) {
+        return find(ZobristHasher.hash(board, colour));
+    }
+    /**
+     * Finds the games that reached the position with the specified hash.
+     *
+     * @param positionHash  the hash of the position
+     * @return              the games, ordered by game number and then ply,
+     *                      or an empty list if no game reached it
+     */
+    public final List<Posting> find(final long positionHash) {
+        final long first = findFirst(positionHash);
+        if (first == recordCount || getHash(first) != positionHash) {
+            return Collections.emptyList();
+        }
+        final List<Posting> postings = new ArrayList<>();
+        for (long i = first; i < recordCount && getHash(i) == positionHash;
+                i++) {
+            final long value = getValue(i);
+            postings.add(new Posting(value >>> PLY_BITS,
+                    (int) (value & ((1 << PLY_BITS) - 1))));
+        }
+        return postings;
+    }
+    /**
+     * Counts the times the position with the specified hash was reached,
+     * without reading the postings.
+     *
+     * @param positionHash  the hash of the position
+     * @return              the number of postings
+     */
+    public final long count(final long positionHash) {
+        final long first = findFirst(positionHash);
+        if (positionHash == Long.MAX_VALUE) {
+            return recordCount - first;
+        }
+        return findFirst(positionHash + 1) - first;
+    }
+    /**
+     * Finds the first posting whose hash is not less than the specified one.
+     *
+     * @param positionHash  the hash
+     * @return              the posting number, or the number of postings if
+     *                      there is none
+     */
+    private long findFirst(final long positionHash) {
+        long low = 0;
+        long high = recordCount;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (getHash(mid) < positionHash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    /**
+     * Gets the position hash of the specified posting.
+     *
+     * @param record  the posting number
+     * @return        the position hash
+     */
+    private long getHash(final long record) {
+        return segments[(int) (record / SEGMENT_RECORDS)].getLong(
+                (int) (record % SEGMENT_RECORDS) * RECORD_SIZE);
+    }
+    /**
+     * Gets the game and ply of the specified posting.
+     *
+     * @param record  the posting number
+     * @return        the packed game and ply
+     */
+    private long getValue(final long record) {
+        return segments[(int) (record / SEGMENT_RECORDS)].getLong(
+                ((int) (record % SEGMENT_RECORDS) * RECORD_SIZE)
+                        + VALUE_OFFSET);
+    }
+    /**
+     * A game that reached a position, and when.
+     *
+     * @author  Alex Mullen
+     */
+    public static final class Posting {
+        /** The number of the game in the archive, counting from zero. */
+        public final long game;
+        /** The ply the position was reached at. */
+        public final int ply;
+        /**
+         * Creates a new instance.
+         *
+         * @param gameNumber  the number of the game in the archive
+         * @param gamePly     the ply the position was reached at
+         */
+        public Posting(final long gameNumber, final int gamePly) {
+            game = gameNumber;
+            ply = gamePly;
+        }
+        @Override
+        public String toString() {
+            return "Posting [game=" + game + ", ply=" + ply + "]";
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package mullen.alex.jdf.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.ChannelUtil;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * Builds a {@link PositionIndex} for every position reached in the games of
+ * a {@link GameArchiveReader archive}.
+ * <p>
+ * The archive has to be decoded in order, as every ply depends on the ones
+ * before it, so that is done on the calling thread. The decoded games are
+ * handed out in batches to worker threads, which replay them to hash each
+ * position and collect the postings into runs. Each run is sorted once it is
+ * full and written to a temporary file beside the index, so an archive of
+ * any size can be indexed with a fixed amount of memory per thread. The runs
+ * are then merged into the index.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PositionIndexBuilder {
+    /** The default number of postings each thread collects before sorting. */
+    public static final int DEFAULT_RUN_POSTINGS = 1 << 20;
+    /** The number of games in each batch handed to a thread. */
+    private static final int BATCH_GAMES = 256;
+    /** The number of batches waiting for a thread before decoding waits. */
+    private static final int QUEUED_BATCHES_PER_THREAD = 2;
+    /** The number of postings written to the index at a time. */
+    private static final int WRITE_BATCH_RECORDS = 4096;
+    /** The size of the buffer for reading and writing each run. */
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+    /** Runs no longer than this are sorted by insertion. */
+    private static final int INSERTION_SORT_LENGTH = 16;
+    /** Holds the game the archive was written for. */
+    private final Game template;
+    /** Holds the pieces in their starting positions. */
+    private final Piece[] startingPieces;
+    /** Holds the size of the board. */
+    private final Board startBoard;
+    /** Holds the colour that moves first. */
+    private final int firstColour;
+    /** Holds the move performer for replaying moves. */
+    private final MovePerformer movePerformer;
+    /** Holds the number of postings each thread collects before sorting. */
+    private final int runPostings;
+    /**
+     * Creates a new builder for archives of games played under the rules of
+     * the specified game.
+     *
+     * @param game  a game in its starting position, which is not changed
+     */
+    public PositionIndexBuilder(final Game game) {
+        this(game, DEFAULT_RUN_POSTINGS);
+    }
+    /**
+     * Creates a new builder that collects the specified number of postings
+     * per thread before sorting them.
+     *
+     * @param game      a game in its starting position, which is not changed
+     * @param postings  the number of postings in each run
+     *
+     * @throws IllegalArgumentException  if <code>postings</code> is less
+     *                                   than <code>1</code>
+     */
+    public PositionIndexBuilder(final Game game, final int postings) {
+        if (postings < 1) {
+            throw new IllegalArgumentException("postings needs to be > 0");
+        }
+        template = game;
+        startBoard = game.getBoard();
+        startingPieces = startBoard.pieces.clone();
+        firstColour = game.getTurn().getColour();
+        movePerformer = game.getMovePerformer();
+        runPostings = postings;
+    }
+    /**
+     * Builds an index of an archive using the specified number of threads.
+     *
+     * @param archive  the archive file
+     * @param index    the file to write the index to
+     * @param threads  the number of threads to hash and sort with
+     * @return         the number of postings written
+     *
+     * @throws IOException           if a file could not be read or written
+     * @throws InterruptedException  if interrupted while waiting for the
+     *                               threads
+     * @throws IllegalArgumentException  if <code>threads</code> is less than
+     *                                   <code>1</code>
+     */
+    public final long build(final File archive, final File index,
+            final int threads) throws IOException, InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads needs to be > 0");
+        }
+        final File directory = index.getAbsoluteFile().getParentFile();
+        final List<File> runs = new ArrayList<>();
+        try {
+            collectRuns(archive, directory, threads, runs);
+            return merge(runs, index);
+        } finally {
+            for (final File run : runs) {
+                run.delete();
+            }
+        }
+    }
+    /**
+     * Decodes the archive and has the threads turn it into sorted runs.
+     *
+     * @param archive    the archive file
+     * @param directory  the directory to write the runs to
+     * @param threads    the number of threads
+     * @param runs       the list to add the run files to
+     *
+     * @throws IOException           if a file could not be read or written
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    private void collectRuns(final File archive, final File directory,
+            final int threads, final List<File> runs)
+            throws IOException, InterruptedException {
+        final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(
+                threads * QUEUED_BATCHES_PER_THREAD);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<File>>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<List<File>>() {
+                    @Override
+                    public List<File> call() throws Exception {
+                        return new RunCollector(directory).collect(queue);
+                    }
+                }));
+            }
+            IOException decodeFailure = null;
+            try {
+                decode(archive, queue);
+            } catch (final IOException e) {
+                decodeFailure = e;
+            } finally {
+                for (int i = 0; i < threads; i++) {
+                    queue.put(Batch.END);
+                }
+            }
+            // Every thread's runs are gathered, even after a failure, so
+            // none of them are left behind.
+            Throwable failure = decodeFailure;
+            for (final Future<List<File>> future : futures) {
+                try {
+                    runs.addAll(future.get());
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Decodes the archive, queueing its games in batches.
+     *
+     * @param archive  the archive file
+     * @param queue    the queue to put the batches on
+     *
+     * @throws IOException           if the archive could not be read
+     * @throws InterruptedException  if interrupted while waiting for room
+     */
+    private void decode(final File archive, final BlockingQueue<Batch> queue)
+            throws IOException, InterruptedException {
+        try (GameArchiveReader reader = new GameArchiveReader(
+                new FileInputStream(archive), template)) {
+            long gameNumber = 0;
+            Batch batch = new Batch(gameNumber);
+            GameRecord record;
+            while ((record = reader.read()) != null) {
+                batch.records.add(record);
+                gameNumber++;
+                if (batch.records.size() == BATCH_GAMES) {
+                    queue.put(batch);
+                    batch = new Batch(gameNumber);
+                }
+            }
+            queue.put(batch);
+        }
+    }
+    /**
+     * Merges sorted runs into the index file.
+     *
+     * @param runs   the run files
+     * @param index  the index file
+     * @return       the number of postings written
+     *
+     * @throws IOException  if a file could not be read or written
+     */
+    private static long merge(final List<File> runs, final File index)
+            throws IOException {
+        final PriorityQueue<RunCursor> cursors =
+                new PriorityQueue<>(Math.max(1, runs.size()));
+        try (RandomAccessFile raf = new RandomAccessFile(index, "rw");
+                FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            channel.position(PositionIndex.HEADER_SIZE);
+            for (final File run : runs) {
+                final RunCursor cursor = new RunCursor(run);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            final ByteBuffer batch = ByteBuffer.allocate(
+                    PositionIndex.RECORD_SIZE * WRITE_BATCH_RECORDS);
+            long count = 0;
+            while (!cursors.isEmpty()) {
+                final RunCursor cursor = cursors.poll();
+                if (!batch.hasRemaining()) {
+                    batch.flip();
+                    ChannelUtil.writeFully(channel, batch);
+                    batch.clear();
+                }
+                batch.putLong(cursor.hash);
+                batch.putLong(cursor.value);
+                count++;
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            batch.flip();
+            ChannelUtil.writeFully(channel, batch);
+            final ByteBuffer header =
+                    ByteBuffer.allocate(PositionIndex.HEADER_SIZE);
+            header.putInt(PositionIndex.MAGIC);
+            header.putInt(PositionIndex.FORMAT_VERSION);
+            header.putInt(ZobristHasher.SCHEME_VERSION);
+            header.putInt(PositionIndex.RECORD_SIZE);
+            header.putLong(count);
+            header.flip();
+            channel.position(0);
+            ChannelUtil.writeFully(channel, header);
+            return count;
+        } finally {
+            for (final RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+    /**
+     * Sorts postings held as pairs of hashes and values by hash and then by
+     * value.
+     *
+     * @param hashes  the hashes
+     * @param values  the values
+     * @param from    the first posting to sort
+     * @param to      one past the last posting to sort
+     */
+    static void sortPostings(final long[] hashes, final long[] values,
+            final int from, final int to) {
+        int low = from;
+        int high = to;
+        while (high - low > INSERTION_SORT_LENGTH) {
+            final int middle = (low + high) >>> 1;
+            final long pivotHash = hashes[middle];
+            final long pivotValue = values[middle];
+            int i = low;
+            int j = high - 1;
+            while (i <= j) {
+                while (comparePostings(hashes[i], values[i], pivotHash,
+                        pivotValue) < 0) {
+                    i++;
+                }
+                while (comparePostings(hashes[j], values[j], pivotHash,
+                        pivotValue) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(hashes, values, i++, j--);
+                }
+            }
+            // Recurse into the smaller side so the stack stays shallow.
+            if (j + 1 - low < high - i) {
+                sortPostings(hashes, values, low, j + 1);
+                low = i;
+            } else {
+                sortPostings(hashes, values, i, high);
+                high = j + 1;
+            }
+        }
+        for (int i = low + 1; i < high; i++) {
+            for (int j = i; j > low && comparePostings(hashes[j - 1],
+                    values[j - 1], hashes[j], values[j]) > 0; j--) {
+                swap(hashes, values, j - 1, j);
+            }
+        }
+    }
+    /**
+     * Compares two postings by hash and then by value.
+     *
+     * @param hash1   the hash of the first posting
+     * @param value1  the value of the first posting
+     * @param hash2   the hash of the second posting
+     * @param value2  the value of the second posting
+     * @return        a negative number, zero or a positive number as the
+     *                first is less than, equal to or greater than the second
+     */
+    private static int comparePostings(final long hash1, final long value1,
+            final long hash2, final long value2) {
+        if (hash1 != hash2) {
+            return hash1 < hash2 ? -1 : 1;
+        }
+        return Long.compare(value1, value2);
+    }
+    /**
+     * Swaps two postings.
+     *
+     * @param hashes  the hashes
+     * @param values  the values
+     * @param i       the first posting
+     * @param j       the second posting
+     */
+    private static void swap(final long[] hashes, final long[] values,
+            final int i, final int j) {
+        final long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        final long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+    /**
+     * A batch of consecutive games from the archive.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class Batch {
+        /** The batch that tells a thread there are no more. */
+        static final Batch END = new Batch(-1);
+        /** The number of the first game in the batch. */
+        final long firstGame;
+        /** The games in the batch. */
+        final List<GameRecord> records = new ArrayList<>(BATCH_GAMES);
+        /**
+         * Creates a new empty batch.
+         *
+         * @param first  the number of the first game in the batch
+         */
+        Batch(final long first) {
+            firstGame = first;
+        }
+    }
+    /**
+     * Replays batches of games on one thread, collecting their postings
+     * into sorted runs.
+     *
+     * @author  Alex Mullen
+     */
+    private final class RunCollector {
+        /** Holds the directory to write the runs to. */
+        private final File directory;
+        /** Holds the board the games are replayed on. */
+        private final Board board = new Board(startBoard);
+        /** Holds the hashes of the postings collected. */
+        private final long[] hashes = new long[runPostings];
+        /** Holds the values of the postings collected. */
+        private final long[] values = new long[runPostings];
+        /** Holds the run files written. */
+        private final List<File> runs = new ArrayList<>();
+        /** Holds the number of postings collected. */
+        private int collected;
+        /**
+         * Creates a new collector.
+         *
+         * @param runDirectory  the directory to write the runs to
+         */
+        RunCollector(final File runDirectory) {
+            directory = runDirectory;
+        }
+        /**
+         * Takes batches from the queue until told there are no more.
+         * <p>
+         * After a failure the remaining batches are still taken, so the
+         * thread decoding the archive is never left waiting for room.
+         *
+         * @param queue  the queue
+         * @return       the run files written
+         *
+         * @throws IOException           if a run could not be written or a
+         *                               game is too long to index
+         * @throws InterruptedException  if interrupted while waiting
+         */
+        List<File> collect(final BlockingQueue<Batch> queue)
+                throws IOException, InterruptedException {
+            Exception failure = null;
+            Batch batch;
+            while ((batch = queue.take()) != Batch.END) {
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    long gameNumber = batch.firstGame;
+                    for (final GameRecord record : batch.records) {
+                        replay(record, gameNumber++);
+                    }
+                } catch (final IOException | RuntimeException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                for (final File run : runs) {
+                    run.delete();
+                }
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                throw (RuntimeException) failure;
+            }
+            writeRun();
+            return runs;
+        }
+        /**
+         * Replays a game and collects a posting for every position in it.
+         *
+         * @param record      the game
+         * @param gameNumber  the number of the game in the archive
+         *
+         * @throws IOException  if a run could not be written or the game is
+         *                      too long to index
+         */
+        private void replay(final GameRecord record, final long gameNumber)
+                throws IOException {
+            final List<Move> moves = record.moves;
+            final int movesSize = moves.size();
+            if (movesSize >= 1 << PositionIndex.PLY_BITS) {
+                throw new IOException("game " + gameNumber
+                        + " is too long to index");
+            }
+            System.arraycopy(startingPieces, 0, board.pieces, 0,
+                    startingPieces.length);
+            int colour = firstColour;
+            final long gameBits = gameNumber << PositionIndex.PLY_BITS;
+            for (int ply = 0; ply <= movesSize; ply++) {
+                if (ply > 0) {
+                    movePerformer.perform(moves.get(ply - 1), board);
+                    colour = Piece.getOpposingColourOf(colour);
+                }
+                if (collected == runPostings) {
+                    writeRun();
+                }
+                hashes[collected] = ZobristHasher.hash(board, colour);
+                values[collected] = gameBits | ply;
+                collected++;
+            }
+        }
+        /**
+         * Sorts the postings collected and writes them to a new run file.
+         *
+         * @throws IOException  if the run could not be written
+         */
+        private void writeRun() throws IOException {
+            if (collected == 0) {
+                return;
+            }
+            sortPostings(hashes, values, 0, collected);
+            final File run = File.createTempFile("postings", ".run",
+                    directory);
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(run),
+                            RUN_BUFFER_SIZE))) {
+                for (int i = 0; i < collected; i++) {
+                    out.writeLong(hashes[i]);
+                    out.writeLong(values[i]);
+                }
+            }
+            collected = 0;
+        }
+    }
+    /**
+     * Reads the postings of a run one at a time while merging.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class RunCursor implements Comparable<RunCursor> {
+        /** Holds the stream of the run. */
+        private final DataInputStream in;
+        /** Holds the number of postings not yet read. */
+        private long remaining;
+        /** Holds the hash of the current posting. */
+        private long hash;
+        /** Holds the value of the current posting. */
+        private long value;
+        /**
+         * Opens a run.
+         *
+         * @param run  the run file
+         *
+         * @throws IOException  if the run could not be opened
+         */
+        RunCursor(final File run) throws IOException {
+            final InputStream stream = new FileInputStream(run);
+            in = new DataInputStream(new BufferedInputStream(stream,
+                    RUN_BUFFER_SIZE));
+            remaining = run.length() / PositionIndex.RECORD_SIZE;
+        }
+        /**
+         * Moves on to the next posting.
+         *
+         * @return  <code>true</code> if there was one; <code>false</code> at
+         *          the end of the run
+         *
+         * @throws IOException  if the run could not be read
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            hash = in.readLong();
+            value = in.readLong();
+            remaining--;
+            return true;
+        }
+        /**
+         * Closes the run.
+         *
+         * @throws IOException  if the run could not be closed
+         */
+        void close() throws IOException {
+            in.close();
+        }
+        @Override
+        public int compareTo(final RunCursor other) {
+            return comparePostings(hash, value, other.hash, other.value);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * @author  Alex Mullen
+ *
+ * A package for containing compact binary archives of played games.
+ */
+package mullen.alex.jdf.archive;
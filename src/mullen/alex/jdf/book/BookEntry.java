@@ -0,0 +1,65 @@
+package mullen.alex.jdf.book;
+
+/**
+ * An immutable class that holds the statistics of a single move played from a
+ * position in an opening book.
+ * <p>
+ * The move is identified by the hash of the position it leads to, which is
+ * unambiguous even when two different jump sequences share the same start and
+ * end squares. The start and end board array indexes are kept as well for
+ * displaying the move without needing a move generator.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class BookEntry {
+    /** The hash of the position the move was played from. */
+    public final long positionHash;
+    /** The hash of the position the move leads to. */
+    public final long resultHash;
+    /** The board array index the move starts from. */
+    public final int from;
+    /** The board array index the move ends on. */
+    public final int to;
+    /** The number of games the side that played the move went on to win. */
+    public final int wins;
+    /** The number of games that were drawn after the move. */
+    public final int draws;
+    /** The number of games the side that played the move went on to lose. */
+    public final int losses;
+    /**
+     * Creates a new instance using the specified values.
+     *
+     * @param position  the hash of the position the move was played from
+     * @param result    the hash of the position the move leads to
+     * @param fromIndex the board array index the move starts from
+     * @param toIndex   the board array index the move ends on
+     * @param winCount  the number of games won by the side that moved
+     * @param drawCount the number of games drawn
+     * @param lossCount the number of games lost by the side that moved
+     */
+    public BookEntry(final long position, final long result,
+            final int fromIndex, final int toIndex, final int winCount,
+            final int drawCount, final int lossCount) {
+        positionHash = position;
+        resultHash = result;
+        from = fromIndex;
+        to = toIndex;
+        wins = winCount;
+        draws = drawCount;
+        losses = lossCount;
+    }
+    /**
+     * Gets the number of games the move was played in.
+     *
+     * @return  the number of games
+     */
+    public final long getGames() {
+        return (long) wins + draws + losses;
+    }
+    @Override
+    public final String toString() {
+        return "BookEntry [from=" + from + ", to=" + to + ", wins=" + wins
+                + ", draws=" + draws + ", losses=" + losses + "]";
+    }
+}
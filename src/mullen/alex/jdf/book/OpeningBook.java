@@ -0,0 +1,247 @@
+package mullen.alex.jdf.book;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * A read-only opening book backed by a memory-mapped file written by an
+ * {@link OpeningBookBuilder}.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes followed by
+ * fixed size records of {@link #RECORD_SIZE} bytes, sorted by the hash of the
+ * position they were played from and then by the number of games they were
+ * played in, most first. Lookups binary search the mapped records directly,
+ * so the book is never loaded onto the heap and opening even a very large
+ * book is immediate.
+ * <p>
+ * Header layout, big-endian:
+ * <pre>
+ * int  magic number ({@link #MAGIC})
+ * int  file format version ({@link #FORMAT_VERSION})
+ * int  hashing scheme version ({@link ZobristHasher#SCHEME_VERSION})
+ * int  record size ({@link #RECORD_SIZE})
+ * long number of records
+ * </pre>
+ * Record layout, big-endian:
+ * <pre>
+ * long  hash of the position the move was played from
+ * long  hash of the position the move leads to
+ * short board array index the move starts from
+ * short board array index the move ends on
+ * int   wins for the side that moved
+ * int   draws
+ * int   losses for the side that moved
+ * </pre>
+ * Instances are safe to share between threads.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class OpeningBook {
+    /** The magic number at the start of every book file ("JDFB"). */
+    public static final int MAGIC = 0x4A444642;
+    /** The version of the file format. */
+    public static final int FORMAT_VERSION = 1;
+    /** The size of the header in bytes. */
+    public static final int HEADER_SIZE = 24;
+    /** The size of each record in bytes. */
+    public static final int RECORD_SIZE = 32;
+    /** The offset of the result hash within a record. */
+    static final int RESULT_OFFSET = 8;
+    /** The offset of the start index within a record. */
+    static final int FROM_OFFSET = 16;
+    /** The offset of the end index within a record. */
+    static final int TO_OFFSET = 18;
+    /** The offset of the win count within a record. */
+    static final int WINS_OFFSET = 20;
+    /** The offset of the draw count within a record. */
+    static final int DRAWS_OFFSET = 24;
+    /** The offset of the loss count within a record. */
+    static final int LOSSES_OFFSET = 28;
+    /**
+     * The number of records in each mapped segment, keeping each one well
+     * under the 2GB limit of a single mapping.
+     */
+    private static final int SEGMENT_RECORDS = 1 << 25;
+    /** Holds the mapped segments of records. */
+    private final ByteBuffer[] segments;
+    /** Holds the number of records in the book. */
+    private final long recordCount;
+    /**
+     * Opens the specified book file.
+     *
+     * @param file  the book file
+     *
+     * @throws IOException  if the file could not be read or is not a book
+     *                      written with the current format and hashing
+     *                      scheme
+     */
+    public OpeningBook(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("book header is truncated");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not an opening book");
+            }
+            if (header.getInt() != FORMAT_VERSION) {
+                throw new IOException("unsupported book format version");
+            }
+            if (header.getInt() != ZobristHasher.SCHEME_VERSION) {
+                throw new IOException("book uses a different hash scheme");
+            }
+            if (header.getInt() != RECORD_SIZE) {
+                throw new IOException("unexpected book record size");
+            }
+            recordCount = header.getLong();
+            if (recordCount < 0 || channel.size()
+                    != HEADER_SIZE + (recordCount * RECORD_SIZE)) {
+                throw new IOException("book length does not match header");
+            }
+            final int segmentCount = (int) ((recordCount + SEGMENT_RECORDS - 1)
+                    / SEGMENT_RECORDS);
+            segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                final long first = (long) i * SEGMENT_RECORDS;
+                final long records =
+                        Math.min(SEGMENT_RECORDS, recordCount - first);
+                final MappedByteBuffer segment = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (first * RECORD_SIZE),
+                        records * RECORD_SIZE);
+                segments[i] = segment;
+            }
+        }
+    }
+    /**
+     * Gets the number of records in the book.
+     *
+     * @return  the number of records
+     */
+    public final long size() {
+        return recordCount;
+    }
+    /**
+     * Looks up the moves played from the specified position.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @return        the moves, most played first, or an empty list if the
+     *                position is not in the book
+     */
+    public final List<BookEntry> lookup(final Board board, final int colour) {
+        return lookup(ZobristHasher.hash(board, colour));
+    }
+    /**
+     * Looks up the moves played from the position with the specified hash.
+     *
+     * @param positionHash  the hash of the position
+     * @return              the moves, most played first, or an empty list if
+     *                      the position is not in the book
+     */
+    public final List<BookEntry> lookup(final long positionHash) {
+        long low = 0;
+        long high = recordCount;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (getPositionHash(mid) < positionHash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == recordCount || getPositionHash(low) != positionHash) {
+            return Collections.emptyList();
+        }
+        final List<BookEntry> entries = new ArrayList<>();
+        for (long i = low; i < recordCount
+                && getPositionHash(i) == positionHash; i++) {
+            entries.add(readEntry(i));
+        }
+        return entries;
+    }
+    /**
+     * Finds the legal move from the specified position that was played in
+     * the most games.
+     *
+     * @param board      the board, which is not modified
+     * @param colour     the colour whose turn it is
+     * @param generator  the move generator for the variant
+     * @param performer  the move performer for the variant
+     * @return           the move, or <code>null</code> if none of the legal
+     *                   moves are in the book
+     */
+    public final Move findMove(final Board board, final int colour,
+            final MoveGenerator generator, final MovePerformer performer) {
+        final List<BookEntry> entries = lookup(board, colour);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        final List<Move> moves = generator.findMoves(board, colour);
+        final int movesSize = moves.size();
+        final long[] resultHashes = new long[movesSize];
+        final Board workBoard = new Board(board);
+        final int opponent = Piece.getOpposingColourOf(colour);
+        for (int i = 0; i < movesSize; i++) {
+            final PerformedMove performed =
+                    performer.perform(moves.get(i), workBoard);
+            resultHashes[i] = ZobristHasher.hash(workBoard, opponent);
+            performed.undo();
+        }
+        for (final BookEntry entry : entries) {
+            for (int i = 0; i < movesSize; i++) {
+                if (resultHashes[i] == entry.resultHash) {
+                    return moves.get(i);
+                }
+            }
+        }
+        return null;
+    }
+    /**
+     * Gets the position hash of the specified record.
+     *
+     * @param record  the record number
+     * @return        the position hash
+     */
+    private long getPositionHash(final long record) {
+        return segments[(int) (record / SEGMENT_RECORDS)].getLong(
+                (int) (record % SEGMENT_RECORDS) * RECORD_SIZE);
+    }
+    /**
+     * Reads the specified record.
+     *
+     * @param record  the record number
+     * @return        the entry
+     */
+    private BookEntry readEntry(final long record) {
+        final ByteBuffer segment = segments[(int) (record / SEGMENT_RECORDS)];
+        final int offset = (int) (record % SEGMENT_RECORDS) * RECORD_SIZE;
+        return new BookEntry(segment.getLong(offset),
+                segment.getLong(offset + RESULT_OFFSET),
+                segment.getShort(offset + FROM_OFFSET),
+                segment.getShort(offset + TO_OFFSET),
+                segment.getInt(offset + WINS_OFFSET),
+                segment.getInt(offset + DRAWS_OFFSET),
+                segment.getInt(offset + LOSSES_OFFSET));
+    }
+}
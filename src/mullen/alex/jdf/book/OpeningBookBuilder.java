@@ -0,0 +1,407 @@
+package mullen.alex.jdf.book;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.ChannelUtil;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * Builds an {@link OpeningBook} file from a collection of game records.
+ * <p>
+ * The records are split between a number of threads that each replay their
+ * share of the games and count the moves played in the opening plies. The
+ * counts are then merged, sorted and written out in the format
+ * {@link OpeningBook} expects. Games with an unfinished result are counted
+ * as draws.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class OpeningBookBuilder {
+    /** The number of records written to the file at a time. */
+    private static final int WRITE_BATCH_RECORDS = 1024;
+    /** Orders records by position hash and then by games, most first. */
+    private static final Comparator<MoveStats> RECORD_ORDER =
+            new Comparator<MoveStats>() {
+                @Override
+                public int compare(final MoveStats a, final MoveStats b) {
+                    final int byPosition = Long.compare(a.positionHash,
+                            b.positionHash);
+                    if (byPosition != 0) {
+                        return byPosition;
+                    }
+                    final int byGames = Long.compare(b.getGames(),
+                            a.getGames());
+                    if (byGames != 0) {
+                        return byGames;
+                    }
+                    return Long.compare(a.resultHash, b.resultHash);
+                }
+            };
+    /** Holds the board the games start from. */
+    private final Board startBoard;
+    /** Holds the colour that moves first. */
+    private final int startColour;
+    /** Holds the move performer for replaying the games. */
+    private final MovePerformer movePerformer;
+    /** Holds the number of plies of each game to include. */
+    private final int maxPlies;
+    /**
+     * Creates a new builder for games that start from the current position
+     * of the specified game.
+     *
+     * @param startingGame  a game in its starting position
+     * @param plies         the number of plies of each game to include
+     *
+     * @throws IllegalArgumentException  if <code>plies</code> is less than
+     *                                   <code>1</code>
+     */
+    public OpeningBookBuilder(final Game startingGame, final int plies) {
+        this(startingGame.getBoard(), startingGame.getTurn().getColour(),
+                startingGame.getMovePerformer(), plies);
+    }
+    /**
+     * Creates a new builder for games that start from the specified position.
+     *
+     * @param board      the board the games start from, which is copied
+     * @param colour     the colour that moves first
+     * @param performer  the move performer for the variant
+     * @param plies      the number of plies of each game to include
+     *
+     * @throws IllegalArgumentException  if <code>plies</code> is less than
+     *                                   <code>1</code>
+     */
+    public OpeningBookBuilder(final Board board, final int colour,
+            final MovePerformer performer, final int plies) {
+        if (plies < 1) {
+            throw new IllegalArgumentException("plies needs to be > 0");
+        }
+        startBoard = new Board(board);
+        startColour = colour;
+        movePerformer = performer;
+        maxPlies = plies;
+    }
+    /**
+     * Builds a book from the specified games using a thread for each
+     * available processor.
+     *
+     * @param records  the games
+     * @param file     the file to write the book to
+     * @return         the number of records written
+     *
+     * @throws IOException           if the file could not be written
+     * @throws InterruptedException  if interrupted while waiting for the
+     *                               games to be counted
+     */
+    public final long build(final List<GameRecord> records, final File file)
+            throws IOException, InterruptedException {
+        return build(records, file,
+                Runtime.getRuntime().availableProcessors());
+    }
+    /**
+     * Builds a book from the specified games using the specified number of
+     * threads.
+     *
+     * @param records  the games
+     * @param file     the file to write the book to
+     * @param threads  the number of threads to count the games with
+     * @return         the number of records written
+     *
+     * @throws IOException           if the file could not be written
+     * @throws InterruptedException  if interrupted while waiting for the
+     *                               games to be counted
+     * @throws IllegalArgumentException  if <code>threads</code> is less than
+     *                                   <code>1</code>
+     */
+    public final long build(final List<GameRecord> records, final File file,
+            final int threads) throws IOException, InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads needs to be > 0");
+        }
+        final List<MoveStats> stats = sort(merge(count(records, threads)));
+        write(stats, file);
+        return stats.size();
+    }
+    /**
+     * Counts the moves in the games, splitting them between threads.
+     *
+     * @param records  the games
+     * @param threads  the number of threads
+     * @return         the counts made by each thread
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    private List<Map<Long, List<MoveStats>>> count(
+            final List<GameRecord> records, final int threads)
+            throws InterruptedException {
+        final int recordsSize = records.size();
+        final int tasks = Math.max(1, Math.min(threads, recordsSize));
+        final ExecutorService executor = Executors.newFixedThreadPool(tasks);
+        try {
+            final List<Future<Map<Long, List<MoveStats>>>> futures =
+                    new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                final List<GameRecord> share = records.subList(
+                        (int) ((long) recordsSize * i / tasks),
+                        (int) ((long) recordsSize * (i + 1) / tasks));
+                futures.add(executor.submit(
+                        new Callable<Map<Long, List<MoveStats>>>() {
+                            @Override
+                            public Map<Long, List<MoveStats>> call() {
+                                return countShare(share);
+                            }
+                        }));
+            }
+            final List<Map<Long, List<MoveStats>>> counts =
+                    new ArrayList<>(tasks);
+            for (final Future<Map<Long, List<MoveStats>>> future : futures) {
+                try {
+                    counts.add(future.get());
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+            return counts;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Replays a share of the games and counts the moves in them.
+     *
+     * @param share  the games
+     * @return       the counts, keyed by position hash
+     */
+    private Map<Long, List<MoveStats>> countShare(
+            final List<GameRecord> share) {
+        final Map<Long, List<MoveStats>> counts = new HashMap<>();
+        final int height = startBoard.height;
+        for (final GameRecord record : share) {
+            final Board board = new Board(startBoard);
+            int colour = startColour;
+            long hash = ZobristHasher.hash(board, colour);
+            final int plies = Math.min(maxPlies, record.moves.size());
+            for (int ply = 0; ply < plies; ply++) {
+                final Move move = record.moves.get(ply);
+                movePerformer.perform(move, board);
+                final int opponent = Piece.getOpposingColourOf(colour);
+                final long resultHash = ZobristHasher.hash(board, opponent);
+                final MoveStats stats = findOrAdd(counts, hash, resultHash,
+                        move.from.y + (height * move.from.x),
+                        move.to.y + (height * move.to.x));
+                stats.add(record.getScoreFor(colour), 1);
+                hash = resultHash;
+                colour = opponent;
+            }
+        }
+        return counts;
+    }
+    /**
+     * Merges the counts made by each thread.
+     *
+     * @param counts  the counts
+     * @return        the merged counts
+     */
+    private static List<MoveStats> merge(
+            final List<Map<Long, List<MoveStats>>> counts) {
+        final Map<Long, List<MoveStats>> merged = counts.get(0);
+        for (int i = 1; i < counts.size(); i++) {
+            for (final List<MoveStats> list : counts.get(i).values()) {
+                for (final MoveStats stats : list) {
+                    findOrAdd(merged, stats.positionHash, stats.resultHash,
+                            stats.from, stats.to).add(stats);
+                }
+            }
+        }
+        final List<MoveStats> all = new ArrayList<>();
+        for (final List<MoveStats> list : merged.values()) {
+            all.addAll(list);
+        }
+        return all;
+    }
+    /**
+     * Sorts the records into the order they are written in.
+     *
+     * @param stats  the records
+     * @return       the same list, sorted
+     */
+    private static List<MoveStats> sort(final List<MoveStats> stats) {
+        Collections.sort(stats, RECORD_ORDER);
+        return stats;
+    }
+    /**
+     * Writes the header and records to the specified file.
+     *
+     * @param stats  the sorted records
+     * @param file   the file
+     *
+     * @throws IOException  if the file could not be written
+     */
+    private static void write(final List<MoveStats> stats, final File file)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            final ByteBuffer header =
+                    ByteBuffer.allocate(OpeningBook.HEADER_SIZE);
+            header.putInt(OpeningBook.MAGIC);
+            header.putInt(OpeningBook.FORMAT_VERSION);
+            header.putInt(ZobristHasher.SCHEME_VERSION);
+            header.putInt(OpeningBook.RECORD_SIZE);
+            header.putLong(stats.size());
+            header.flip();
+            ChannelUtil.writeFully(channel, header);
+            final ByteBuffer batch = ByteBuffer.allocate(
+                    OpeningBook.RECORD_SIZE * WRITE_BATCH_RECORDS);
+            for (final MoveStats record : stats) {
+                if (!batch.hasRemaining()) {
+                    batch.flip();
+                    ChannelUtil.writeFully(channel, batch);
+                    batch.clear();
+                }
+                batch.putLong(record.positionHash);
+                batch.putLong(record.resultHash);
+                batch.putShort((short) record.from);
+                batch.putShort((short) record.to);
+                batch.putInt(saturate(record.wins));
+                batch.putInt(saturate(record.draws));
+                batch.putInt(saturate(record.losses));
+            }
+            batch.flip();
+            ChannelUtil.writeFully(channel, batch);
+        }
+    }
+    /**
+     * Clamps a count to the largest value a record can hold.
+     *
+     * @param value  the count
+     * @return       the clamped count
+     */
+    private static int saturate(final long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+    /**
+     * Finds the counts for a move, adding empty counts if there are none.
+     *
+     * @param counts        the counts, keyed by position hash
+     * @param positionHash  the hash of the position the move was played from
+     * @param resultHash    the hash of the position the move leads to
+     * @param from          the board array index the move starts from
+     * @param to            the board array index the move ends on
+     * @return              the counts for the move
+     */
+    private static MoveStats findOrAdd(final Map<Long, List<MoveStats>> counts,
+            final long positionHash, final long resultHash, final int from,
+            final int to) {
+        List<MoveStats> list = counts.get(positionHash);
+        if (list == null) {
+            list = new ArrayList<>(2);
+            counts.put(positionHash, list);
+        }
+        for (final MoveStats stats : list) {
+            if (stats.resultHash == resultHash) {
+                return stats;
+            }
+        }
+        final MoveStats stats =
+                new MoveStats(positionHash, resultHash, from, to);
+        list.add(stats);
+        return stats;
+    }
+    /**
+     * A mutable class that accumulates the statistics of a move.
+     *
+     * @author  Alex Mullen
+     *
+     */
+    private static final class MoveStats {
+        /** The hash of the position the move was played from. */
+        private final long positionHash;
+        /** The hash of the position the move leads to. */
+        private final long resultHash;
+        /** The board array index the move starts from. */
+        private final int from;
+        /** The board array index the move ends on. */
+        private final int to;
+        /** Holds the number of wins for the side that moved. */
+        private long wins;
+        /** Holds the number of draws. */
+        private long draws;
+        /** Holds the number of losses for the side that moved. */
+        private long losses;
+        /**
+         * Creates a new instance with no games counted.
+         *
+         * @param position   the hash of the position the move was played from
+         * @param result     the hash of the position the move leads to
+         * @param fromIndex  the board array index the move starts from
+         * @param toIndex    the board array index the move ends on
+         */
+        MoveStats(final long position, final long result,
+                final int fromIndex, final int toIndex) {
+            positionHash = position;
+            resultHash = result;
+            from = fromIndex;
+            to = toIndex;
+        }
+        /**
+         * Counts games with the specified score.
+         *
+         * @param score  <code>1</code> for a win, <code>-1</code> for a loss
+         *               and <code>0</code> for a draw
+         * @param games  the number of games
+         */
+        void add(final int score, final long games) {
+            if (score > 0) {
+                wins += games;
+            } else if (score < 0) {
+                losses += games;
+            } else {
+                draws += games;
+            }
+        }
+        /**
+         * Adds the counts of another instance for the same move.
+         *
+         * @param other  the other instance
+         */
+        void add(final MoveStats other) {
+            wins += other.wins;
+            draws += other.draws;
+            losses += other.losses;
+        }
+        /**
+         * Gets the number of games counted.
+         *
+         * @return  the number of games
+         */
+        long getGames() {
+            return wins + draws + losses;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * @author  Alex Mullen
+ *
+ * A package for containing opening books, which record how often each move
+ * was played from a position and how the games went afterwards.
+ */
+package mullen.alex.jdf.book;
@@ -0,0 +1,25 @@
+package mullen.alex.jdf.common;
+
+/**
+ * An interface that defines a player that supplies its moves
+ * asynchronously, such as an engine searching on another thread or a remote
+ * client.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public interface AsyncPlayer extends Player {
+    /**
+     * Asks this player for its next move, returning straight away rather
+     * than waiting for it to be chosen.
+     * <p>
+     * The game passed is a fork of the game being played, so it belongs to
+     * the player and can be searched freely on any thread. The future should
+     * be completed with one of its legal moves, or with a failure if no move
+     * can be chosen.
+     *
+     * @param game  a fork of the game, with this player to move
+     * @return      the future that will be completed with the move
+     */
+    MoveFuture requestMove(Game game);
+}
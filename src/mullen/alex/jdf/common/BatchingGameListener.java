@@ -0,0 +1,167 @@
+package mullen.alex.jdf.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * A listener that queues the events it is told about and hands them on in
+ * batches to a receiver running on an executor, so the games being listened
+ * to never wait for the receiver to do its work.
+ * <p>
+ * Events that cancel each other out while queued are dropped: a move that
+ * is undone before being handed on is dropped along with the undo, and only
+ * the last of several seeks in a row on the same game is kept. The queue is
+ * bounded, so a game that gets too far ahead of the receiver waits for it to
+ * catch up rather than using more and more memory.
+ * <p>
+ * One instance can listen to any number of games. Batches are handed to the
+ * receiver one at a time, in the order the events happened.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class BatchingGameListener implements GameListener {
+    /** Holds the receiver the batches are handed to. */
+    private final Receiver receiver;
+    /** Holds the most events queued before games wait. */
+    private final int capacity;
+    /** Holds the executor the receiver runs on. */
+    private final Executor executor;
+    /** Holds the task that hands the queued events to the receiver. */
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+    /** Holds the events waiting to be handed on. */
+    private List<GameEvent> queued;
+    /** Holds whether the dispatch task has been given to the executor. */
+    private boolean dispatching;
+    /**
+     * Creates a new instance.
+     *
+     * @param eventReceiver  the receiver the batches are handed to
+     * @param maxQueued      the most events queued before games wait
+     * @param dispatcher     the executor the receiver runs on
+     *
+     * @throws IllegalArgumentException  if <code>maxQueued</code> is less
+     *                                   than <code>1</code>
+     */
+    public BatchingGameListener(final Receiver eventReceiver,
+            final int maxQueued, final Executor dispatcher) {
+        if (maxQueued < 1) {
+            throw new IllegalArgumentException("maxQueued needs to be > 0");
+        }
+        receiver = eventReceiver;
+        capacity = maxQueued;
+        executor = dispatcher;
+        queued = new ArrayList<>();
+    }
+    @Override
+    public final void onGameEvent(final GameEvent event) {
+        final boolean startDispatch;
+        synchronized (this) {
+            boolean interrupted = false;
+            while (queued.size() >= capacity && dispatching) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    // Queue it anyway rather than lose it.
+                    interrupted = true;
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            enqueue(event);
+            startDispatch = !dispatching && !queued.isEmpty();
+            if (startDispatch) {
+                dispatching = true;
+            }
+        }
+        if (startDispatch) {
+            try {
+                executor.execute(dispatchTask);
+            } catch (final RuntimeException e) {
+                stopDispatching();
+                throw e;
+            }
+        }
+    }
+    /**
+     * Adds an event to the queue, dropping it along with any queued events
+     * it cancels out.
+     *
+     * @param event  the event
+     */
+    private void enqueue(final GameEvent event) {
+        final int last = queued.size() - 1;
+        if (last >= 0) {
+            final GameEvent previous = queued.get(last);
+            if (previous.game == event.game) {
+                if (event.type == GameEvent.MOVE_UNDONE
+                        && previous.type == GameEvent.MOVE_PERFORMED
+                        && previous.ply == event.ply + 1) {
+                    queued.remove(last);
+                    return;
+                }
+                if (event.type == GameEvent.SEEKED
+                        && previous.type == GameEvent.SEEKED) {
+                    queued.set(last, event);
+                    return;
+                }
+            }
+        }
+        queued.add(event);
+    }
+    /**
+     * Hands the queued events to the receiver in batches until there are
+     * none left. If the receiver throws, the remaining events are handed on
+     * by the next dispatch instead.
+     */
+    private void dispatch() {
+        try {
+            while (true) {
+                final List<GameEvent> batch;
+                synchronized (this) {
+                    if (queued.isEmpty()) {
+                        dispatching = false;
+                        return;
+                    }
+                    batch = queued;
+                    queued = new ArrayList<>(Math.min(batch.size(),
+                            capacity));
+                    notifyAll();
+                }
+                receiver.onGameEvents(batch);
+            }
+        } catch (final RuntimeException e) {
+            stopDispatching();
+            throw e;
+        }
+    }
+    /**
+     * Marks the dispatch task as no longer running after it failed or could
+     * not be started, and wakes any games waiting on it.
+     */
+    private synchronized void stopDispatching() {
+        dispatching = false;
+        notifyAll();
+    }
+    /**
+     * An interface for receiving batches of events.
+     *
+     * @author  Alex Mullen
+     */
+    public interface Receiver {
+        /**
+         * Called with the events that happened since the last batch.
+         *
+         * @param events  the events, in the order they happened
+         */
+        void onGameEvents(List<GameEvent> events);
+    }
+}
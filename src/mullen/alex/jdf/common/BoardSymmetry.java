@@ -0,0 +1,338 @@
+package mullen.alex.jdf.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps boards to a canonical representative under the symmetries a board
+ * layout allows.
+ * <p>
+ * Two symmetries are considered and can be combined:
+ * <ul>
+ * <li>{@link #COLOUR_FLIP} - rotating the board by 180 degrees and swapping
+ * the colour of every piece and the side to move</li>
+ * <li>{@link #MIRROR} - reflecting the board left-to-right</li>
+ * </ul>
+ * A symmetry is only allowed when it maps every square of the board pattern
+ * onto a square of the same colour, so that pieces never end up on squares
+ * they could not be on. On the boards set up by both the English and
+ * International games only {@link #COLOUR_FLIP} is allowed, as reflecting an
+ * even width board swaps the black and white squares.
+ * <p>
+ * Each transform is its own inverse, so moves found on a canonical board can
+ * be mapped back by applying the same transform again.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class BoardSymmetry {
+    /** Represents leaving the board as it is. */
+    public static final int IDENTITY = 0;
+    /** Represents reflecting the board left-to-right. */
+    public static final int MIRROR = 1;
+    /**
+     * Represents rotating the board 180 degrees and swapping the colour of
+     * each piece.
+     */
+    public static final int COLOUR_FLIP = 2;
+    /** The number of distinct transforms, including the identity. */
+    private static final int TRANSFORM_COUNT = 4;
+    /** Holds the width of the boards this handles. */
+    private final int width;
+    /** Holds the height of the boards this handles. */
+    private final int height;
+    /** Holds the transforms the board pattern allows. */
+    private final int[] allowedTransforms;
+    /**
+     * Creates a new instance for boards of the specified dimensions using the
+     * specified pattern to decide which symmetries are allowed.
+     *
+     * @param pattern      the pattern of the boards
+     * @param boardWidth   the width of the boards (left-to-right)
+     * @param boardHeight  the height of the boards (top-to-bottom)
+     *
+     * @throws IllegalArgumentException  if <code>boardWidth</code> or
+     *                                   <code>boardHeight</code> is less than
+     *                                   <code>1</code>
+     */
+    public BoardSymmetry(final BoardPattern pattern, final int boardWidth,
+            final int boardHeight) {
+        if (boardWidth < 1 || boardHeight < 1) {
+            throw new IllegalArgumentException("board dimensions need to > 0");
+        }
+        width = boardWidth;
+        height = boardHeight;
+        final List<Integer> allowed = new ArrayList<>(TRANSFORM_COUNT);
+        for (int transform = 0; transform < TRANSFORM_COUNT; transform++) {
+            if (preservesPattern(pattern, transform)) {
+                allowed.add(transform);
+            }
+        }
+        allowedTransforms = new int[allowed.size()];
+        for (int i = 0; i < allowedTransforms.length; i++) {
+            allowedTransforms[i] = allowed.get(i);
+        }
+    }
+    /**
+     * Gets whether the specified transform is allowed by the board pattern.
+     *
+     * @param transform  a combination of {@link #MIRROR} and
+     *                   {@link #COLOUR_FLIP}
+     * @return           <code>true</code> if it is allowed;
+     *                   <code>false</code> if it is not
+     */
+    public final boolean isAllowed(final int transform) {
+        for (int i = 0; i < allowedTransforms.length; i++) {
+            if (allowedTransforms[i] == transform) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Finds the allowed transform that maps the specified board and side to
+     * move to its canonical representative.
+     * <p>
+     * The canonical representative is the one with {@link Piece#DARK} to
+     * move if possible, then the one whose pieces compare lowest square by
+     * square. Every board that is symmetrical to another produces the same
+     * canonical representative.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @return        the transform to apply with
+     *                {@link #transform(Board, int)}
+     *
+     * @throws IllegalArgumentException  if the board is not of the expected
+     *                                   dimensions
+     */
+    public final int findCanonicalTransform(final Board board,
+            final int colour) {
+        checkDimensions(board);
+        int best = IDENTITY;
+        for (int i = 0; i < allowedTransforms.length; i++) {
+            final int transform = allowedTransforms[i];
+            if (transform != IDENTITY
+                    && compare(board, colour, transform, best) < 0) {
+                best = transform;
+            }
+        }
+        return best;
+    }
+    /**
+     * Creates a new board that is the specified board with the transform
+     * applied.
+     *
+     * @param board      the board
+     * @param transform  a combination of {@link #MIRROR} and
+     *                   {@link #COLOUR_FLIP}
+     * @return           the transformed board
+     *
+     * @throws IllegalArgumentException  if the board is not of the expected
+     *                                   dimensions
+     */
+    public final Board transform(final Board board, final int transform) {
+        checkDimensions(board);
+        final Board transformed = new Board(width, height);
+        final Piece[] pieces = board.pieces;
+        for (int i = 0; i < pieces.length; i++) {
+            final Piece piece = pieces[i];
+            if (piece != null) {
+                transformed.pieces[transformIndex(i, transform)] =
+                        transformPiece(piece, transform);
+            }
+        }
+        return transformed;
+    }
+    /**
+     * Gets the colour a side becomes when the transform is applied.
+     *
+     * @param colour     either {@link Piece#DARK} or {@link Piece#LIGHT}
+     * @param transform  a combination of {@link #MIRROR} and
+     *                   {@link #COLOUR_FLIP}
+     * @return           the transformed colour
+     */
+    public static int transformColour(final int colour, final int transform) {
+        return (transform & COLOUR_FLIP) != 0
+                ? Piece.getOpposingColourOf(colour) : colour;
+    }
+    /**
+     * Gets the position on the specified board that a position maps to when
+     * the transform is applied.
+     *
+     * @param board      the board to get the cached position from
+     * @param position   the position
+     * @param transform  a combination of {@link #MIRROR} and
+     *                   {@link #COLOUR_FLIP}
+     * @return           the transformed position
+     */
+    public final BoardPosition transformPosition(final Board board,
+            final BoardPosition position, final int transform) {
+        return board.positions[transformIndex(
+                position.y + (height * position.x), transform)];
+    }
+    /**
+     * Creates a new move that is the specified move with the transform
+     * applied.
+     * <p>
+     * As each transform is its own inverse, this is also how a move found on
+     * a canonical board is mapped back onto the original board.
+     *
+     * @param board      the board to get the cached positions from
+     * @param move       the move
+     * @param transform  a combination of {@link #MIRROR} and
+     *                   {@link #COLOUR_FLIP}
+     * @return           the transformed move
+     */
+    public final Move transformMove(final Board board, final Move move,
+            final int transform) {
+        final BoardPosition from =
+                transformPosition(board, move.from, transform);
+        final BoardPosition to = transformPosition(board, move.to, transform);
+        if (move.jumps.isEmpty()) {
+            return new Move(from, to);
+        }
+        final int jumpsSize = move.jumps.size();
+        final List<Jump> jumps = new ArrayList<>(jumpsSize);
+        for (int i = 0; i < jumpsSize; i++) {
+            final Jump jump = move.jumps.get(i);
+            jumps.add(new Jump(
+                    transformPosition(board, jump.from, transform),
+                    transformPosition(board, jump.to, transform),
+                    transformPosition(board, jump.jumped, transform)));
+        }
+        return new Move(from, to, jumps);
+    }
+    /**
+     * Compares the boards two transforms produce.
+     *
+     * @param board   the original board
+     * @param colour  the colour whose turn it is on the original board
+     * @param first   the first transform
+     * @param second  the second transform
+     * @return        a negative value if the first produces the lower board,
+     *                a positive value if the second does, otherwise
+     *                <code>0</code>
+     */
+    private int compare(final Board board, final int colour, final int first,
+            final int second) {
+        final int firstColour = transformColour(colour, first);
+        final int secondColour = transformColour(colour, second);
+        if (firstColour != secondColour) {
+            return firstColour - secondColour;
+        }
+        final Piece[] pieces = board.pieces;
+        for (int i = 0; i < pieces.length; i++) {
+            final int difference =
+                    pieceCode(pieces[transformIndex(i, first)], first)
+                    - pieceCode(pieces[transformIndex(i, second)], second);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+    /**
+     * Gets a code that orders pieces once the transform has been applied.
+     *
+     * @param piece      the piece, which can be <code>null</code>
+     * @param transform  the transform
+     * @return           the code
+     */
+    private static int pieceCode(final Piece piece, final int transform) {
+        if (piece == null) {
+            return 0;
+        }
+        final int colour = transformColour(piece.colour, transform);
+        return 1 + (colour << 2) + transformDirection(
+                piece.getMoveDirection(), transform);
+    }
+    /**
+     * Gets the array index a board array index maps to under the transform.
+     * <p>
+     * Each transform is its own inverse so this also gives the index that
+     * maps onto the specified index.
+     *
+     * @param index      the board array index
+     * @param transform  the transform
+     * @return           the transformed board array index
+     */
+    private int transformIndex(final int index, final int transform) {
+        int x = index / height;
+        int y = index % height;
+        if ((transform & COLOUR_FLIP) != 0) {
+            x = width - 1 - x;
+            y = height - 1 - y;
+        }
+        if ((transform & MIRROR) != 0) {
+            x = width - 1 - x;
+        }
+        return y + (height * x);
+    }
+    /**
+     * Creates the piece a piece becomes under the transform.
+     *
+     * @param piece      the piece
+     * @param transform  the transform
+     * @return           a new piece
+     */
+    private static Piece transformPiece(final Piece piece,
+            final int transform) {
+        return new Piece(transformColour(piece.colour, transform),
+                transformDirection(piece.getMoveDirection(), transform));
+    }
+    /**
+     * Gets the direction a piece moves in after the transform.
+     *
+     * @param direction  either {@link Piece#UP}, {@link Piece#DOWN} or
+     *                   {@link Piece#BOTH}
+     * @param transform  the transform
+     * @return           the transformed direction
+     */
+    private static int transformDirection(final int direction,
+            final int transform) {
+        if ((transform & COLOUR_FLIP) == 0) {
+            return direction;
+        }
+        switch (direction) {
+            case Piece.UP:
+                return Piece.DOWN;
+            case Piece.DOWN:
+                return Piece.UP;
+            default:
+                return direction;
+        }
+    }
+    /**
+     * Gets whether the transform maps every square of the pattern onto a
+     * square of the same colour.
+     *
+     * @param pattern    the pattern
+     * @param transform  the transform
+     * @return           <code>true</code> if it does; <code>false</code> if
+     *                   it does not
+     */
+    private boolean preservesPattern(final BoardPattern pattern,
+            final int transform) {
+        for (int i = 0; i < width * height; i++) {
+            final int mapped = transformIndex(i, transform);
+            if (pattern.getColourAt(i / height, i % height) != pattern
+                    .getColourAt(mapped / height, mapped % height)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Checks the board is of the dimensions this handles.
+     *
+     * @param board  the board
+     *
+     * @throws IllegalArgumentException  if it is not
+     */
+    private void checkDimensions(final Board board) {
+        if (board.width != width || board.height != height) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package mullen.alex.jdf.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A utility class that provides helper methods for the channels the tables,
+ * books and indexes are written to.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public final class ChannelUtil {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ChannelUtil() {
+        // Intentionally empty.
+    }
+    /**
+     * Writes all the remaining bytes of a buffer to a channel, as a single
+     * write may take only some of them.
+     *
+     * @param channel  the channel
+     * @param buffer   the buffer
+     *
+     * @throws IOException  if the bytes could not be written
+     */
+    public static void writeFully(final WritableByteChannel channel,
+            final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package mullen.alex.jdf.common;
 
+import java.util.List;
+
 /**
  * An abstract class that that represents a game of Draughts.
  *
@@ -62,18 +64,125 @@ public interface Game {
      * @return  the result or <code>null</code> if the game has not ended yet.
      */
     GameResult getResult();
+    /**
+     * Gets the legal moves for the current turn owner.
+     * <p>
+     * The moves are generated the first time they are asked for and then
+     * kept until a move is performed or undone, so asking repeatedly for the
+     * same position is free.
+     *
+     * @return  an unmodifiable list of the legal moves, which is empty if
+     *          there are none
+     */
+    List<Move> getLegalMoves();
+    /**
+     * Gets whether the specified move is one of the legal moves for the
+     * current turn owner.
+     * <p>
+     * Moves are compared by value, so a move built by a client from its own
+     * positions is recognised as well as one taken from
+     * {@link #getLegalMoves()}.
+     *
+     * @param move  the move
+     * @return      <code>true</code> if the move is legal;
+     *              <code>false</code> if it is not
+     */
+    boolean isLegalMove(Move move);
     /**
      * Performs a move for the current turn owner.
      *
      * @param move  the move to perform
+     *
+     * @throws IllegalStateException     if the game has ended
+     * @throws IllegalArgumentException  if the move is not one of the legal
+     *                                   moves for the current turn owner
      */
     void performMove(Move move);
     /**
      * Undoes the last move.
+     * <p>
+     * The move is kept in the history so it can be redone with
+     * {@link #redoMove()} until a different move is performed.
      */
     void undoMove();
     /**
-     * Represents the result of a game.
+     * Redoes the next move in the history after it has been undone.
+     * <p>
+     * Does nothing if there are no undone moves.
+     */
+    void redoMove();
+    /**
+     * Moves the game to the position after the specified number of moves in
+     * the history, in either direction.
+     * <p>
+     * The cost of seeking is bounded by the snapshot interval of the history
+     * rather than the length of the game.
+     *
+     * @param ply  the number of moves, from <code>0</code> for the start of
+     *             the history up to the size of {@link #getMoveHistory()}
+     *
+     * @throws IndexOutOfBoundsException  if <code>ply</code> is out of range
+     */
+    void seekTo(int ply);
+    /**
+     * Gets the number of moves from the start of the history to the current
+     * position.
+     *
+     * @return  the ply
+     */
+    int getPly();
+    /**
+     * Gets every move in the history, including any that have been undone
+     * and can be redone.
+     *
+     * @return  an unmodifiable list of the moves in the order performed
+     */
+    List<Move> getMoveHistory();
+    /**
+     * Puts the game back into its starting position with the same players,
+     * clearing the history and any result.
+     * <p>
+     * This reuses everything the game has already allocated, so it is much
+     * cheaper than building a new game.
+     */
+    void reset();
+    /**
+     * Creates an independent game that continues from the current position
+     * of this one.
+     * <p>
+     * The fork shares the players, board pattern, move generator and move
+     * performer with this game, and its board is a copy of this one's, so
+     * forking never replays moves. Moves performed on either game
+     * do not affect the other. The fork starts with an empty history, so
+     * moves made before it was forked cannot be undone in it.
+     *
+     * @return  the fork
+     */
+    Game fork();
+    /**
+     * Adds a listener to be told about every change to the position of this
+     * game.
+     * <p>
+     * Listeners are not carried over to forks.
+     *
+     * @param listener  the listener
+     */
+    void addGameListener(GameListener listener);
+    /**
+     * Removes a listener added with {@link #addGameListener(GameListener)}.
+     *
+     * @param listener  the listener
+     */
+    void removeGameListener(GameListener listener);
+    /**
+     * Removes every listener added with
+     * {@link #addGameListener(GameListener)}, such as when the game is
+     * handed on to a new owner.
+     */
+    void clearGameListeners();
+    /**
+     * Represents the result of a game, which is either a win for one player
+     * or a draw.
      *
      * @author  Alex Mullen
      */
@@ -83,7 +192,7 @@ public interface Game {
         /**
          * Creates a new instance with the given winning player.
          *
-         * @param winner  the winning player
+         * @param winner  the winning player, or <code>null</code> for a draw
          */
         public GameResult(final Player winner) {
             winningPlayer = winner;
@@ -91,10 +200,19 @@ public interface Game {
         /**
          * Gets the winning player.
          *
-         * @return  the winner
+         * @return  the winner, or <code>null</code> if the game was drawn
          */
         public final Player getWinner() {
             return winningPlayer;
         }
+        /**
+         * Gets whether the game was drawn.
+         *
+         * @return  <code>true</code> if it was; <code>false</code> if a player
+         *          won
+         */
+        public final boolean isDraw() {
+            return winningPlayer == null;
+        }
     }
 }
@@ -35,6 +35,17 @@ public interface GameBuilder {
      * @return        the built {@link Game} instance
      */
     Game build(Config config);
+    /**
+     * Creates a pool of games that all use the values in the specified
+     * configuration.
+     *
+     * @param config   the configuration for the games
+     * @param maxIdle  the most released games the pool keeps for reuse
+     * @return         the pool
+     *
+     * @throws IllegalArgumentException  if <code>maxIdle</code> is negative
+     */
+    GamePool createPool(Config config, int maxIdle);
     /**
      * A container class for holding configuration options for creating a
      * game.
@@ -0,0 +1,261 @@
+package mullen.alex.jdf.common;
+
+/**
+ * Plays a game between two {@link AsyncPlayer}s by asking whoever's turn it
+ * is for a move, then performing it when it arrives and asking for the next
+ * one, until the game is over.
+ * <p>
+ * No thread is held while waiting for a player, so a great many games can
+ * be driven at once with only as many threads as the players themselves
+ * use. Each move is performed on whichever thread completed the player's
+ * future. Players that complete their futures straight away are handled in
+ * a loop rather than by recursion, so long games cannot overflow the stack.
+ * <p>
+ * The game should not be used by anything else while it is being driven.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameDriver {
+    /** Holds the game being driven. */
+    private final Game game;
+    /** Holds the listener told about the progress of the game. */
+    private final Listener listener;
+    /** Holds the lock guarding the state below. */
+    private final Object lock = new Object();
+    /** Holds the callback given to each requested move. */
+    private final MoveFuture.Callback callback = new MoveFuture.Callback() {
+        @Override
+        public void onMove(final Move move) {
+            moveArrived(move);
+        }
+        @Override
+        public void onFailure(final Throwable cause) {
+            if (stopIfRunning()) {
+                listener.onError(game, cause);
+            }
+        }
+    };
+    /** Holds the future for the move currently requested, if any. */
+    private MoveFuture pending;
+    /** Holds a move that arrived while the previous one was being handled. */
+    private Move arrivedMove;
+    /** Holds whether a thread is currently performing moves. */
+    private boolean draining;
+    /** Holds whether the driver has been started. */
+    private boolean started;
+    /** Holds whether the driver has finished or been stopped. */
+    private boolean stopped;
+    /**
+     * Creates a new driver for the specified game.
+     *
+     * @param drivenGame     the game, whose players both need to be
+     *                       {@link AsyncPlayer}s
+     * @param gameListener   the listener told about the progress of the game
+     *
+     * @throws IllegalArgumentException  if either player is not an
+     *                                   {@link AsyncPlayer}
+     */
+    public GameDriver(final Game drivenGame, final Listener gameListener) {
+        if (!(drivenGame.getDarkPlayer() instanceof AsyncPlayer)
+                || !(drivenGame.getLightPlayer() instanceof AsyncPlayer)) {
+            throw new IllegalArgumentException(
+                    "both players need to be AsyncPlayers");
+        }
+        game = drivenGame;
+        listener = gameListener;
+    }
+    /**
+     * Starts driving the game by asking the player whose turn it is for a
+     * move. Returns once that request has been made, or once the game is
+     * over if the players supply their moves straight away.
+     *
+     * @throws IllegalStateException  if already started
+     */
+    public final void start() {
+        synchronized (lock) {
+            if (started) {
+                throw new IllegalStateException("already started");
+            }
+            started = true;
+            draining = true;
+        }
+        drain(null);
+    }
+    /**
+     * Stops driving the game, cancelling the move currently requested. The
+     * listener is not told about anything after this.
+     */
+    public final void stop() {
+        final MoveFuture toCancel;
+        synchronized (lock) {
+            stopped = true;
+            toCancel = pending;
+            pending = null;
+        }
+        if (toCancel != null) {
+            toCancel.cancel(true);
+        }
+    }
+    /**
+     * Gets whether the driver has finished, either because the game is over
+     * or because it was stopped or failed.
+     *
+     * @return  <code>true</code> if finished; <code>false</code> if not
+     */
+    public final boolean isFinished() {
+        synchronized (lock) {
+            return stopped;
+        }
+    }
+    /**
+     * Gets the game being driven.
+     *
+     * @return  the game
+     */
+    public final Game getGame() {
+        return game;
+    }
+    /**
+     * Handles a move arriving from a player, performing it on this thread
+     * unless another thread is already performing moves, in which case that
+     * thread picks it up.
+     *
+     * @param move  the move
+     */
+    private void moveArrived(final Move move) {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            pending = null;
+            if (draining) {
+                arrivedMove = move;
+                return;
+            }
+            draining = true;
+        }
+        drain(move);
+    }
+    /**
+     * Performs moves and requests the next ones for as long as moves keep
+     * arriving while requesting.
+     *
+     * @param firstMove  the move to perform first, or <code>null</code> to
+     *                   only request one
+     */
+    private void drain(final Move firstMove) {
+        Move move = firstMove;
+        while (true) {
+            if (move != null && !perform(move)) {
+                return;
+            }
+            if (!requestNextMove()) {
+                return;
+            }
+            synchronized (lock) {
+                move = arrivedMove;
+                arrivedMove = null;
+                if (move == null || stopped) {
+                    draining = false;
+                    return;
+                }
+            }
+        }
+    }
+    /**
+     * Performs a move that arrived and tells the listener.
+     *
+     * @param move  the move
+     * @return      <code>true</code> if it was performed; <code>false</code>
+     *              if it was illegal, in which case the driver has stopped
+     */
+    private boolean perform(final Move move) {
+        final Player mover = game.getTurn();
+        try {
+            game.performMove(move);
+        } catch (final IllegalArgumentException e) {
+            if (stopIfRunning()) {
+                listener.onError(game, e);
+            }
+            return false;
+        }
+        listener.onMovePerformed(game, mover, move);
+        return true;
+    }
+    /**
+     * Asks the player whose turn it is for a move, or tells the listener the
+     * game is over if it is.
+     *
+     * @return  <code>true</code> if a move was requested; <code>false</code>
+     *          if the driver has stopped
+     */
+    private boolean requestNextMove() {
+        if (game.getResult() != null) {
+            if (stopIfRunning()) {
+                listener.onGameOver(game);
+            }
+            return false;
+        }
+        final AsyncPlayer player = (AsyncPlayer) game.getTurn();
+        final MoveFuture future = player.requestMove(game.fork());
+        synchronized (lock) {
+            if (stopped) {
+                draining = false;
+                future.cancel(true);
+                return false;
+            }
+            pending = future;
+        }
+        future.addCallback(callback);
+        return true;
+    }
+    /**
+     * Stops the driver unless it has stopped already.
+     *
+     * @return  <code>true</code> if this stopped it; <code>false</code> if
+     *          it had already stopped
+     */
+    private boolean stopIfRunning() {
+        synchronized (lock) {
+            if (stopped) {
+                return false;
+            }
+            stopped = true;
+            draining = false;
+            pending = null;
+            return true;
+        }
+    }
+    /**
+     * An interface for being told about the progress of a driven game. The
+     * methods are called on whichever thread performed the move, but never
+     * on more than one thread at once for the same game.
+     *
+     * @author  Alex Mullen
+     */
+    public interface Listener {
+        /**
+         * Called after a move has been performed.
+         *
+         * @param game    the game
+         * @param player  the player who made the move
+         * @param move    the move
+         */
+        void onMovePerformed(Game game, Player player, Move move);
+        /**
+         * Called once the game is over.
+         *
+         * @param game  the game
+         */
+        void onGameOver(Game game);
+        /**
+         * Called when a player failed to supply a move or supplied an
+         * illegal one. The game is no longer driven after this.
+         *
+         * @param game   the game
+         * @param cause  the failure
+         */
+        void onError(Game game, Throwable cause);
+    }
+}
@@ -0,0 +1,60 @@
+package mullen.alex.jdf.common;
+
+import mullen.alex.jdf.common.Game.GameResult;
+
+/**
+ * Describes a change to the position of a game.
+ * <p>
+ * Events only hold the move involved and where the game ended up, never a
+ * copy of the board, so they are cheap enough to create for every move.
+ * Listeners that keep a board of their own can apply the move to it.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameEvent {
+    /** Represents a move being performed, or redone. */
+    public static final int MOVE_PERFORMED = 0;
+    /** Represents a move being undone. */
+    public static final int MOVE_UNDONE = 1;
+    /** Represents the game jumping to another ply of its history. */
+    public static final int SEEKED = 2;
+    /** Represents the game being put back into its starting position. */
+    public static final int RESET = 3;
+    /** The game that changed. */
+    public final Game game;
+    /** The type of change. */
+    public final int type;
+    /** The ply the game is at after the change. */
+    public final int ply;
+    /**
+     * The move performed or undone, or <code>null</code> for
+     * {@link #SEEKED} and {@link #RESET}.
+     */
+    public final Move move;
+    /** The result of the game after the change, or <code>null</code>. */
+    public final GameResult result;
+    /**
+     * Creates a new instance.
+     *
+     * @param changedGame  the game that changed
+     * @param eventType    the type of change
+     * @param eventPly     the ply the game is at after the change
+     * @param eventMove    the move performed or undone, if any
+     * @param eventResult  the result of the game after the change, if any
+     */
+    public GameEvent(final Game changedGame, final int eventType,
+            final int eventPly, final Move eventMove,
+            final GameResult eventResult) {
+        game = changedGame;
+        type = eventType;
+        ply = eventPly;
+        move = eventMove;
+        result = eventResult;
+    }
+    @Override
+    public final String toString() {
+        return "GameEvent [type=" + type + ", ply=" + ply + ", move=" + move
+                + ", result=" + result + "]";
+    }
+}
@@ -0,0 +1,20 @@
+package mullen.alex.jdf.common;
+
+/**
+ * An interface for being told about changes to the position of a game.
+ * <p>
+ * Listeners are called on the thread that changed the game, straight after
+ * the change, so they should return quickly. Wrap a listener that does any
+ * real work in a {@link BatchingGameListener} to move it off that thread.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public interface GameListener {
+    /**
+     * Called after the position of a game has changed.
+     *
+     * @param event  the change
+     */
+    void onGameEvent(GameEvent event);
+}
@@ -0,0 +1,87 @@
+package mullen.alex.jdf.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of games that are reset and reused rather than built from scratch,
+ * for when a great many short games are played one after another.
+ * <p>
+ * Every game in a pool is built with the same players. Games are reset and
+ * have their listeners removed as they are released so acquiring one only
+ * takes it off the pool. Instances are safe to share between threads, though
+ * each game should only be used by one thread at a time.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GamePool {
+    /** Holds the builder for building new games. */
+    private final GameBuilder builder;
+    /** Holds the configuration for building new games. */
+    private final GameBuilder.Config config;
+    /** Holds the most released games to keep. */
+    private final int maxIdleGames;
+    /** Holds the released games waiting to be reused. */
+    private final Deque<Game> idleGames;
+    /**
+     * Creates a new empty pool.
+     *
+     * @param gameBuilder  the builder for building new games
+     * @param gameConfig   the configuration for building new games, which is
+     *                     copied
+     * @param maxIdle      the most released games to keep for reuse
+     *
+     * @throws IllegalArgumentException  if <code>maxIdle</code> is negative
+     */
+    public GamePool(final GameBuilder gameBuilder,
+            final GameBuilder.Config gameConfig, final int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle needs to be >= 0");
+        }
+        builder = gameBuilder;
+        config = new GameBuilder.Config();
+        config.setDarkPlayer(gameConfig.getDarkPlayer());
+        config.setLightPlayer(gameConfig.getLightPlayer());
+        maxIdleGames = maxIdle;
+        idleGames = new ArrayDeque<>();
+    }
+    /**
+     * Gets a game in its starting position, reusing a released one if there
+     * are any.
+     *
+     * @return  the game
+     */
+    public final Game acquire() {
+        final Game game;
+        synchronized (idleGames) {
+            game = idleGames.pollFirst();
+        }
+        return game != null ? game : builder.build(config);
+    }
+    /**
+     * Resets the specified game, removes its listeners and gives it back to
+     * the pool for reuse. The game should not be used again by the caller.
+     *
+     * @param game  a game acquired from this pool
+     */
+    public final void release(final Game game) {
+        game.clearGameListeners();
+        game.reset();
+        synchronized (idleGames) {
+            if (idleGames.size() < maxIdleGames) {
+                idleGames.addFirst(game);
+            }
+        }
+    }
+    /**
+     * Gets the number of released games waiting to be reused.
+     *
+     * @return  the number of games
+     */
+    public final int getIdleCount() {
+        synchronized (idleGames) {
+            return idleGames.size();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package mullen.alex.jdf.common;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that records the moves of a game played from the starting position
+ * of a variant, along with how the game ended.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameRecord {
+    /** Represents a game that has not finished or whose result is unknown. */
+    public static final int UNFINISHED = 0;
+    /** Represents a game won by the dark pieces. */
+    public static final int DARK_WIN = 1;
+    /** Represents a game won by the light pieces. */
+    public static final int LIGHT_WIN = 2;
+    /** Represents a drawn game. */
+    public static final int DRAW = 3;
+    /** The moves of the game in the order they were played. */
+    public final List<Move> moves;
+    /**
+     * The result of the game - either {@link #UNFINISHED},
+     * {@link #DARK_WIN}, {@link #LIGHT_WIN} or {@link #DRAW}.
+     */
+    public final int result;
+    /**
+     * Creates a new instance using the specified moves and result.
+     *
+     * @param playedMoves  the moves in the order they were played
+     * @param gameResult   either {@link #UNFINISHED}, {@link #DARK_WIN},
+     *                     {@link #LIGHT_WIN} or {@link #DRAW}
+     *
+     * @throws IllegalArgumentException  if <code>gameResult</code> is not one
+     *                                   of the above
+     */
+    public GameRecord(final List<Move> playedMoves, final int gameResult) {
+        if (gameResult < UNFINISHED || gameResult > DRAW) {
+            throw new IllegalArgumentException("unknown result");
+        }
+        moves = Collections.unmodifiableList(playedMoves);
+        result = gameResult;
+    }
+    /**
+     * Gets the result from the point of view of the specified colour.
+     *
+     * @param colour  either {@link Piece#DARK} or {@link Piece#LIGHT}
+     * @return        <code>1</code> for a win, <code>-1</code> for a loss and
+     *                <code>0</code> for a draw or unfinished game
+     */
+    public final int getScoreFor(final int colour) {
+        if (result == DARK_WIN) {
+            return colour == Piece.DARK ? 1 : -1;
+        } else if (result == LIGHT_WIN) {
+            return colour == Piece.LIGHT ? 1 : -1;
+        }
+        return 0;
+    }
+    @Override
+    public final String toString() {
+        return "GameRecord [moves=" + moves.size() + ", result=" + result
+                + "]";
+    }
+}
@@ -0,0 +1,314 @@
+package mullen.alex.jdf.common;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts a great many games at once on a small, fixed number of threads.
+ * <p>
+ * Each hosted game is played by a {@link GameDriver}, which holds no thread
+ * while waiting for a move, so an idle game costs only its memory. Players
+ * do their thinking through {@link #compute(Callable)}, which runs it on a
+ * bounded pool of compute threads in the order asked. As each game only ever
+ * has one move requested at a time, one game with a slow engine cannot take
+ * more than its turn of the pool from the others.
+ * <p>
+ * Every request has a deadline. A request that misses it fails with a
+ * {@link TimeoutException}, which ends that game, and the computation is
+ * interrupted so its thread is freed for others. Computations should check
+ * {@link Thread#interrupted()} every so often to be stopped promptly.
+ * <p>
+ * New games are refused once the most games allowed are being hosted or
+ * once the number of requests waiting for a compute thread reaches the
+ * backlog limit, so a saturated scheduler pushes back on whatever is
+ * starting games rather than letting every game slow down.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameScheduler {
+    /** Holds the most games hosted at once. */
+    private final int maxSessions;
+    /** Holds the most requests waiting before new games are refused. */
+    private final int maxBacklog;
+    /** Holds the milliseconds each request has to supply a move. */
+    private final long moveDeadlineMillis;
+    /** Holds the pool that runs the computations. */
+    private final ThreadPoolExecutor computePool;
+    /** Holds the timer that enforces the deadlines. */
+    private final ScheduledThreadPoolExecutor deadlineTimer;
+    /** Holds the number of games currently hosted. */
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    /**
+     * Creates a new scheduler.
+     *
+     * @param computeThreads  the number of threads computations run on
+     * @param sessions        the most games to host at once
+     * @param backlog         the most requests waiting for a compute thread
+     *                        before new games are refused
+     * @param deadlineMillis  the milliseconds each request has to supply a
+     *                        move
+     *
+     * @throws IllegalArgumentException  if any argument is less than
+     *                                   <code>1</code>
+     */
+    public GameScheduler(final int computeThreads, final int sessions,
+            final int backlog, final long deadlineMillis) {
+        if (computeThreads < 1 || sessions < 1 || backlog < 1
+                || deadlineMillis < 1) {
+            throw new IllegalArgumentException("arguments need to be > 0");
+        }
+        maxSessions = sessions;
+        maxBacklog = backlog;
+        moveDeadlineMillis = deadlineMillis;
+        // Each game has at most one request queued so the queue never needs
+        // to hold more than there are games.
+        computePool = new ThreadPoolExecutor(computeThreads, computeThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(sessions),
+                new DaemonThreadFactory("jdf-compute-"));
+        deadlineTimer = new ScheduledThreadPoolExecutor(1,
+                new DaemonThreadFactory("jdf-deadline-"));
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+    }
+    /**
+     * Starts hosting a game, unless the scheduler is saturated.
+     *
+     * @param game      the game, whose players both need to be
+     *                  {@link AsyncPlayer}s
+     * @param listener  the listener told about the progress of the game
+     * @return          the session for the game, or <code>null</code> if
+     *                  the game was refused
+     *
+     * @throws IllegalArgumentException  if either player is not an
+     *                                   {@link AsyncPlayer}
+     */
+    public final Session host(final Game game,
+            final GameDriver.Listener listener) {
+        if (isSaturated() || !reserveSession()) {
+            return null;
+        }
+        final Session session;
+        try {
+            session = new Session(game, listener);
+        } catch (final IllegalArgumentException e) {
+            activeSessions.decrementAndGet();
+            throw e;
+        }
+        session.driver.start();
+        return session;
+    }
+    /**
+     * Runs a computation that chooses a move on a compute thread, subject to
+     * the move deadline.
+     * <p>
+     * The future fails with a {@link TimeoutException} if the deadline
+     * passes first, with whatever the computation threw if it failed, or
+     * with a {@link RejectedExecutionException} if the scheduler has been
+     * shut down or more requests are waiting than there can be games.
+     * Cancelling the future interrupts the computation, or takes it off the
+     * queue if it has not started.
+     *
+     * @param search  the computation
+     * @return        the future that will be completed with the move
+     */
+    public final MoveFuture compute(final Callable<Move> search) {
+        final MoveFuture result = new MoveFuture();
+        final FutureTask<Void> task = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(search.call());
+                } catch (final Exception e) {
+                    result.fail(e);
+                }
+            }
+        }, null);
+        final ScheduledFuture<?> deadline;
+        try {
+            computePool.execute(task);
+            deadline = deadlineTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    result.fail(new TimeoutException(
+                            "move deadline passed"));
+                }
+            }, moveDeadlineMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            result.fail(e);
+            return result;
+        }
+        result.addCallback(new MoveFuture.Callback() {
+            @Override
+            public void onMove(final Move move) {
+                deadline.cancel(false);
+            }
+            @Override
+            public void onFailure(final Throwable cause) {
+                deadline.cancel(false);
+                task.cancel(true);
+                // The pool never drops cancelled tasks itself, and one left
+                // queued would count against the backlog of every game.
+                computePool.remove(task);
+            }
+        });
+        return result;
+    }
+    /**
+     * Gets whether new games would currently be refused.
+     *
+     * @return  <code>true</code> if saturated; <code>false</code> if not
+     */
+    public final boolean isSaturated() {
+        return activeSessions.get() >= maxSessions
+                || computePool.getQueue().size() >= maxBacklog;
+    }
+    /**
+     * Gets the number of games currently hosted.
+     *
+     * @return  the number of games
+     */
+    public final int getActiveSessions() {
+        return activeSessions.get();
+    }
+    /**
+     * Gets the number of requests waiting for a compute thread.
+     *
+     * @return  the number of requests
+     */
+    public final int getBacklog() {
+        return computePool.getQueue().size();
+    }
+    /**
+     * Stops accepting computations and interrupts those running. Games still
+     * hosted end with an error when they next request a move.
+     */
+    public final void shutdown() {
+        computePool.shutdownNow();
+        deadlineTimer.shutdownNow();
+    }
+    /**
+     * Takes one of the places for a hosted game if there are any left.
+     *
+     * @return  <code>true</code> if a place was taken; <code>false</code> if
+     *          there were none
+     */
+    private boolean reserveSession() {
+        while (true) {
+            final int current = activeSessions.get();
+            if (current >= maxSessions) {
+                return false;
+            }
+            if (activeSessions.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    /**
+     * A game being hosted by a scheduler.
+     *
+     * @author  Alex Mullen
+     */
+    public final class Session {
+        /** Holds the driver playing the game. */
+        private final GameDriver driver;
+        /** Holds whether this session has given its place back yet. */
+        private final AtomicBoolean released = new AtomicBoolean();
+        /**
+         * Creates a new session.
+         *
+         * @param game      the game
+         * @param listener  the listener told about the progress of the game
+         */
+        Session(final Game game, final GameDriver.Listener listener) {
+            driver = new GameDriver(game, new GameDriver.Listener() {
+                @Override
+                public void onMovePerformed(final Game drivenGame,
+                        final Player player, final Move move) {
+                    listener.onMovePerformed(drivenGame, player, move);
+                }
+                @Override
+                public void onGameOver(final Game drivenGame) {
+                    release();
+                    listener.onGameOver(drivenGame);
+                }
+                @Override
+                public void onError(final Game drivenGame,
+                        final Throwable cause) {
+                    release();
+                    listener.onError(drivenGame, cause);
+                }
+            });
+        }
+        /**
+         * Gets the game being hosted.
+         *
+         * @return  the game
+         */
+        public Game getGame() {
+            return driver.getGame();
+        }
+        /**
+         * Gets whether the game has finished, either because it is over or
+         * because it was stopped or failed.
+         *
+         * @return  <code>true</code> if finished; <code>false</code> if not
+         */
+        public boolean isFinished() {
+            return driver.isFinished();
+        }
+        /**
+         * Stops hosting the game and gives its place back. The listener is
+         * not told about anything after this.
+         */
+        public void stop() {
+            driver.stop();
+            release();
+        }
+        /**
+         * Gives this session's place back, once only.
+         */
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                activeSessions.decrementAndGet();
+            }
+        }
+    }
+    /**
+     * Creates named daemon threads, so a scheduler that is never shut down
+     * does not keep the program running.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        /** Holds the prefix of each thread's name. */
+        private final String prefix;
+        /** Holds the number given to the next thread. */
+        private final AtomicInteger nextNumber = new AtomicInteger(1);
+        /**
+         * Creates a new factory.
+         *
+         * @param namePrefix  the prefix of each thread's name
+         */
+        DaemonThreadFactory(final String namePrefix) {
+            prefix = namePrefix;
+        }
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                    prefix + nextNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
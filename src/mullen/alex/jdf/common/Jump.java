@@ -29,6 +29,33 @@ public class Jump {
         to = toPosition;
         jumped = jumpedPosition;
     }
+    /**
+     * Indicates whether one jump is equivalent to another.
+     * <p>
+     * Two jumps are considered equivalent if their {@link #from}, {@link #to}
+     * and {@link #jumped} positions are all equivalent.
+     */
+    @Override
+    public final boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Jump other = (Jump) obj;
+        return from.equals(other.from) && to.equals(other.to)
+                && jumped.equals(other.jumped);
+    }
+    @Override
+    public final int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + from.hashCode();
+        result = prime * result + to.hashCode();
+        result = prime * result + jumped.hashCode();
+        return result;
+    }
     @Override
     public final String toString() {
         return "Jump [from=" + from + ", to=" + to + ", jumped=" + jumped + "]";
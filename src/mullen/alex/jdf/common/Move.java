@@ -50,6 +50,43 @@ public class Move {
         to = toPosition;
         jumps = jumpedPositions;
     }
+    /**
+     * Indicates whether one move is equivalent to another.
+     * <p>
+     * Two moves are considered equivalent if their {@link #from} and
+     * {@link #to} positions are equivalent and they make equivalent
+     * {@link #jumps} in the same order.
+     */
+    @Override
+    public final boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Move other = (Move) obj;
+        return from.equals(other.from) && to.equals(other.to)
+                && jumps.equals(other.jumps);
+    }
+    /**
+     * Gets a hash code for this move.
+     * <p>
+     * Only the start position and the landing position of each jump are
+     * included, as these are enough to tell legal moves apart and keep the
+     * hash cheap to compute.
+     */
+    @Override
+    public final int hashCode() {
+        final int prime = 31;
+        int result = prime + from.hashCode();
+        result = prime * result + to.hashCode();
+        final int jumpsSize = jumps.size();
+        for (int i = 0; i < jumpsSize; i++) {
+            result = prime * result + jumps.get(i).to.hashCode();
+        }
+        return result;
+    }
     @Override
     public final String toString() {
         final StringBuilder sb = new StringBuilder(256);
@@ -0,0 +1,200 @@
+package mullen.alex.jdf.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A move that will be supplied some time later, which can either be waited
+ * for or be handed to a callback when it arrives.
+ * <p>
+ * Whoever creates the future completes it exactly once with either a move
+ * or a failure; any later attempts are ignored. Callbacks added before then
+ * run on the thread that completes it, and callbacks added afterwards run
+ * straight away on the thread adding them.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class MoveFuture implements Future<Move> {
+    /** Represents a future that has not been completed yet. */
+    private static final int PENDING = 0;
+    /** Represents a future that was completed with a move. */
+    private static final int SUCCEEDED = 1;
+    /** Represents a future that was completed with a failure. */
+    private static final int FAILED = 2;
+    /** Represents a future that was cancelled. */
+    private static final int CANCELLED = 3;
+    /** Holds the state of this future. */
+    private int state = PENDING;
+    /** Holds the move once completed with one. */
+    private Move move;
+    /** Holds the failure once completed with one. */
+    private Throwable failure;
+    /** Holds the callbacks waiting for this to complete. */
+    private List<Callback> callbacks = new ArrayList<>(1);
+    /**
+     * Creates a future that has already been completed with the specified
+     * move.
+     *
+     * @param move  the move
+     * @return      the future
+     */
+    public static MoveFuture completed(final Move move) {
+        final MoveFuture future = new MoveFuture();
+        future.complete(move);
+        return future;
+    }
+    /**
+     * Completes this future with the specified move.
+     *
+     * @param completedMove  the move
+     * @return               <code>true</code> if this completed it;
+     *                       <code>false</code> if it was already complete
+     */
+    public final boolean complete(final Move completedMove) {
+        return finish(SUCCEEDED, completedMove, null);
+    }
+    /**
+     * Completes this future with the specified failure.
+     *
+     * @param cause  why no move could be supplied
+     * @return       <code>true</code> if this completed it;
+     *               <code>false</code> if it was already complete
+     */
+    public final boolean fail(final Throwable cause) {
+        return finish(FAILED, null, cause);
+    }
+    /**
+     * Adds a callback to be told when this future completes.
+     *
+     * @param callback  the callback
+     */
+    public final void addCallback(final Callback callback) {
+        synchronized (this) {
+            if (state == PENDING) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+    @Override
+    public final boolean cancel(final boolean mayInterruptIfRunning) {
+        return finish(CANCELLED, null, new CancellationException());
+    }
+    @Override
+    public final synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+    @Override
+    public final synchronized boolean isDone() {
+        return state != PENDING;
+    }
+    @Override
+    public final synchronized Move get() throws InterruptedException,
+            ExecutionException {
+        while (state == PENDING) {
+            wait();
+        }
+        return getCompleted();
+    }
+    @Override
+    public final synchronized Move get(final long timeout,
+            final TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getCompleted();
+    }
+    /**
+     * Gets the outcome of this future once it has completed.
+     *
+     * @return  the move
+     *
+     * @throws ExecutionException  if it was completed with a failure
+     */
+    private Move getCompleted() throws ExecutionException {
+        if (state == CANCELLED) {
+            throw new CancellationException();
+        } else if (state == FAILED) {
+            throw new ExecutionException(failure);
+        }
+        return move;
+    }
+    /**
+     * Completes this future if it has not been already, then tells any
+     * waiting callbacks.
+     *
+     * @param newState       the state to complete with
+     * @param completedMove  the move, if succeeded
+     * @param cause          the failure, if failed or cancelled
+     * @return               <code>true</code> if this completed it;
+     *                       <code>false</code> if it was already complete
+     */
+    private boolean finish(final int newState, final Move completedMove,
+            final Throwable cause) {
+        final List<Callback> waiting;
+        synchronized (this) {
+            if (state != PENDING) {
+                return false;
+            }
+            state = newState;
+            move = completedMove;
+            failure = cause;
+            waiting = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        for (final Callback callback : waiting) {
+            notifyCallback(callback);
+        }
+        return true;
+    }
+    /**
+     * Tells a callback how this future completed.
+     *
+     * @param callback  the callback
+     */
+    private void notifyCallback(final Callback callback) {
+        final int completedState;
+        synchronized (this) {
+            completedState = state;
+        }
+        if (completedState == SUCCEEDED) {
+            callback.onMove(move);
+        } else {
+            callback.onFailure(failure);
+        }
+    }
+    /**
+     * An interface for being told when a {@link MoveFuture} completes.
+     *
+     * @author  Alex Mullen
+     */
+    public interface Callback {
+        /**
+         * Called when the future is completed with a move.
+         *
+         * @param move  the move
+         */
+        void onMove(Move move);
+        /**
+         * Called when the future is completed with a failure or cancelled.
+         *
+         * @param cause  the failure, which is a
+         *               {@link CancellationException} if it was cancelled
+         */
+        void onFailure(Throwable cause);
+    }
+}
@@ -21,4 +21,18 @@ public interface MoveGenerator {
      *               <code>null</code>.
      */
     List<Move> findMoves(Board board, int colour);
+    /**
+     * Gets whether the specified colour has at least one move available on
+     * the specified board.
+     * <p>
+     * This should stop as soon as a move is found rather than generating
+     * every move, so it is much cheaper than checking whether
+     * {@link #findMoves(Board, int)} returns an empty list.
+     *
+     * @param board   the board
+     * @param colour  the colour
+     * @return        <code>true</code> if there is at least one move;
+     *                <code>false</code> if there are none
+     */
+    boolean hasAnyMove(Board board, int colour);
 }
@@ -0,0 +1,230 @@
+package mullen.alex.jdf.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+
+/**
+ * A history of the moves performed on a board that can be moved backwards
+ * and forwards through, as well as jumped to any ply directly.
+ * <p>
+ * Only the moves themselves are kept for the whole history, along with a
+ * snapshot of the pieces every so many plies. Seeking restores the nearest
+ * snapshot at or before the target ply and replays the moves from there, so
+ * seeking anywhere costs at most one snapshot interval of moves no matter
+ * how long the game is. Stepping back one ply at a time undoes moves
+ * directly where it can.
+ * <p>
+ * Performing a move anywhere other than at the end of the history discards
+ * the moves after it, in the same way as an editor's undo and redo.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class MoveHistory {
+    /** The default number of plies between snapshots. */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 16;
+    /** Holds the board the moves are performed on. */
+    private final Board board;
+    /** Holds the move performer for performing moves. */
+    private final MovePerformer movePerformer;
+    /** Holds the number of plies between snapshots. */
+    private final int snapshotInterval;
+    /** Holds every move in the history in the order performed. */
+    private final List<Move> moves;
+    /** Holds the pieces at every multiple of the snapshot interval. */
+    private final List<Piece[]> snapshots;
+    /**
+     * Holds the undo operations for the most recent plies reached by going
+     * forwards, most recent first. No more than the snapshot interval are
+     * kept, as going back further is done from a snapshot.
+     */
+    private final Deque<PerformedMove> undoOperations;
+    /** Holds the number of snapshots in use. */
+    private int snapshotCount;
+    /** Holds the ply the board is currently at. */
+    private int ply;
+    /**
+     * Creates a new empty history for the specified board, taking its
+     * current position as the start.
+     *
+     * @param historyBoard  the board the moves are performed on
+     * @param performer     the move performer for the variant
+     * @param interval      the number of plies between snapshots
+     *
+     * @throws IllegalArgumentException  if <code>interval</code> is less than
+     *                                   <code>1</code>
+     */
+    public MoveHistory(final Board historyBoard,
+            final MovePerformer performer, final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval needs to be > 0");
+        }
+        board = historyBoard;
+        movePerformer = performer;
+        snapshotInterval = interval;
+        moves = new ArrayList<>();
+        snapshots = new ArrayList<>();
+        undoOperations = new ArrayDeque<>();
+        clear();
+    }
+    /**
+     * Forgets every move and takes the current position of the board as the
+     * new start.
+     */
+    public final void clear() {
+        moves.clear();
+        undoOperations.clear();
+        snapshotCount = 0;
+        ply = 0;
+        takeSnapshot();
+    }
+    /**
+     * Performs a move on the board and records it, discarding any moves
+     * after the current ply.
+     *
+     * @param move  the move
+     */
+    public final void perform(final Move move) {
+        if (ply < moves.size()) {
+            moves.subList(ply, moves.size()).clear();
+            snapshotCount = (ply / snapshotInterval) + 1;
+        }
+        moves.add(move);
+        step();
+        if (ply % snapshotInterval == 0) {
+            takeSnapshot();
+        }
+    }
+    /**
+     * Goes back one ply.
+     *
+     * @return  <code>true</code> if it went back; <code>false</code> if
+     *          already at the start
+     */
+    public final boolean undo() {
+        if (ply == 0) {
+            return false;
+        }
+        if (undoOperations.isEmpty()) {
+            seek(ply - 1);
+        } else {
+            undoOperations.removeFirst().undo();
+            ply--;
+        }
+        return true;
+    }
+    /**
+     * Goes forward one ply by performing the next recorded move again.
+     *
+     * @return  <code>true</code> if it went forward; <code>false</code> if
+     *          already at the end
+     */
+    public final boolean redo() {
+        if (ply == moves.size()) {
+            return false;
+        }
+        step();
+        return true;
+    }
+    /**
+     * Moves the board to the position at the specified ply.
+     *
+     * @param targetPly  the ply, from <code>0</code> for the start up to
+     *                   {@link #size()} for the end
+     *
+     * @throws IndexOutOfBoundsException  if <code>targetPly</code> is out of
+     *                                    range
+     */
+    public final void seek(final int targetPly) {
+        if (targetPly < 0 || targetPly > moves.size()) {
+            throw new IndexOutOfBoundsException("ply " + targetPly);
+        }
+        final int distance = targetPly - ply;
+        if (distance >= 0 && distance <= snapshotInterval) {
+            while (ply < targetPly) {
+                step();
+            }
+            return;
+        }
+        if (distance < 0 && -distance <= undoOperations.size()
+                && -distance <= snapshotInterval) {
+            while (ply > targetPly) {
+                undoOperations.removeFirst().undo();
+                ply--;
+            }
+            return;
+        }
+        final int snapshot = targetPly / snapshotInterval;
+        final Piece[] pieces = snapshots.get(snapshot);
+        System.arraycopy(pieces, 0, board.pieces, 0, pieces.length);
+        undoOperations.clear();
+        ply = snapshot * snapshotInterval;
+        while (ply < targetPly) {
+            step();
+        }
+    }
+    /**
+     * Gets the ply the board is currently at.
+     *
+     * @return  the ply
+     */
+    public final int getPly() {
+        return ply;
+    }
+    /**
+     * Gets the number of moves in the history, including any after the
+     * current ply.
+     *
+     * @return  the number of moves
+     */
+    public final int size() {
+        return moves.size();
+    }
+    /**
+     * Gets the number of plies that can be undone without going back to a
+     * snapshot.
+     *
+     * @return  the number of undo operations held
+     */
+    final int getUndoDepth() {
+        return undoOperations.size();
+    }
+    /**
+     * Gets the moves in the history.
+     *
+     * @return  an unmodifiable view of the moves in the order performed
+     */
+    public final List<Move> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+    /**
+     * Performs the move at the current ply and moves forward one ply.
+     */
+    private void step() {
+        undoOperations.addFirst(movePerformer.perform(moves.get(ply), board));
+        if (undoOperations.size() > snapshotInterval) {
+            undoOperations.removeLast();
+        }
+        ply++;
+    }
+    /**
+     * Records the pieces on the board as the snapshot for the current ply,
+     * which is a multiple of the snapshot interval. Arrays from discarded
+     * snapshots are reused.
+     */
+    private void takeSnapshot() {
+        final Piece[] pieces = board.pieces;
+        if (snapshotCount < snapshots.size()) {
+            System.arraycopy(pieces, 0, snapshots.get(snapshotCount), 0,
+                    pieces.length);
+        } else {
+            snapshots.add(pieces.clone());
+        }
+        snapshotCount++;
+    }
+}
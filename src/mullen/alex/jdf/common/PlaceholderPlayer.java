@@ -0,0 +1,30 @@
+package mullen.alex.jdf.common;
+
+/**
+ * A player that does nothing but hold a colour, for games whose moves are
+ * all chosen by the code driving them, such as self-play, analysis tools and
+ * tests.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PlaceholderPlayer implements Player {
+    /** Holds the colour of this player. */
+    private final int colour;
+    /**
+     * Creates a new player for the specified colour.
+     *
+     * @param playerColour  either {@link Piece#DARK} or {@link Piece#LIGHT}
+     */
+    public PlaceholderPlayer(final int playerColour) {
+        colour = playerColour;
+    }
+    @Override
+    public final int getColour() {
+        return colour;
+    }
+    @Override
+    public final boolean isArtificial() {
+        return true;
+    }
+}
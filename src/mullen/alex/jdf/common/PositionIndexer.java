@@ -0,0 +1,450 @@
+package mullen.alex.jdf.common;
+
+import java.math.BigInteger;
+
+/**
+ * Maps every board with a fixed number of dark men, dark kings, light men
+ * and light kings to a dense index and back.
+ * <p>
+ * Only the black squares of the board pattern are used and men are never
+ * placed on the row they would be crowned on. Every index from
+ * <code>0</code> up to {@link #size()} is used exactly once, which allows
+ * tables of positions to be stored in plain arrays.
+ * <p>
+ * Men are assumed to follow the usual convention of {@link Piece#DARK} men
+ * moving {@link Piece#DOWN} and {@link Piece#LIGHT} men moving
+ * {@link Piece#UP}.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PositionIndexer {
+    /** Marks a playable square as holding a dark man when unranking. */
+    private static final int DARK_MAN = 1;
+    /** Marks a playable square as holding a light man when unranking. */
+    private static final int LIGHT_MAN = 2;
+    /** Marks a playable square as holding a dark king when unranking. */
+    private static final int DARK_KING = 3;
+    /** Marks a playable square as holding a light king when unranking. */
+    private static final int LIGHT_KING = 4;
+    /** The most squares the binomial table supports. */
+    private static final int MAX_SQUARES = 64;
+    /** Holds the precomputed binomial coefficients. */
+    private static final long[][] BINOMIALS =
+            new long[MAX_SQUARES + 1][MAX_SQUARES + 1];
+    static {
+        for (int n = 0; n <= MAX_SQUARES; n++) {
+            BINOMIALS[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1] + BINOMIALS[n - 1][k];
+            }
+        }
+    }
+    /** Holds the width of the boards this indexes. */
+    private final int width;
+    /** Holds the height of the boards this indexes. */
+    private final int height;
+    /** Holds the board array index of each playable square. */
+    private final int[] squares;
+    /** Holds the playable squares on the light crowning row. */
+    private final int[] darkBackRow;
+    /** Holds the playable squares dark men can be on besides the above. */
+    private final int[] darkOtherRows;
+    /** Holds whether each playable square is on the dark crowning row. */
+    private final boolean[] onDarkCrowningRow;
+    /** Holds whether each playable square is on the light crowning row. */
+    private final boolean[] onLightCrowningRow;
+    /** Holds the number of playable squares light men can be on. */
+    private final int lightMenSquares;
+    /** Holds the number of dark men. */
+    private final int darkMen;
+    /** Holds the number of dark kings. */
+    private final int darkKings;
+    /** Holds the number of light men. */
+    private final int lightMen;
+    /** Holds the number of light kings. */
+    private final int lightKings;
+    /**
+     * Holds where the indexes for each number of dark men on their back row
+     * start.
+     */
+    private final long[] backRowOffsets;
+    /** Holds the total number of indexes. */
+    private final long size;
+    /**
+     * Creates a new indexer for boards of the specified dimensions and piece
+     * counts.
+     *
+     * @param boardWidth   the width of the board (left-to-right)
+     * @param boardHeight  the height of the board (top-to-bottom)
+     * @param pattern      the pattern whose black squares are playable
+     * @param numDarkMen     the number of dark men
+     * @param numDarkKings   the number of dark kings
+     * @param numLightMen    the number of light men
+     * @param numLightKings  the number of light kings
+     *
+     * @throws IllegalArgumentException  if the board has fewer than two rows
+     *                                   or more than 64 playable squares, a
+     *                                   count is negative, the pieces do not
+     *                                   fit or there are too many positions
+     *                                   to index with a <code>long</code>
+     */
+    public PositionIndexer(final int boardWidth, final int boardHeight,
+            final BoardPattern pattern, final int numDarkMen,
+            final int numDarkKings, final int numLightMen,
+            final int numLightKings) {
+        if (boardWidth < 1 || boardHeight < 2) {
+            throw new IllegalArgumentException("board needs at least 2 rows");
+        }
+        if (numDarkMen < 0 || numDarkKings < 0 || numLightMen < 0
+                || numLightKings < 0) {
+            throw new IllegalArgumentException("piece counts need to >= 0");
+        }
+        width = boardWidth;
+        height = boardHeight;
+        darkMen = numDarkMen;
+        darkKings = numDarkKings;
+        lightMen = numLightMen;
+        lightKings = numLightKings;
+        // Collect the playable squares in board array order.
+        int count = 0;
+        int backRowCount = 0;
+        int darkCrowningCount = 0;
+        final int[] found = new int[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (pattern.getColourAt(x, y) == BoardPattern.BLACK_SQUARE) {
+                    found[count++] = y + (height * x);
+                    if (y == 0) {
+                        backRowCount++;
+                    } else if (y == height - 1) {
+                        darkCrowningCount++;
+                    }
+                }
+            }
+        }
+        if (count > MAX_SQUARES) {
+            throw new IllegalArgumentException("too many playable squares");
+        }
+        squares = new int[count];
+        onDarkCrowningRow = new boolean[count];
+        onLightCrowningRow = new boolean[count];
+        darkBackRow = new int[backRowCount];
+        darkOtherRows = new int[count - backRowCount - darkCrowningCount];
+        int backRowIndex = 0;
+        int otherRowIndex = 0;
+        for (int s = 0; s < count; s++) {
+            squares[s] = found[s];
+            final int y = found[s] % height;
+            onLightCrowningRow[s] = y == 0;
+            onDarkCrowningRow[s] = y == height - 1;
+            if (onLightCrowningRow[s]) {
+                darkBackRow[backRowIndex++] = s;
+            } else if (!onDarkCrowningRow[s]) {
+                darkOtherRows[otherRowIndex++] = s;
+            }
+        }
+        lightMenSquares = count - backRowCount;
+        final int men = darkMen + lightMen;
+        if (men + darkKings + lightKings > count) {
+            throw new IllegalArgumentException("too many pieces for board");
+        }
+        /*
+         * Work out the sizes using BigInteger first so that any overflow can
+         * be reported rather than silently producing colliding indexes.
+         */
+        BigInteger total = BigInteger.ZERO;
+        final BigInteger kings = BigInteger.valueOf(binomial(count - men,
+                darkKings)).multiply(BigInteger.valueOf(
+                        binomial(count - men - darkKings, lightKings)));
+        backRowOffsets = new long[darkMen + 2];
+        for (int k = 0; k <= darkMen; k++) {
+            backRowOffsets[k] = total.longValue();
+            total = total.add(BigInteger.valueOf(
+                    binomial(darkBackRow.length, k))
+                    .multiply(BigInteger.valueOf(
+                            binomial(darkOtherRows.length, darkMen - k)))
+                    .multiply(BigInteger.valueOf(lightMenPlacements(k)))
+                    .multiply(kings));
+            if (total.bitLength() >= Long.SIZE) {
+                throw new IllegalArgumentException("too many positions");
+            }
+        }
+        backRowOffsets[darkMen + 1] = total.longValue();
+        size = total.longValue();
+    }
+    /**
+     * Gets the number of indexes, which is the number of distinct positions.
+     *
+     * @return  the number of indexes
+     */
+    public final long size() {
+        return size;
+    }
+    /**
+     * Gets the index of the specified board.
+     *
+     * @param board  the board
+     * @return       the index, from <code>0</code> to {@link #size()}
+     *
+     * @throws IllegalArgumentException  if the board is not of the expected
+     *                                   dimensions or pieces
+     */
+    public final long rank(final Board board) {
+        if (board.width != width || board.height != height) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+        final Piece[] pieces = board.pieces;
+        final int count = squares.length;
+        // Dark men, split by whether they are on their back row.
+        long backRowRank = 0;
+        long otherRowRank = 0;
+        int backRowFound = 0;
+        int otherRowFound = 0;
+        int menFound = 0;
+        for (int i = 0; i < darkBackRow.length; i++) {
+            if (isMan(pieces[squares[darkBackRow[i]]], Piece.DARK)) {
+                backRowRank += binomial(i, ++backRowFound);
+            }
+        }
+        for (int i = 0; i < darkOtherRows.length; i++) {
+            if (isMan(pieces[squares[darkOtherRows[i]]], Piece.DARK)) {
+                otherRowRank += binomial(i, ++otherRowFound);
+            }
+        }
+        // Light men, over the squares dark men do not occupy.
+        long lightMenRank = 0;
+        int lightFound = 0;
+        int free = 0;
+        for (int s = 0; s < count; s++) {
+            final Piece piece = pieces[squares[s]];
+            if (isMan(piece, Piece.DARK)) {
+                menFound++;
+                if (onDarkCrowningRow[s]) {
+                    throw new IllegalArgumentException("man on crowning row");
+                }
+            } else if (isMan(piece, Piece.LIGHT)) {
+                if (onLightCrowningRow[s]) {
+                    throw new IllegalArgumentException("man on crowning row");
+                }
+                lightMenRank += binomial(free++, ++lightFound);
+                menFound++;
+            } else if (!onLightCrowningRow[s]) {
+                free++;
+            }
+        }
+        // Dark kings over the squares men do not occupy, then light kings.
+        long darkKingsRank = 0;
+        long lightKingsRank = 0;
+        int darkKingsFound = 0;
+        int lightKingsFound = 0;
+        int freeForDark = 0;
+        int freeForLight = 0;
+        for (int s = 0; s < count; s++) {
+            final Piece piece = pieces[squares[s]];
+            if (piece == null) {
+                freeForDark++;
+                freeForLight++;
+            } else if (piece.isCrowned()) {
+                if (piece.colour == Piece.DARK) {
+                    darkKingsRank += binomial(freeForDark++, ++darkKingsFound);
+                } else {
+                    lightKingsRank +=
+                            binomial(freeForLight++, ++lightKingsFound);
+                    freeForDark++;
+                }
+            }
+        }
+        if (backRowFound + otherRowFound != darkMen
+                || menFound != darkMen + lightMen
+                || darkKingsFound != darkKings
+                || lightKingsFound != lightKings
+                || countPieces(pieces) != darkMen + darkKings + lightMen
+                        + lightKings) {
+            throw new IllegalArgumentException("piece counts differ");
+        }
+        final int k = backRowFound;
+        long index = backRowRank * binomial(darkOtherRows.length, darkMen - k)
+                + otherRowRank;
+        index = index * lightMenPlacements(k) + lightMenRank;
+        index = index * binomial(count - darkMen - lightMen, darkKings)
+                + darkKingsRank;
+        index = index * binomial(count - darkMen - lightMen - darkKings,
+                lightKings) + lightKingsRank;
+        return backRowOffsets[k] + index;
+    }
+    /**
+     * Creates the board for the specified index.
+     *
+     * @param index  the index, from <code>0</code> to {@link #size()}
+     * @return       a new board with the pieces placed
+     *
+     * @throws IndexOutOfBoundsException  if <code>index</code> is out of
+     *                                    range
+     */
+    public final Board unrank(final long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+        final int count = squares.length;
+        int k = 0;
+        while (backRowOffsets[k + 1] <= index) {
+            k++;
+        }
+        long remainder = index - backRowOffsets[k];
+        final long lightKingsCount = binomial(
+                count - darkMen - lightMen - darkKings, lightKings);
+        final long lightKingsRank = remainder % lightKingsCount;
+        remainder /= lightKingsCount;
+        final long darkKingsCount =
+                binomial(count - darkMen - lightMen, darkKings);
+        final long darkKingsRank = remainder % darkKingsCount;
+        remainder /= darkKingsCount;
+        final long lightMenCount = lightMenPlacements(k);
+        final long lightMenRank = remainder % lightMenCount;
+        remainder /= lightMenCount;
+        final long otherRowCount =
+                binomial(darkOtherRows.length, darkMen - k);
+        final long otherRowRank = remainder % otherRowCount;
+        final long backRowRank = remainder / otherRowCount;
+        // Decide which playable squares get which piece.
+        final int[] types = new int[count];
+        final int[] chosen = new int[count];
+        unrankSubset(backRowRank, k, chosen);
+        for (int i = 0; i < k; i++) {
+            types[darkBackRow[chosen[i]]] = DARK_MAN;
+        }
+        unrankSubset(otherRowRank, darkMen - k, chosen);
+        for (int i = 0; i < darkMen - k; i++) {
+            types[darkOtherRows[chosen[i]]] = DARK_MAN;
+        }
+        placeOnFree(lightMenRank, lightMen, LIGHT_MAN, types, chosen, true);
+        placeOnFree(darkKingsRank, darkKings, DARK_KING, types, chosen, false);
+        placeOnFree(lightKingsRank, lightKings, LIGHT_KING, types, chosen,
+                false);
+        final Board board = new Board(width, height);
+        final int darkDirection = UnmoveGeneratorUtil.getManDirectionFor(
+                Piece.DARK);
+        final int lightDirection = UnmoveGeneratorUtil.getManDirectionFor(
+                Piece.LIGHT);
+        for (int s = 0; s < count; s++) {
+            switch (types[s]) {
+                case DARK_MAN:
+                    board.pieces[squares[s]] =
+                            new Piece(Piece.DARK, darkDirection);
+                    break;
+                case LIGHT_MAN:
+                    board.pieces[squares[s]] =
+                            new Piece(Piece.LIGHT, lightDirection);
+                    break;
+                case DARK_KING:
+                    board.pieces[squares[s]] =
+                            new Piece(Piece.DARK, Piece.BOTH);
+                    break;
+                case LIGHT_KING:
+                    board.pieces[squares[s]] =
+                            new Piece(Piece.LIGHT, Piece.BOTH);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return board;
+    }
+    /**
+     * Gets the binomial coefficient from the precomputed table.
+     *
+     * @param n  the number of items
+     * @param k  the number of items chosen
+     * @return   the number of ways to choose, or <code>0</code> if
+     *           <code>k</code> is out of range
+     */
+    private static long binomial(final int n, final int k) {
+        return k < 0 || k > n ? 0 : BINOMIALS[n][k];
+    }
+    /**
+     * Gets the number of ways the light men can be placed given the specified
+     * number of dark men on their back row.
+     * <p>
+     * Dark men on their back row do not take away any squares from light men
+     * as light men cannot be on that row.
+     *
+     * @param k  the number of dark men on their back row
+     * @return   the number of placements
+     */
+    private long lightMenPlacements(final int k) {
+        return binomial(lightMenSquares - (darkMen - k), lightMen);
+    }
+    /**
+     * Writes the positions of the subset with the specified rank in the
+     * combinatorial number system.
+     *
+     * @param rank    the rank of the subset
+     * @param k       the size of the subset
+     * @param outSet  the array the ascending positions are written to
+     */
+    private static void unrankSubset(final long rank, final int k,
+            final int[] outSet) {
+        long remaining = rank;
+        for (int i = k; i > 0; i--) {
+            int position = i - 1;
+            while (binomial(position + 1, i) <= remaining) {
+                position++;
+            }
+            remaining -= binomial(position, i);
+            outSet[i - 1] = position;
+        }
+    }
+    /**
+     * Places pieces of the specified type onto the playable squares that are
+     * still free, using the subset with the specified rank.
+     *
+     * @param rank       the rank of the subset of free squares
+     * @param k          the number of pieces to place
+     * @param type       the type to mark the chosen squares with
+     * @param types      the type of each playable square
+     * @param scratch    an array to hold the chosen subset
+     * @param lightMan   whether the pieces are light men, which cannot be on
+     *                   the light crowning row
+     */
+    private void placeOnFree(final long rank, final int k, final int type,
+            final int[] types, final int[] scratch, final boolean lightMan) {
+        unrankSubset(rank, k, scratch);
+        int free = 0;
+        int next = 0;
+        for (int s = 0; s < squares.length && next < k; s++) {
+            if (types[s] == 0 && !(lightMan && onLightCrowningRow[s])) {
+                if (scratch[next] == free) {
+                    types[s] = type;
+                    next++;
+                }
+                free++;
+            }
+        }
+    }
+    /**
+     * Gets whether the piece is a man of the specified colour.
+     *
+     * @param piece   the piece, which can be <code>null</code>
+     * @param colour  the colour
+     * @return        <code>true</code> if it is; <code>false</code> if not
+     */
+    private static boolean isMan(final Piece piece, final int colour) {
+        return piece != null && piece.colour == colour && !piece.isCrowned();
+    }
+    /**
+     * Counts the pieces in the specified array.
+     *
+     * @param pieces  the pieces
+     * @return        the number of non-<code>null</code> entries
+     */
+    private static int countPieces(final Piece[] pieces) {
+        int count = 0;
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,209 @@
+package mullen.alex.jdf.common;
+
+/**
+ * A ring buffer of the position hashes along a line of play, used for
+ * detecting repeated positions and counting how long it has been since the
+ * last irreversible move.
+ * <p>
+ * A move is irreversible when it captures or moves a man, as the positions
+ * before it can then never occur again. Only the positions since the last
+ * irreversible move are ever looked at, so a buffer a little longer than
+ * the longest such run that matters is enough however long the line is.
+ * Pushing and popping a position are both constant time.
+ * <p>
+ * Popping more positions than the buffer holds loses the oldest ones; use
+ * {@link #isWindowComplete()} to tell when the positions since the last
+ * irreversible move are no longer all held.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class RepetitionTracker {
+    /** Holds the hash of each position. */
+    private final long[] hashes;
+    /** Holds the plies since the last irreversible move for each position. */
+    private final int[] reversiblePlies;
+    /** Holds the mask for wrapping indexes around the buffer. */
+    private final int mask;
+    /** Holds the index of the most recent position. */
+    private int head;
+    /** Holds the number of positions held. */
+    private int size;
+    /**
+     * Creates a new empty tracker that holds at least the specified number
+     * of positions.
+     *
+     * @param minCapacity  the minimum number of positions, which is rounded
+     *                     up to a power of two
+     *
+     * @throws IllegalArgumentException  if <code>minCapacity</code> is less
+     *                                   than <code>1</code> or more than
+     *                                   <code>2^30</code>
+     */
+    public RepetitionTracker(final int minCapacity) {
+        if (minCapacity < 1 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("minCapacity out of range");
+        }
+        final int capacity = minCapacity == 1
+                ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+        hashes = new long[capacity];
+        reversiblePlies = new int[capacity];
+        mask = capacity - 1;
+        head = mask;
+    }
+    /**
+     * Creates a new instance that holds the same positions as the specified
+     * tracker.
+     *
+     * @param trackerToCopy  the tracker to copy
+     */
+    public RepetitionTracker(final RepetitionTracker trackerToCopy) {
+        hashes = trackerToCopy.hashes.clone();
+        reversiblePlies = trackerToCopy.reversiblePlies.clone();
+        mask = trackerToCopy.mask;
+        head = trackerToCopy.head;
+        size = trackerToCopy.size;
+    }
+    /**
+     * Gets whether the specified move would be irreversible if performed on
+     * the specified board.
+     *
+     * @param board  the board before the move
+     * @param move   the move
+     * @return       <code>true</code> if the move captures or moves a man;
+     *               <code>false</code> if it is a king moving without
+     *               capturing
+     */
+    public static boolean isIrreversible(final Board board, final Move move) {
+        return !move.jumps.isEmpty() || !board.getPieceAt(move.from)
+                .isCrowned();
+    }
+    /**
+     * Removes every position.
+     */
+    public final void clear() {
+        head = mask;
+        size = 0;
+    }
+    /**
+     * Adds the position reached by a move.
+     *
+     * @param hash          the hash of the position
+     * @param irreversible  whether the move that reached it was irreversible,
+     *                      which should be <code>true</code> for the first
+     *                      position of a line
+     */
+    public final void push(final long hash, final boolean irreversible) {
+        final int plies = irreversible || size == 0
+                ? 0 : reversiblePlies[head] + 1;
+        head = (head + 1) & mask;
+        hashes[head] = hash;
+        reversiblePlies[head] = plies;
+        if (size <= mask) {
+            size++;
+        }
+    }
+    /**
+     * Removes the most recent position.
+     *
+     * @throws IllegalStateException  if there are no positions
+     */
+    public final void pop() {
+        if (size == 0) {
+            throw new IllegalStateException("no positions to pop");
+        }
+        head = (head - 1) & mask;
+        size--;
+    }
+    /**
+     * Gets the number of positions held.
+     *
+     * @return  the number of positions
+     */
+    public final int size() {
+        return size;
+    }
+    /**
+     * Gets the hash of the most recent position.
+     *
+     * @return  the hash
+     *
+     * @throws IllegalStateException  if there are no positions
+     */
+    public final long getHash() {
+        checkNotEmpty();
+        return hashes[head];
+    }
+    /**
+     * Gets the number of plies since the last irreversible move.
+     *
+     * @return  the number of plies, or <code>0</code> if there are no
+     *          positions
+     */
+    public final int getReversiblePlies() {
+        return size == 0 ? 0 : reversiblePlies[head];
+    }
+    /**
+     * Gets whether every position since the last irreversible move is still
+     * held.
+     *
+     * @return  <code>true</code> if they are; <code>false</code> if some have
+     *          been lost
+     */
+    public final boolean isWindowComplete() {
+        return size > getReversiblePlies();
+    }
+    /**
+     * Counts how many times the most recent position occurred earlier since
+     * the last irreversible move.
+     * <p>
+     * The hashes include the side to move, so only every other position is
+     * compared.
+     *
+     * @return  the number of earlier occurrences
+     */
+    public final int countRepetitions() {
+        if (size == 0) {
+            return 0;
+        }
+        final long hash = hashes[head];
+        final int window = Math.min(reversiblePlies[head], size - 1);
+        int count = 0;
+        for (int back = 2; back <= window; back += 2) {
+            if (hashes[(head - back) & mask] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+    /**
+     * Gets whether a position reached from the most recent one by a
+     * reversible move would repeat a position since the last irreversible
+     * move.
+     *
+     * @param hash  the hash of the position that would be reached
+     * @return      <code>true</code> if it would; <code>false</code> if not
+     */
+    public final boolean wouldRepeat(final long hash) {
+        if (size == 0) {
+            return false;
+        }
+        final int window = Math.min(reversiblePlies[head], size - 1);
+        for (int back = 1; back <= window; back += 2) {
+            if (hashes[(head - back) & mask] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Checks there is at least one position.
+     *
+     * @throws IllegalStateException  if there are none
+     */
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new IllegalStateException("no positions");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package mullen.alex.jdf.common;
+
+import java.util.List;
+
+/**
+ * An interface for defining a class that generates the positions that could
+ * have preceded a board configuration.
+ * <p>
+ * This is the reverse counterpart of {@link MoveGenerator} and is intended
+ * for retrograde analysis where the predecessors of a position are needed
+ * without generating the forward moves of every candidate position.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public interface UnmoveGenerator {
+    /**
+     * Generates all the boards that the specified board could have been
+     * reached from by the specified colour performing a single legal move.
+     * <p>
+     * This includes un-captures, which restore the jumped pieces, and
+     * un-promotions, which turn a king back into a man.
+     *
+     * @param board   the board
+     * @param colour  the colour that has just moved
+     * @return        a list of all the predecessor boards; if there are none
+     *                an empty list should be returned rather than
+     *                <code>null</code>.
+     */
+    List<Board> findPredecessors(Board board, int colour);
+}
@@ -0,0 +1,404 @@
+package mullen.alex.jdf.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A utility class that provides helper methods for generating the predecessor
+ * positions of a board for most variants of draughts.
+ * <p>
+ * The predecessors are the exact inverse of the moves produced by the move
+ * generators and performers in this framework. Men are assumed to follow the
+ * usual convention of {@link Piece#DARK} men moving {@link Piece#DOWN} and
+ * {@link Piece#LIGHT} men moving {@link Piece#UP}; this is needed to know
+ * what a king looked like before it was crowned and what a captured man looked
+ * like before it was removed.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public final class UnmoveGeneratorUtil {
+    /** The X step of each diagonal direction. */
+    private static final int[] DIRECTION_X = {-1, 1, -1, 1};
+    /** The Y step of each diagonal direction. */
+    private static final int[] DIRECTION_Y = {-1, -1, 1, 1};
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private UnmoveGeneratorUtil() {
+        // Intentionally empty.
+    }
+    /**
+     * Gets the direction the men of the specified colour move in.
+     *
+     * @param colour  either {@link Piece#DARK} or {@link Piece#LIGHT}
+     * @return        either {@link Piece#UP} or {@link Piece#DOWN}
+     */
+    public static int getManDirectionFor(final int colour) {
+        return colour == Piece.DARK ? Piece.DOWN : Piece.UP;
+    }
+    /**
+     * Gets whether the specified Y position is the row a man moving in the
+     * specified direction gets crowned on.
+     *
+     * @param board         the board to check on
+     * @param y             the Y position (top-to-bottom)
+     * @param manDirection  either {@link Piece#UP} or {@link Piece#DOWN}
+     * @return              <code>true</code> if it is the crowning row;
+     *                      <code>false</code> if it is not
+     */
+    public static boolean isCrowningRow(final Board board, final int y,
+            final int manDirection) {
+        return manDirection == Piece.UP ? y == 0 : y == board.height - 1;
+    }
+    /**
+     * Gets whether any piece of the specified colour has a jump available.
+     *
+     * @param board                the board
+     * @param colour               the colour
+     * @param flyingKings          whether kings can fly along diagonals
+     * @param menCaptureBackwards  whether men can jump backwards
+     * @return                     <code>true</code> if there is a jump;
+     *                             <code>false</code> if there is not
+     */
+    public static boolean hasAnyJump(final Board board, final int colour,
+            final boolean flyingKings, final boolean menCaptureBackwards) {
+        final Piece[] pieces = board.pieces;
+        final List<Jump> scratch = new ArrayList<>(4);
+        for (int i = 0; i < pieces.length; i++) {
+            final Piece foundPiece = pieces[i];
+            if (foundPiece != null && foundPiece.colour == colour
+                    && hasJump(board, foundPiece, board.positions[i],
+                            flyingKings, menCaptureBackwards, scratch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Generates all the predecessors of a board for the colour that has just
+     * moved.
+     *
+     * @param board                the board
+     * @param colour               the colour that has just moved
+     * @param flyingKings          whether kings can fly along diagonals
+     * @param menCaptureBackwards  whether men can jump backwards
+     * @param maxUncaptures        the most jumped pieces to restore for a
+     *                             single predecessor
+     * @return                     a list of the distinct predecessor boards
+     */
+    public static List<Board> findPredecessors(final Board board,
+            final int colour, final boolean flyingKings,
+            final boolean menCaptureBackwards, final int maxUncaptures) {
+        final Set<Board> predecessors = new LinkedHashSet<>();
+        final Piece[] pieces = board.pieces;
+        final int manDirection = getManDirectionFor(colour);
+        for (int i = 0; i < pieces.length; i++) {
+            final Piece foundPiece = pieces[i];
+            if (foundPiece == null || foundPiece.colour != colour) {
+                continue;
+            }
+            final BoardPosition to = board.positions[i];
+            if (foundPiece.isCrowned()) {
+                findPredecessorsFor(board, to, new Piece(foundPiece),
+                        flyingKings, menCaptureBackwards, maxUncaptures,
+                        predecessors);
+                if (isCrowningRow(board, to.y, manDirection)) {
+                    // It could have been a man that just got crowned.
+                    findPredecessorsFor(board, to,
+                            new Piece(colour, manDirection), flyingKings,
+                            menCaptureBackwards, maxUncaptures, predecessors);
+                }
+            } else if (!isCrowningRow(board, to.y,
+                    foundPiece.getMoveDirection())) {
+                findPredecessorsFor(board, to, new Piece(foundPiece),
+                        flyingKings, menCaptureBackwards, maxUncaptures,
+                        predecessors);
+            }
+        }
+        return new ArrayList<>(predecessors);
+    }
+    /**
+     * Finds the predecessors where the specified piece moved onto the
+     * specified position.
+     *
+     * @param board                the board after the move
+     * @param to                   the position the piece moved to
+     * @param mover                the piece as it was before the move
+     * @param flyingKings          whether kings can fly along diagonals
+     * @param menCaptureBackwards  whether men can jump backwards
+     * @param maxUncaptures        the most jumped pieces to restore
+     * @param outBoards            the collection found boards are added to
+     */
+    private static void findPredecessorsFor(final Board board,
+            final BoardPosition to, final Piece mover,
+            final boolean flyingKings, final boolean menCaptureBackwards,
+            final int maxUncaptures, final Collection<Board> outBoards) {
+        final boolean crowned = mover.isCrowned();
+        final int maxDistance = crowned && flyingKings
+                ? Math.max(board.width, board.height) : 1;
+        /*
+         * Simple moves. These are only legal when the moving side had no jumps
+         * available beforehand.
+         */
+        for (int d = 0; d < DIRECTION_X.length; d++) {
+            if (!canMoveIn(mover, d)) {
+                continue;
+            }
+            int fromX = to.x;
+            int fromY = to.y;
+            for (int distance = 0; distance < maxDistance; distance++) {
+                fromX -= DIRECTION_X[d];
+                fromY -= DIRECTION_Y[d];
+                if (!board.isPositionWithinBounds(fromX, fromY)
+                        || board.isPieceAt(fromX, fromY)) {
+                    break;
+                }
+                final Board predecessor = new Board(board);
+                predecessor.setPieceAt(to, null);
+                predecessor.setPieceAt(fromX, fromY, new Piece(mover));
+                if (!hasAnyJump(predecessor, mover.colour, flyingKings,
+                        menCaptureBackwards)) {
+                    outBoards.add(predecessor);
+                }
+            }
+        }
+        /*
+         * Captures. A capture sequence only ends when the piece cannot jump
+         * any further so there are none if it still could.
+         */
+        final Board finalState = new Board(board);
+        finalState.setPieceAt(to, mover);
+        if (maxUncaptures > 0 && !hasJump(finalState, mover, to, flyingKings,
+                menCaptureBackwards, new ArrayList<Jump>(4))) {
+            new UnjumpSearch(board, to, mover, flyingKings,
+                    menCaptureBackwards, maxUncaptures, outBoards)
+                    .search(to.x, to.y);
+        }
+    }
+    /**
+     * Gets whether a piece moves in the specified diagonal direction when
+     * not jumping.
+     *
+     * @param piece      the piece
+     * @param direction  the index of the diagonal direction
+     * @return           <code>true</code> if it can; <code>false</code> if not
+     */
+    private static boolean canMoveIn(final Piece piece, final int direction) {
+        switch (piece.getMoveDirection()) {
+            case Piece.UP:
+                return DIRECTION_Y[direction] < 0;
+            case Piece.DOWN:
+                return DIRECTION_Y[direction] > 0;
+            default:
+                return true;
+        }
+    }
+    /**
+     * Gets whether a piece at the specified position has a jump available.
+     *
+     * @param board                the board
+     * @param piece                the piece
+     * @param position             the position of the piece
+     * @param flyingKings          whether kings can fly along diagonals
+     * @param menCaptureBackwards  whether men can jump backwards
+     * @param scratch              an empty list to use for finding jumps
+     * @return                     <code>true</code> if the piece can jump;
+     *                             <code>false</code> if it cannot
+     */
+    private static boolean hasJump(final Board board, final Piece piece,
+            final BoardPosition position, final boolean flyingKings,
+            final boolean menCaptureBackwards, final List<Jump> scratch) {
+        final int colour = piece.colour;
+        final int direction = piece.getMoveDirection();
+        if (piece.isCrowned() && flyingKings) {
+            MoveGeneratorUtil.findFlyingJumpsAboveLeft(
+                    board, position, colour, scratch);
+            MoveGeneratorUtil.findFlyingJumpsAboveRight(
+                    board, position, colour, scratch);
+            MoveGeneratorUtil.findFlyingJumpsBottomLeft(
+                    board, position, colour, scratch);
+            MoveGeneratorUtil.findFlyingJumpsBottomRight(
+                    board, position, colour, scratch);
+        } else {
+            final boolean allDirections =
+                    piece.isCrowned() || menCaptureBackwards;
+            if (allDirections || direction == Piece.UP) {
+                MoveGeneratorUtil.findJumpAboveLeft(
+                        board, position, colour, scratch);
+                MoveGeneratorUtil.findJumpAboveRight(
+                        board, position, colour, scratch);
+            }
+            if (allDirections || direction == Piece.DOWN) {
+                MoveGeneratorUtil.findJumpBottomLeft(
+                        board, position, colour, scratch);
+                MoveGeneratorUtil.findJumpBottomRight(
+                        board, position, colour, scratch);
+            }
+        }
+        final boolean found = !scratch.isEmpty();
+        scratch.clear();
+        return found;
+    }
+    /**
+     * Walks capture sequences backwards from the square a piece landed on,
+     * restoring the pieces it could have jumped.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class UnjumpSearch {
+        /** Holds the board after the capture. */
+        private final Board board;
+        /** Holds the board index of where the capture ended. */
+        private final int toIndex;
+        /** Holds the piece as it was before the capture. */
+        private final Piece mover;
+        /** Holds whether the mover is a flying king. */
+        private final boolean flying;
+        /** Holds whether the mover can jump backwards. */
+        private final boolean allDirections;
+        /** Holds the most pieces that can be restored. */
+        private final int maxRestored;
+        /** Holds the collection predecessors are added to. */
+        private final Collection<Board> outBoards;
+        /** Marks the squares that currently hold a restored piece. */
+        private final boolean[] restored;
+        /** Holds the board indexes of the restored pieces. */
+        private final int[] restoredIndexes;
+        /** Holds how many entries in {@link #restoredIndexes} are in use. */
+        private int restoredCount;
+        /**
+         * Creates a new search for a piece that finished a capture on the
+         * specified position.
+         *
+         * @param afterBoard           the board after the capture
+         * @param to                   the position the capture ended on
+         * @param moverBefore          the piece as it was before the capture
+         * @param flyingKings          whether kings can fly along diagonals
+         * @param menCaptureBackwards  whether men can jump backwards
+         * @param maxUncaptures        the most jumped pieces to restore
+         * @param predecessors         the collection to add predecessors to
+         */
+        UnjumpSearch(final Board afterBoard, final BoardPosition to,
+                final Piece moverBefore, final boolean flyingKings,
+                final boolean menCaptureBackwards, final int maxUncaptures,
+                final Collection<Board> predecessors) {
+            board = afterBoard;
+            toIndex = to.y + (afterBoard.height * to.x);
+            mover = moverBefore;
+            flying = moverBefore.isCrowned() && flyingKings;
+            allDirections = moverBefore.isCrowned() || menCaptureBackwards;
+            maxRestored = maxUncaptures;
+            outBoards = predecessors;
+            restored = new boolean[afterBoard.pieces.length];
+            restoredIndexes = new int[afterBoard.pieces.length];
+        }
+        /**
+         * Recursively finds every jump that could have landed on the specified
+         * square, emitting a predecessor for each possible starting square.
+         *
+         * @param landX  the X position the jump landed on
+         * @param landY  the Y position the jump landed on
+         */
+        void search(final int landX, final int landY) {
+            final int height = board.height;
+            for (int d = 0; d < DIRECTION_X.length; d++) {
+                if (!allDirections && !canMoveIn(mover, d)) {
+                    continue;
+                }
+                final int stepX = DIRECTION_X[d];
+                final int stepY = DIRECTION_Y[d];
+                // Walk back from the landing square to find the jumped square.
+                int jumpedX = landX - stepX;
+                int jumpedY = landY - stepY;
+                while (isVacantDuringCapture(jumpedX, jumpedY)) {
+                    final int jumpedIndex = jumpedY + (height * jumpedX);
+                    if (jumpedIndex != toIndex) {
+                        restored[jumpedIndex] = true;
+                        restoredIndexes[restoredCount++] = jumpedIndex;
+                        // Walk back beyond it to find where the jump started.
+                        int fromX = jumpedX - stepX;
+                        int fromY = jumpedY - stepY;
+                        while (isVacantDuringCapture(fromX, fromY)) {
+                            emit(fromX, fromY);
+                            if (restoredCount < maxRestored) {
+                                search(fromX, fromY);
+                            }
+                            if (!flying) {
+                                break;
+                            }
+                            fromX -= stepX;
+                            fromY -= stepY;
+                        }
+                        restoredCount--;
+                        restored[jumpedIndex] = false;
+                    }
+                    if (!flying) {
+                        break;
+                    }
+                    jumpedX -= stepX;
+                    jumpedY -= stepY;
+                }
+            }
+        }
+        /**
+         * Gets whether a square was vacant while the capture was in progress,
+         * given the pieces restored so far.
+         *
+         * @param x  the X position (left-to-right)
+         * @param y  the Y position (top-to-bottom)
+         * @return   <code>true</code> if it was vacant; <code>false</code> if
+         *           it was occupied or is out of bounds
+         */
+        private boolean isVacantDuringCapture(final int x, final int y) {
+            if (!board.isPositionWithinBounds(x, y)) {
+                return false;
+            }
+            final int index = y + (board.height * x);
+            return !restored[index]
+                    && (index == toIndex || board.pieces[index] == null);
+        }
+        /**
+         * Adds the predecessors where the capture started from the specified
+         * position, once for each combination of restored men and kings.
+         *
+         * @param fromX  the X position the capture started from
+         * @param fromY  the Y position the capture started from
+         */
+        private void emit(final int fromX, final int fromY) {
+            if (!mover.isCrowned()
+                    && isCrowningRow(board, fromY, mover.getMoveDirection())) {
+                return;
+            }
+            final int opponent = Piece.getOpposingColourOf(mover.colour);
+            final int opponentManDirection = getManDirectionFor(opponent);
+            final int combinations = 1 << restoredCount;
+            for (int kings = 0; kings < combinations; kings++) {
+                final Board predecessor = new Board(board);
+                predecessor.pieces[toIndex] = null;
+                boolean valid = true;
+                for (int i = 0; i < restoredCount && valid; i++) {
+                    final int index = restoredIndexes[i];
+                    if ((kings & (1 << i)) != 0) {
+                        predecessor.pieces[index] =
+                                new Piece(opponent, Piece.BOTH);
+                    } else if (isCrowningRow(board,
+                            board.positions[index].y, opponentManDirection)) {
+                        // A man cannot stand on its own crowning row.
+                        valid = false;
+                    } else {
+                        predecessor.pieces[index] =
+                                new Piece(opponent, opponentManDirection);
+                    }
+                }
+                if (valid) {
+                    predecessor.setPieceAt(fromX, fromY, new Piece(mover));
+                    outBoards.add(predecessor);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package mullen.alex.jdf.common;
+
+/**
+ * A utility class that produces 64-bit Zobrist hashes of positions.
+ * <p>
+ * The hash of a position is the exclusive-or of a key for each piece on its
+ * square, plus a key when {@link Piece#LIGHT} is to move. The keys are
+ * generated from a fixed seed so hashes are the same across runs and can be
+ * stored on disk. {@link #SCHEME_VERSION} changes whenever the keys do.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public final class ZobristHasher {
+    /** The version of the hashing scheme, for anything storing hashes. */
+    public static final int SCHEME_VERSION = 1;
+    /** The most board array indexes that have keys. */
+    public static final int MAX_SQUARES = 256;
+    /** The key that is included when light is to move. */
+    public static final long LIGHT_TO_MOVE_KEY;
+    /** The number of distinct kinds of piece. */
+    private static final int PIECE_KINDS = 4;
+    /** The seed the keys are generated from. */
+    private static final long SEED = 0x4A44465A4F425249L;
+    /** The golden ratio increment used when generating keys. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /** Holds the key for each kind of piece on each board array index. */
+    private static final long[] PIECE_KEYS =
+            new long[MAX_SQUARES * PIECE_KINDS];
+    static {
+        long state = SEED;
+        for (int i = 0; i < PIECE_KEYS.length; i++) {
+            state += GOLDEN_GAMMA;
+            PIECE_KEYS[i] = mix(state);
+        }
+        state += GOLDEN_GAMMA;
+        LIGHT_TO_MOVE_KEY = mix(state);
+    }
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ZobristHasher() {
+        // Intentionally empty.
+    }
+    /**
+     * Gets the hash of the specified board with the specified colour to move.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @return        the hash
+     *
+     * @throws IllegalArgumentException  if the board has more than
+     *                                   {@link #MAX_SQUARES} squares
+     */
+    public static long hash(final Board board, final int colour) {
+        final Piece[] pieces = board.pieces;
+        if (pieces.length > MAX_SQUARES) {
+            throw new IllegalArgumentException("board is too large to hash");
+        }
+        long hash = colour == Piece.LIGHT ? LIGHT_TO_MOVE_KEY : 0L;
+        for (int i = 0; i < pieces.length; i++) {
+            final Piece piece = pieces[i];
+            if (piece != null) {
+                hash ^= pieceKey(i, piece);
+            }
+        }
+        return hash;
+    }
+    /**
+     * Gets the key for a piece on the specified board array index.
+     * <p>
+     * This can be used to update a hash as pieces are added and removed.
+     *
+     * @param index  the board array index
+     * @param piece  the piece
+     * @return       the key
+     */
+    public static long pieceKey(final int index, final Piece piece) {
+        final int kind = (piece.colour << 1) | (piece.isCrowned() ? 1 : 0);
+        return PIECE_KEYS[(index * PIECE_KINDS) + kind];
+    }
+    /**
+     * Scrambles a value into a well distributed key.
+     *
+     * @param value  the value
+     * @return       the key
+     */
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
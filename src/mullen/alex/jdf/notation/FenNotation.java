@@ -0,0 +1,235 @@
+package mullen.alex.jdf.notation;
+
+import java.util.Arrays;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Parses and formats positions in the FEN notation of Portable Draughts
+ * Notation, such as <code>W:W31,32,K15:B1,2,3</code>.
+ * <p>
+ * The first letter is the side to move, followed by the squares of the white
+ * (light) pieces and of the black (dark) pieces in either order. Kings are
+ * marked with a <code>K</code> and runs of squares can be given as a range,
+ * as in <code>B1-12</code>. Positions are parsed straight onto a board and
+ * formatted straight into a builder, looking squares up in the tables of a
+ * {@link SquareNumbering}, so neither creates any collections.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class FenNotation {
+    /** Holds the numbering of the squares. */
+    private final SquareNumbering numbering;
+    /**
+     * Creates a new instance that uses the specified square numbering.
+     *
+     * @param squares  the numbering of the squares
+     */
+    public FenNotation(final SquareNumbering squares) {
+        numbering = squares;
+    }
+    /**
+     * Creates a new instance for the board of the specified game.
+     *
+     * @param game  the game
+     * @return      the instance
+     */
+    public static FenNotation forGame(final Game game) {
+        return new FenNotation(SquareNumbering.forGame(game));
+    }
+    /**
+     * Parses a position onto a board, replacing whatever was on it.
+     *
+     * @param fen    the position
+     * @param board  the board, which needs to be the size the numbering is
+     *               for
+     * @return       the colour to move, either {@link Piece#DARK} or
+     *               {@link Piece#LIGHT}
+     *
+     * @throws IllegalArgumentException  if the position is malformed or
+     *                                   names a square that does not exist
+     */
+    public final int parse(final CharSequence fen, final Board board) {
+        int end = fen.length();
+        while (end > 0 && (Character.isWhitespace(fen.charAt(end - 1))
+                || fen.charAt(end - 1) == '.')) {
+            end--;
+        }
+        int i = 0;
+        while (i < end && Character.isWhitespace(fen.charAt(i))) {
+            i++;
+        }
+        if (i >= end) {
+            throw malformed(fen);
+        }
+        final int turn = parseColour(fen, fen.charAt(i++));
+        Arrays.fill(board.pieces, null);
+        while (i < end) {
+            if (fen.charAt(i++) != ':' || i >= end) {
+                throw malformed(fen);
+            }
+            final int colour = parseColour(fen, fen.charAt(i++));
+            // Each section is a list of squares up to the next colon.
+            while (i < end && fen.charAt(i) != ':') {
+                boolean king = false;
+                if (fen.charAt(i) == 'K' || fen.charAt(i) == 'k') {
+                    king = true;
+                    i++;
+                }
+                int first = 0;
+                final int firstStart = i;
+                while (i < end && isDigit(fen.charAt(i))) {
+                    first = (first * 10) + (fen.charAt(i++) - '0');
+                }
+                if (i == firstStart) {
+                    throw malformed(fen);
+                }
+                int last = first;
+                if (i < end && fen.charAt(i) == '-') {
+                    i++;
+                    last = 0;
+                    final int lastStart = i;
+                    while (i < end && isDigit(fen.charAt(i))) {
+                        last = (last * 10) + (fen.charAt(i++) - '0');
+                    }
+                    if (i == lastStart || last < first) {
+                        throw malformed(fen);
+                    }
+                }
+                for (int square = first; square <= last; square++) {
+                    board.pieces[getIndex(fen, square)] =
+                            createPiece(colour, king);
+                }
+                if (i < end && fen.charAt(i) == ',') {
+                    i++;
+                    if (i >= end || fen.charAt(i) == ':') {
+                        throw malformed(fen);
+                    }
+                }
+            }
+        }
+        return turn;
+    }
+    /**
+     * Formats a position.
+     *
+     * @param board   the board
+     * @param colour  the colour to move, either {@link Piece#DARK} or
+     *                {@link Piece#LIGHT}
+     * @return        the position
+     */
+    public final String format(final Board board, final int colour) {
+        final StringBuilder builder = new StringBuilder();
+        format(board, colour, builder);
+        return builder.toString();
+    }
+    /**
+     * Formats a position into a builder, with the white pieces first and
+     * the squares of each colour in ascending order.
+     *
+     * @param board    the board
+     * @param colour   the colour to move, either {@link Piece#DARK} or
+     *                 {@link Piece#LIGHT}
+     * @param builder  the builder to append to
+     */
+    public final void format(final Board board, final int colour,
+            final StringBuilder builder) {
+        builder.append(colour == Piece.LIGHT ? 'W' : 'B');
+        appendPieces(board, Piece.LIGHT, builder);
+        appendPieces(board, Piece.DARK, builder);
+    }
+    /**
+     * Appends the section of a position listing the squares of one colour.
+     *
+     * @param board    the board
+     * @param colour   the colour
+     * @param builder  the builder to append to
+     */
+    private void appendPieces(final Board board, final int colour,
+            final StringBuilder builder) {
+        builder.append(':').append(colour == Piece.LIGHT ? 'W' : 'B');
+        boolean first = true;
+        final int squareCount = numbering.getSquareCount();
+        for (int square = 1; square <= squareCount; square++) {
+            final Piece piece = board.pieces[numbering.getIndex(square)];
+            if (piece != null && piece.colour == colour) {
+                if (!first) {
+                    builder.append(',');
+                }
+                if (piece.isCrowned()) {
+                    builder.append('K');
+                }
+                builder.append(square);
+                first = false;
+            }
+        }
+    }
+    /**
+     * Parses the letter for a colour.
+     *
+     * @param fen     the position, for reporting an error
+     * @param letter  the letter
+     * @return        either {@link Piece#DARK} or {@link Piece#LIGHT}
+     */
+    private static int parseColour(final CharSequence fen, final char letter) {
+        if (letter == 'W' || letter == 'w') {
+            return Piece.LIGHT;
+        } else if (letter == 'B' || letter == 'b') {
+            return Piece.DARK;
+        }
+        throw malformed(fen);
+    }
+    /**
+     * Gets the board index of a square named in a position.
+     *
+     * @param fen     the position, for reporting an error
+     * @param square  the square number
+     * @return        the board index
+     */
+    private int getIndex(final CharSequence fen, final int square) {
+        if (square < 1 || square > numbering.getSquareCount()) {
+            throw new IllegalArgumentException("no square " + square
+                    + " in FEN: " + fen);
+        }
+        return numbering.getIndex(square);
+    }
+    /**
+     * Creates a new piece of a colour, moving in the direction men of that
+     * colour move unless it is a king.
+     * <p>
+     * A new piece is created for every square as pieces can be crowned in
+     * place, so boards must never share them.
+     *
+     * @param colour  the colour
+     * @param king    whether it is a king
+     * @return        the piece
+     */
+    static Piece createPiece(final int colour, final boolean king) {
+        if (king) {
+            return new Piece(colour, Piece.BOTH);
+        }
+        return new Piece(colour, colour == Piece.DARK ? Piece.DOWN
+                : Piece.UP);
+    }
+    /**
+     * Gets whether a character is a decimal digit.
+     *
+     * @param c  the character
+     * @return   <code>true</code> if it is; <code>false</code> if not
+     */
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+    /**
+     * Creates the exception for a malformed position.
+     *
+     * @param fen  the position
+     * @return     the exception
+     */
+    private static IllegalArgumentException malformed(final CharSequence fen) {
+        return new IllegalArgumentException("malformed FEN: " + fen);
+    }
+}
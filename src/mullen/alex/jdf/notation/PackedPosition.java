@@ -0,0 +1,314 @@
+package mullen.alex.jdf.notation;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Encodes a position as a fixed number of bytes, for storing and sending
+ * great numbers of positions.
+ * <p>
+ * A position is three masks with a bit for each numbered square: the dark
+ * pieces, the light pieces and the kings. The masks are packed one after
+ * another into 32-bit words, so an English position takes 12 bytes and an
+ * International one 20. The side to move is recorded in the king mask,
+ * whose bits are otherwise meaningless for empty squares: they are all set
+ * when {@link Piece#LIGHT} is to move and all clear when {@link Piece#DARK}
+ * is.
+ * <p>
+ * Positions can be encoded and decoded one at a time, at an absolute index
+ * of a buffer for random access into mapped files, or in runs with
+ * {@link #encodeAll(Board[], int[], int, int, ByteBuffer)} and
+ * {@link #decodeAll(ByteBuffer, Board[], int[], int, int)}.
+ * <p>
+ * Instances hold no state that changes so are safe to share between threads.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PackedPosition {
+    /** The most numbered squares a position can have. */
+    public static final int MAX_SQUARES = Long.SIZE;
+    /** The number of masks in a position. */
+    private static final int MASKS = 3;
+    /** The number of bytes in each word of a position. */
+    private static final int WORD_BYTES = 4;
+    /** Holds the numbering of the squares. */
+    private final SquareNumbering numbering;
+    /** Holds the number of numbered squares. */
+    private final int squareCount;
+    /** Holds a mask with a bit set for every numbered square. */
+    private final long squareMask;
+    /** Holds the number of bytes in an encoded position. */
+    private final int size;
+    /**
+     * Creates a new instance that uses the specified square numbering.
+     *
+     * @param squares  the numbering of the squares
+     *
+     * @throws IllegalArgumentException  if there are more than
+     *                                   {@link #MAX_SQUARES} squares
+     */
+    public PackedPosition(final SquareNumbering squares) {
+        numbering = squares;
+        squareCount = squares.getSquareCount();
+        if (squareCount > MAX_SQUARES) {
+            throw new IllegalArgumentException("too many squares to pack");
+        }
+        squareMask = squareCount == MAX_SQUARES ? -1L
+                : (1L << squareCount) - 1;
+        size = ((MASKS * squareCount) + Integer.SIZE - 1) / Integer.SIZE
+                * WORD_BYTES;
+    }
+    /**
+     * Creates a new instance for the board of the specified game.
+     *
+     * @param game  the game
+     * @return      the instance
+     */
+    public static PackedPosition forGame(final Game game) {
+        return new PackedPosition(SquareNumbering.forGame(game));
+    }
+    /**
+     * Gets the number of bytes in an encoded position.
+     *
+     * @return  the number of bytes
+     */
+    public final int size() {
+        return size;
+    }
+    /**
+     * Encodes a position, putting {@link #size()} bytes at the current
+     * position of a buffer in the buffer's byte order.
+     *
+     * @param board   the board, which needs to be the size the numbering is
+     *                for
+     * @param colour  the colour to move, either {@link Piece#DARK} or
+     *                {@link Piece#LIGHT}
+     * @param buffer  the buffer
+     *
+     * @throws IllegalArgumentException  if light is to move on a board with
+     *                                   no empty squares, which cannot be
+     *                                   encoded
+     */
+    public final void encode(final Board board, final int colour,
+            final ByteBuffer buffer) {
+        final int position = buffer.position();
+        encode(board, colour, buffer, position);
+        buffer.position(position + size);
+    }
+    /**
+     * Encodes a position, putting {@link #size()} bytes at the specified
+     * index of a buffer in the buffer's byte order without changing its
+     * position.
+     *
+     * @param board   the board, which needs to be the size the numbering is
+     *                for
+     * @param colour  the colour to move, either {@link Piece#DARK} or
+     *                {@link Piece#LIGHT}
+     * @param buffer  the buffer
+     * @param index   the index to put the first byte at
+     *
+     * @throws IllegalArgumentException  if light is to move on a board with
+     *                                   no empty squares, which cannot be
+     *                                   encoded
+     */
+    public final void encode(final Board board, final int colour,
+            final ByteBuffer buffer, final int index) {
+        long dark = 0;
+        long light = 0;
+        long kings = 0;
+        for (int square = 1; square <= squareCount; square++) {
+            final Piece piece = board.pieces[numbering.getIndex(square)];
+            if (piece != null) {
+                final long bit = 1L << (square - 1);
+                if (piece.colour == Piece.DARK) {
+                    dark |= bit;
+                } else {
+                    light |= bit;
+                }
+                if (piece.isCrowned()) {
+                    kings |= bit;
+                }
+            }
+        }
+        if (colour == Piece.LIGHT) {
+            final long empty = ~(dark | light) & squareMask;
+            if (empty == 0) {
+                throw new IllegalArgumentException(
+                        "no empty square to record light to move");
+            }
+            kings |= empty;
+        }
+        int next = index;
+        long pending = 0;
+        int pendingBits = 0;
+        for (int mask = 0; mask < MASKS; mask++) {
+            final long bits = mask == 0 ? dark : mask == 1 ? light : kings;
+            for (int shift = 0; shift < squareCount; shift += Integer.SIZE) {
+                final int count = Math.min(Integer.SIZE, squareCount - shift);
+                pending |= ((bits >>> shift) & ((1L << count) - 1))
+                        << pendingBits;
+                pendingBits += count;
+                if (pendingBits >= Integer.SIZE) {
+                    buffer.putInt(next, (int) pending);
+                    next += WORD_BYTES;
+                    pending >>>= Integer.SIZE;
+                    pendingBits -= Integer.SIZE;
+                }
+            }
+        }
+        if (pendingBits > 0) {
+            buffer.putInt(next, (int) pending);
+        }
+    }
+    /**
+     * Encodes a run of positions one after another from the current
+     * position of a buffer.
+     *
+     * @param boards   the boards
+     * @param colours  the colour to move on each board
+     * @param offset   the index of the first board to encode
+     * @param count    the number of boards to encode
+     * @param buffer   the buffer, which needs <code>count * size()</code>
+     *                 bytes remaining
+     *
+     * @throws BufferOverflowException  if the buffer does not have room for
+     *                                   every position, in which case
+     *                                   nothing is encoded
+     */
+    public final void encodeAll(final Board[] boards, final int[] colours,
+            final int offset, final int count, final ByteBuffer buffer) {
+        if (buffer.remaining() < count * size) {
+            throw new BufferOverflowException();
+        }
+        int index = buffer.position();
+        for (int i = offset; i < offset + count; i++) {
+            encode(boards[i], colours[i], buffer, index);
+            index += size;
+        }
+        buffer.position(index);
+    }
+    /**
+     * Decodes a position, taking {@link #size()} bytes from the current
+     * position of a buffer in the buffer's byte order and replacing whatever
+     * was on the board.
+     *
+     * @param buffer  the buffer
+     * @param board   the board, which needs to be the size the numbering is
+     *                for
+     * @return        the colour to move, either {@link Piece#DARK} or
+     *                {@link Piece#LIGHT}
+     *
+     * @throws IllegalArgumentException  if the encoded position has a square
+     *                                   with both a dark and a light piece
+     */
+    public final int decode(final ByteBuffer buffer, final Board board) {
+        final int position = buffer.position();
+        final int colour = decode(buffer, position, board);
+        buffer.position(position + size);
+        return colour;
+    }
+    /**
+     * Decodes a position, taking {@link #size()} bytes from the specified
+     * index of a buffer in the buffer's byte order without changing its
+     * position, and replacing whatever was on the board.
+     * <p>
+     * As the position of the buffer is not used this is safe to call from
+     * many threads reading the same buffer, such as a mapped file.
+     *
+     * @param buffer  the buffer
+     * @param index   the index of the first byte
+     * @param board   the board, which needs to be the size the numbering is
+     *                for
+     * @return        the colour to move, either {@link Piece#DARK} or
+     *                {@link Piece#LIGHT}
+     *
+     * @throws IllegalArgumentException  if the encoded position has a square
+     *                                   with both a dark and a light piece
+     */
+    public final int decode(final ByteBuffer buffer, final int index,
+            final Board board) {
+        long dark = 0;
+        long light = 0;
+        long kings = 0;
+        int next = index;
+        long pending = 0;
+        int pendingBits = 0;
+        for (int mask = 0; mask < MASKS; mask++) {
+            long bits = 0;
+            for (int shift = 0; shift < squareCount; shift += Integer.SIZE) {
+                final int count = Math.min(Integer.SIZE, squareCount - shift);
+                if (pendingBits < count) {
+                    pending |= (buffer.getInt(next) & 0xFFFFFFFFL)
+                            << pendingBits;
+                    next += WORD_BYTES;
+                    pendingBits += Integer.SIZE;
+                }
+                bits |= (pending & ((1L << count) - 1)) << shift;
+                pending >>>= count;
+                pendingBits -= count;
+            }
+            if (mask == 0) {
+                dark = bits;
+            } else if (mask == 1) {
+                light = bits;
+            } else {
+                kings = bits;
+            }
+        }
+        if ((dark & light) != 0) {
+            throw new IllegalArgumentException("square has two pieces");
+        }
+        final long occupied = dark | light;
+        final int colour = (kings & ~occupied) != 0 ? Piece.LIGHT
+                : Piece.DARK;
+        kings &= occupied;
+        Arrays.fill(board.pieces, null);
+        for (int square = 1; square <= squareCount; square++) {
+            final long bit = 1L << (square - 1);
+            if ((occupied & bit) != 0) {
+                board.pieces[numbering.getIndex(square)] =
+                        FenNotation.createPiece((dark & bit) != 0
+                                ? Piece.DARK : Piece.LIGHT,
+                                (kings & bit) != 0);
+            }
+        }
+        return colour;
+    }
+    /**
+     * Decodes a run of positions one after another from the current
+     * position of a buffer.
+     *
+     * @param buffer   the buffer, which needs <code>count * size()</code>
+     *                 bytes remaining
+     * @param boards   the boards to decode onto, which need to be the size
+     *                 the numbering is for
+     * @param colours  the array to put the colour to move on each board in
+     * @param offset   the index of the first board to decode onto
+     * @param count    the number of positions to decode
+     *
+     * @throws BufferUnderflowException  if the buffer does not hold every
+     *                                    position, in which case nothing is
+     *                                    decoded
+     * @throws IllegalArgumentException  if an encoded position has a square
+     *                                   with both a dark and a light piece
+     */
+    public final void decodeAll(final ByteBuffer buffer, final Board[] boards,
+            final int[] colours, final int offset, final int count) {
+        if (buffer.remaining() < count * size) {
+            throw new BufferUnderflowException();
+        }
+        int index = buffer.position();
+        for (int i = offset; i < offset + count; i++) {
+            colours[i] = decode(buffer, index, boards[i]);
+            index += size;
+        }
+        buffer.position(index);
+    }
+}
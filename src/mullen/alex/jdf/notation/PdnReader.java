@@ -0,0 +1,706 @@
+package mullen.alex.jdf.notation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Reads games in Portable Draughts Notation (PDN) one at a time from a
+ * stream, turning each into a {@link GameRecord}.
+ * <p>
+ * Only one game is held in memory at a time, so archives of any size can be
+ * read. The text is scanned a character at a time from a buffer rather than
+ * split up with regular expressions, and each move is resolved by matching
+ * its numbered squares against the legal moves from the move generator, so
+ * <code>32x23</code> becomes whichever legal capture goes from square 32 to
+ * square 23. Where several captures share both ends the intermediate squares
+ * given, as in <code>32x23x14</code>, pick between them, otherwise the first
+ * generated is taken.
+ * <p>
+ * Tags are kept for the most recent game read. Comments, variations,
+ * numeric annotation glyphs and move strength marks are skipped. A game with
+ * a <code>FEN</code> tag is replayed from the position it gives rather than
+ * the starting position, unless a <code>SetUp</code> tag of <code>0</code>
+ * says otherwise; {@link #getStartFen()} tells which position a game was
+ * replayed from.
+ * <p>
+ * The first number of a result is the score of the side that moves first in
+ * the variant, so <code>2-0</code> and <code>1-0</code> are both a win for
+ * that side.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PdnReader implements Closeable {
+    /** The number of characters read from the stream at a time. */
+    private static final int BUFFER_SIZE = 8192;
+    /** The most squares a single move can name. */
+    private static final int MAX_MOVE_SQUARES = 64;
+    /** The tag giving the position a game was set up from. */
+    private static final String FEN_TAG = "FEN";
+    /** The tag saying whether a game was set up from a position. */
+    private static final String SET_UP_TAG = "SetUp";
+    /** Holds the stream being read. */
+    private final Reader in;
+    /** Holds the characters read from the stream but not yet scanned. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+    /** Holds the board the moves of each game are replayed on. */
+    private final Board board;
+    /** Holds the pieces in their starting positions. */
+    private final Piece[] startingPieces;
+    /** Holds the colour that moves first. */
+    private final int firstColour;
+    /** Holds the move generator for finding legal moves. */
+    private final MoveGenerator moveGenerator;
+    /** Holds the move performer for replaying moves. */
+    private final MovePerformer movePerformer;
+    /** Holds the numbering of the squares. */
+    private final SquareNumbering numbering;
+    /** Holds the notation for parsing set up positions. */
+    private final FenNotation fenNotation;
+    /** Holds the tags of the most recent game read. */
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    /** Holds the text of the token being scanned. */
+    private final StringBuilder token = new StringBuilder();
+    /** Holds the squares named by the move being resolved. */
+    private final int[] moveSquares = new int[MAX_MOVE_SQUARES];
+    /** Holds the index of the next character to scan in the buffer. */
+    private int bufferPosition;
+    /** Holds the number of characters in the buffer. */
+    private int bufferLimit;
+    /** Holds the number of characters scanned from the stream. */
+    private long offset;
+    /** Holds the offset the most recent game started at. */
+    private long gameOffset;
+    /**
+     * Creates a new reader of games played under the rules of the specified
+     * game.
+     *
+     * @param reader    the stream to read from
+     * @param template  a game in its starting position, which supplies the
+     *                  board, rules and who moves first but is not changed
+     */
+    public PdnReader(final Reader reader, final Game template) {
+        this(reader, template.getBoard(), template.getTurn().getColour(),
+                template.getMoveGenerator(), template.getMovePerformer(),
+                SquareNumbering.forGame(template));
+    }
+    /**
+     * Creates a new reader from the parts of a game.
+     *
+     * @param reader        the stream to read from
+     * @param startBoard    the board in its starting position, which is
+     *                      copied
+     * @param colour        the colour that moves first
+     * @param generator     the move generator
+     * @param performer     the move performer
+     * @param squares       the numbering of the squares
+     */
+    private PdnReader(final Reader reader, final Board startBoard,
+            final int colour, final MoveGenerator generator,
+            final MovePerformer performer, final SquareNumbering squares) {
+        in = reader;
+        board = new Board(startBoard);
+        startingPieces = startBoard.pieces.clone();
+        firstColour = colour;
+        moveGenerator = generator;
+        movePerformer = performer;
+        numbering = squares;
+        fenNotation = new FenNotation(squares);
+    }
+    /**
+     * Reads every game in a file, splitting it into chunks that are read in
+     * parallel.
+     * <p>
+     * The file is split where a tag section starts after a blank line, so
+     * every game is read by exactly one thread. The handler is called from
+     * several threads at once, and the order of the games is not kept. The
+     * file is decoded as ISO-8859-1, which covers the plain ASCII that PDN
+     * files are written in.
+     *
+     * @param file      the file
+     * @param template  a game in its starting position
+     * @param threads   the number of threads to read with
+     * @param handler   the handler for each game read
+     * @return          the number of games read
+     *
+     * @throws IOException           if the file could not be read or a game
+     *                               in it is malformed
+     * @throws InterruptedException  if interrupted while waiting for the
+     *                               chunks to be read
+     * @throws IllegalArgumentException  if <code>threads</code> is less than
+     *                                   <code>1</code>
+     */
+    public static long readAll(final File file, final Game template,
+            final int threads, final RecordHandler handler)
+            throws IOException, InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads needs to be > 0");
+        }
+        final long[] starts = findChunkStarts(file, threads);
+        final int chunks = starts.length - 1;
+        final Board startBoard = template.getBoard();
+        final int colour = template.getTurn().getColour();
+        final MoveGenerator generator = template.getMoveGenerator();
+        final MovePerformer performer = template.getMovePerformer();
+        final SquareNumbering squares = SquareNumbering.forGame(template);
+        final ExecutorService executor = Executors.newFixedThreadPool(chunks);
+        try {
+            final List<Future<Long>> futures = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                final long start = starts[i];
+                final long end = starts[i + 1];
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        try (RandomAccessFile raf =
+                                new RandomAccessFile(file, "r")) {
+                            final InputStream stream = new RangeInputStream(
+                                    Channels.newInputStream(
+                                            raf.getChannel().position(start)),
+                                    end - start);
+                            final PdnReader reader = new PdnReader(
+                                    new InputStreamReader(stream,
+                                            StandardCharsets.ISO_8859_1),
+                                    startBoard, colour, generator, performer,
+                                    squares);
+                            long count = 0;
+                            GameRecord record;
+                            while ((record = reader.read()) != null) {
+                                handler.onRecord(record,
+                                        reader.getStartFen());
+                                count++;
+                            }
+                            return count;
+                        }
+                    }
+                }));
+            }
+            long total = 0;
+            for (final Future<Long> future : futures) {
+                try {
+                    total += future.get();
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Reads the next game.
+     *
+     * @return  the game, or <code>null</code> if there are no more games
+     *
+     * @throws IOException  if the stream could not be read or the game is
+     *                      malformed
+     */
+    public final GameRecord read() throws IOException {
+        tags.clear();
+        System.arraycopy(startingPieces, 0, board.pieces, 0,
+                startingPieces.length);
+        int colour = firstColour;
+        final List<Move> moves = new ArrayList<>();
+        boolean started = false;
+        while (true) {
+            skipWhitespace();
+            final int c = peek();
+            if (c == -1) {
+                return started
+                        ? new GameRecord(moves, GameRecord.UNFINISHED) : null;
+            }
+            if (!started) {
+                gameOffset = offset;
+                started = true;
+            }
+            if (c == '[') {
+                if (!moves.isEmpty()) {
+                    // The next game has started without this one having a
+                    // result.
+                    return new GameRecord(moves, GameRecord.UNFINISHED);
+                }
+                readTag();
+            } else if (c == '{') {
+                skipPast('}');
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == ';' || c == '%') {
+                skipPast('\n');
+            } else if (c == '$') {
+                // A numeric annotation glyph.
+                next();
+                readToken();
+            } else if (c == '*') {
+                next();
+                return new GameRecord(moves, GameRecord.UNFINISHED);
+            } else if (c >= '0' && c <= '9') {
+                readToken();
+                if (peek() == '.') {
+                    // A move number.
+                    while (peek() == '.') {
+                        next();
+                    }
+                    continue;
+                }
+                final int result = parseResult();
+                if (result >= 0) {
+                    return new GameRecord(moves, result);
+                }
+                if (moves.isEmpty()) {
+                    colour = setUpPosition();
+                }
+                final Move move = resolveMove(colour);
+                movePerformer.perform(move, board);
+                moves.add(move);
+                colour = Piece.getOpposingColourOf(colour);
+            } else if (Character.isLetter(c)) {
+                throw new IOException("unsupported move notation at offset "
+                        + offset);
+            } else {
+                // Move strength marks, glyphs and stray punctuation.
+                next();
+            }
+        }
+    }
+    /**
+     * Gets the tags of the most recent game read.
+     *
+     * @return  an unmodifiable view of the tags, in the order read
+     */
+    public final Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+    /**
+     * Gets the position the most recent game was set up from.
+     *
+     * @return  the <code>FEN</code> tag of the game, or <code>null</code> if
+     *          it started from the starting position
+     */
+    public final String getStartFen() {
+        return "0".equals(tags.get(SET_UP_TAG)) ? null : tags.get(FEN_TAG);
+    }
+    /**
+     * Gets the offset in characters from the start of the stream that the
+     * most recent game started at.
+     *
+     * @return  the offset
+     */
+    public final long getGameOffset() {
+        return gameOffset;
+    }
+    @Override
+    public final void close() throws IOException {
+        in.close();
+    }
+    /**
+     * Places the pieces of the position the current game was set up from,
+     * if it was, onto the board.
+     *
+     * @return  the colour to move first
+     *
+     * @throws IOException  if the position is malformed
+     */
+    private int setUpPosition() throws IOException {
+        final String fen = getStartFen();
+        if (fen == null) {
+            return firstColour;
+        }
+        try {
+            return fenNotation.parse(fen, board);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("malformed FEN tag in game at offset "
+                    + gameOffset, e);
+        }
+    }
+    /**
+     * Reads a tag, such as <code>[Event "Club match"]</code>.
+     *
+     * @throws IOException  if the stream could not be read or the tag is
+     *                      malformed
+     */
+    private void readTag() throws IOException {
+        next();
+        skipWhitespace();
+        token.setLength(0);
+        int c;
+        while ((c = peek()) != -1 && c != '"' && c != ']'
+                && !Character.isWhitespace(c)) {
+            token.append((char) next());
+        }
+        final String name = token.toString();
+        skipWhitespace();
+        if (next() != '"') {
+            throw new IOException("malformed tag at offset " + offset);
+        }
+        token.setLength(0);
+        while ((c = next()) != '"') {
+            if (c == -1) {
+                throw new IOException("unterminated tag at offset " + offset);
+            } else if (c == '\\') {
+                c = next();
+            }
+            token.append((char) c);
+        }
+        skipPast(']');
+        tags.put(name, token.toString());
+    }
+    /**
+     * Reads a token made of the characters of moves and results into
+     * {@link #token}.
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private void readToken() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) != -1 && ((c >= '0' && c <= '9') || c == '-'
+                || c == 'x' || c == 'X' || c == '/')) {
+            token.append((char) next());
+        }
+    }
+    /**
+     * Interprets the token as a result.
+     *
+     * @return        the result, or <code>-1</code> if the token is not a
+     *                result
+     */
+    private int parseResult() {
+        final int length = token.length();
+        final String text;
+        if (length == 3 && token.charAt(1) == '-') {
+            text = token.toString();
+        } else if (length == 7 && "1/2-1/2".contentEquals(token)) {
+            return GameRecord.DRAW;
+        } else {
+            return -1;
+        }
+        final int first = text.charAt(0) - '0';
+        final int second = text.charAt(2) - '0';
+        if (first > 2 || second > 2) {
+            return -1;
+        } else if (first == second) {
+            return first == 0 ? GameRecord.UNFINISHED : GameRecord.DRAW;
+        } else if (first > second) {
+            return firstColour == Piece.DARK
+                    ? GameRecord.DARK_WIN : GameRecord.LIGHT_WIN;
+        }
+        return firstColour == Piece.DARK
+                ? GameRecord.LIGHT_WIN : GameRecord.DARK_WIN;
+    }
+    /**
+     * Finds the legal move named by the token.
+     *
+     * @param colour  the colour to move
+     * @return        the move
+     *
+     * @throws IOException  if the token does not name a legal move
+     */
+    private Move resolveMove(final int colour) throws IOException {
+        int count = 0;
+        int value = 0;
+        final int length = token.length();
+        for (int i = 0; i <= length; i++) {
+            final char c = i < length ? token.charAt(i) : '-';
+            if (c >= '0' && c <= '9') {
+                value = (value * 10) + (c - '0');
+            } else if (c == '-' || c == 'x' || c == 'X') {
+                if (value < 1 || value > numbering.getSquareCount()
+                        || count == MAX_MOVE_SQUARES) {
+                    throw badMove();
+                }
+                moveSquares[count++] = value;
+                value = 0;
+            } else {
+                throw badMove();
+            }
+        }
+        if (count < 2) {
+            throw badMove();
+        }
+        final BoardPosition from = numbering.getPosition(moveSquares[0]);
+        final BoardPosition to = numbering.getPosition(moveSquares[count - 1]);
+        final List<Move> legalMoves = moveGenerator.findMoves(board, colour);
+        final int legalMovesSize = legalMoves.size();
+        for (int i = 0; i < legalMovesSize; i++) {
+            final Move move = legalMoves.get(i);
+            if (move.from.equals(from) && move.to.equals(to)
+                    && matchesPath(move, count)) {
+                return move;
+            }
+        }
+        throw badMove();
+    }
+    /**
+     * Gets whether a move passes through the intermediate squares named by
+     * the token, if it names any.
+     *
+     * @param move   the move
+     * @param count  the number of squares named
+     * @return       <code>true</code> if it does; <code>false</code> if not
+     */
+    private boolean matchesPath(final Move move, final int count) {
+        if (count == 2) {
+            return true;
+        }
+        if (move.jumps.size() != count - 1) {
+            return false;
+        }
+        for (int i = 1; i < count - 1; i++) {
+            if (numbering.getSquare(move.jumps.get(i - 1).to)
+                    != moveSquares[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Creates the exception for a token that is not a legal move.
+     *
+     * @return  the exception
+     */
+    private IOException badMove() {
+        return new IOException("illegal move " + token + " at offset "
+                + offset);
+    }
+    /**
+     * Skips a variation, including any variations nested within it.
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int c;
+        while ((c = next()) != -1) {
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            } else if (c == '{') {
+                skipPast('}');
+            }
+        }
+    }
+    /**
+     * Skips characters up to and including the specified one.
+     *
+     * @param end  the character
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private void skipPast(final char end) throws IOException {
+        int c;
+        while ((c = next()) != -1 && c != end) {
+            continue;
+        }
+    }
+    /**
+     * Skips any whitespace.
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private void skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && Character.isWhitespace(c)) {
+            next();
+        }
+    }
+    /**
+     * Gets the next character without consuming it.
+     *
+     * @return  the character, or <code>-1</code> at the end of the stream
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private int peek() throws IOException {
+        if (bufferPosition == bufferLimit) {
+            final int read = in.read(buffer, 0, BUFFER_SIZE);
+            if (read <= 0) {
+                return -1;
+            }
+            bufferPosition = 0;
+            bufferLimit = read;
+        }
+        return buffer[bufferPosition];
+    }
+    /**
+     * Consumes the next character.
+     *
+     * @return  the character, or <code>-1</code> at the end of the stream
+     *
+     * @throws IOException  if the stream could not be read
+     */
+    private int next() throws IOException {
+        final int c = peek();
+        if (c != -1) {
+            bufferPosition++;
+            offset++;
+        }
+        return c;
+    }
+    /**
+     * Finds where to split a file into chunks, each of which starts at the
+     * start of a game.
+     *
+     * @param file    the file
+     * @param chunks  the most chunks wanted
+     * @return        the offset each chunk starts at, followed by the length
+     *                of the file
+     *
+     * @throws IOException  if the file could not be read
+     */
+    private static long[] findChunkStarts(final File file, final int chunks)
+            throws IOException {
+        final long length = file.length();
+        final List<Long> starts = new ArrayList<>(chunks + 1);
+        starts.add(0L);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final byte[] bytes = new byte[BUFFER_SIZE];
+            for (int i = 1; i < chunks; i++) {
+                final long target = Math.max(length * i / chunks,
+                        starts.get(starts.size() - 1) + 1);
+                final long start = findGameStart(raf, bytes, target, length);
+                if (start < length) {
+                    starts.add(start);
+                }
+            }
+        }
+        starts.add(length);
+        final long[] result = new long[starts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+    /**
+     * Finds the first game that starts at or after an offset, which is a
+     * <code>[</code> following a blank line.
+     *
+     * @param raf     the file
+     * @param bytes   a buffer for reading the file
+     * @param from    the offset to search from
+     * @param length  the length of the file
+     * @return        the offset of the game, or <code>length</code> if there
+     *                is none
+     *
+     * @throws IOException  if the file could not be read
+     */
+    private static long findGameStart(final RandomAccessFile raf,
+            final byte[] bytes, final long from, final long length)
+            throws IOException {
+        long position = from;
+        int newlines = 0;
+        raf.seek(position);
+        while (position < length) {
+            final int read = raf.read(bytes);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++, position++) {
+                final byte b = bytes[i];
+                if (b == '\n') {
+                    newlines++;
+                } else if (b == '[' && newlines >= 2) {
+                    return position;
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    newlines = 0;
+                }
+            }
+        }
+        return length;
+    }
+    /**
+     * An interface for handling each game read by
+     * {@link PdnReader#readAll(File, Game, int, RecordHandler)}.
+     *
+     * @author  Alex Mullen
+     */
+    public interface RecordHandler {
+        /**
+         * Called with each game read. May be called from several threads at
+         * once.
+         *
+         * @param record    the game
+         * @param startFen  the position the game was set up from, or
+         *                  <code>null</code> if it started from the starting
+         *                  position
+         */
+        void onRecord(GameRecord record, String startFen);
+    }
+    /**
+     * A stream that ends after a given number of bytes of another stream.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+        /** Holds the number of bytes left to read. */
+        private long remaining;
+        /**
+         * Creates a new instance.
+         *
+         * @param stream  the stream to read from
+         * @param length  the number of bytes to read
+         */
+        RangeInputStream(final InputStream stream, final long length) {
+            super(stream);
+            remaining = length;
+        }
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = super.read(b, off,
+                    (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
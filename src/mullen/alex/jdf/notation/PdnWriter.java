@@ -0,0 +1,233 @@
+package mullen.alex.jdf.notation;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Writes games in Portable Draughts Notation (PDN), in a form that
+ * {@link PdnReader} reads back.
+ * <p>
+ * Each game is replayed as it is written, both to check its moves are legal
+ * and to find captures that share both ends with another legal capture,
+ * which are written with every square they land on so they read back as
+ * the same move. Other moves are written as just the squares they start and
+ * end on.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PdnWriter implements Closeable, Flushable {
+    /** The longest line of move text written. */
+    private static final int LINE_LENGTH = 80;
+    /** The number of squares on an English draughts board. */
+    private static final int ENGLISH_SQUARES = 32;
+    /** Holds the stream being written to. */
+    private final Writer out;
+    /** Holds the board the moves of each game are replayed on. */
+    private final Board board;
+    /** Holds the pieces in their starting positions. */
+    private final Piece[] startingPieces;
+    /** Holds the colour that moves first. */
+    private final int firstColour;
+    /** Holds the move generator for finding legal moves. */
+    private final MoveGenerator moveGenerator;
+    /** Holds the move performer for replaying moves. */
+    private final MovePerformer movePerformer;
+    /** Holds the numbering of the squares. */
+    private final SquareNumbering numbering;
+    /** Holds the score written for a win. */
+    private final int winScore;
+    /** Holds the line of move text being built. */
+    private final StringBuilder line = new StringBuilder(LINE_LENGTH);
+    /** Holds the token being built. */
+    private final StringBuilder token = new StringBuilder();
+    /**
+     * Creates a new writer of games played under the rules of the specified
+     * game.
+     *
+     * @param writer    the stream to write to, which is best buffered
+     * @param template  a game in its starting position, which supplies the
+     *                  board, rules and who moves first but is not changed
+     */
+    public PdnWriter(final Writer writer, final Game template) {
+        out = writer;
+        board = template.getBoard();
+        startingPieces = board.pieces.clone();
+        firstColour = template.getTurn().getColour();
+        moveGenerator = template.getMoveGenerator();
+        movePerformer = template.getMovePerformer();
+        numbering = SquareNumbering.forGame(template);
+        // English draughts scores a win as 1 where other variants use 2.
+        winScore = numbering.getSquareCount() == ENGLISH_SQUARES ? 1 : 2;
+    }
+    /**
+     * Writes a game with no tags other than its result.
+     *
+     * @param record  the game
+     *
+     * @throws IOException               if the stream could not be written
+     * @throws IllegalArgumentException  if the game has an illegal move
+     */
+    public final void write(final GameRecord record) throws IOException {
+        write(record, Collections.<String, String>emptyMap());
+    }
+    /**
+     * Writes a game with the specified tags, followed by a
+     * <code>Result</code> tag if there is not one already.
+     *
+     * @param record  the game
+     * @param tags    the tags, written in iteration order
+     *
+     * @throws IOException               if the stream could not be written
+     * @throws IllegalArgumentException  if the game has an illegal move
+     */
+    public final void write(final GameRecord record,
+            final Map<String, String> tags) throws IOException {
+        final String result = formatResult(record.result);
+        for (final Map.Entry<String, String> tag : tags.entrySet()) {
+            writeTag(tag.getKey(), tag.getValue());
+        }
+        if (!tags.containsKey("Result")) {
+            writeTag("Result", result);
+        }
+        out.write('\n');
+        System.arraycopy(startingPieces, 0, board.pieces, 0,
+                startingPieces.length);
+        int colour = firstColour;
+        final List<Move> moves = record.moves;
+        final int movesSize = moves.size();
+        for (int ply = 0; ply < movesSize; ply++) {
+            if (ply % 2 == 0) {
+                token.setLength(0);
+                token.append((ply / 2) + 1).append('.');
+                appendToken();
+            }
+            final Move move = moves.get(ply);
+            formatMove(move, colour, ply);
+            appendToken();
+            movePerformer.perform(move, board);
+            colour = Piece.getOpposingColourOf(colour);
+        }
+        token.setLength(0);
+        token.append(result);
+        appendToken();
+        out.append(line).write("\n\n");
+        line.setLength(0);
+    }
+    @Override
+    public final void flush() throws IOException {
+        out.flush();
+    }
+    @Override
+    public final void close() throws IOException {
+        out.close();
+    }
+    /**
+     * Writes a tag, escaping its value.
+     *
+     * @param name   the name of the tag
+     * @param value  the value of the tag
+     *
+     * @throws IOException  if the stream could not be written
+     */
+    private void writeTag(final String name, final String value)
+            throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write("\"]\n");
+    }
+    /**
+     * Puts a move into {@link #token} after checking it is legal.
+     *
+     * @param move    the move
+     * @param colour  the colour making the move
+     * @param ply     the ply of the move, for reporting an illegal one
+     */
+    private void formatMove(final Move move, final int colour,
+            final int ply) {
+        final List<Move> legalMoves = moveGenerator.findMoves(board, colour);
+        boolean legal = false;
+        boolean ambiguous = false;
+        final int legalMovesSize = legalMoves.size();
+        for (int i = 0; i < legalMovesSize; i++) {
+            final Move legalMove = legalMoves.get(i);
+            if (legalMove.equals(move)) {
+                legal = true;
+            } else if (legalMove.from.equals(move.from)
+                    && legalMove.to.equals(move.to)) {
+                ambiguous = true;
+            }
+        }
+        if (!legal) {
+            throw new IllegalArgumentException("illegal move at ply " + ply);
+        }
+        token.setLength(0);
+        token.append(numbering.getSquare(move.from));
+        if (move.jumps.isEmpty()) {
+            token.append('-').append(numbering.getSquare(move.to));
+        } else if (ambiguous) {
+            final int jumpsSize = move.jumps.size();
+            for (int i = 0; i < jumpsSize; i++) {
+                token.append('x').append(
+                        numbering.getSquare(move.jumps.get(i).to));
+            }
+        } else {
+            token.append('x').append(numbering.getSquare(move.to));
+        }
+    }
+    /**
+     * Adds {@link #token} to the line of move text, first writing the line
+     * out if the token would make it too long.
+     *
+     * @throws IOException  if the stream could not be written
+     */
+    private void appendToken() throws IOException {
+        if (line.length() > 0) {
+            if (line.length() + 1 + token.length() > LINE_LENGTH) {
+                out.append(line).write('\n');
+                line.setLength(0);
+            } else {
+                line.append(' ');
+            }
+        }
+        line.append(token);
+    }
+    /**
+     * Formats a result with the score of the side that moves first first.
+     *
+     * @param result  the result
+     * @return        the formatted result
+     */
+    private String formatResult(final int result) {
+        if (result == GameRecord.UNFINISHED) {
+            return "*";
+        } else if (result == GameRecord.DRAW) {
+            return winScore == 1 ? "1/2-1/2" : "1-1";
+        }
+        final boolean firstWins = (result == GameRecord.DARK_WIN)
+                == (firstColour == Piece.DARK);
+        return firstWins ? winScore + "-0" : "0-" + winScore;
+    }
+}
@@ -0,0 +1,145 @@
+package mullen.alex.jdf.notation;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPattern;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.Game;
+
+/**
+ * Converts between the numbered squares used by draughts notations and
+ * positions on a {@link Board}.
+ * <p>
+ * The black squares of the board pattern are numbered from <code>1</code>,
+ * row by row from the top and left to right along each row, which is the
+ * standard numbering for both English and International draughts as the
+ * dark pieces start on the top rows. Both directions are looked up in
+ * tables built once, so converting costs an array access.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class SquareNumbering {
+    /** Holds the height of the board, for working out board indexes. */
+    private final int boardHeight;
+    /** Holds the position of each square, indexed by square number. */
+    private final BoardPosition[] positions;
+    /** Holds the board index of each square, indexed by square number. */
+    private final int[] indexes;
+    /**
+     * Holds the square number at each board index, or <code>0</code> for
+     * squares that are not numbered.
+     */
+    private final int[] squares;
+    /**
+     * Creates the numbering for a board with the specified pattern and
+     * dimensions.
+     *
+     * @param pattern  the board pattern
+     * @param width    the width of the board
+     * @param height   the height of the board
+     */
+    public SquareNumbering(final BoardPattern pattern, final int width,
+            final int height) {
+        boardHeight = height;
+        squares = new int[width * height];
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (pattern.getColourAt(x, y) == BoardPattern.BLACK_SQUARE) {
+                    count++;
+                }
+            }
+        }
+        positions = new BoardPosition[count + 1];
+        indexes = new int[count + 1];
+        int square = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (pattern.getColourAt(x, y) == BoardPattern.BLACK_SQUARE) {
+                    square++;
+                    positions[square] = new BoardPosition(x, y);
+                    indexes[square] = y + height * x;
+                    squares[indexes[square]] = square;
+                }
+            }
+        }
+    }
+    /**
+     * Creates the numbering for the board of the specified game.
+     *
+     * @param game  the game
+     * @return      the numbering
+     */
+    public static SquareNumbering forGame(final Game game) {
+        final Board board = game.getBoard();
+        return new SquareNumbering(game.getBoardPattern(), board.width,
+                board.height);
+    }
+    /**
+     * Gets the number of numbered squares.
+     *
+     * @return  the number of squares
+     */
+    public final int getSquareCount() {
+        return positions.length - 1;
+    }
+    /**
+     * Gets the position of a numbered square.
+     *
+     * @param square  the square number
+     * @return        the position
+     *
+     * @throws IndexOutOfBoundsException  if there is no such square
+     */
+    public final BoardPosition getPosition(final int square) {
+        if (square < 1 || square >= positions.length) {
+            throw new IndexOutOfBoundsException("square " + square);
+        }
+        return positions[square];
+    }
+    /**
+     * Gets the board index of a numbered square.
+     *
+     * @param square  the square number
+     * @return        the index into {@link Board#pieces}
+     *
+     * @throws IndexOutOfBoundsException  if there is no such square
+     */
+    public final int getIndex(final int square) {
+        if (square < 1 || square >= indexes.length) {
+            throw new IndexOutOfBoundsException("square " + square);
+        }
+        return indexes[square];
+    }
+    /**
+     * Gets the number of the square at a position.
+     *
+     * @param position  the position
+     * @return          the square number, or <code>0</code> if the square is
+     *                  not numbered
+     */
+    public final int getSquare(final BoardPosition position) {
+        return getSquare(position.x, position.y);
+    }
+    /**
+     * Gets the number of the square at the specified coordinates.
+     *
+     * @param x  the X position (left-to-right)
+     * @param y  the Y position (top-to-bottom)
+     * @return   the square number, or <code>0</code> if the square is not
+     *           numbered
+     */
+    public final int getSquare(final int x, final int y) {
+        return squares[y + boardHeight * x];
+    }
+    /**
+     * Gets the number of the square at a board index.
+     *
+     * @param index  the index into {@link Board#pieces}
+     * @return       the square number, or <code>0</code> if the square is
+     *               not numbered
+     */
+    public final int getSquareAtIndex(final int index) {
+        return squares[index];
+    }
+}
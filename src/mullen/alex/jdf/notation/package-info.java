@@ -0,0 +1,7 @@
+/**
+ * @author  Alex Mullen
+ *
+ * A package for containing readers and writers of the text notations used to
+ * exchange draughts games and positions.
+ */
+package mullen.alex.jdf.notation;
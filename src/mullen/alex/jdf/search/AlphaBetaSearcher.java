@@ -0,0 +1,339 @@
+package mullen.alex.jdf.search;
+
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * A fixed depth alpha-beta searcher that scores positions with an
+ * {@link Evaluator}.
+ * <p>
+ * The search deepens iteratively so the best move of each depth is tried
+ * first at the next, and results are kept in a {@link TranspositionTable}
+ * that may be shared with searchers on other threads. Lines carry on past
+ * the requested depth while the side to move has a capture, so positions
+ * are only scored once they are quiet. Repetitions and the draw rules of the
+ * variants are not considered. A search can be given a time limit, in which
+ * case it returns the result of the deepest iteration finished in time.
+ * <p>
+ * Moves are applied to a single board and undone afterwards rather than
+ * copying boards. An instance is not safe to use from more than one thread
+ * at once, though many instances may share a table and an evaluator.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class AlphaBetaSearcher {
+    /** The score of a win found at the root; wins further away score less. */
+    public static final int WIN_SCORE = 1000000;
+    /** The deepest a line is searched, captures included. */
+    public static final int MAX_PLY = 128;
+    /** A score above every real score. */
+    private static final int INFINITY = WIN_SCORE + 1;
+    /** The mask of the node counts at which the time limit is checked. */
+    private static final int TIME_CHECK_MASK = 0x3FF;
+    /** The number of nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000L;
+    /** The move generator for finding moves. */
+    private final MoveGenerator moveGenerator;
+    /** The move performer for applying and undoing moves. */
+    private final MovePerformer movePerformer;
+    /** The evaluator for scoring quiet positions. */
+    private final Evaluator evaluator;
+    /** The table of search results. */
+    private final TranspositionTable table;
+    /** Holds the number of nodes searched so far. */
+    private long nodes;
+    /** Holds the best move found by the last search. */
+    private Move bestMove;
+    /** Holds the deepest iteration the last search finished. */
+    private int completedDepth;
+    /** Holds whether the current iteration may be stopped by the clock. */
+    private boolean timed;
+    /** Holds the {@link System#nanoTime()} the current search stops at. */
+    private long deadline;
+    /** Holds whether the current iteration ran out of time. */
+    private boolean aborted;
+    /**
+     * Creates a new searcher.
+     *
+     * @param generator         the move generator for the variant
+     * @param performer         the move performer for the variant
+     * @param positionEvaluator the evaluator for scoring positions
+     * @param searchTable       the table of search results, which may be
+     *                          shared with other searchers
+     */
+    public AlphaBetaSearcher(final MoveGenerator generator,
+            final MovePerformer performer,
+            final Evaluator positionEvaluator,
+            final TranspositionTable searchTable) {
+        moveGenerator = generator;
+        movePerformer = performer;
+        evaluator = positionEvaluator;
+        table = searchTable;
+    }
+    /**
+     * Searches the current position of the specified game for whoever's
+     * turn it is.
+     *
+     * @param game   the game
+     * @param depth  the depth to search to, in plies
+     * @return       the score for the side to move
+     */
+    public final int search(final Game game, final int depth) {
+        return search(game.getBoard(), game.getTurn().getColour(), depth);
+    }
+    /**
+     * Searches the specified position to the specified depth. The board is
+     * not modified.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @param depth   the depth to search to, in plies
+     * @return        the score for the side to move, which is
+     *                {@link #WIN_SCORE} less the number of plies to the win
+     *                for a forced win and the negation of that for a forced
+     *                loss
+     *
+     * @throws IllegalArgumentException  if <code>depth</code> is less than
+     *                                   <code>1</code> or more than
+     *                                   {@link #MAX_PLY}
+     */
+    public final int search(final Board board, final int colour,
+            final int depth) {
+        return search(board, colour, depth, 0);
+    }
+    /**
+     * Searches the specified position to the specified depth or until the
+     * specified time has passed, whichever comes first. The first iteration
+     * is always finished however long it takes, so there is always a
+     * result. The board is not modified.
+     *
+     * @param board      the board
+     * @param colour     the colour whose turn it is
+     * @param depth      the depth to search to, in plies
+     * @param maxMillis  the most milliseconds to search for, or
+     *                   <code>0</code> for no limit
+     * @return           the score for the side to move from the deepest
+     *                   iteration finished
+     *
+     * @throws IllegalArgumentException  if <code>depth</code> is less than
+     *                                   <code>1</code> or more than
+     *                                   {@link #MAX_PLY}, or
+     *                                   <code>maxMillis</code> is negative
+     */
+    public final int search(final Board board, final int colour,
+            final int depth, final long maxMillis) {
+        if (depth < 1 || depth > MAX_PLY) {
+            throw new IllegalArgumentException("depth out of range");
+        }
+        if (maxMillis < 0) {
+            throw new IllegalArgumentException("maxMillis needs to be >= 0");
+        }
+        final Board workBoard = new Board(board);
+        final long hash = ZobristHasher.hash(workBoard, colour);
+        deadline = System.nanoTime() + (maxMillis * NANOS_PER_MILLI);
+        nodes = 0;
+        bestMove = null;
+        completedDepth = 0;
+        aborted = false;
+        int score = 0;
+        for (int iteration = 1; iteration <= depth; iteration++) {
+            timed = maxMillis > 0 && iteration > 1;
+            final Move previousBest = bestMove;
+            final int iterationScore = searchNode(workBoard, colour, hash,
+                    iteration, 0, -INFINITY, INFINITY);
+            if (aborted) {
+                bestMove = previousBest;
+                break;
+            }
+            score = iterationScore;
+            completedDepth = iteration;
+        }
+        return score;
+    }
+    /**
+     * Gets the best move found by the last search.
+     *
+     * @return  the move, or <code>null</code> if the side to move had no
+     *          moves
+     */
+    public final Move getBestMove() {
+        return bestMove;
+    }
+    /**
+     * Gets the depth of the deepest iteration the last search finished.
+     *
+     * @return  the depth, which is less than the depth asked for if the
+     *          search ran out of time
+     */
+    public final int getCompletedDepth() {
+        return completedDepth;
+    }
+    /**
+     * Gets the number of nodes searched by the last search.
+     *
+     * @return  the number of nodes
+     */
+    public final long getNodesSearched() {
+        return nodes;
+    }
+    /**
+     * Gets whether a score is a forced win or loss.
+     *
+     * @param score  the score
+     * @return       <code>true</code> if it is; <code>false</code> if not
+     */
+    public static boolean isWinOrLoss(final int score) {
+        return Math.abs(score) > WIN_SCORE - MAX_PLY;
+    }
+    /**
+     * Searches a node with a negamax alpha-beta search.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @param hash    the hash of the position
+     * @param depth   the remaining depth
+     * @param ply     the number of plies from the root
+     * @param alpha   the lower bound of the window
+     * @param beta    the upper bound of the window
+     * @return        the score for the side to move, or <code>0</code> if the
+     *                search ran out of time
+     */
+    private int searchNode(final Board board, final int colour,
+            final long hash, final int depth, final int ply, final int alpha,
+            final int beta) {
+        if (timed && (nodes & TIME_CHECK_MASK) == 0
+                && System.nanoTime() - deadline > 0) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        nodes++;
+        final List<Move> moves = moveGenerator.findMoves(board, colour);
+        final int movesSize = moves.size();
+        if (movesSize == 0) {
+            // No moves left so the side to move has lost.
+            return -WIN_SCORE + ply;
+        }
+        if ((depth <= 0 && !hasCapture(moves)) || ply >= MAX_PLY) {
+            return evaluator.evaluate(board, colour);
+        }
+        int first = 0;
+        final long entry = table.probe(hash);
+        if (entry != TranspositionTable.MISS) {
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                final int score = fromTable(
+                        TranspositionTable.getScore(entry), ply);
+                final int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND
+                                && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND
+                                && score <= alpha)) {
+                    return score;
+                }
+            }
+            final int move = TranspositionTable.getMove(entry);
+            if (move < movesSize) {
+                first = move;
+            }
+        }
+        final int opponent = Piece.getOpposingColourOf(colour);
+        int lowerBound = alpha;
+        int best = -INFINITY;
+        int bestIndex = first;
+        for (int n = 0; n < movesSize; n++) {
+            // The stored best move is tried first, then the rest in order.
+            final int i = n == 0 ? first : (n - 1 < first ? n - 1 : n);
+            final Move move = moves.get(i);
+            final PerformedMove performed = movePerformer.perform(move, board);
+            final int score = -searchNode(board, opponent,
+                    ZobristHasher.hash(board, opponent), depth - 1, ply + 1,
+                    -beta, -lowerBound);
+            performed.undo();
+            if (aborted) {
+                // The score is meaningless so nothing is stored.
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestIndex = i;
+                if (score > lowerBound) {
+                    lowerBound = score;
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        final int bound;
+        if (best <= alpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (best >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        table.store(hash, toTable(best, ply), depth, bound, bestIndex);
+        if (ply == 0) {
+            bestMove = moves.get(bestIndex);
+        }
+        return best;
+    }
+    /**
+     * Gets whether any of the specified moves is a capture.
+     *
+     * @param moves  the moves
+     * @return       <code>true</code> if there is a capture;
+     *               <code>false</code> if not
+     */
+    private static boolean hasCapture(final List<Move> moves) {
+        final int movesSize = moves.size();
+        for (int i = 0; i < movesSize; i++) {
+            if (!moves.get(i).jumps.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Converts a score to how it is stored in the table, making wins and
+     * losses relative to the node rather than the root.
+     *
+     * @param score  the score
+     * @param ply    the number of plies from the root
+     * @return       the score to store
+     */
+    private static int toTable(final int score, final int ply) {
+        if (score > WIN_SCORE - MAX_PLY) {
+            return score + ply;
+        } else if (score < -WIN_SCORE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+    /**
+     * Converts a score from how it is stored in the table.
+     *
+     * @param score  the stored score
+     * @param ply    the number of plies from the root
+     * @return       the score
+     */
+    private static int fromTable(final int score, final int ply) {
+        if (score > WIN_SCORE - MAX_PLY) {
+            return score - ply;
+        } else if (score < -WIN_SCORE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
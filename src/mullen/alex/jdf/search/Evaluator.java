@@ -0,0 +1,23 @@
+package mullen.alex.jdf.search;
+
+import mullen.alex.jdf.common.Board;
+
+/**
+ * An interface that defines a class that scores positions for a search.
+ * <p>
+ * Implementations are shared by every thread searching with them so need to
+ * be safe to call concurrently.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public interface Evaluator {
+    /**
+     * Scores the specified position for the side to move.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @return        the score, positive when the side to move is better off
+     */
+    int evaluate(Board board, int colour);
+}
@@ -0,0 +1,394 @@
+package mullen.alex.jdf.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * Annotates played games by searching every position in them, flagging
+ * moves that threw away much of the score as blunders.
+ * <p>
+ * A game is replayed first and then each of its positions searched as a
+ * separate task on an {@link Executor}, so the positions of one game are
+ * searched in parallel. The searches of a game share one
+ * {@link TranspositionTable}, as neighbouring positions have much of their
+ * trees in common. Results are handed to a {@link Listener} as soon as they
+ * are known: each position as its search finishes, and each move once the
+ * positions before and after it have both been searched.
+ * <p>
+ * The swing of a move is the score the mover had after it less the score
+ * the mover could have had by playing the best move found, both from the
+ * mover's point of view, so it is negative for moves that lose ground.
+ * Instances are safe to share between threads.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class GameAnnotator {
+    /** The swing, in hundredths of a man, that marks a blunder by default. */
+    public static final int DEFAULT_BLUNDER_THRESHOLD = 150;
+    /** Holds the board the games start from. */
+    private final Board startBoard;
+    /** Holds the colour that moves first. */
+    private final int startColour;
+    /** Holds the move generator for the variant. */
+    private final MoveGenerator moveGenerator;
+    /** Holds the move performer for the variant. */
+    private final MovePerformer movePerformer;
+    /** Holds the evaluator the positions are searched with. */
+    private final Evaluator evaluator;
+    /** Holds the executor the positions are searched on. */
+    private final Executor executor;
+    /** Holds the number of entries in the table of each game. */
+    private final int tableEntries;
+    /** Holds the loss of score that marks a blunder. */
+    private final int blunderThreshold;
+    /**
+     * Creates a new annotator of games that start from the current position
+     * of the specified game.
+     *
+     * @param startingGame       a game in its starting position, which
+     *                           supplies the rules but is not changed
+     * @param positionEvaluator  the evaluator to search with
+     * @param searchExecutor     the executor to search the positions on
+     * @param entries            the minimum number of entries in the table
+     *                           shared by the positions of each game
+     * @param threshold          the loss of score that marks a move as a
+     *                           blunder
+     *
+     * @throws IllegalArgumentException  if <code>entries</code> is out of
+     *                                   range for a
+     *                                   {@link TranspositionTable} or
+     *                                   <code>threshold</code> is less than
+     *                                   <code>1</code>
+     */
+    public GameAnnotator(final Game startingGame,
+            final Evaluator positionEvaluator, final Executor searchExecutor,
+            final int entries, final int threshold) {
+        if (entries < 2 || entries > (1 << 30)) {
+            throw new IllegalArgumentException("entries out of range");
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold needs to be > 0");
+        }
+        startBoard = startingGame.getBoard();
+        startColour = startingGame.getTurn().getColour();
+        moveGenerator = startingGame.getMoveGenerator();
+        movePerformer = startingGame.getMovePerformer();
+        evaluator = positionEvaluator;
+        executor = searchExecutor;
+        tableEntries = entries;
+        blunderThreshold = threshold;
+    }
+    /**
+     * Annotates a game, waiting for every position to be searched.
+     *
+     * @param record     the game
+     * @param depth      the depth to search each position to, in plies
+     * @param maxMillis  the most milliseconds to search each position for,
+     *                   or <code>0</code> for no limit
+     * @param listener   the listener to hand results to as they are known,
+     *                   or <code>null</code> for none
+     * @return           the annotation of each move, in the order they were
+     *                   played
+     *
+     * @throws InterruptedException      if interrupted while waiting
+     * @throws IllegalArgumentException  if the game has an illegal move,
+     *                                   or the depth or time is out of range
+     */
+    public final List<Annotation> annotate(final GameRecord record,
+            final int depth, final long maxMillis, final Listener listener)
+            throws InterruptedException {
+        return annotate(startBoard, startColour, record.moves, depth,
+                maxMillis, listener);
+    }
+    /**
+     * Annotates a line of moves played from the specified position, such as
+     * one set up from a FEN string, waiting for every position to be
+     * searched.
+     *
+     * @param start      the board the line starts from, which is not
+     *                   changed
+     * @param colour     the colour to move first
+     * @param moves      the moves of the line
+     * @param depth      the depth to search each position to, in plies
+     * @param maxMillis  the most milliseconds to search each position for,
+     *                   or <code>0</code> for no limit
+     * @param listener   the listener to hand results to as they are known,
+     *                   or <code>null</code> for none
+     * @return           the annotation of each move, in the order they were
+     *                   played
+     *
+     * @throws InterruptedException      if interrupted while waiting
+     * @throws IllegalArgumentException  if the line has an illegal move,
+     *                                   or the depth or time is out of range
+     */
+    public final List<Annotation> annotate(final Board start,
+            final int colour, final List<Move> moves, final int depth,
+            final long maxMillis, final Listener listener)
+            throws InterruptedException {
+        if (depth < 1 || depth > AlphaBetaSearcher.MAX_PLY) {
+            throw new IllegalArgumentException("depth out of range");
+        }
+        if (maxMillis < 0) {
+            throw new IllegalArgumentException("maxMillis needs to be >= 0");
+        }
+        final int movesSize = moves.size();
+        final Board[] boards = new Board[movesSize + 1];
+        final int[] colours = new int[movesSize + 1];
+        final Board board = new Board(start);
+        int turn = colour;
+        for (int ply = 0; ply <= movesSize; ply++) {
+            boards[ply] = new Board(board);
+            colours[ply] = turn;
+            if (ply < movesSize) {
+                final Move move = moves.get(ply);
+                if (!moveGenerator.findMoves(board, turn).contains(move)) {
+                    throw new IllegalArgumentException("illegal move at ply "
+                            + ply);
+                }
+                movePerformer.perform(move, board);
+                turn = Piece.getOpposingColourOf(turn);
+            }
+        }
+        final Collector collector = new Collector(moves, listener);
+        final TranspositionTable table = new TranspositionTable(tableEntries);
+        for (int ply = 0; ply <= movesSize; ply++) {
+            final int position = ply;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final AlphaBetaSearcher searcher =
+                                new AlphaBetaSearcher(moveGenerator,
+                                        movePerformer, evaluator, table);
+                        final int score = searcher.search(boards[position],
+                                colours[position], depth, maxMillis);
+                        collector.positionSearched(position, score,
+                                searcher.getBestMove());
+                    } catch (final RuntimeException | Error e) {
+                        collector.positionFailed(e);
+                    }
+                }
+            });
+        }
+        return collector.await();
+    }
+    /**
+     * The annotation of one move of a game.
+     *
+     * @author  Alex Mullen
+     */
+    public static final class Annotation {
+        /** The ply the move was played at. */
+        public final int ply;
+        /** The move played. */
+        public final Move move;
+        /** The best move found, which may be the move played. */
+        public final Move bestMove;
+        /** The score the mover could have had with the best move. */
+        public final int bestScore;
+        /** The score the mover had after the move played. */
+        public final int playedScore;
+        /** Whether the move lost enough score to be a blunder. */
+        public final boolean blunder;
+        /**
+         * Creates a new instance.
+         *
+         * @param movePly    the ply the move was played at
+         * @param played     the move played
+         * @param best       the best move found
+         * @param before     the score the mover could have had
+         * @param after      the score the mover had after the move
+         * @param isBlunder  whether the move was a blunder
+         */
+        public Annotation(final int movePly, final Move played,
+                final Move best, final int before, final int after,
+                final boolean isBlunder) {
+            ply = movePly;
+            move = played;
+            bestMove = best;
+            bestScore = before;
+            playedScore = after;
+            blunder = isBlunder;
+        }
+        /**
+         * Gets the score the move gained or, when negative, lost compared
+         * with the best move found.
+         *
+         * @return  the swing
+         */
+        public int getSwing() {
+            return playedScore - bestScore;
+        }
+        @Override
+        public String toString() {
+            return "Annotation [ply=" + ply + ", move=" + move + ", swing="
+                    + getSwing() + ", blunder=" + blunder + "]";
+        }
+    }
+    /**
+     * An interface that defines a class that receives the results of an
+     * annotation as they are known.
+     * <p>
+     * Calls come from the threads of the executor, but never more than one
+     * at a time for the same game.
+     *
+     * @author  Alex Mullen
+     */
+    public interface Listener {
+        /**
+         * Called when a position has been searched.
+         *
+         * @param ply       the ply of the position
+         * @param score     the score for the side to move
+         * @param bestMove  the best move found, or <code>null</code> if the
+         *                  side to move had no moves
+         */
+        void onPositionSearched(int ply, int score, Move bestMove);
+        /**
+         * Called when a move has been annotated.
+         *
+         * @param annotation  the annotation
+         */
+        void onMoveAnnotated(Annotation annotation);
+    }
+    /**
+     * Gathers the results of the searches of one game, annotating each move
+     * once both of its positions have been searched.
+     *
+     * @author  Alex Mullen
+     */
+    private final class Collector {
+        /** Holds the moves of the game. */
+        private final List<Move> moves;
+        /** Holds the listener, which may be <code>null</code>. */
+        private final Listener listener;
+        /** Holds the score of each position searched so far. */
+        private final int[] scores;
+        /** Holds the best move of each position searched so far. */
+        private final Move[] bestMoves;
+        /** Holds whether each position has been searched. */
+        private final boolean[] searched;
+        /** Holds the annotation of each move made so far. */
+        private final Annotation[] annotations;
+        /** Counts down as each position finishes. */
+        private final CountDownLatch remaining;
+        /** Holds the first failure of a search, if any. */
+        private Throwable failure;
+        /**
+         * Creates a new collector.
+         *
+         * @param gameMoves     the moves of the game
+         * @param gameListener  the listener, or <code>null</code> for none
+         */
+        Collector(final List<Move> gameMoves, final Listener gameListener) {
+            moves = gameMoves;
+            listener = gameListener;
+            final int positions = gameMoves.size() + 1;
+            scores = new int[positions];
+            bestMoves = new Move[positions];
+            searched = new boolean[positions];
+            annotations = new Annotation[gameMoves.size()];
+            remaining = new CountDownLatch(positions);
+        }
+        /**
+         * Records the search of a position and annotates the moves either
+         * side of it if their other position is done.
+         *
+         * @param ply       the ply of the position
+         * @param score     the score for the side to move
+         * @param bestMove  the best move found
+         */
+        void positionSearched(final int ply, final int score,
+                final Move bestMove) {
+            try {
+                synchronized (this) {
+                    scores[ply] = score;
+                    bestMoves[ply] = bestMove;
+                    searched[ply] = true;
+                    if (listener != null) {
+                        listener.onPositionSearched(ply, score, bestMove);
+                    }
+                    for (int movePly = ply - 1; movePly <= ply; movePly++) {
+                        if (movePly >= 0 && movePly < annotations.length
+                                && searched[movePly]
+                                && searched[movePly + 1]) {
+                            annotate(movePly);
+                        }
+                    }
+                }
+            } catch (final RuntimeException | Error e) {
+                // A failing listener fails the annotation.
+                recordFailure(e);
+            } finally {
+                remaining.countDown();
+            }
+        }
+        /**
+         * Records the failure of the search of a position.
+         *
+         * @param cause  the failure
+         */
+        void positionFailed(final Throwable cause) {
+            recordFailure(cause);
+            remaining.countDown();
+        }
+        /**
+         * Waits for every position to finish.
+         *
+         * @return  the annotations of the moves
+         *
+         * @throws InterruptedException  if interrupted while waiting
+         */
+        List<Annotation> await() throws InterruptedException {
+            remaining.await();
+            synchronized (this) {
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                return new ArrayList<>(Arrays.asList(annotations));
+            }
+        }
+        /**
+         * Annotates a move whose positions have both been searched.
+         *
+         * @param ply  the ply of the move
+         */
+        private void annotate(final int ply) {
+            final Move move = moves.get(ply);
+            final int before = scores[ply];
+            final int after = -scores[ply + 1];
+            final boolean blunder = after - before <= -blunderThreshold
+                    && !move.equals(bestMoves[ply]);
+            final Annotation annotation = new Annotation(ply, move,
+                    bestMoves[ply], before, after, blunder);
+            annotations[ply] = annotation;
+            if (listener != null) {
+                listener.onMoveAnnotated(annotation);
+            }
+        }
+        /**
+         * Keeps the first failure.
+         *
+         * @param cause  the failure
+         */
+        private synchronized void recordFailure(final Throwable cause) {
+            if (failure == null) {
+                failure = cause;
+            }
+        }
+    }
+}
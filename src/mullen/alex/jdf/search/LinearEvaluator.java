@@ -0,0 +1,180 @@
+package mullen.alex.jdf.search;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Piece;
+
+/**
+ * An {@link Evaluator} whose score is a weighted sum of simple features of a
+ * position.
+ * <p>
+ * Each feature is the difference between its count for the side to move and
+ * for the opponent, so the score is linear in the weights and they can be
+ * fitted to the results of played games. The weights are in hundredths of a
+ * man by default.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class LinearEvaluator implements Evaluator {
+    /** The feature counting men. */
+    public static final int MEN = 0;
+    /** The feature counting kings. */
+    public static final int KINGS = 1;
+    /** The feature counting the rows each man has advanced. */
+    public static final int ADVANCEMENT = 2;
+    /** The feature counting men still guarding their own back row. */
+    public static final int BACK_ROW = 3;
+    /** The feature counting pieces in the middle of the board. */
+    public static final int CENTRE = 4;
+    /** The number of features. */
+    public static final int FEATURE_COUNT = 5;
+    /** The weights used when none are given. */
+    private static final int[] DEFAULT_WEIGHTS = {100, 250, 2, 8, 4};
+    /** Holds the weight of each feature. */
+    private final int[] weights;
+    /**
+     * Creates a new evaluator with the default weights.
+     */
+    public LinearEvaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+    /**
+     * Creates a new evaluator with the specified weights.
+     *
+     * @param featureWeights  the weight of each feature, indexed by feature,
+     *                        which are copied
+     *
+     * @throws IllegalArgumentException  if there is not a weight for every
+     *                                   feature
+     */
+    public LinearEvaluator(final int[] featureWeights) {
+        if (featureWeights.length != FEATURE_COUNT) {
+            throw new IllegalArgumentException("need a weight per feature");
+        }
+        weights = featureWeights.clone();
+    }
+    /**
+     * Gets the default weights.
+     *
+     * @return  a copy of the weights, indexed by feature
+     */
+    public static int[] getDefaultWeights() {
+        return DEFAULT_WEIGHTS.clone();
+    }
+    /**
+     * Gets the weights.
+     *
+     * @return  a copy of the weights, indexed by feature
+     */
+    public final int[] getWeights() {
+        return weights.clone();
+    }
+    @Override
+    public final int evaluate(final Board board, final int colour) {
+        final Piece[] pieces = board.pieces;
+        final int height = board.height;
+        int score = 0;
+        for (int i = 0; i < pieces.length; i++) {
+            final Piece piece = pieces[i];
+            if (piece != null) {
+                final int value = getPieceValue(piece, i / height, i % height,
+                        board.width, height);
+                score += piece.colour == colour ? value : -value;
+            }
+        }
+        return score;
+    }
+    /**
+     * Puts the features of a position into an array.
+     *
+     * @param board     the board
+     * @param colour    the colour whose turn it is
+     * @param features  the array to put the features in, indexed by feature
+     */
+    public static void extractFeatures(final Board board, final int colour,
+            final int[] features) {
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            features[i] = 0;
+        }
+        final Piece[] pieces = board.pieces;
+        final int width = board.width;
+        final int height = board.height;
+        for (int i = 0; i < pieces.length; i++) {
+            final Piece piece = pieces[i];
+            if (piece == null) {
+                continue;
+            }
+            final int sign = piece.colour == colour ? 1 : -1;
+            final int x = i / height;
+            final int y = i % height;
+            if (piece.isCrowned()) {
+                features[KINGS] += sign;
+            } else {
+                features[MEN] += sign;
+                final int advanced = getRowsAdvanced(piece, y, height);
+                features[ADVANCEMENT] += sign * advanced;
+                if (advanced == 0) {
+                    features[BACK_ROW] += sign;
+                }
+            }
+            if (isCentre(x, y, width, height)) {
+                features[CENTRE] += sign;
+            }
+        }
+    }
+    /**
+     * Gets the value of a piece to its owner.
+     *
+     * @param piece   the piece
+     * @param x       the column the piece is on
+     * @param y       the row the piece is on
+     * @param width   the width of the board
+     * @param height  the height of the board
+     * @return        the value
+     */
+    private int getPieceValue(final Piece piece, final int x, final int y,
+            final int width, final int height) {
+        int value;
+        if (piece.isCrowned()) {
+            value = weights[KINGS];
+        } else {
+            final int advanced = getRowsAdvanced(piece, y, height);
+            value = weights[MEN] + (weights[ADVANCEMENT] * advanced);
+            if (advanced == 0) {
+                value += weights[BACK_ROW];
+            }
+        }
+        if (isCentre(x, y, width, height)) {
+            value += weights[CENTRE];
+        }
+        return value;
+    }
+    /**
+     * Gets the number of rows a man has advanced from its own back row.
+     *
+     * @param piece   the man
+     * @param y       the row the man is on
+     * @param height  the height of the board
+     * @return        the number of rows
+     */
+    private static int getRowsAdvanced(final Piece piece, final int y,
+            final int height) {
+        // Dark men start on the top rows and move down the board.
+        return piece.colour == Piece.DARK ? y : height - 1 - y;
+    }
+    /**
+     * Gets whether a square is in the middle half of the board both across
+     * and down.
+     *
+     * @param x       the column
+     * @param y       the row
+     * @param width   the width of the board
+     * @param height  the height of the board
+     * @return        <code>true</code> if it is; <code>false</code> if not
+     */
+    private static boolean isCentre(final int x, final int y, final int width,
+            final int height) {
+        return x >= width / 4 && x < width - (width / 4)
+                && y >= height / 4 && y < height - (height / 4);
+    }
+}
@@ -0,0 +1,315 @@
+package mullen.alex.jdf.search;
+
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.RepetitionTracker;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * A depth-first proof-number (df-pn) solver that tries to prove a position is
+ * a forced win or a forced loss for the side to move.
+ * <p>
+ * A side loses when it has no moves left. A position that repeats one
+ * earlier in the line being searched is never counted as a win for the side
+ * trying to prove one, so positions that can only be drawn are disproven
+ * rather than searched forever. Lines that reach the depth limit are
+ * disproven for the attacker in the same way, so the budget goes to other
+ * lines rather than back into them. The line is kept in a
+ * {@link RepetitionTracker} so only the positions since the last capture or
+ * man move are compared.
+ * <p>
+ * Proof and disproof numbers are kept in a {@link ProofNumberTable} so the
+ * memory used is fixed however many nodes are searched. Moves are applied
+ * to a single board and undone afterwards rather than copying boards.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class ProofNumberSolver {
+    /** Represents a position that could not be solved. */
+    public static final int UNKNOWN = 0;
+    /** Represents a forced win for the side to move. */
+    public static final int WIN = 1;
+    /** Represents a forced loss for the side to move. */
+    public static final int LOSS = 2;
+    /** The value used as an infinite proof or disproof number. */
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    /** The default deepest a line is searched before it is abandoned. */
+    public static final int DEFAULT_MAX_DEPTH = 1000;
+    /** The key mixed into the hashes when light is the attacker. */
+    private static final long LIGHT_ATTACKER_KEY = 0x5DEECE66DL;
+    /** The move generator for finding moves. */
+    private final MoveGenerator moveGenerator;
+    /** The move performer for applying and undoing moves. */
+    private final MovePerformer movePerformer;
+    /** The table of proof and disproof numbers. */
+    private final ProofNumberTable table;
+    /** Holds the positions in the current line. */
+    private final RepetitionTracker path;
+    /** Holds the deepest a line is searched before it is abandoned. */
+    private final int maxDepth;
+    /** Holds the colour trying to prove a win in the current search. */
+    private int attacker;
+    /** Holds the number of nodes searched so far. */
+    private long nodes;
+    /** Holds the node count the current search stops at. */
+    private long nodeLimit;
+    /** Holds the winning move found by the last solve, if any. */
+    private Move winningMove;
+    /**
+     * Creates a new solver that uses a table of at least the specified
+     * number of entries.
+     *
+     * @param generator    the move generator for the variant
+     * @param performer    the move performer for the variant
+     * @param tableEntries the minimum number of table entries
+     *
+     * @throws IllegalArgumentException  if <code>tableEntries</code> is out
+     *                                   of range for a
+     *                                   {@link ProofNumberTable}
+     */
+    public ProofNumberSolver(final MoveGenerator generator,
+            final MovePerformer performer, final int tableEntries) {
+        this(generator, performer, tableEntries, DEFAULT_MAX_DEPTH);
+    }
+    /**
+     * Creates a new solver that uses a table of at least the specified
+     * number of entries and abandons lines at the specified depth.
+     *
+     * @param generator    the move generator for the variant
+     * @param performer    the move performer for the variant
+     * @param tableEntries the minimum number of table entries
+     * @param depth        the deepest a line is searched, in plies
+     *
+     * @throws IllegalArgumentException  if <code>tableEntries</code> is out
+     *                                   of range for a
+     *                                   {@link ProofNumberTable} or
+     *                                   <code>depth</code> is less than
+     *                                   <code>1</code>
+     */
+    public ProofNumberSolver(final MoveGenerator generator,
+            final MovePerformer performer, final int tableEntries,
+            final int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth needs to be > 0");
+        }
+        moveGenerator = generator;
+        movePerformer = performer;
+        table = new ProofNumberTable(tableEntries);
+        maxDepth = depth;
+        path = new RepetitionTracker(depth);
+    }
+    /**
+     * Tries to solve the current position of the specified game for whoever's
+     * turn it is.
+     *
+     * @param game      the game
+     * @param maxNodes  the most nodes to search
+     * @return          either {@link #WIN}, {@link #LOSS} or
+     *                  {@link #UNKNOWN}
+     */
+    public final int solve(final Game game, final long maxNodes) {
+        return solve(game.getBoard(), game.getTurn().getColour(), maxNodes);
+    }
+    /**
+     * Tries to solve the specified position for the specified colour.
+     * <p>
+     * A win is tried for first and then a loss, both sharing the node
+     * budget. The board is not modified.
+     *
+     * @param board     the board
+     * @param colour    the colour whose turn it is
+     * @param maxNodes  the most nodes to search
+     * @return          either {@link #WIN}, {@link #LOSS} or
+     *                  {@link #UNKNOWN}
+     */
+    public final int solve(final Board board, final int colour,
+            final long maxNodes) {
+        final Board workBoard = new Board(board);
+        nodes = 0;
+        nodeLimit = maxNodes;
+        winningMove = null;
+        if (search(workBoard, colour, colour) == WIN) {
+            return WIN;
+        }
+        final int opponent = Piece.getOpposingColourOf(colour);
+        if (search(workBoard, colour, opponent) == LOSS) {
+            return LOSS;
+        }
+        return UNKNOWN;
+    }
+    /**
+     * Gets the move that wins from the position last solved as a
+     * {@link #WIN}.
+     *
+     * @return  the move, or <code>null</code> if the last position was not
+     *          solved as a win
+     */
+    public final Move getWinningMove() {
+        return winningMove;
+    }
+    /**
+     * Gets the number of nodes searched by the last solve.
+     *
+     * @return  the number of nodes
+     */
+    public final long getNodesSearched() {
+        return nodes;
+    }
+    /**
+     * Runs a single proof search with the specified attacker.
+     *
+     * @param board         the board
+     * @param colour        the colour whose turn it is
+     * @param attackingSide the colour trying to prove a win
+     * @return              {@link #WIN} or {@link #LOSS} for the side to
+     *                      move if proven, otherwise {@link #UNKNOWN}
+     */
+    private int search(final Board board, final int colour,
+            final int attackingSide) {
+        attacker = attackingSide;
+        path.clear();
+        final long hash = key(board, colour);
+        searchNode(board, colour, hash, true, INFINITY, INFINITY);
+        final int entry = table.find(hash);
+        if (entry >= 0) {
+            if (table.getPhi(entry) == 0) {
+                return WIN;
+            } else if (table.getDelta(entry) == 0) {
+                return LOSS;
+            }
+        }
+        return UNKNOWN;
+    }
+    /**
+     * Expands a node until its proof or disproof number reaches its
+     * threshold, storing the result in the table.
+     * <p>
+     * The numbers are from the point of view of the side to move; the proof
+     * number of a node is the smallest disproof number of its children. The
+     * disproof number is the largest proof number of the unsolved children
+     * plus one for each other unsolved child, rather than their sum, as
+     * transpositions are so common in draughts that sums overestimate badly.
+     *
+     * @param board          the board
+     * @param colour         the colour whose turn it is
+     * @param hash           the key of the position
+     * @param irreversible   whether the move that reached the position was
+     *                       irreversible
+     * @param phiThreshold   the proof number threshold
+     * @param deltaThreshold the disproof number threshold
+     */
+    private void searchNode(final Board board, final int colour,
+            final long hash, final boolean irreversible,
+            final int phiThreshold, final int deltaThreshold) {
+        final long startNodes = nodes++;
+        if (path.size() >= maxDepth) {
+            // Leaving nothing in the table would make the node look
+            // unexpanded to its parent, which would pick it again with the
+            // same thresholds until the budget ran out.
+            if (colour == attacker) {
+                table.store(hash, INFINITY, 0, 1);
+            } else {
+                table.store(hash, 0, INFINITY, 1);
+            }
+            return;
+        }
+        final List<Move> moves = moveGenerator.findMoves(board, colour);
+        final int movesSize = moves.size();
+        if (movesSize == 0) {
+            // No moves left so the side to move has lost.
+            table.store(hash, INFINITY, 0, 1);
+            return;
+        }
+        final int opponent = Piece.getOpposingColourOf(colour);
+        final long[] childHashes = new long[movesSize];
+        final boolean[] childIrreversible = new boolean[movesSize];
+        for (int i = 0; i < movesSize; i++) {
+            final Move move = moves.get(i);
+            childIrreversible[i] = RepetitionTracker.isIrreversible(board,
+                    move);
+            final PerformedMove performed = movePerformer.perform(move, board);
+            childHashes[i] = key(board, opponent);
+            performed.undo();
+        }
+        path.push(hash, irreversible);
+        int phi;
+        int delta;
+        while (true) {
+            phi = INFINITY;
+            delta = 0;
+            int best = 0;
+            int bestChildPhi = 0;
+            int secondDelta = INFINITY;
+            int maxChildPhi = 0;
+            int unsolved = 0;
+            for (int i = 0; i < movesSize; i++) {
+                final long childHash = childHashes[i];
+                final int childPhi;
+                final int childDelta;
+                if (!childIrreversible[i] && path.wouldRepeat(childHash)) {
+                    // A repetition is never a win for the attacker.
+                    childPhi = opponent == attacker ? INFINITY : 0;
+                    childDelta = opponent == attacker ? 0 : INFINITY;
+                } else {
+                    final int entry = table.find(childHash);
+                    childPhi = entry < 0 ? 1 : table.getPhi(entry);
+                    childDelta = entry < 0 ? 1 : table.getDelta(entry);
+                }
+                if (childPhi >= INFINITY) {
+                    maxChildPhi = INFINITY;
+                } else if (childPhi > 0) {
+                    maxChildPhi = Math.max(maxChildPhi, childPhi);
+                    unsolved++;
+                }
+                if (childDelta < phi) {
+                    secondDelta = phi;
+                    phi = childDelta;
+                    best = i;
+                    bestChildPhi = childPhi;
+                } else if (childDelta < secondDelta) {
+                    secondDelta = childDelta;
+                }
+            }
+            delta = maxChildPhi >= INFINITY ? INFINITY
+                    : maxChildPhi + Math.max(0, unsolved - 1);
+            if (phi >= phiThreshold || delta >= deltaThreshold
+                    || nodes >= nodeLimit) {
+                if (path.size() == 1 && phi == 0 && attacker == colour) {
+                    winningMove = moves.get(best);
+                }
+                break;
+            }
+            final int childPhiThreshold = (int) Math.max(0, Math.min(INFINITY,
+                    (long) deltaThreshold + bestChildPhi - delta));
+            final int childDeltaThreshold = (int) Math.min(phiThreshold,
+                    (long) secondDelta + 1);
+            final PerformedMove performed =
+                    movePerformer.perform(moves.get(best), board);
+            searchNode(board, opponent, childHashes[best],
+                    childIrreversible[best], childPhiThreshold,
+                    childDeltaThreshold);
+            performed.undo();
+        }
+        path.pop();
+        table.store(hash, phi, delta, nodes - startNodes);
+    }
+    /**
+     * Gets the table key for a position in the current search.
+     *
+     * @param board   the board
+     * @param colour  the colour whose turn it is
+     * @return        the key
+     */
+    private long key(final Board board, final int colour) {
+        final long hash = ZobristHasher.hash(board, colour);
+        return attacker == Piece.LIGHT ? hash ^ LIGHT_ATTACKER_KEY : hash;
+    }
+}
@@ -0,0 +1,136 @@
+package mullen.alex.jdf.search;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size transposition table of proof and disproof numbers.
+ * <p>
+ * Entries are kept in buckets of two. When a bucket is full the entry that
+ * took the least work to produce is replaced, so the memory used never grows
+ * however long a search runs.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class ProofNumberTable {
+    /** The number of entries in each bucket. */
+    private static final int BUCKET_SIZE = 2;
+    /** Holds the position hash of each entry. */
+    private final long[] keys;
+    /** Holds the proof number of each entry for the side to move. */
+    private final int[] phis;
+    /** Holds the disproof number of each entry for the side to move. */
+    private final int[] deltas;
+    /** Holds the amount of work spent producing each entry. */
+    private final long[] works;
+    /** Holds whether each entry is in use. */
+    private final boolean[] used;
+    /** Holds the mask for turning a hash into a bucket index. */
+    private final int bucketMask;
+    /**
+     * Creates a new table that holds at least the specified number of
+     * entries.
+     *
+     * @param minEntries  the minimum number of entries, which is rounded up
+     *                    to a power of two
+     *
+     * @throws IllegalArgumentException  if <code>minEntries</code> is less
+     *                                   than <code>2</code> or more than
+     *                                   <code>2^30</code>
+     */
+    public ProofNumberTable(final int minEntries) {
+        if (minEntries < BUCKET_SIZE || minEntries > (1 << 30)) {
+            throw new IllegalArgumentException("minEntries out of range");
+        }
+        final int entries = Integer.highestOneBit(minEntries - 1) << 1;
+        keys = new long[entries];
+        phis = new int[entries];
+        deltas = new int[entries];
+        works = new long[entries];
+        used = new boolean[entries];
+        bucketMask = (entries / BUCKET_SIZE) - 1;
+    }
+    /**
+     * Gets the number of entries this table can hold.
+     *
+     * @return  the capacity
+     */
+    public final int capacity() {
+        return keys.length;
+    }
+    /**
+     * Removes every entry.
+     */
+    public final void clear() {
+        Arrays.fill(used, false);
+    }
+    /**
+     * Finds the entry for the specified hash.
+     *
+     * @param hash  the position hash
+     * @return      the entry index, or <code>-1</code> if there is none
+     */
+    public final int find(final long hash) {
+        final int first = bucketOf(hash);
+        for (int i = first; i < first + BUCKET_SIZE; i++) {
+            if (used[i] && keys[i] == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    /**
+     * Gets the proof number of an entry.
+     *
+     * @param entry  the entry index returned by {@link #find(long)}
+     * @return       the proof number
+     */
+    public final int getPhi(final int entry) {
+        return phis[entry];
+    }
+    /**
+     * Gets the disproof number of an entry.
+     *
+     * @param entry  the entry index returned by {@link #find(long)}
+     * @return       the disproof number
+     */
+    public final int getDelta(final int entry) {
+        return deltas[entry];
+    }
+    /**
+     * Stores the proof and disproof numbers for the specified hash.
+     *
+     * @param hash   the position hash
+     * @param phi    the proof number for the side to move
+     * @param delta  the disproof number for the side to move
+     * @param work   the amount of work spent producing the numbers
+     */
+    public final void store(final long hash, final int phi, final int delta,
+            final long work) {
+        final int first = bucketOf(hash);
+        int target = first;
+        for (int i = first; i < first + BUCKET_SIZE; i++) {
+            if (!used[i] || keys[i] == hash) {
+                target = i;
+                break;
+            }
+            if (works[i] < works[target]) {
+                target = i;
+            }
+        }
+        used[target] = true;
+        keys[target] = hash;
+        phis[target] = phi;
+        deltas[target] = delta;
+        works[target] = work;
+    }
+    /**
+     * Gets the index of the first entry of the bucket for a hash.
+     *
+     * @param hash  the position hash
+     * @return      the entry index
+     */
+    private int bucketOf(final long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+}
@@ -0,0 +1,351 @@
+package mullen.alex.jdf.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import mullen.alex.jdf.common.ChannelUtil;
+import mullen.alex.jdf.common.ZobristHasher;
+
+/**
+ * A fixed size transposition table of search results that can be shared by
+ * many threads searching at once.
+ * <p>
+ * Each entry is packed into a single <code>long</code> and stored beside its
+ * position hash exclusive-ored with the entry, so no locking is needed: an
+ * entry torn by two threads storing at once no longer matches its hash and
+ * is simply treated as missing.
+ * <p>
+ * Entries are kept in buckets of two. The first entry of a bucket is only
+ * replaced by a result searched at least as deep, while the second is
+ * always replaced, so deep results survive without the table filling with
+ * stale ones.
+ * <p>
+ * A table can be saved to a file with {@link #save(File)} and loaded again
+ * with {@link #load(File)}, so a restarted engine keeps what it has already
+ * searched. Snapshot layout, big-endian:
+ * <pre>
+ * int  magic number ({@link #MAGIC})
+ * int  file format version ({@link #FORMAT_VERSION})
+ * int  hashing scheme version ({@link ZobristHasher#SCHEME_VERSION})
+ * int  bytes per entry, which is <code>16</code>
+ * long capacity
+ * long key of each entry, for the whole capacity
+ * long packed entry, for the whole capacity
+ * </pre>
+ * The keys and entries are each one block so they are read and written in
+ * bulk rather than an entry at a time. Move indexes in the entries depend
+ * on the order moves are generated in, so a snapshot should only be loaded
+ * by the same version of the move generators that saved it.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class TranspositionTable {
+    /** Returned by {@link #probe(long)} when there is no entry. */
+    public static final long MISS = 0L;
+    /** The bound of an exact score. */
+    public static final int EXACT = 1;
+    /** The bound of a score that is at least the real score. */
+    public static final int LOWER_BOUND = 2;
+    /** The bound of a score that is at most the real score. */
+    public static final int UPPER_BOUND = 3;
+    /** The move stored when there is no best move. */
+    public static final int NO_MOVE = 0xFFFF;
+    /** The deepest depth an entry can record. */
+    public static final int MAX_DEPTH = 0xFF;
+    /** The magic number at the start of every snapshot file ("JDTT"). */
+    public static final int MAGIC = 0x4A445454;
+    /** The version of the snapshot file layout. */
+    public static final int FORMAT_VERSION = 1;
+    /** The number of bytes in the snapshot header. */
+    public static final int HEADER_SIZE = 24;
+    /** The number of bytes each entry takes in a snapshot. */
+    private static final int ENTRY_BYTES = 16;
+    /** The number of bytes in a <code>long</code>. */
+    private static final int LONG_BYTES = 8;
+    /** The number of longs written to a snapshot at a time. */
+    private static final int WRITE_BATCH_LONGS = 1 << 16;
+    /** The most longs mapped from a snapshot at a time. */
+    private static final int MAP_LONGS = 1 << 26;
+    /** The number of entries in each bucket. */
+    private static final int BUCKET_SIZE = 2;
+    /** The number of bits holding the bound of an entry. */
+    private static final int BOUND_BITS = 8;
+    /** The shift of the depth within an entry. */
+    private static final int DEPTH_SHIFT = 8;
+    /** The shift of the move within an entry. */
+    private static final int MOVE_SHIFT = 16;
+    /** The shift of the score within an entry. */
+    private static final int SCORE_SHIFT = 32;
+    /** Holds the position hash of each entry exclusive-ored with it. */
+    private final long[] keys;
+    /** Holds each packed entry. */
+    private final long[] entries;
+    /** Holds the mask for turning a hash into a bucket index. */
+    private final int bucketMask;
+    /**
+     * Creates a new table that holds at least the specified number of
+     * entries.
+     *
+     * @param minEntries  the minimum number of entries, which is rounded up
+     *                    to a power of two
+     *
+     * @throws IllegalArgumentException  if <code>minEntries</code> is less
+     *                                   than <code>2</code> or more than
+     *                                   <code>2^30</code>
+     */
+    public TranspositionTable(final int minEntries) {
+        if (minEntries < BUCKET_SIZE || minEntries > (1 << 30)) {
+            throw new IllegalArgumentException("minEntries out of range");
+        }
+        final int size = Integer.highestOneBit(minEntries - 1) << 1;
+        keys = new long[size];
+        entries = new long[size];
+        bucketMask = (size / BUCKET_SIZE) - 1;
+    }
+    /**
+     * Loads a table saved with {@link #save(File)}.
+     * <p>
+     * The file is memory-mapped and its keys and entries copied into the
+     * table in bulk, so loading runs at the speed of the disk.
+     *
+     * @param file  the snapshot file
+     * @return      the table, with the capacity it was saved with
+     *
+     * @throws IOException  if the file could not be read or is not a
+     *                      snapshot written with the current format and
+     *                      hashing scheme
+     */
+    public static TranspositionTable load(final File file)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("snapshot header is truncated");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a transposition table snapshot");
+            }
+            if (header.getInt() != FORMAT_VERSION) {
+                throw new IOException("unsupported snapshot format version");
+            }
+            if (header.getInt() != ZobristHasher.SCHEME_VERSION) {
+                throw new IOException("snapshot uses a different hash "
+                        + "scheme");
+            }
+            if (header.getInt() != ENTRY_BYTES) {
+                throw new IOException("unexpected snapshot entry size");
+            }
+            final long capacity = header.getLong();
+            if (capacity < BUCKET_SIZE || capacity > (1 << 30)
+                    || Long.bitCount(capacity) != 1) {
+                throw new IOException("snapshot capacity is invalid");
+            }
+            if (channel.size() != HEADER_SIZE + (capacity * ENTRY_BYTES)) {
+                throw new IOException("snapshot length does not match "
+                        + "header");
+            }
+            final TranspositionTable table =
+                    new TranspositionTable((int) capacity);
+            readLongs(channel, HEADER_SIZE, table.keys);
+            readLongs(channel, HEADER_SIZE + (capacity * LONG_BYTES),
+                    table.entries);
+            return table;
+        }
+    }
+    /**
+     * Saves the table to a file, replacing anything already in it.
+     * <p>
+     * The table may be used by other threads while it is saved. Entries
+     * they change part way through are saved torn and so are treated as
+     * missing once loaded.
+     *
+     * @param file  the file to save to
+     *
+     * @throws IOException  if the file could not be written
+     */
+    public final void save(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            final ByteBuffer batch = ByteBuffer.allocate(
+                    WRITE_BATCH_LONGS * LONG_BYTES);
+            batch.putInt(MAGIC);
+            batch.putInt(FORMAT_VERSION);
+            batch.putInt(ZobristHasher.SCHEME_VERSION);
+            batch.putInt(ENTRY_BYTES);
+            batch.putLong(keys.length);
+            writeLongs(channel, batch, keys);
+            writeLongs(channel, batch, entries);
+            batch.flip();
+            ChannelUtil.writeFully(channel, batch);
+        }
+    }
+    /**
+     * Gets the number of entries this table can hold.
+     *
+     * @return  the capacity
+     */
+    public final int capacity() {
+        return keys.length;
+    }
+    /**
+     * Removes every entry.
+     * <p>
+     * This should not be called while other threads are using the table.
+     */
+    public final void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(entries, MISS);
+    }
+    /**
+     * Finds the entry for the specified hash.
+     *
+     * @param hash  the position hash
+     * @return      the packed entry, or {@link #MISS} if there is none
+     */
+    public final long probe(final long hash) {
+        final int first = bucketOf(hash);
+        for (int i = first; i < first + BUCKET_SIZE; i++) {
+            final long entry = entries[i];
+            if (entry != MISS && (keys[i] ^ entry) == hash) {
+                return entry;
+            }
+        }
+        return MISS;
+    }
+    /**
+     * Stores a search result for the specified hash.
+     *
+     * @param hash   the position hash
+     * @param score  the score for the side to move
+     * @param depth  the depth searched, which is clamped to
+     *               {@link #MAX_DEPTH}
+     * @param bound  either {@link #EXACT}, {@link #LOWER_BOUND} or
+     *               {@link #UPPER_BOUND}
+     * @param move   the index of the best move in the generated moves, or
+     *               {@link #NO_MOVE}
+     */
+    public final void store(final long hash, final int score, final int depth,
+            final int bound, final int move) {
+        final int clampedDepth = Math.max(0, Math.min(MAX_DEPTH, depth));
+        final long entry = ((long) score << SCORE_SHIFT)
+                | ((long) (move & NO_MOVE) << MOVE_SHIFT)
+                | ((long) clampedDepth << DEPTH_SHIFT) | bound;
+        final int first = bucketOf(hash);
+        final long existing = entries[first];
+        final int target;
+        if (existing == MISS || (keys[first] ^ existing) == hash
+                || getDepth(existing) <= clampedDepth) {
+            target = first;
+        } else {
+            target = first + 1;
+        }
+        entries[target] = entry;
+        keys[target] = hash ^ entry;
+    }
+    /**
+     * Gets the score of an entry.
+     *
+     * @param entry  the packed entry
+     * @return       the score for the side to move
+     */
+    public static int getScore(final long entry) {
+        return (int) (entry >> SCORE_SHIFT);
+    }
+    /**
+     * Gets the depth of an entry.
+     *
+     * @param entry  the packed entry
+     * @return       the depth searched
+     */
+    public static int getDepth(final long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+    /**
+     * Gets the bound of an entry.
+     *
+     * @param entry  the packed entry
+     * @return       either {@link #EXACT}, {@link #LOWER_BOUND} or
+     *               {@link #UPPER_BOUND}
+     */
+    public static int getBound(final long entry) {
+        return (int) entry & ((1 << BOUND_BITS) - 1);
+    }
+    /**
+     * Gets the best move of an entry.
+     *
+     * @param entry  the packed entry
+     * @return       the index of the move in the generated moves, or
+     *               {@link #NO_MOVE}
+     */
+    public static int getMove(final long entry) {
+        return (int) (entry >>> MOVE_SHIFT) & NO_MOVE;
+    }
+    /**
+     * Copies longs from a file into an array, mapping the file a part at a
+     * time.
+     *
+     * @param channel   the file
+     * @param position  the position of the first long in the file
+     * @param values    the array to fill
+     *
+     * @throws IOException  if the file could not be mapped
+     */
+    private static void readLongs(final FileChannel channel,
+            final long position, final long[] values) throws IOException {
+        for (int done = 0; done < values.length; done += MAP_LONGS) {
+            final int count = Math.min(MAP_LONGS, values.length - done);
+            final LongBuffer mapped = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    position + ((long) done * LONG_BYTES),
+                    (long) count * LONG_BYTES).asLongBuffer();
+            mapped.get(values, done, count);
+        }
+    }
+    /**
+     * Writes longs to a file through a batch buffer, leaving whatever does
+     * not fill the last batch in the buffer.
+     *
+     * @param channel  the file
+     * @param batch    the batch buffer, which may already hold bytes
+     * @param values   the longs to write
+     *
+     * @throws IOException  if the file could not be written
+     */
+    private static void writeLongs(final FileChannel channel,
+            final ByteBuffer batch, final long[] values) throws IOException {
+        int done = 0;
+        while (done < values.length) {
+            if (!batch.hasRemaining()) {
+                batch.flip();
+                ChannelUtil.writeFully(channel, batch);
+                batch.clear();
+            }
+            final int count = Math.min(batch.remaining() / LONG_BYTES,
+                    values.length - done);
+            final LongBuffer longs = batch.asLongBuffer();
+            longs.put(values, done, count);
+            batch.position(batch.position() + (count * LONG_BYTES));
+            done += count;
+        }
+    }
+    /**
+     * Gets the index of the first entry of the bucket for a hash.
+     *
+     * @param hash  the position hash
+     * @return      the entry index
+     */
+    private int bucketOf(final long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+}
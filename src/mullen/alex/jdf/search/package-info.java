@@ -0,0 +1,7 @@
+/**
+ * @author  Alex Mullen
+ *
+ * A package for containing algorithms that search and solve draughts
+ * positions.
+ */
+package mullen.alex.jdf.search;
@@ -0,0 +1,748 @@
+package mullen.alex.jdf.training;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.ChannelUtil;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameBuilder;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.PlaceholderPlayer;
+import mullen.alex.jdf.notation.PackedPosition;
+import mullen.alex.jdf.variant.english.EnglishDraughtsGameBuilder;
+import mullen.alex.jdf.variant.international.InternationalDraughtsGameBuilder;
+
+/**
+ * Removes duplicates from files of fixed size records, such as packed
+ * positions or training samples, that are far too large to hold in memory.
+ * <p>
+ * Two records are duplicates when their first <code>keySize</code> bytes are
+ * the same, and only the first of them in the file is kept. The file is read
+ * twice. The first pass adds every key to a Bloom filter and adds keys the
+ * filter may already have seen to a second filter, so afterwards any key
+ * that is not in the second filter is certain to appear only once. On the
+ * second pass those records are written straight out, and only the rest are
+ * sorted on disk: they are gathered into runs that are sorted and spilled
+ * to temporary files, which are then combined with a k-way merge that drops
+ * the duplicates. As most records in real data sets are unique, only a
+ * small part of the data is usually sorted.
+ * <p>
+ * The records known to be unique are written first in the order they were
+ * read, followed by the rest in order of their keys.
+ * <p>
+ * The {@link #main(String[])} method runs it as a command line tool.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class PositionDeduplicator {
+    /** The number of records in each sorted run by default. */
+    public static final int DEFAULT_RUN_RECORDS = 1 << 22;
+    /** The number of bits in each Bloom filter by default. */
+    public static final long DEFAULT_FILTER_BITS = 1L << 28;
+    /** The number of bits set in a Bloom filter for each key. */
+    private static final int FILTER_HASHES = 3;
+    /** The number of records read or written at a time. */
+    private static final int BATCH_RECORDS = 1 << 13;
+    /** The number of bits in each word of a Bloom filter. */
+    private static final int WORD_BITS = Long.SIZE;
+    /** The FNV-1a offset basis used to hash keys. */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    /** The FNV-1a prime used to hash keys. */
+    private static final long FNV_PRIME = 0x100000001B3L;
+    /** Holds the number of bytes in each record. */
+    private final int recordSize;
+    /** Holds the number of leading bytes of a record compared. */
+    private final int keySize;
+    /** Holds the number of records in each sorted run. */
+    private final int runRecords;
+    /** Holds the number of words in each Bloom filter. */
+    private final int filterWords;
+    /** Holds the number of records sorted on disk by the last run. */
+    private long sortedRecords;
+    /**
+     * Creates a new deduplicator with the default run and filter sizes.
+     *
+     * @param size  the number of bytes in each record
+     * @param key   the number of leading bytes of a record that are
+     *              compared
+     *
+     * @throws IllegalArgumentException  if <code>key</code> is less than
+     *                                   <code>1</code> or more than
+     *                                   <code>size</code>
+     */
+    public PositionDeduplicator(final int size, final int key) {
+        this(size, key, DEFAULT_RUN_RECORDS, DEFAULT_FILTER_BITS);
+    }
+    /**
+     * Creates a new deduplicator.
+     *
+     * @param size        the number of bytes in each record
+     * @param key         the number of leading bytes of a record that are
+     *                    compared
+     * @param run         the number of records in each sorted run, which
+     *                    sets the memory used for sorting
+     * @param filterBits  the number of bits in each of the two Bloom
+     *                    filters, which is rounded up to a multiple of 64
+     *
+     * @throws IllegalArgumentException  if any argument is out of range
+     */
+    public PositionDeduplicator(final int size, final int key, final int run,
+            final long filterBits) {
+        if (key < 1 || key > size) {
+            throw new IllegalArgumentException("key needs to be 1 to size");
+        }
+        if (run < 1 || (long) run * size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("run out of range");
+        }
+        if (filterBits < 1
+                || filterBits > (long) Integer.MAX_VALUE * WORD_BITS) {
+            throw new IllegalArgumentException("filterBits out of range");
+        }
+        recordSize = size;
+        keySize = key;
+        runRecords = run;
+        filterWords = (int) ((filterBits + WORD_BITS - 1) / WORD_BITS);
+    }
+    /**
+     * Gets the number of records the last deduplication had to sort on disk
+     * because the filters could not rule out them being duplicates.
+     *
+     * @return  the number of records
+     */
+    public final long getSortedRecords() {
+        return sortedRecords;
+    }
+    /**
+     * Removes the duplicate records from a file, writing the rest to
+     * another file.
+     * <p>
+     * The first <code>headerSize</code> bytes of the input are copied to the
+     * output unchanged, so a header can be kept, and then the unique records
+     * follow. Temporary run files are made in the directory of the output
+     * and deleted afterwards.
+     *
+     * @param input       the file to read
+     * @param headerSize  the number of bytes before the first record
+     * @param output      the file to write, replacing anything in it
+     * @return            the number of unique records written
+     *
+     * @throws IOException  if a file could not be read or written, or the
+     *                      input does not hold a whole number of records
+     */
+    public final long deduplicate(final File input, final int headerSize,
+            final File output) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(output, "rw");
+                FileChannel out = raf.getChannel()) {
+            out.truncate(0);
+            final ByteBuffer header = ByteBuffer.allocate(headerSize);
+            try (RandomAccessFile in = new RandomAccessFile(input, "r")) {
+                in.readFully(header.array());
+            }
+            ChannelUtil.writeFully(out, header);
+            return deduplicate(input, headerSize, new RecordSink() {
+                @Override
+                public void write(final ByteBuffer records)
+                        throws IOException {
+                    ChannelUtil.writeFully(out, records);
+                }
+            }, output.getAbsoluteFile().getParentFile());
+        }
+    }
+    /**
+     * Removes the duplicate records from a file, handing the rest to a
+     * sink.
+     *
+     * @param input       the file to read
+     * @param headerSize  the number of bytes before the first record
+     * @param sink        the sink for the unique records
+     * @param tempDir     the directory to make temporary run files in
+     * @return            the number of unique records
+     *
+     * @throws IOException  if a file could not be read or written, or the
+     *                      input does not hold a whole number of records
+     */
+    public final long deduplicate(final File input, final int headerSize,
+            final RecordSink sink, final File tempDir) throws IOException {
+        final long inputRecords;
+        try (RandomAccessFile raf = new RandomAccessFile(input, "r")) {
+            final long length = raf.length() - headerSize;
+            if (length < 0 || length % recordSize != 0) {
+                throw new IOException("input is not a whole number of "
+                        + "records");
+            }
+            inputRecords = length / recordSize;
+        }
+        sortedRecords = 0;
+        final long[] seen = new long[filterWords];
+        final long[] repeated = new long[filterWords];
+        final byte[] record = new byte[recordSize];
+        try (DataInputStream in = openRecords(input, headerSize)) {
+            for (long i = 0; i < inputRecords; i++) {
+                in.readFully(record);
+                final long hash = hashKey(record, 0);
+                if (addToFilter(seen, hash)) {
+                    addToFilter(repeated, hash);
+                }
+            }
+        }
+        final List<File> runs = new ArrayList<>();
+        try {
+            final byte[] run = new byte[(int) Math.min(runRecords,
+                    Math.max(1, inputRecords)) * recordSize];
+            final ByteBuffer batch =
+                    ByteBuffer.allocate(BATCH_RECORDS * recordSize);
+            long unique = 0;
+            int runSize = 0;
+            try (DataInputStream in = openRecords(input, headerSize)) {
+                for (long i = 0; i < inputRecords; i++) {
+                    in.readFully(record);
+                    if (!isInFilter(repeated, hashKey(record, 0))) {
+                        if (!batch.hasRemaining()) {
+                            flush(batch, sink);
+                        }
+                        batch.put(record);
+                        unique++;
+                        continue;
+                    }
+                    if (runSize == runRecords) {
+                        runs.add(spillRun(run, runSize, tempDir));
+                        runSize = 0;
+                    }
+                    System.arraycopy(record, 0, run, runSize * recordSize,
+                            recordSize);
+                    runSize++;
+                    sortedRecords++;
+                }
+            }
+            if (runs.isEmpty()) {
+                // Everything to sort fitted in one run, so skip the disk.
+                final int[] order = sortRun(run, runSize);
+                for (int i = 0; i < runSize; i++) {
+                    final int offset = order[i] * recordSize;
+                    if (i == 0 || compareKeys(run, offset, run,
+                            order[i - 1] * recordSize) != 0) {
+                        if (!batch.hasRemaining()) {
+                            flush(batch, sink);
+                        }
+                        batch.put(run, offset, recordSize);
+                        unique++;
+                    }
+                }
+            } else {
+                if (runSize > 0) {
+                    runs.add(spillRun(run, runSize, tempDir));
+                }
+                unique += merge(runs, batch, sink);
+            }
+            flush(batch, sink);
+            return unique;
+        } finally {
+            for (final File run : runs) {
+                run.delete();
+            }
+        }
+    }
+    /**
+     * Sorts a run and writes it to a temporary file, leaving out duplicates
+     * within the run.
+     *
+     * @param run      the records of the run
+     * @param size     the number of records in the run
+     * @param tempDir  the directory to make the file in
+     * @return         the file
+     *
+     * @throws IOException  if the file could not be written
+     */
+    private File spillRun(final byte[] run, final int size,
+            final File tempDir) throws IOException {
+        final int[] order = sortRun(run, size);
+        final File file = File.createTempFile("dedup", ".run", tempDir);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            final ByteBuffer batch =
+                    ByteBuffer.allocate(BATCH_RECORDS * recordSize);
+            for (int i = 0; i < size; i++) {
+                final int offset = order[i] * recordSize;
+                if (i > 0 && compareKeys(run, offset, run,
+                        order[i - 1] * recordSize) == 0) {
+                    continue;
+                }
+                if (!batch.hasRemaining()) {
+                    batch.flip();
+                    ChannelUtil.writeFully(channel, batch);
+                    batch.clear();
+                }
+                batch.put(run, offset, recordSize);
+            }
+            batch.flip();
+            ChannelUtil.writeFully(channel, batch);
+        } catch (final IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+    /**
+     * Merges sorted runs, writing the first record of each key.
+     *
+     * @param runs   the run files, in the order their records were read
+     * @param batch  the batch buffer for the sink
+     * @param sink   the sink for the records
+     * @return       the number of records written
+     *
+     * @throws IOException  if a run could not be read or the sink written
+     */
+    private long merge(final List<File> runs, final ByteBuffer batch,
+            final RecordSink sink) throws IOException {
+        final PriorityQueue<RunCursor> queue =
+                new PriorityQueue<>(runs.size());
+        final List<RunCursor> cursors = new ArrayList<>(runs.size());
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                final RunCursor cursor = new RunCursor(runs.get(i), i);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            final byte[] last = new byte[recordSize];
+            boolean first = true;
+            long written = 0;
+            while (!queue.isEmpty()) {
+                final RunCursor cursor = queue.poll();
+                if (first || compareKeys(cursor.record, 0, last, 0) != 0) {
+                    if (!batch.hasRemaining()) {
+                        flush(batch, sink);
+                    }
+                    batch.put(cursor.record);
+                    System.arraycopy(cursor.record, 0, last, 0, recordSize);
+                    first = false;
+                    written++;
+                }
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            return written;
+        } finally {
+            for (final RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+    /**
+     * Sorts the records of a run by key, keeping records with the same key
+     * in the order they were read.
+     *
+     * @param run   the records
+     * @param size  the number of records
+     * @return      the record numbers in sorted order
+     */
+    private int[] sortRun(final byte[] run, final int size) {
+        int[] order = new int[size];
+        int[] scratch = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // A bottom-up merge sort, which is stable.
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                final int middle = Math.min(low + width, size);
+                final int high = Math.min(low + (2 * width), size);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (right >= high || (left < middle && compareKeys(run,
+                            order[left] * recordSize, run,
+                            order[right] * recordSize) <= 0)) {
+                        scratch[i] = order[left++];
+                    } else {
+                        scratch[i] = order[right++];
+                    }
+                }
+            }
+            final int[] swap = order;
+            order = scratch;
+            scratch = swap;
+        }
+        return order;
+    }
+    /**
+     * Compares the keys of two records as unsigned bytes.
+     *
+     * @param a        the array holding the first record
+     * @param aOffset  the offset of the first record
+     * @param b        the array holding the second record
+     * @param bOffset  the offset of the second record
+     * @return         a negative number, zero or a positive number as the
+     *                 first key is less than, equal to or greater than the
+     *                 second
+     */
+    private int compareKeys(final byte[] a, final int aOffset, final byte[] b,
+            final int bOffset) {
+        for (int i = 0; i < keySize; i++) {
+            final int difference = (a[aOffset + i] & 0xFF)
+                    - (b[bOffset + i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+    /**
+     * Hashes the key of a record.
+     *
+     * @param record  the array holding the record
+     * @param offset  the offset of the record
+     * @return        the hash
+     */
+    private long hashKey(final byte[] record, final int offset) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < keySize; i++) {
+            hash = (hash ^ (record[offset + i] & 0xFF)) * FNV_PRIME;
+        }
+        // Spreads the bits, as FNV-1a leaves the high bits weak.
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return hash ^ (hash >>> 33);
+    }
+    /**
+     * Adds a key to a Bloom filter.
+     *
+     * @param filter  the filter
+     * @param hash    the hash of the key
+     * @return        <code>true</code> if every bit for the key was already
+     *                set, so the key may have been added before;
+     *                <code>false</code> if it certainly was not
+     */
+    private boolean addToFilter(final long[] filter, final long hash) {
+        boolean present = true;
+        final long bits = (long) filter.length * WORD_BITS;
+        final long step = (hash >>> 32) | 1;
+        for (int i = 0; i < FILTER_HASHES; i++) {
+            final long bit = ((hash + (i * step)) & Long.MAX_VALUE) % bits;
+            final int word = (int) (bit / WORD_BITS);
+            final long mask = 1L << (bit % WORD_BITS);
+            if ((filter[word] & mask) == 0) {
+                present = false;
+                filter[word] |= mask;
+            }
+        }
+        return present;
+    }
+    /**
+     * Gets whether a key may have been added to a Bloom filter.
+     *
+     * @param filter  the filter
+     * @param hash    the hash of the key
+     * @return        <code>true</code> if it may have been;
+     *                <code>false</code> if it certainly was not
+     */
+    private boolean isInFilter(final long[] filter, final long hash) {
+        final long bits = (long) filter.length * WORD_BITS;
+        final long step = (hash >>> 32) | 1;
+        for (int i = 0; i < FILTER_HASHES; i++) {
+            final long bit = ((hash + (i * step)) & Long.MAX_VALUE) % bits;
+            if ((filter[(int) (bit / WORD_BITS)]
+                    & (1L << (bit % WORD_BITS))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Opens a file of records for reading from its first record.
+     *
+     * @param file        the file
+     * @param headerSize  the number of bytes before the first record
+     * @return            the stream
+     *
+     * @throws IOException  if the file could not be opened
+     */
+    private DataInputStream openRecords(final File file, final int headerSize)
+            throws IOException {
+        final InputStream in = new FileInputStream(file);
+        final DataInputStream data = new DataInputStream(
+                new BufferedInputStream(in,
+                        BATCH_RECORDS * recordSize));
+        try {
+            data.readFully(new byte[headerSize]);
+        } catch (final EOFException e) {
+            data.close();
+            throw e;
+        }
+        return data;
+    }
+    /**
+     * Hands the records in a batch buffer to a sink and empties it.
+     *
+     * @param batch  the batch buffer
+     * @param sink   the sink
+     *
+     * @throws IOException  if the sink could not be written
+     */
+    private static void flush(final ByteBuffer batch, final RecordSink sink)
+            throws IOException {
+        batch.flip();
+        if (batch.hasRemaining()) {
+            sink.write(batch);
+        }
+        batch.clear();
+    }
+    /**
+     * Runs the deduplicator from the command line.
+     * <p>
+     * <code>records &lt;size&gt; &lt;key&gt; &lt;header&gt; &lt;input&gt;
+     * &lt;output&gt;</code> removes duplicates from a file of raw records,
+     * copying a header of the given size. <code>samples &lt;variant&gt;
+     * &lt;input&gt; &lt;output&gt;</code> removes samples of the same
+     * position from a {@link TrainingSampleFile}. <code>count
+     * &lt;variant&gt; &lt;depth&gt; &lt;temp-file&gt;</code> counts the
+     * distinct positions reached after exactly that many plies from the
+     * start of a variant, which is either <code>english</code> or
+     * <code>international</code>.
+     *
+     * @param args  the command line arguments
+     *
+     * @throws IOException  if a file could not be read or written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 6 && args[0].equals("records")) {
+            final long unique = new PositionDeduplicator(
+                    Integer.parseInt(args[1]), Integer.parseInt(args[2]))
+                    .deduplicate(new File(args[4]),
+                            Integer.parseInt(args[3]), new File(args[5]));
+            System.out.println(unique);
+        } else if (args.length == 4 && args[0].equals("samples")) {
+            final Game game = buildGame(args[1]);
+            System.out.println(deduplicateSamples(game, new File(args[2]),
+                    new File(args[3])));
+        } else if (args.length == 4 && args[0].equals("count")) {
+            final Game game = buildGame(args[1]);
+            System.out.println(countPositions(game,
+                    Integer.parseInt(args[2]), new File(args[3])));
+        } else {
+            System.err.println("usage: records <size> <key> <header> "
+                    + "<input> <output>");
+            System.err.println("       samples <variant> <input> <output>");
+            System.err.println("       count <variant> <depth> <temp-file>");
+            System.exit(2);
+        }
+    }
+    /**
+     * Removes samples of the same position from a sample file, keeping the
+     * first of each.
+     *
+     * @param template  a game with the board the samples were taken from
+     * @param input     the sample file to read
+     * @param output    the sample file to write
+     * @return          the number of samples written
+     *
+     * @throws IOException  if a file could not be read or written
+     */
+    public static long deduplicateSamples(final Game template,
+            final File input, final File output) throws IOException {
+        // Checks the input is a sample file for this board.
+        new TrainingSampleFile(input, template);
+        final PackedPosition packing = PackedPosition.forGame(template);
+        try (TrainingSampleWriter writer =
+                new TrainingSampleWriter(output, template)) {
+            new PositionDeduplicator(writer.getSampleSize(), packing.size())
+                    .deduplicate(input, TrainingSampleFile.HEADER_SIZE,
+                            new RecordSink() {
+                                @Override
+                                public void write(final ByteBuffer records)
+                                        throws IOException {
+                                    writer.write(records);
+                                }
+                            }, output.getAbsoluteFile().getParentFile());
+            return writer.getSampleCount();
+        }
+    }
+    /**
+     * Counts the distinct positions reached after exactly the specified
+     * number of plies from the current position of a game.
+     * <p>
+     * Every line is played out and the position at its end written to a
+     * file of packed positions, which is then deduplicated. The file is
+     * deleted afterwards.
+     *
+     * @param game   the game
+     * @param depth  the number of plies
+     * @param temp   the file to write the positions to
+     * @return       the number of distinct positions
+     *
+     * @throws IOException  if the file could not be written or read
+     */
+    public static long countPositions(final Game game, final int depth,
+            final File temp) throws IOException {
+        final PackedPosition packing = PackedPosition.forGame(game);
+        final File unique = new File(temp.getPath() + ".unique");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                    FileChannel channel = raf.getChannel()) {
+                channel.truncate(0);
+                final ByteBuffer batch =
+                        ByteBuffer.allocate(BATCH_RECORDS * packing.size());
+                writeLeaves(game.getBoard(), game.getTurn().getColour(),
+                        depth, game.getMoveGenerator(),
+                        game.getMovePerformer(), packing, batch, channel);
+                batch.flip();
+                ChannelUtil.writeFully(channel, batch);
+            }
+            return new PositionDeduplicator(packing.size(), packing.size())
+                    .deduplicate(temp, 0, unique);
+        } finally {
+            temp.delete();
+            unique.delete();
+        }
+    }
+    /**
+     * Writes the positions at the ends of every line of a given length.
+     *
+     * @param board      the board
+     * @param colour     the colour whose turn it is
+     * @param depth      the number of plies left
+     * @param generator  the move generator
+     * @param performer  the move performer
+     * @param packing    the encoding of the positions
+     * @param batch      the batch buffer
+     * @param channel    the file
+     *
+     * @throws IOException  if the file could not be written
+     */
+    private static void writeLeaves(final Board board, final int colour,
+            final int depth, final MoveGenerator generator,
+            final MovePerformer performer, final PackedPosition packing,
+            final ByteBuffer batch, final FileChannel channel)
+            throws IOException {
+        if (depth == 0) {
+            if (!batch.hasRemaining()) {
+                batch.flip();
+                ChannelUtil.writeFully(channel, batch);
+                batch.clear();
+            }
+            packing.encode(board, colour, batch);
+            return;
+        }
+        final List<Move> moves = generator.findMoves(board, colour);
+        final int opponent = Piece.getOpposingColourOf(colour);
+        for (int i = 0; i < moves.size(); i++) {
+            final PerformedMove performed = performer.perform(moves.get(i),
+                    board);
+            writeLeaves(board, opponent, depth - 1, generator, performer,
+                    packing, batch, channel);
+            performed.undo();
+        }
+    }
+    /**
+     * Builds a game of the named variant.
+     *
+     * @param variant  either <code>english</code> or
+     *                 <code>international</code>
+     * @return         the game
+     */
+    private static Game buildGame(final String variant) {
+        final GameBuilder builder;
+        if (variant.equalsIgnoreCase("english")) {
+            builder = new EnglishDraughtsGameBuilder();
+        } else if (variant.equalsIgnoreCase("international")) {
+            builder = new InternationalDraughtsGameBuilder();
+        } else {
+            throw new IllegalArgumentException("unknown variant: " + variant);
+        }
+        final GameBuilder.Config config = new GameBuilder.Config();
+        config.setDarkPlayer(new PlaceholderPlayer(Piece.DARK));
+        config.setLightPlayer(new PlaceholderPlayer(Piece.LIGHT));
+        return builder.build(config);
+    }
+    /**
+     * An interface that defines a class that receives records.
+     *
+     * @author  Alex Mullen
+     */
+    public interface RecordSink {
+        /**
+         * Receives the records between the position and limit of a buffer.
+         *
+         * @param records  the buffer, holding a whole number of records
+         *
+         * @throws IOException  if the records could not be written
+         */
+        void write(ByteBuffer records) throws IOException;
+    }
+    /**
+     * Reads the records of a sorted run file in turn.
+     *
+     * @author  Alex Mullen
+     */
+    private final class RunCursor implements Comparable<RunCursor> {
+        /** Holds the stream of the run. */
+        private final DataInputStream in;
+        /** Holds the position of the run among all the runs. */
+        private final int runNumber;
+        /** Holds the current record. */
+        private final byte[] record = new byte[recordSize];
+        /**
+         * Opens a run file.
+         *
+         * @param file    the run file
+         * @param number  the position of the run among all the runs
+         *
+         * @throws IOException  if the file could not be opened
+         */
+        RunCursor(final File file, final int number) throws IOException {
+            in = openRecords(file, 0);
+            runNumber = number;
+        }
+        /**
+         * Reads the next record.
+         *
+         * @return  <code>true</code> if there was one; <code>false</code> if
+         *          the run has ended
+         *
+         * @throws IOException  if the file could not be read
+         */
+        boolean advance() throws IOException {
+            try {
+                in.readFully(record);
+                return true;
+            } catch (final EOFException e) {
+                return false;
+            }
+        }
+        /**
+         * Closes the run file.
+         *
+         * @throws IOException  if the file could not be closed
+         */
+        void close() throws IOException {
+            in.close();
+        }
+        @Override
+        public int compareTo(final RunCursor other) {
+            final int byKey = compareKeys(record, 0, other.record, 0);
+            if (byKey != 0) {
+                return byKey;
+            }
+            // Earlier runs hold records that were read first.
+            return Integer.compare(runNumber, other.runNumber);
+        }
+    }
+}
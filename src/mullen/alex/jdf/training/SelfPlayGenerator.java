@@ -0,0 +1,246 @@
+package mullen.alex.jdf.training;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameBuilder;
+import mullen.alex.jdf.common.GamePool;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.PlaceholderPlayer;
+import mullen.alex.jdf.common.Player;
+import mullen.alex.jdf.search.AlphaBetaSearcher;
+import mullen.alex.jdf.search.Evaluator;
+import mullen.alex.jdf.search.TranspositionTable;
+
+/**
+ * Plays games of an engine against itself on many threads and writes the
+ * positions it searched to a {@link TrainingSampleFile}, labelled with the
+ * search score and the result of the game.
+ * <p>
+ * Each thread takes games from a shared {@link GamePool} and searches with
+ * its own {@link AlphaBetaSearcher} and {@link TranspositionTable}. To stop
+ * every game being the same, a number of opening plies are played at random
+ * and after that any move may be replaced by a random one. Only positions
+ * whose move came from the search and where the side to move has no capture
+ * are sampled, as quiet positions are the ones an evaluator is asked to
+ * score.
+ * <p>
+ * The samples of a game are kept by its thread until the game ends and its
+ * result is known, and are written in batches so threads rarely wait on each
+ * other for the file.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class SelfPlayGenerator {
+    /** The number of entries in the table of each thread. */
+    private static final int TABLE_ENTRIES = 1 << 18;
+    /** The number of bytes of samples each thread gathers before writing. */
+    private static final int BATCH_BYTES = 1 << 16;
+    /** Holds the builder of the games. */
+    private final GameBuilder builder;
+    /** Holds the evaluator the engine searches with. */
+    private final Evaluator evaluator;
+    /** Holds the depth each move is searched to. */
+    private final int depth;
+    /** Holds the number of opening plies played at random. */
+    private final int randomPlies;
+    /** Holds the chance of a later move being played at random. */
+    private final double randomMoveChance;
+    /**
+     * Creates a new generator.
+     *
+     * @param gameBuilder       the builder of the games to play
+     * @param positionEvaluator the evaluator to search with, which is
+     *                          shared by every thread
+     * @param searchDepth       the depth each move is searched to, in plies
+     * @param openingPlies      the number of opening plies played at random
+     * @param randomChance      the chance of each later move being played at
+     *                          random, from <code>0</code> to
+     *                          <code>1</code>
+     *
+     * @throws IllegalArgumentException  if any argument is out of range
+     */
+    public SelfPlayGenerator(final GameBuilder gameBuilder,
+            final Evaluator positionEvaluator, final int searchDepth,
+            final int openingPlies, final double randomChance) {
+        if (searchDepth < 1 || searchDepth > AlphaBetaSearcher.MAX_PLY) {
+            throw new IllegalArgumentException("searchDepth out of range");
+        }
+        if (openingPlies < 0) {
+            throw new IllegalArgumentException("openingPlies needs to be >= 0");
+        }
+        if (!(randomChance >= 0 && randomChance <= 1)) {
+            throw new IllegalArgumentException("randomChance out of range");
+        }
+        builder = gameBuilder;
+        evaluator = positionEvaluator;
+        depth = searchDepth;
+        randomPlies = openingPlies;
+        randomMoveChance = randomChance;
+    }
+    /**
+     * Plays the specified number of games and writes their samples to a
+     * file, replacing anything already in it.
+     *
+     * @param file     the file to write the samples to
+     * @param games    the number of games to play
+     * @param threads  the number of threads to play them on
+     * @param seed     the seed for the random moves; each thread uses its
+     *                 own generator seeded from this
+     * @return         the number of samples written
+     *
+     * @throws IOException           if the file could not be written
+     * @throws InterruptedException  if interrupted while waiting for the
+     *                               games to be played
+     * @throws IllegalArgumentException  if <code>games</code> is negative or
+     *                                   <code>threads</code> is less than
+     *                                   <code>1</code>
+     */
+    public final long generate(final File file, final long games,
+            final int threads, final long seed)
+            throws IOException, InterruptedException {
+        if (games < 0) {
+            throw new IllegalArgumentException("games needs to be >= 0");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads needs to be > 0");
+        }
+        final GameBuilder.Config config = new GameBuilder.Config();
+        config.setDarkPlayer(new PlaceholderPlayer(Piece.DARK));
+        config.setLightPlayer(new PlaceholderPlayer(Piece.LIGHT));
+        final GamePool pool = builder.createPool(config, threads);
+        final Game template = pool.acquire();
+        final AtomicLong remaining = new AtomicLong(games);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (TrainingSampleWriter writer =
+                new TrainingSampleWriter(file, template)) {
+            pool.release(template);
+            final List<Future<Void>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final Random random = new Random(seed + i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        play(pool, writer, remaining, random);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+            return writer.getSampleCount();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Plays games until none remain, writing their samples.
+     *
+     * @param pool       the pool to take games from
+     * @param writer     the writer of the samples
+     * @param remaining  the number of games still to be started
+     * @param random     the generator for the random moves
+     *
+     * @throws IOException  if the samples could not be written
+     */
+    private void play(final GamePool pool, final TrainingSampleWriter writer,
+            final AtomicLong remaining, final Random random)
+            throws IOException {
+        final int sampleSize = writer.getSampleSize();
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_BYTES);
+        AlphaBetaSearcher searcher = null;
+        while (remaining.getAndDecrement() > 0) {
+            final Game game = pool.acquire();
+            try {
+                if (searcher == null) {
+                    searcher = new AlphaBetaSearcher(game.getMoveGenerator(),
+                            game.getMovePerformer(), evaluator,
+                            new TranspositionTable(TABLE_ENTRIES));
+                }
+                final int gameStart = batch.position();
+                while (game.getResult() == null) {
+                    final List<Move> moves = game.getLegalMoves();
+                    if (game.getPly() < randomPlies
+                            || random.nextDouble() < randomMoveChance) {
+                        game.performMove(moves.get(random.nextInt(
+                                moves.size())));
+                        continue;
+                    }
+                    final Board board = game.getBoard();
+                    final int colour = game.getTurn().getColour();
+                    final int score = searcher.search(board, colour, depth);
+                    if (!moves.get(0).jumps.isEmpty()) {
+                        game.performMove(searcher.getBestMove());
+                        continue;
+                    }
+                    if (batch.remaining() < sampleSize) {
+                        // Samples of an unfinished game are never written,
+                        // so the batch grows to hold the whole game.
+                        final ByteBuffer larger =
+                                ByteBuffer.allocate(batch.capacity() * 2);
+                        batch.flip();
+                        larger.put(batch);
+                        batch = larger;
+                    }
+                    writer.encode(board, colour, score, GameRecord.DRAW,
+                            batch);
+                    game.performMove(searcher.getBestMove());
+                }
+                final int result = getResult(game);
+                for (int offset = gameStart; offset < batch.position();
+                        offset += sampleSize) {
+                    writer.setResult(batch, offset, result);
+                }
+            } finally {
+                pool.release(game);
+            }
+            if (batch.position() >= BATCH_BYTES - sampleSize) {
+                batch.flip();
+                writer.write(batch);
+                batch.clear();
+            }
+        }
+        batch.flip();
+        writer.write(batch);
+    }
+    /**
+     * Gets the result of a finished game.
+     *
+     * @param game  the game
+     * @return      the result, as a {@link GameRecord} result
+     */
+    private static int getResult(final Game game) {
+        final Player winner = game.getResult().getWinner();
+        if (winner == null) {
+            return GameRecord.DRAW;
+        }
+        return winner.getColour() == Piece.DARK ? GameRecord.DARK_WIN
+                : GameRecord.LIGHT_WIN;
+    }
+}
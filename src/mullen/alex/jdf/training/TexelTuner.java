@@ -0,0 +1,296 @@
+package mullen.alex.jdf.training;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.search.LinearEvaluator;
+
+/**
+ * Fits the weights of a {@link LinearEvaluator} to the results of the games
+ * in a {@link TrainingSampleFile}.
+ * <p>
+ * The score of each sample is turned into an expected result for the side
+ * to move with the logistic curve <code>1 / (1 + 10^(-k * score / 400))</code>
+ * and the weights are fitted to minimise the mean squared difference
+ * between that and the real result, counting a win as <code>1</code>, a draw
+ * as <code>0.5</code> and a loss as <code>0</code>. The fit starts by
+ * choosing the scale <code>k</code> that best suits the starting weights
+ * and then takes gradient steps, each scaled for its own weight as in the
+ * Adam method since the features count very different things.
+ * <p>
+ * Each pass over the samples is split into ranges that are decoded and
+ * summed in parallel on a {@link ForkJoinPool}, reading the positions
+ * straight from the mapped file so the samples never need to fit in
+ * memory.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class TexelTuner {
+    /** The number of samples a task sums without splitting further. */
+    private static final int SPLIT_SAMPLES = 1 << 14;
+    /** The score difference that the logistic curve is scaled by. */
+    private static final double SCORE_SCALE = 400.0;
+    /** The smallest scale tried when fitting the scale. */
+    private static final double MIN_SCALE = 0.01;
+    /** The largest scale tried when fitting the scale. */
+    private static final double MAX_SCALE = 10.0;
+    /** The number of steps taken when fitting the scale. */
+    private static final int SCALE_STEPS = 40;
+    /** The decay of the average gradient. */
+    private static final double GRADIENT_DECAY = 0.9;
+    /** The decay of the average squared gradient. */
+    private static final double SQUARE_DECAY = 0.999;
+    /** Keeps steps finite when the average squared gradient is zero. */
+    private static final double EPSILON = 1e-8;
+    /** Holds the samples. */
+    private final TrainingSampleFile samples;
+    /** Holds the width of the board. */
+    private final int boardWidth;
+    /** Holds the height of the board. */
+    private final int boardHeight;
+    /** Holds the pool that passes over the samples run on. */
+    private final ForkJoinPool pool;
+    /** Holds the scale of the logistic curve. */
+    private double scale = 1.0;
+    /**
+     * Creates a new tuner.
+     *
+     * @param sampleFile  the samples
+     * @param template    a game with the board the samples were taken from
+     * @param forkJoin    the pool to run passes over the samples on
+     */
+    public TexelTuner(final TrainingSampleFile sampleFile,
+            final Game template, final ForkJoinPool forkJoin) {
+        samples = sampleFile;
+        final Board board = template.getBoard();
+        boardWidth = board.width;
+        boardHeight = board.height;
+        pool = forkJoin;
+    }
+    /**
+     * Gets the scale of the logistic curve.
+     *
+     * @return  the scale
+     */
+    public final double getScale() {
+        return scale;
+    }
+    /**
+     * Sets the scale of the logistic curve.
+     *
+     * @param curveScale  the scale
+     */
+    public final void setScale(final double curveScale) {
+        scale = curveScale;
+    }
+    /**
+     * Gets the mean squared error of the specified weights.
+     *
+     * @param weights  the weights, indexed by feature
+     * @return         the error
+     */
+    public final double computeError(final double[] weights) {
+        return pass(weights, scale, false)[0];
+    }
+    /**
+     * Chooses the scale of the logistic curve that gives the specified
+     * weights the least error, and uses it from then on.
+     *
+     * @param weights  the weights, indexed by feature
+     * @return         the scale
+     */
+    public final double fitScale(final double[] weights) {
+        // The error is close to convex in the scale, so a ternary search
+        // of its logarithm finds the minimum.
+        double low = Math.log(MIN_SCALE);
+        double high = Math.log(MAX_SCALE);
+        for (int i = 0; i < SCALE_STEPS; i++) {
+            final double third = (high - low) / 3;
+            final double a = low + third;
+            final double b = high - third;
+            if (pass(weights, Math.exp(a), false)[0]
+                    < pass(weights, Math.exp(b), false)[0]) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        scale = Math.exp((low + high) / 2);
+        return scale;
+    }
+    /**
+     * Fits the weights, first fitting the scale to the starting weights.
+     *
+     * @param initialWeights  the weights to start from, indexed by feature
+     * @param epochs          the number of passes over the samples
+     * @param learningRate    the most each weight moves in a step
+     * @return                the fitted weights, rounded for a
+     *                        {@link LinearEvaluator}
+     *
+     * @throws IllegalArgumentException  if there is not a weight for every
+     *                                   feature or <code>epochs</code> is
+     *                                   negative
+     */
+    public final int[] tune(final int[] initialWeights, final int epochs,
+            final double learningRate) {
+        if (initialWeights.length != LinearEvaluator.FEATURE_COUNT) {
+            throw new IllegalArgumentException("need a weight per feature");
+        }
+        if (epochs < 0) {
+            throw new IllegalArgumentException("epochs needs to be >= 0");
+        }
+        final int featureCount = LinearEvaluator.FEATURE_COUNT;
+        final double[] weights = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            weights[i] = initialWeights[i];
+        }
+        fitScale(weights);
+        final double[] meanGradient = new double[featureCount];
+        final double[] meanSquare = new double[featureCount];
+        double gradientBias = 1;
+        double squareBias = 1;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            final double[] sums = pass(weights, scale, true);
+            gradientBias *= GRADIENT_DECAY;
+            squareBias *= SQUARE_DECAY;
+            for (int i = 0; i < featureCount; i++) {
+                final double gradient = sums[i + 1];
+                meanGradient[i] = (GRADIENT_DECAY * meanGradient[i])
+                        + ((1 - GRADIENT_DECAY) * gradient);
+                meanSquare[i] = (SQUARE_DECAY * meanSquare[i])
+                        + ((1 - SQUARE_DECAY) * gradient * gradient);
+                final double step = (meanGradient[i] / (1 - gradientBias))
+                        / (Math.sqrt(meanSquare[i] / (1 - squareBias))
+                                + EPSILON);
+                weights[i] -= learningRate * step;
+            }
+        }
+        final int[] rounded = new int[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            rounded[i] = (int) Math.round(weights[i]);
+        }
+        return rounded;
+    }
+    /**
+     * Makes a pass over every sample.
+     *
+     * @param weights       the weights
+     * @param curveScale    the scale of the logistic curve
+     * @param withGradient  whether to work out the gradient as well
+     * @return              the mean squared error, followed by the gradient
+     *                      of it for each weight if asked for
+     */
+    private double[] pass(final double[] weights, final double curveScale,
+            final boolean withGradient) {
+        final long count = samples.size();
+        if (count == 0) {
+            return new double[1 + weights.length];
+        }
+        final double[] sums = pool.invoke(new PassTask(weights,
+                curveScale * Math.log(10) / SCORE_SCALE, withGradient, 0,
+                count));
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] /= count;
+        }
+        return sums;
+    }
+    /**
+     * A task that sums the squared error, and optionally its gradient, over
+     * a range of samples, splitting the range in two while it is large.
+     *
+     * @author  Alex Mullen
+     */
+    private final class PassTask extends RecursiveTask<double[]> {
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+        /** Holds the weights. */
+        private final double[] weights;
+        /** Holds the natural scale of the logistic curve. */
+        private final double curveScale;
+        /** Holds whether to work out the gradient. */
+        private final boolean withGradient;
+        /** Holds the first sample of the range. */
+        private final long start;
+        /** Holds the sample after the range. */
+        private final long end;
+        /**
+         * Creates a new task.
+         *
+         * @param featureWeights  the weights
+         * @param naturalScale    the scale of the logistic curve in terms
+         *                        of <code>e</code>
+         * @param gradient        whether to work out the gradient
+         * @param first           the first sample of the range
+         * @param after           the sample after the range
+         */
+        PassTask(final double[] featureWeights, final double naturalScale,
+                final boolean gradient, final long first, final long after) {
+            weights = featureWeights;
+            curveScale = naturalScale;
+            withGradient = gradient;
+            start = first;
+            end = after;
+        }
+        @Override
+        protected double[] compute() {
+            if (end - start > SPLIT_SAMPLES) {
+                final long middle = (start + end) >>> 1;
+                final PassTask left = new PassTask(weights, curveScale,
+                        withGradient, start, middle);
+                left.fork();
+                final double[] sums = new PassTask(weights, curveScale,
+                        withGradient, middle, end).compute();
+                final double[] leftSums = left.join();
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += leftSums[i];
+                }
+                return sums;
+            }
+            final int featureCount = weights.length;
+            final double[] sums = new double[1 + featureCount];
+            final int[] features = new int[featureCount];
+            final Board board = new Board(boardWidth, boardHeight);
+            for (long sample = start; sample < end; sample++) {
+                final int colour = samples.getPosition(sample, board);
+                LinearEvaluator.extractFeatures(board, colour, features);
+                double score = 0;
+                for (int i = 0; i < featureCount; i++) {
+                    score += weights[i] * features[i];
+                }
+                final double predicted =
+                        1 / (1 + Math.exp(-curveScale * score));
+                final double error = predicted
+                        - getTarget(samples.getResult(sample), colour);
+                sums[0] += error * error;
+                if (withGradient) {
+                    final double slope = 2 * error * predicted
+                            * (1 - predicted) * curveScale;
+                    for (int i = 0; i < featureCount; i++) {
+                        sums[i + 1] += slope * features[i];
+                    }
+                }
+            }
+            return sums;
+        }
+    }
+    /**
+     * Gets the result the side to move scored.
+     *
+     * @param result  the result of the game, as a {@link GameRecord} result
+     * @param colour  the colour to move
+     * @return        <code>1</code> for a win, <code>0.5</code> for a draw
+     *                and <code>0</code> for a loss
+     */
+    private static double getTarget(final int result, final int colour) {
+        if (result == GameRecord.DRAW) {
+            return 0.5;
+        }
+        final boolean darkWon = result == GameRecord.DARK_WIN;
+        return darkWon == (colour == Piece.DARK) ? 1 : 0;
+    }
+}
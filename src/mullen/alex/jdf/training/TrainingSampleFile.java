@@ -0,0 +1,191 @@
+package mullen.alex.jdf.training;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.notation.PackedPosition;
+
+/**
+ * A read-only file of labelled training positions, backed by a
+ * memory-mapped file written by a {@link TrainingSampleWriter}.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes followed by
+ * fixed size samples, so any sample can be read directly by its number.
+ * <p>
+ * Header layout, big-endian:
+ * <pre>
+ * int  magic number ({@link #MAGIC})
+ * int  file format version ({@link #FORMAT_VERSION})
+ * int  board width, shifted left 16, with the board height in the low bits
+ * int  sample size in bytes
+ * long number of samples
+ * </pre>
+ * Sample layout, big-endian, padded to a multiple of four bytes:
+ * <pre>
+ * ...   the position and side to move, as a {@link PackedPosition}
+ * short the search score for the side to move, clamped to a short
+ * byte  the result of the game, as a {@link GameRecord} result
+ * </pre>
+ * Instances are safe to share between threads.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class TrainingSampleFile {
+    /** The magic number at the start of every sample file ("JDFT"). */
+    public static final int MAGIC = 0x4A444654;
+    /** The version of the file layout. */
+    public static final int FORMAT_VERSION = 1;
+    /** The number of bytes in the header. */
+    public static final int HEADER_SIZE = 24;
+    /** The shift of the board width within the header. */
+    static final int WIDTH_SHIFT = 16;
+    /** The number of bytes the labels add to a packed position. */
+    private static final int LABEL_BYTES = 3;
+    /** The multiple of bytes each sample is padded to. */
+    private static final int ALIGNMENT = 4;
+    /**
+     * The number of samples in each mapped segment, keeping each one well
+     * under the 2GB limit of a single mapping.
+     */
+    private static final int SEGMENT_SAMPLES = 1 << 24;
+    /** Holds the encoding of the positions. */
+    private final PackedPosition packing;
+    /** Holds the number of bytes in each sample. */
+    private final int sampleSize;
+    /** Holds the mapped segments of samples. */
+    private final ByteBuffer[] segments;
+    /** Holds the number of samples in the file. */
+    private final long sampleCount;
+    /**
+     * Opens the specified sample file of games played under the rules of the
+     * specified game.
+     *
+     * @param file      the sample file
+     * @param template  a game with the board the samples were taken from
+     *
+     * @throws IOException  if the file could not be read or is not a sample
+     *                      file written with the current format for the
+     *                      same size of board
+     */
+    public TrainingSampleFile(final File file, final Game template)
+            throws IOException {
+        packing = PackedPosition.forGame(template);
+        sampleSize = getSampleSize(packing);
+        final Board board = template.getBoard();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("sample header is truncated");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a training sample file");
+            }
+            if (header.getInt() != FORMAT_VERSION) {
+                throw new IOException("unsupported sample format version");
+            }
+            if (header.getInt() != ((board.width << WIDTH_SHIFT)
+                    | board.height)) {
+                throw new IOException("samples are for a different board");
+            }
+            if (header.getInt() != sampleSize) {
+                throw new IOException("unexpected sample size");
+            }
+            sampleCount = header.getLong();
+            if (sampleCount < 0 || channel.size()
+                    != HEADER_SIZE + (sampleCount * sampleSize)) {
+                throw new IOException("sample file length does not match "
+                        + "header");
+            }
+            final int segmentCount = (int) ((sampleCount + SEGMENT_SAMPLES
+                    - 1) / SEGMENT_SAMPLES);
+            segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                final long first = (long) i * SEGMENT_SAMPLES;
+                final long samples =
+                        Math.min(SEGMENT_SAMPLES, sampleCount - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (first * sampleSize),
+                        samples * sampleSize);
+            }
+        }
+    }
+    /**
+     * Gets the number of samples in the file.
+     *
+     * @return  the number of samples
+     */
+    public final long size() {
+        return sampleCount;
+    }
+    /**
+     * Gets the position of a sample.
+     *
+     * @param sample  the sample number
+     * @param board   the board to put the position on, replacing whatever
+     *                was on it
+     * @return        the colour to move
+     */
+    public final int getPosition(final long sample, final Board board) {
+        return packing.decode(segmentOf(sample), offsetOf(sample), board);
+    }
+    /**
+     * Gets the search score of a sample.
+     *
+     * @param sample  the sample number
+     * @return        the score for the side to move
+     */
+    public final int getScore(final long sample) {
+        return segmentOf(sample).getShort(offsetOf(sample) + packing.size());
+    }
+    /**
+     * Gets the result of the game a sample was taken from.
+     *
+     * @param sample  the sample number
+     * @return        either {@link GameRecord#DARK_WIN},
+     *                {@link GameRecord#LIGHT_WIN} or {@link GameRecord#DRAW}
+     */
+    public final int getResult(final long sample) {
+        return segmentOf(sample).get(offsetOf(sample) + packing.size()
+                + (Short.SIZE / Byte.SIZE));
+    }
+    /**
+     * Gets the number of bytes in each sample for positions with the
+     * specified encoding.
+     *
+     * @param packing  the encoding of the positions
+     * @return         the number of bytes
+     */
+    static int getSampleSize(final PackedPosition packing) {
+        return (packing.size() + LABEL_BYTES + ALIGNMENT - 1) / ALIGNMENT
+                * ALIGNMENT;
+    }
+    /**
+     * Gets the mapped segment holding a sample.
+     *
+     * @param sample  the sample number
+     * @return        the segment
+     */
+    private ByteBuffer segmentOf(final long sample) {
+        return segments[(int) (sample / SEGMENT_SAMPLES)];
+    }
+    /**
+     * Gets the offset of a sample within its segment.
+     *
+     * @param sample  the sample number
+     * @return        the offset in bytes
+     */
+    private int offsetOf(final long sample) {
+        return (int) (sample % SEGMENT_SAMPLES) * sampleSize;
+    }
+}
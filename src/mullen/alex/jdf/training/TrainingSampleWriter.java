@@ -0,0 +1,170 @@
+package mullen.alex.jdf.training;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.notation.PackedPosition;
+
+/**
+ * Writes a file of labelled training positions in the format
+ * {@link TrainingSampleFile} reads.
+ * <p>
+ * Samples are encoded into buffers owned by the callers with
+ * {@link #encode(Board, int, int, int, ByteBuffer)}, which any number of
+ * threads may do at once, and the filled buffers are then appended to the
+ * file with {@link #write(ByteBuffer)}. The header is written last, when the
+ * writer is closed, as only then is the number of samples known.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class TrainingSampleWriter implements Closeable {
+    /** Holds the file being written. */
+    private final RandomAccessFile raf;
+    /** Holds the channel of the file being written. */
+    private final FileChannel channel;
+    /** Holds the encoding of the positions. */
+    private final PackedPosition packing;
+    /** Holds the number of bytes in each sample. */
+    private final int sampleSize;
+    /** Holds the size of the board, as written in the header. */
+    private final int boardSize;
+    /** Holds the number of samples written so far. */
+    private long sampleCount;
+    /** Holds whether the writer has been closed. */
+    private boolean closed;
+    /**
+     * Creates a new writer to the specified file of positions from games
+     * played under the rules of the specified game, replacing anything
+     * already in the file.
+     *
+     * @param file      the file to write to
+     * @param template  a game with the board the samples are taken from
+     *
+     * @throws IOException  if the file could not be opened
+     */
+    public TrainingSampleWriter(final File file, final Game template)
+            throws IOException {
+        packing = PackedPosition.forGame(template);
+        sampleSize = TrainingSampleFile.getSampleSize(packing);
+        final Board board = template.getBoard();
+        boardSize = (board.width << TrainingSampleFile.WIDTH_SHIFT)
+                | board.height;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        channel.truncate(0);
+        channel.position(TrainingSampleFile.HEADER_SIZE);
+    }
+    /**
+     * Gets the number of bytes in each sample.
+     *
+     * @return  the number of bytes
+     */
+    public final int getSampleSize() {
+        return sampleSize;
+    }
+    /**
+     * Encodes a sample, putting {@link #getSampleSize()} bytes at the
+     * current position of a buffer.
+     *
+     * @param board   the board
+     * @param colour  the colour to move
+     * @param score   the search score for the side to move, which is clamped
+     *                to the range of a <code>short</code>
+     * @param result  the result of the game, either
+     *                {@link GameRecord#DARK_WIN},
+     *                {@link GameRecord#LIGHT_WIN} or {@link GameRecord#DRAW},
+     *                which can be replaced later with
+     *                {@link #setResult(ByteBuffer, int, int)}
+     * @param buffer  the big-endian buffer
+     */
+    public final void encode(final Board board, final int colour,
+            final int score, final int result, final ByteBuffer buffer) {
+        final int start = buffer.position();
+        packing.encode(board, colour, buffer);
+        buffer.putShort((short) Math.max(Short.MIN_VALUE,
+                Math.min(Short.MAX_VALUE, score)));
+        buffer.put((byte) result);
+        buffer.position(start + sampleSize);
+    }
+    /**
+     * Replaces the result of an encoded sample, for when the samples of a
+     * game are encoded before the game is finished.
+     *
+     * @param buffer  the buffer holding the sample
+     * @param offset  the offset of the sample in the buffer
+     * @param result  the result of the game
+     */
+    public final void setResult(final ByteBuffer buffer, final int offset,
+            final int result) {
+        buffer.put(offset + packing.size() + (Short.SIZE / Byte.SIZE),
+                (byte) result);
+    }
+    /**
+     * Appends the remaining bytes of a buffer of encoded samples to the file.
+     *
+     * @param samples  the buffer, holding a whole number of samples between
+     *                 its position and limit
+     *
+     * @throws IOException               if the file could not be written
+     * @throws IllegalArgumentException  if the buffer does not hold a whole
+     *                                   number of samples
+     */
+    public final synchronized void write(final ByteBuffer samples)
+            throws IOException {
+        if (samples.remaining() % sampleSize != 0) {
+            throw new IllegalArgumentException("partial sample in buffer");
+        }
+        if (closed) {
+            throw new IOException("writer is closed");
+        }
+        final long count = samples.remaining() / sampleSize;
+        while (samples.hasRemaining()) {
+            channel.write(samples);
+        }
+        sampleCount += count;
+    }
+    /**
+     * Gets the number of samples written so far.
+     *
+     * @return  the number of samples
+     */
+    public final synchronized long getSampleCount() {
+        return sampleCount;
+    }
+    /**
+     * Writes the header and closes the file.
+     *
+     * @throws IOException  if the file could not be written
+     */
+    @Override
+    public final synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            final ByteBuffer header =
+                    ByteBuffer.allocate(TrainingSampleFile.HEADER_SIZE);
+            header.putInt(TrainingSampleFile.MAGIC);
+            header.putInt(TrainingSampleFile.FORMAT_VERSION);
+            header.putInt(boardSize);
+            header.putInt(sampleSize);
+            header.putLong(sampleCount);
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+}
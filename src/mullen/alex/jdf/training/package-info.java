@@ -0,0 +1,7 @@
+/**
+ * @author  Alex Mullen
+ *
+ * A package for containing tools that generate and use training data for
+ * position evaluation.
+ */
+package mullen.alex.jdf.training;
@@ -1,18 +1,27 @@
 package mullen.alex.jdf.variant.english;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import mullen.alex.jdf.common.Board;
 import mullen.alex.jdf.common.BoardPattern;
 import mullen.alex.jdf.common.CheckeredBoardPattern;
 import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameEvent;
+import mullen.alex.jdf.common.GameListener;
 import mullen.alex.jdf.common.Move;
 import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MoveHistory;
 import mullen.alex.jdf.common.MovePerformer;
 import mullen.alex.jdf.common.Piece;
 import mullen.alex.jdf.common.Player;
+import mullen.alex.jdf.common.RepetitionTracker;
+import mullen.alex.jdf.common.ZobristHasher;
 
 /**
  * A draughts game that follows the rules and conventions of English Draughts.
@@ -25,6 +34,17 @@ public class EnglishDraughtsGame implements Game {
     private static final int BOARD_WIDTH = 8;
     /** The height of the board. */
     private static final int BOARD_HEIGHT = 8;
+    /**
+     * The number of plies without a capture or a man moving after which the
+     * game is drawn (40 moves each).
+     */
+    private static final int DRAW_PLY_LIMIT = 80;
+    /** The number of times a position needs to occur for the game to draw. */
+    private static final int DRAW_REPETITIONS = 3;
+    /** The number of plies of position hashes first allocated for. */
+    private static final int INITIAL_PLY_CAPACITY = 128;
+    /** The pieces in their starting positions, copied into new games. */
+    private static final Piece[] STARTING_PIECES = createStartingPieces();
     /** Holds the owner of the dark pieces. */
     private final Player darkPieceOwner;
     /** Holds the owner of the light pieces. */
@@ -38,11 +58,39 @@ public class EnglishDraughtsGame implements Game {
     /** The move performer for performing moves this uses. */
     private final MovePerformer movePerformer;
     /** Holds all the previous moves. */
-    private final Deque<MovePerformer.PerformedMove> moveHistory;
+    private final MoveHistory moveHistory;
+    /** Holds the positions since the last irreversible move. */
+    private final RepetitionTracker repetitions;
+    /**
+     * Holds the hash of the position at each ply of the history, so the
+     * repetitions can be restored after moving through the history without
+     * replaying any moves.
+     */
+    private long[] plyHashes = new long[INITIAL_PLY_CAPACITY];
+    /**
+     * Holds whether the move that reached each ply of the history was
+     * irreversible.
+     */
+    private boolean[] plyIrreversible = new boolean[INITIAL_PLY_CAPACITY];
+    /** Holds the listeners told about changes to the position. */
+    private final List<GameListener> listeners =
+            new CopyOnWriteArrayList<>();
+    /** Holds whoever's turn it was at the start of the history. */
+    private Player startTurnOwner;
     /** Holds whoever's turn it currently is. */
     private Player turnOwner;
     /** Holds the result of the game when it has ended. */
     private GameResult result;
+    /**
+     * Holds the legal moves for the current turn owner, or <code>null</code>
+     * if they have not been generated yet.
+     */
+    private List<Move> legalMoves;
+    /**
+     * Holds the legal moves for the current turn owner keyed by themselves,
+     * or <code>null</code> if the lookup has not been built yet.
+     */
+    private Map<Move, Move> legalMoveLookup;
     /**
      * Creates a new instance and associates the specified players with the
      * light and dark pieces respectively.
@@ -64,8 +112,41 @@ public class EnglishDraughtsGame implements Game {
         movePerformer = new EnglishDraughtsMovePerformer();
         // Dark moves first.
         turnOwner = darkPieceOwner;
-        moveHistory = new ArrayDeque<>();
+        startTurnOwner = turnOwner;
         initPieces();
+        moveHistory = new MoveHistory(board, movePerformer,
+                MoveHistory.DEFAULT_SNAPSHOT_INTERVAL);
+        repetitions = new RepetitionTracker(DRAW_PLY_LIMIT + 1);
+        pushPosition(0, ZobristHasher.hash(board, turnOwner.getColour()),
+                true);
+    }
+    /**
+     * Creates a new instance that continues from the current position of the
+     * specified game.
+     *
+     * @param parent  the game to fork
+     *
+     * @see #fork()
+     */
+    private EnglishDraughtsGame(final EnglishDraughtsGame parent) {
+        super();
+        lightPieceOwner = parent.lightPieceOwner;
+        darkPieceOwner = parent.darkPieceOwner;
+        board = new Board(parent.board);
+        boardPattern = parent.boardPattern;
+        moveGenerator = parent.moveGenerator;
+        movePerformer = parent.movePerformer;
+        turnOwner = parent.turnOwner;
+        startTurnOwner = turnOwner;
+        result = parent.result;
+        // The cached moves are never modified so can be shared.
+        legalMoves = parent.legalMoves;
+        legalMoveLookup = parent.legalMoveLookup;
+        moveHistory = new MoveHistory(board, movePerformer,
+                MoveHistory.DEFAULT_SNAPSHOT_INTERVAL);
+        repetitions = new RepetitionTracker(parent.repetitions);
+        plyHashes[0] = repetitions.getHash();
+        plyIrreversible[0] = true;
     }
     @Override
     public final Board getBoard() {
@@ -109,34 +190,233 @@ public class EnglishDraughtsGame implements Game {
         return result;
     }
     @Override
+    public final List<Move> getLegalMoves() {
+        if (legalMoves == null) {
+            legalMoves = Collections.unmodifiableList(
+                    moveGenerator.findMoves(board, turnOwner.getColour()));
+        }
+        return legalMoves;
+    }
+    @Override
+    public final void reset() {
+        initPieces();
+        moveHistory.clear();
+        // Dark moves first.
+        turnOwner = darkPieceOwner;
+        startTurnOwner = turnOwner;
+        result = null;
+        legalMoves = null;
+        legalMoveLookup = null;
+        repetitions.clear();
+        pushPosition(0, ZobristHasher.hash(board, turnOwner.getColour()),
+                true);
+        fireGameEvent(GameEvent.RESET, null);
+    }
+    @Override
+    public final Game fork() {
+        return new EnglishDraughtsGame(this);
+    }
+    @Override
+    public final boolean isLegalMove(final Move move) {
+        return findLegalMove(move) != null;
+    }
+    @Override
     public final void performMove(final Move move) {
         // No more moves allowed if game over.
         if (result != null) {
             throw new IllegalStateException();
         }
-        moveHistory.addFirst(movePerformer.perform(move, board));
+        final Move legalMove = findLegalMove(move);
+        if (legalMove == null) {
+            throw new IllegalArgumentException("illegal move: " + move);
+        }
+        final boolean irreversible =
+                RepetitionTracker.isIrreversible(board, legalMove);
+        moveHistory.perform(legalMove);
+        legalMoves = null;
+        legalMoveLookup = null;
         // Next player's turn.
         turnOwner = getOpponent(turnOwner);
-        // Check if the next player has any moves left.
-        if (moveGenerator.findMoves(board, turnOwner.getColour()).isEmpty()) {
-         // Their turn but they have no moves left so the opposing player wins.
-            result = new GameResult(getOpponent(turnOwner));
-        }
+        pushPosition(moveHistory.getPly(), ZobristHasher.hash(board,
+                turnOwner.getColour()), irreversible);
+        updateResult();
+        fireGameEvent(GameEvent.MOVE_PERFORMED, legalMove);
     }
     @Override
     public final void undoMove() {
-        if (moveHistory.isEmpty()) {
+        if (moveHistory.undo()) {
+            repetitions.pop();
+            if (!repetitions.isWindowComplete()) {
+                restoreRepetitions();
+            }
+            positionChanged();
+            fireGameEvent(GameEvent.MOVE_UNDONE,
+                    moveHistory.getMoves().get(moveHistory.getPly()));
+        }
+    }
+    @Override
+    public final void redoMove() {
+        final int ply = moveHistory.getPly();
+        if (ply == moveHistory.size()) {
             return;
         }
-        moveHistory.removeFirst().undo();
-        // Next player's turn.
-        turnOwner = getOpponent(turnOwner);
+        final Move move = moveHistory.getMoves().get(ply);
+        moveHistory.redo();
+        repetitions.push(plyHashes[ply + 1], plyIrreversible[ply + 1]);
+        positionChanged();
+        fireGameEvent(GameEvent.MOVE_PERFORMED, move);
+    }
+    @Override
+    public final void seekTo(final int ply) {
+        moveHistory.seek(ply);
+        restoreRepetitions();
+        positionChanged();
+        fireGameEvent(GameEvent.SEEKED, null);
+    }
+    @Override
+    public final void addGameListener(final GameListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+    @Override
+    public final void removeGameListener(final GameListener listener) {
+        listeners.remove(listener);
+    }
+    @Override
+    public final void clearGameListeners() {
+        listeners.clear();
+    }
+    @Override
+    public final int getPly() {
+        return moveHistory.getPly();
+    }
+    @Override
+    public final List<Move> getMoveHistory() {
+        return moveHistory.getMoves();
+    }
+    /**
+     * Tells the listeners about a change to the position, without creating
+     * the event if there are none.
+     *
+     * @param type  the type of change
+     * @param move  the move performed or undone, if any
+     */
+    private void fireGameEvent(final int type, final Move move) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        final GameEvent event = new GameEvent(this, type,
+                moveHistory.getPly(), move, result);
+        for (final GameListener listener : listeners) {
+            listener.onGameEvent(event);
+        }
+    }
+    /**
+     * Brings the turn, result and cached moves up to date after moving
+     * through the history.
+     */
+    private void positionChanged() {
+        legalMoves = null;
+        legalMoveLookup = null;
+        turnOwner = getTurnOwnerAt(moveHistory.getPly());
+        updateResult();
+    }
+    /**
+     * Decides whether the game has ended in the current position.
+     */
+    private void updateResult() {
+        // Check if the current player has any moves left.
+        if (!moveGenerator.hasAnyMove(board, turnOwner.getColour())) {
+         // Their turn but they have no moves left so the opposing player wins.
+            result = new GameResult(getOpponent(turnOwner));
+        } else if (repetitions.getReversiblePlies() >= DRAW_PLY_LIMIT
+                || repetitions.countRepetitions() >= DRAW_REPETITIONS - 1) {
+            result = new GameResult(null);
+        } else {
+            result = null;
+        }
+    }
+    /**
+     * Gets whoever's turn it is at the specified ply of the history.
+     *
+     * @param ply  the ply
+     * @return     the owner of the turn
+     */
+    private Player getTurnOwnerAt(final int ply) {
+        return ply % 2 == 0 ? startTurnOwner : getOpponent(startTurnOwner);
+    }
+    /**
+     * Records the hash of the position at a ply of the history and adds it
+     * to the repetitions.
+     *
+     * @param ply           the ply
+     * @param hash          the hash of the position
+     * @param irreversible  whether the move that reached it was irreversible
+     */
+    private void pushPosition(final int ply, final long hash,
+            final boolean irreversible) {
+        if (ply == plyHashes.length) {
+            plyHashes = Arrays.copyOf(plyHashes, ply * 2);
+            plyIrreversible = Arrays.copyOf(plyIrreversible, ply * 2);
+        }
+        plyHashes[ply] = hash;
+        plyIrreversible[ply] = irreversible;
+        repetitions.push(hash, irreversible);
+    }
+    /**
+     * Restores the positions since the last irreversible move up to the
+     * current ply from the recorded hashes.
+     * <p>
+     * Only the plies that can still affect the result are restored, so this
+     * costs at most {@link #DRAW_PLY_LIMIT} array reads and neither moves
+     * through the history nor hashes any boards.
+     */
+    private void restoreRepetitions() {
+        final int ply = moveHistory.getPly();
+        final int start = Math.max(0, ply - DRAW_PLY_LIMIT);
+        repetitions.clear();
+        repetitions.push(plyHashes[start], true);
+        for (int i = start + 1; i <= ply; i++) {
+            repetitions.push(plyHashes[i], plyIrreversible[i]);
+        }
+    }
+    /**
+     * Finds the legal move for the current turn owner that is equivalent to
+     * the specified move.
+     *
+     * @param move  the move
+     * @return      the legal move, or <code>null</code> if the move is not
+     *              legal
+     */
+    private Move findLegalMove(final Move move) {
+        if (legalMoveLookup == null) {
+            final List<Move> moves = getLegalMoves();
+            final int movesSize = moves.size();
+            legalMoveLookup = new HashMap<>(movesSize * 2);
+            for (int i = 0; i < movesSize; i++) {
+                final Move legal = moves.get(i);
+                legalMoveLookup.put(legal, legal);
+            }
+        }
+        return legalMoveLookup.get(move);
     }
     /**
-     * Initialises the pieces and places them into their correct starting
-     * positions.
+     * Places new pieces into their starting positions, copied from
+     * {@link #STARTING_PIECES}.
      */
     private void initPieces() {
+        for (int i = 0; i < STARTING_PIECES.length; i++) {
+            final Piece startingPiece = STARTING_PIECES[i];
+            board.pieces[i] =
+                    startingPiece == null ? null : new Piece(startingPiece);
+        }
+    }
+    /**
+     * Creates the pieces in their correct starting positions.
+     *
+     * @return  the board array of pieces
+     */
+    private static Piece[] createStartingPieces() {
+        final Board board = new Board(BOARD_WIDTH, BOARD_HEIGHT);
 //      board.setPieceAt(7, 4, new Piece(Piece.LIGHT, Piece.BOTH));
 //
 //      board.setPieceAt(0, 3, new Piece(Piece.DARK, Piece.BOTH));
@@ -166,5 +446,6 @@ public class EnglishDraughtsGame implements Game {
         board.setPieceAt(2, 7, new Piece(Piece.LIGHT, Piece.UP));
         board.setPieceAt(4, 7, new Piece(Piece.LIGHT, Piece.UP));
         board.setPieceAt(6, 7, new Piece(Piece.LIGHT, Piece.UP));
+        return board.pieces;
     }
 }
@@ -0,0 +1,55 @@
+package mullen.alex.jdf.variant.english;
+
+import java.util.List;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.UnmoveGenerator;
+import mullen.alex.jdf.common.UnmoveGeneratorUtil;
+
+/**
+ * An unmove generator implementation that takes into account the rules of
+ * English draughts.
+ * <p>
+ * Kings move and jump a single square in any direction and men can only move
+ * and jump forwards.
+ *
+ * @author  Alex Mullen
+ *
+ */
+public class EnglishDraughtsUnmoveGenerator implements UnmoveGenerator {
+    /** Holds the most jumped pieces restored for a single predecessor. */
+    private final int maxUncaptures;
+    /**
+     * Creates a new instance that restores any number of jumped pieces.
+     *
+     * @see #EnglishDraughtsUnmoveGenerator(int)
+     */
+    public EnglishDraughtsUnmoveGenerator() {
+        this(Integer.MAX_VALUE);
+    }
+    /**
+     * Creates a new instance that restores at most the specified number of
+     * jumped pieces for a single predecessor.
+     * <p>
+     * Retrograde solvers working on a fixed number of pieces can use
+     * <code>0</code> or <code>1</code> here to avoid generating the very large
+     * number of un-captures a lone king can have.
+     *
+     * @param maxJumpsToUndo  the most jumped pieces to restore
+     *
+     * @throws IllegalArgumentException  if <code>maxJumpsToUndo</code> is
+     *                                   negative
+     */
+    public EnglishDraughtsUnmoveGenerator(final int maxJumpsToUndo) {
+        if (maxJumpsToUndo < 0) {
+            throw new IllegalArgumentException("maxJumpsToUndo needs to >= 0");
+        }
+        maxUncaptures = maxJumpsToUndo;
+    }
+    @Override
+    public final List<Board> findPredecessors(final Board board,
+            final int colour) {
+        return UnmoveGeneratorUtil.findPredecessors(board, colour, false,
+                false, maxUncaptures);
+    }
+}
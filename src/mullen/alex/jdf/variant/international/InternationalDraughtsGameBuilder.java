@@ -2,6 +2,7 @@ package mullen.alex.jdf.variant.international;
 
 import mullen.alex.jdf.common.Game;
 import mullen.alex.jdf.common.GameBuilder;
+import mullen.alex.jdf.common.GamePool;
 
 /**
  * A game builder implementation for International draughts.
@@ -28,6 +29,10 @@ public class InternationalDraughtsGameBuilder implements GameBuilder {
                 config.getDarkPlayer());
     }
     @Override
+    public final GamePool createPool(final Config config, final int maxIdle) {
+        return new GamePool(this, config, maxIdle);
+    }
+    @Override
     public final String toString() {
         return getName();
     }
@@ -55,6 +55,34 @@ public class InternationalDraughtsMoveGenerator implements MoveGenerator {
         return foundJumps.isEmpty() ? foundSimpleMoves : findJumpSequences(
                 board, foundJumps);
     }
+    @Override
+    public final boolean hasAnyMove(final Board board, final int colour) {
+        final List<Move> foundSimpleMoves = new ArrayList<>(4);
+        final List<Jump> foundJumps = new ArrayList<>(4);
+        final Piece[] pieces = board.pieces;
+        final BoardPosition[] positions = board.positions;
+        final int piecesArrayLength = pieces.length;
+        for (int i = 0; i < piecesArrayLength; i++) {
+            final Piece foundPiece = pieces[i];
+            if (foundPiece != null && foundPiece.colour == colour) {
+                /*
+                 * Any simple move or single jump means there is a legal move,
+                 * as a jump can always be completed into a jump sequence.
+                 */
+                final BoardPosition piecePosition = positions[i];
+                findSimpleMovesForPiece(board, foundPiece, piecePosition,
+                        foundSimpleMoves);
+                if (!foundSimpleMoves.isEmpty()) {
+                    return true;
+                }
+                findJumpsForPiece(board, foundPiece, piecePosition, foundJumps);
+                if (!foundJumps.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
     /**
      * Gets all available jumps for a piece on a board.
      *
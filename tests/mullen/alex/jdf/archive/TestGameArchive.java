@@ -0,0 +1,167 @@
+package mullen.alex.jdf.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GameArchiveWriter} and {@link GameArchiveReader}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestGameArchive {
+    /** The number of random games archived by each test. */
+    private static final int GAMES = 50;
+    /** The number of bytes in an archive header. */
+    private static final int HEADER_SIZE = 12;
+    /**
+     * Tests random English and International games read back as they were
+     * written, taking no more than a byte per ply plus a little per game.
+     *
+     * @throws IOException  if the archive could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testRoundTrip() throws IOException {
+        for (final Game template : new Game[] {GameFixtures.newEnglishGame(),
+                GameFixtures.newInternationalGame()}) {
+            final List<GameRecord> records = playRandomGames(template);
+            final byte[] bytes = writeArchive(template, records);
+            int plies = 0;
+            for (final GameRecord record : records) {
+                plies += record.moves.size();
+            }
+            assertTrue(bytes.length <= HEADER_SIZE + plies + (GAMES * 2));
+            try (GameArchiveReader reader = new GameArchiveReader(
+                    new ByteArrayInputStream(bytes), template)) {
+                for (final GameRecord record : records) {
+                    final GameRecord read = reader.read();
+                    assertEquals(record.moves, read.moves);
+                    assertEquals(record.result, read.result);
+                }
+                assertNull(reader.read());
+            }
+        }
+    }
+    /**
+     * Tests an archive of one variant is not read as another.
+     *
+     * @throws IOException  always
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = IOException.class)
+    public final void testWrongVariant() throws IOException {
+        final byte[] bytes = writeArchive(GameFixtures.newEnglishGame(),
+                new ArrayList<GameRecord>());
+        new GameArchiveReader(new ByteArrayInputStream(bytes),
+                GameFixtures.newInternationalGame()).close();
+    }
+    /**
+     * Tests a game cut short is reported as truncated.
+     *
+     * @throws IOException  always
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = IOException.class)
+    public final void testTruncated() throws IOException {
+        final Game template = GameFixtures.newEnglishGame();
+        final byte[] bytes = writeArchive(template,
+                playRandomGames(template));
+        final byte[] truncated = new byte[HEADER_SIZE + 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try (GameArchiveReader reader = new GameArchiveReader(
+                new ByteArrayInputStream(truncated), template)) {
+            reader.read();
+        }
+    }
+    /**
+     * Tests a game rejected for an illegal move leaves nothing in the
+     * archive, so the games written after it still read back.
+     *
+     * @throws IOException  if the archive could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testIllegalGameNotWritten() throws IOException {
+        final Game template = GameFixtures.newEnglishGame();
+        final GameRecord good = playRandomGames(template).get(0);
+        final Move first = good.moves.get(0);
+        final GameRecord bad = new GameRecord(
+                Arrays.asList(first, first), GameRecord.UNFINISHED);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GameArchiveWriter writer = new GameArchiveWriter(out,
+                template)) {
+            try {
+                writer.write(bad);
+                fail("expected an illegal move");
+            } catch (final IllegalArgumentException e) {
+                // Expected.
+            }
+            writer.write(good);
+        }
+        try (GameArchiveReader reader = new GameArchiveReader(
+                new ByteArrayInputStream(out.toByteArray()), template)) {
+            final GameRecord read = reader.read();
+            assertEquals(good.moves, read.moves);
+            assertEquals(good.result, read.result);
+            assertNull(reader.read());
+        }
+    }
+    /**
+     * Writes games to an archive in memory.
+     *
+     * @param template  the game the archive is for
+     * @param records   the games
+     * @return          the archive
+     *
+     * @throws IOException  if the archive could not be written
+     */
+    private static byte[] writeArchive(final Game template,
+            final List<GameRecord> records) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GameArchiveWriter writer = new GameArchiveWriter(out,
+                template)) {
+            for (final GameRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return out.toByteArray();
+    }
+    /**
+     * Plays random games from the starting position of a game.
+     *
+     * @param template  the game, which is forked for each game played
+     * @return          the games
+     */
+    private static List<GameRecord> playRandomGames(final Game template) {
+        final Random random = new Random(1);
+        final List<GameRecord> records = new ArrayList<>(GAMES);
+        for (int i = 0; i < GAMES; i++) {
+            final Game game = template.fork();
+            while (game.getResult() == null) {
+                final List<Move> moves = game.getLegalMoves();
+                game.performMove(moves.get(random.nextInt(moves.size())));
+            }
+            records.add(new GameRecord(new ArrayList<>(game.getMoveHistory()),
+                    game.getResult().isDraw()
+                            ? GameRecord.DRAW : GameRecord.UNFINISHED));
+        }
+        return records;
+    }
+}
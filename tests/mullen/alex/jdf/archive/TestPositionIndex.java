@@ -0,0 +1,115 @@
+package mullen.alex.jdf.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.ZobristHasher;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PositionIndexBuilder} and {@link PositionIndex}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestPositionIndex {
+    /** The number of random games indexed. */
+    private static final int GAMES = 300;
+    /** The number of postings in each run, small to force many runs. */
+    private static final int RUN_POSTINGS = 1000;
+    /**
+     * Tests every position of every game is found at the ply it was reached
+     * at, using several threads and many runs.
+     *
+     * @throws Exception  if the files could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testFindsEveryPosition() throws Exception {
+        final Game template = GameFixtures.newEnglishGame();
+        final Random random = new Random(1);
+        final List<GameRecord> records = new ArrayList<>(GAMES);
+        final List<Long> finalHashes = new ArrayList<>(GAMES);
+        long positions = 0;
+        for (int i = 0; i < GAMES; i++) {
+            final Game game = template.fork();
+            while (game.getResult() == null) {
+                final List<Move> moves = game.getLegalMoves();
+                game.performMove(moves.get(random.nextInt(moves.size())));
+            }
+            records.add(new GameRecord(new ArrayList<>(game.getMoveHistory()),
+                    GameRecord.UNFINISHED));
+            finalHashes.add(ZobristHasher.hash(game.getBoard(),
+                    game.getTurn().getColour()));
+            positions += game.getPly() + 1;
+        }
+        final File archive = File.createTempFile("games", ".jdfa");
+        final File index = File.createTempFile("games", ".jdfi");
+        try {
+            try (GameArchiveWriter writer = new GameArchiveWriter(
+                    new FileOutputStream(archive), template)) {
+                for (final GameRecord record : records) {
+                    writer.write(record);
+                }
+            }
+            final long written = new PositionIndexBuilder(template,
+                    RUN_POSTINGS).build(archive, index, 3);
+            assertEquals(positions, written);
+            final PositionIndex positionIndex = new PositionIndex(index);
+            assertEquals(positions, positionIndex.size());
+            final Board start = template.getBoard();
+            final List<PositionIndex.Posting> starts = positionIndex.find(
+                    start, template.getTurn().getColour());
+            assertEquals(GAMES, starts.size());
+            for (int i = 0; i < GAMES; i++) {
+                assertEquals(i, starts.get(i).game);
+                assertEquals(0, starts.get(i).ply);
+            }
+            for (int i = 0; i < GAMES; i++) {
+                boolean found = false;
+                for (final PositionIndex.Posting posting
+                        : positionIndex.find(finalHashes.get(i))) {
+                    found |= posting.game == i && posting.ply
+                            == records.get(i).moves.size();
+                }
+                assertTrue(found);
+                assertEquals(positionIndex.find(finalHashes.get(i)).size(),
+                        positionIndex.count(finalHashes.get(i)));
+            }
+        } finally {
+            archive.delete();
+            index.delete();
+        }
+    }
+    /**
+     * Tests sorting postings orders them by hash and then by value.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSortPostings() {
+        final Random random = new Random(2);
+        final int count = 5000;
+        final long[] hashes = new long[count];
+        final long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = random.nextInt(100) - 50;
+            values[i] = random.nextLong();
+        }
+        PositionIndexBuilder.sortPostings(hashes, values, 0, count);
+        for (int i = 1; i < count; i++) {
+            assertTrue(hashes[i - 1] < hashes[i] || (hashes[i - 1]
+                    == hashes[i] && values[i - 1] <= values[i]));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package mullen.alex.jdf.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.ZobristHasher;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link OpeningBook} and {@link OpeningBookBuilder}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestOpeningBook {
+    /** The number of random games to build the books from. */
+    private static final int GAMES = 300;
+    /** The number of plies of each random game. */
+    private static final int PLIES = 12;
+    /**
+     * Tests the counts for the starting position add up to every game and
+     * are ordered most played first, and that the same book is produced
+     * however many threads build it.
+     *
+     * @throws Exception  if the book could not be built
+     */
+    @Test
+    public final void testStartingPositionCounts() throws Exception {
+        final Game game = GameFixtures.newEnglishGame();
+        final List<GameRecord> records = randomGames(game);
+        final File single = File.createTempFile("book", ".bin");
+        final File parallel = File.createTempFile("book", ".bin");
+        try {
+            final OpeningBookBuilder builder =
+                    new OpeningBookBuilder(game, PLIES);
+            final long written = builder.build(records, single, 1);
+            assertEquals(written, builder.build(records, parallel, 4));
+            assertEquals(single.length(), parallel.length());
+            final OpeningBook book = new OpeningBook(parallel);
+            assertEquals(written, book.size());
+            final List<BookEntry> entries = book.lookup(game.getBoard(),
+                    game.getTurn().getColour());
+            long total = 0;
+            long previous = Long.MAX_VALUE;
+            for (final BookEntry entry : entries) {
+                assertTrue(entry.getGames() <= previous);
+                previous = entry.getGames();
+                total += entry.getGames();
+            }
+            assertEquals(GAMES, total);
+        } finally {
+            single.delete();
+            parallel.delete();
+        }
+    }
+    /**
+     * Tests the wins, draws and losses are from the point of view of the side
+     * that played the move.
+     *
+     * @throws Exception  if the book could not be built
+     */
+    @Test
+    public final void testResultsFromMoversPointOfView() throws Exception {
+        final Game game = GameFixtures.newEnglishGame();
+        final Board board = game.getBoard();
+        final int colour = game.getTurn().getColour();
+        final Move move =
+                game.getMoveGenerator().findMoves(board, colour).get(0);
+        final List<GameRecord> records = new ArrayList<>();
+        final List<Move> moves = new ArrayList<>();
+        moves.add(move);
+        records.add(new GameRecord(moves, colour == Piece.DARK
+                ? GameRecord.DARK_WIN : GameRecord.LIGHT_WIN));
+        records.add(new GameRecord(moves, GameRecord.DRAW));
+        final File file = File.createTempFile("book", ".bin");
+        try {
+            new OpeningBookBuilder(game, PLIES).build(records, file, 2);
+            final List<BookEntry> entries =
+                    new OpeningBook(file).lookup(board, colour);
+            assertEquals(1, entries.size());
+            assertEquals(1, entries.get(0).wins);
+            assertEquals(1, entries.get(0).draws);
+            assertEquals(0, entries.get(0).losses);
+            assertEquals(move.from.y + (board.height * move.from.x),
+                    entries.get(0).from);
+        } finally {
+            file.delete();
+        }
+    }
+    /**
+     * Tests the book move found for the starting position is the most played
+     * legal move, and that positions not in the book have no entries.
+     *
+     * @throws Exception  if the book could not be built
+     */
+    @Test
+    public final void testFindMove() throws Exception {
+        final Game game = GameFixtures.newEnglishGame();
+        final File file = File.createTempFile("book", ".bin");
+        try {
+            new OpeningBookBuilder(game, PLIES).build(randomGames(game), file);
+            final OpeningBook book = new OpeningBook(file);
+            final Board board = game.getBoard();
+            final int colour = game.getTurn().getColour();
+            final MoveGenerator generator = game.getMoveGenerator();
+            final MovePerformer performer = game.getMovePerformer();
+            final Move move = book.findMove(board, colour, generator,
+                    performer);
+            performer.perform(move, board);
+            assertEquals(book.lookup(game.getBoard(), colour).get(0)
+                    .resultHash, ZobristHasher.hash(board,
+                            Piece.getOpposingColourOf(colour)));
+            assertTrue(book.lookup(new Board(board.width, board.height),
+                    colour).isEmpty());
+            assertNull(book.findMove(new Board(board.width, board.height),
+                    colour, generator, performer));
+        } finally {
+            file.delete();
+        }
+    }
+    /**
+     * Tests opening a file that is not a book fails.
+     *
+     * @throws IOException  if the temporary file could not be written
+     */
+    @Test(expected = IOException.class)
+    public final void testOpenInvalidFile() throws IOException {
+        final File file = File.createTempFile("book", ".bin");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[OpeningBook.HEADER_SIZE]);
+            }
+            new OpeningBook(file);
+        } finally {
+            file.delete();
+        }
+    }
+    /**
+     * Plays random games from the starting position of the specified game.
+     *
+     * @param game  the game in its starting position
+     * @return      the records of the games
+     */
+    private static List<GameRecord> randomGames(final Game game) {
+        final Random random = new Random(1);
+        final MoveGenerator generator = game.getMoveGenerator();
+        final MovePerformer performer = game.getMovePerformer();
+        final List<GameRecord> records = new ArrayList<>(GAMES);
+        for (int i = 0; i < GAMES; i++) {
+            final Board board = game.getBoard();
+            int colour = game.getTurn().getColour();
+            final List<Move> moves = new ArrayList<>(PLIES);
+            for (int ply = 0; ply < PLIES; ply++) {
+                final List<Move> legal = generator.findMoves(board, colour);
+                if (legal.isEmpty()) {
+                    break;
+                }
+                final Move move = legal.get(random.nextInt(legal.size()));
+                performer.perform(move, board);
+                moves.add(move);
+                colour = Piece.getOpposingColourOf(colour);
+            }
+            records.add(new GameRecord(moves,
+                    GameRecord.DARK_WIN + random.nextInt(GameRecord.DRAW)));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,49 @@
+package mullen.alex.jdf.common;
+
+import mullen.alex.jdf.variant.english.EnglishDraughtsGame;
+import mullen.alex.jdf.variant.international.InternationalDraughtsGame;
+
+/**
+ * Builds the games used throughout the unit tests, played between two
+ * {@link PlaceholderPlayer}s.
+ *
+ * @author  Alex Mullen
+ */
+public final class GameFixtures {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private GameFixtures() {
+        // Intentionally empty.
+    }
+    /**
+     * Creates a new English draughts game in its starting position.
+     *
+     * @return  the game
+     */
+    public static Game newEnglishGame() {
+        return new EnglishDraughtsGame(new PlaceholderPlayer(Piece.LIGHT),
+                new PlaceholderPlayer(Piece.DARK));
+    }
+    /**
+     * Creates a new International draughts game in its starting position.
+     *
+     * @return  the game
+     */
+    public static Game newInternationalGame() {
+        return new InternationalDraughtsGame(
+                new PlaceholderPlayer(Piece.LIGHT),
+                new PlaceholderPlayer(Piece.DARK));
+    }
+    /**
+     * Creates a configuration for building games between two new players.
+     *
+     * @return  the configuration
+     */
+    public static GameBuilder.Config newConfig() {
+        final GameBuilder.Config config = new GameBuilder.Config();
+        config.setDarkPlayer(new PlaceholderPlayer(Piece.DARK));
+        config.setLightPlayer(new PlaceholderPlayer(Piece.LIGHT));
+        return config;
+    }
+}
@@ -0,0 +1,129 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BatchingGameListener}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestBatchingGameListener {
+    /** The move used in the events. */
+    private static final Move MOVE = new Move(new BoardPosition(1, 2),
+            new BoardPosition(0, 3));
+    /** Holds the tasks given to the executor and not yet run. */
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    /** An executor that only runs tasks when the test says so. */
+    private final Executor manualExecutor = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+    };
+    /** Holds the batches received, in order. */
+    private final List<List<GameEvent>> batches = new ArrayList<>();
+    /** A receiver that records the batches. */
+    private final BatchingGameListener.Receiver receiver =
+            new BatchingGameListener.Receiver() {
+                @Override
+                public void onGameEvents(final List<GameEvent> events) {
+                    batches.add(events);
+                }
+            };
+    /**
+     * Tests events queued while the receiver is not running are handed on
+     * in one batch, in order, by a single dispatch.
+     */
+    @Test
+    public final void testBatchesQueuedEvents() {
+        final BatchingGameListener listener =
+                new BatchingGameListener(receiver, 16, manualExecutor);
+        listener.onGameEvent(event(GameEvent.MOVE_PERFORMED, 1, MOVE));
+        listener.onGameEvent(event(GameEvent.MOVE_PERFORMED, 2, MOVE));
+        listener.onGameEvent(event(GameEvent.MOVE_PERFORMED, 3, MOVE));
+        assertEquals(1, tasks.size());
+        tasks.poll().run();
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(3, batches.get(0).get(2).ply);
+        // Once drained a new event starts a new dispatch.
+        listener.onGameEvent(event(GameEvent.MOVE_PERFORMED, 4, MOVE));
+        assertEquals(1, tasks.size());
+    }
+    /**
+     * Tests a move undone before being handed on is dropped along with the
+     * undo, and repeated seeks keep only the last.
+     */
+    @Test
+    public final void testCoalescesEvents() {
+        final BatchingGameListener listener =
+                new BatchingGameListener(receiver, 16, manualExecutor);
+        listener.onGameEvent(event(GameEvent.MOVE_PERFORMED, 1, MOVE));
+        listener.onGameEvent(event(GameEvent.MOVE_PERFORMED, 2, MOVE));
+        listener.onGameEvent(event(GameEvent.MOVE_UNDONE, 1, MOVE));
+        listener.onGameEvent(event(GameEvent.SEEKED, 0, null));
+        final GameEvent lastSeek = event(GameEvent.SEEKED, 1, null);
+        listener.onGameEvent(lastSeek);
+        tasks.poll().run();
+        final List<GameEvent> batch = batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(GameEvent.MOVE_PERFORMED, batch.get(0).type);
+        assertSame(lastSeek, batch.get(1));
+    }
+    /**
+     * Tests a game performing moves hands compact events to the receiver
+     * through a listener running on a direct executor.
+     */
+    @Test
+    public final void testEventsFromGame() {
+        final BatchingGameListener listener = new BatchingGameListener(
+                receiver, 1, new Executor() {
+                    @Override
+                    public void execute(final Runnable command) {
+                        command.run();
+                    }
+                });
+        final Game game = GameFixtures.newEnglishGame();
+        game.addGameListener(listener);
+        final Move first = game.getLegalMoves().get(0);
+        game.performMove(first);
+        game.undoMove();
+        game.redoMove();
+        game.seekTo(0);
+        game.removeGameListener(listener);
+        game.reset();
+        assertEquals(4, batches.size());
+        final GameEvent performed = batches.get(0).get(0);
+        assertSame(game, performed.game);
+        assertEquals(GameEvent.MOVE_PERFORMED, performed.type);
+        assertEquals(1, performed.ply);
+        assertEquals(first, performed.move);
+        assertNull(performed.result);
+        assertEquals(GameEvent.MOVE_UNDONE, batches.get(1).get(0).type);
+        assertEquals(0, batches.get(1).get(0).ply);
+        assertEquals(GameEvent.SEEKED, batches.get(3).get(0).type);
+    }
+    /**
+     * Creates an event for a game that is never looked at.
+     *
+     * @param type  the type
+     * @param ply   the ply
+     * @param move  the move
+     * @return      the event
+     */
+    private static GameEvent event(final int type, final int ply,
+            final Move move) {
+        return new GameEvent(null, type, ply, move, null);
+    }
+}
@@ -0,0 +1,93 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import mullen.alex.jdf.variant.english.EnglishDraughtsMoveGenerator;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link BoardSymmetry}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestBoardSymmetry {
+    /** The symmetry for an English sized board. */
+    private final BoardSymmetry symmetry = new BoardSymmetry(
+            new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 8, 8), 8, 8);
+    /**
+     * Tests an even width checkered board only allows the colour flip.
+     */
+    @Test
+    public final void testIsAllowedWithEvenWidth() {
+        assertTrue(symmetry.isAllowed(BoardSymmetry.IDENTITY));
+        assertTrue(symmetry.isAllowed(BoardSymmetry.COLOUR_FLIP));
+        assertFalse(symmetry.isAllowed(BoardSymmetry.MIRROR));
+        assertFalse(symmetry.isAllowed(
+                BoardSymmetry.MIRROR | BoardSymmetry.COLOUR_FLIP));
+    }
+    /**
+     * Tests an odd sized checkered board allows every transform.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testIsAllowedWithOddSize() {
+        final BoardSymmetry oddSymmetry = new BoardSymmetry(
+                new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 9, 9),
+                9, 9);
+        assertTrue(oddSymmetry.isAllowed(BoardSymmetry.MIRROR));
+        assertTrue(oddSymmetry.isAllowed(
+                BoardSymmetry.MIRROR | BoardSymmetry.COLOUR_FLIP));
+    }
+    /**
+     * Tests a board and its colour flipped version share a canonical board.
+     */
+    @Test
+    public final void testFindCanonicalTransformWithColourFlip() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 0, new Piece(DARK, DOWN));
+        board.setPieceAt(2, 5, new Piece(LIGHT, BOTH));
+        final Board flipped =
+                symmetry.transform(board, BoardSymmetry.COLOUR_FLIP);
+        final Board expectedFlipped = new Board(8, 8);
+        expectedFlipped.setPieceAt(6, 7, new Piece(LIGHT, UP));
+        expectedFlipped.setPieceAt(5, 2, new Piece(DARK, BOTH));
+        assertEquals(expectedFlipped, flipped);
+        // Dark to move is already canonical.
+        assertEquals(BoardSymmetry.IDENTITY,
+                symmetry.findCanonicalTransform(board, DARK));
+        // Light to move on the flipped board maps back to the original.
+        final int transform = symmetry.findCanonicalTransform(flipped, LIGHT);
+        assertEquals(BoardSymmetry.COLOUR_FLIP, transform);
+        assertEquals(board, symmetry.transform(flipped, transform));
+        assertEquals(DARK, BoardSymmetry.transformColour(LIGHT, transform));
+    }
+    /**
+     * Tests moves found on a canonical board map back to legal moves on the
+     * original board.
+     */
+    @Test
+    public final void testTransformMove() {
+        final MoveGenerator moveGen = new EnglishDraughtsMoveGenerator();
+        final Board board = new Board(8, 8);
+        board.setPieceAt(3, 4, new Piece(LIGHT, UP));
+        board.setPieceAt(2, 3, new Piece(DARK, DOWN));
+        final int transform = symmetry.findCanonicalTransform(board, LIGHT);
+        final Board canonical = symmetry.transform(board, transform);
+        final List<Move> canonicalMoves = moveGen.findMoves(canonical,
+                BoardSymmetry.transformColour(LIGHT, transform));
+        assertEquals(1, canonicalMoves.size());
+        final Move move =
+                symmetry.transformMove(board, canonicalMoves.get(0), transform);
+        final Move expected = moveGen.findMoves(board, LIGHT).get(0);
+        assertEquals(expected.from, move.from);
+        assertEquals(expected.to, move.to);
+        assertEquals(expected.jumps.get(0).jumped, move.jumps.get(0).jumped);
+    }
+}
@@ -0,0 +1,278 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import mullen.alex.jdf.variant.english.EnglishDraughtsGame;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GameDriver} and {@link MoveFuture}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestGameDriver {
+    /** The number of games to drive at once in the concurrent test. */
+    private static final int GAMES = 32;
+    /** The most seconds to wait for games to finish. */
+    private static final int TIMEOUT_SECONDS = 30;
+    /**
+     * Tests players that supply their moves straight away are driven to the
+     * end of the game within the call to start.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testDriveWithImmediatePlayers() {
+        final Game game = new EnglishDraughtsGame(
+                new RandomPlayer(Piece.LIGHT, 1, null),
+                new RandomPlayer(Piece.DARK, 2, null));
+        final RecordingListener listener = new RecordingListener(1);
+        final GameDriver driver = new GameDriver(game, listener);
+        driver.start();
+        assertTrue(driver.isFinished());
+        assertNotNull(game.getResult());
+        assertNull(listener.error);
+        assertEquals(game.getMoveHistory(), listener.moves);
+    }
+    /**
+     * Tests many games are driven to the end at once by players choosing
+     * their moves on a small pool of threads.
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testDriveConcurrently() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final RecordingListener listener = new RecordingListener(GAMES);
+            final List<Game> games = new ArrayList<>();
+            for (int i = 0; i < GAMES; i++) {
+                final Game game = new EnglishDraughtsGame(
+                        new RandomPlayer(Piece.LIGHT, i, executor),
+                        new RandomPlayer(Piece.DARK, -i, executor));
+                games.add(game);
+                new GameDriver(game, listener).start();
+            }
+            assertTrue(listener.finished.await(TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS));
+            assertNull(listener.error);
+            for (final Game game : games) {
+                assertNotNull(game.getResult());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Tests an illegal move from a player stops the game with an error.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testIllegalMoveReportsError() {
+        final Game game = new EnglishDraughtsGame(
+                new RandomPlayer(Piece.LIGHT, 1, null),
+                new AsyncPlayer() {
+                    @Override
+                    public int getColour() {
+                        return Piece.DARK;
+                    }
+                    @Override
+                    public boolean isArtificial() {
+                        return true;
+                    }
+                    @Override
+                    public MoveFuture requestMove(final Game forked) {
+                        return MoveFuture.completed(new Move(
+                                new BoardPosition(0, 0),
+                                new BoardPosition(1, 1)));
+                    }
+                });
+        final RecordingListener listener = new RecordingListener(1);
+        final GameDriver driver = new GameDriver(game, listener);
+        driver.start();
+        assertTrue(driver.isFinished());
+        assertTrue(listener.error instanceof IllegalArgumentException);
+        assertTrue(listener.moves.isEmpty());
+    }
+    /**
+     * Tests stopping a driver cancels the move it is waiting for and nothing
+     * more is reported.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testStopCancelsPendingMove() {
+        final MoveFuture pending = new MoveFuture();
+        final Game game = new EnglishDraughtsGame(
+                new RandomPlayer(Piece.LIGHT, 1, null),
+                new AsyncPlayer() {
+                    @Override
+                    public int getColour() {
+                        return Piece.DARK;
+                    }
+                    @Override
+                    public boolean isArtificial() {
+                        return true;
+                    }
+                    @Override
+                    public MoveFuture requestMove(final Game forked) {
+                        return pending;
+                    }
+                });
+        final RecordingListener listener = new RecordingListener(1);
+        final GameDriver driver = new GameDriver(game, listener);
+        driver.start();
+        assertFalse(driver.isFinished());
+        driver.stop();
+        assertTrue(pending.isCancelled());
+        assertTrue(driver.isFinished());
+        assertNull(listener.error);
+        assertEquals(1, listener.finished.getCount());
+    }
+    /**
+     * Tests a future is only completed once and tells callbacks added both
+     * before and after.
+     *
+     * @throws Exception  if the future fails unexpectedly
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testMoveFutureCompletesOnce() throws Exception {
+        final Move first = new Move(new BoardPosition(0, 0),
+                new BoardPosition(1, 1));
+        final MoveFuture future = new MoveFuture();
+        final List<Move> told = new ArrayList<>();
+        final MoveFuture.Callback callback = new MoveFuture.Callback() {
+            @Override
+            public void onMove(final Move move) {
+                told.add(move);
+            }
+            @Override
+            public void onFailure(final Throwable cause) {
+                throw new AssertionError(cause);
+            }
+        };
+        future.addCallback(callback);
+        assertFalse(future.isDone());
+        assertTrue(future.complete(first));
+        assertFalse(future.fail(new IllegalStateException()));
+        assertFalse(future.cancel(true));
+        future.addCallback(callback);
+        assertEquals(2, told.size());
+        assertEquals(first, future.get());
+    }
+    /**
+     * A player that chooses a random legal move, either straight away or on
+     * an executor.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class RandomPlayer implements AsyncPlayer {
+        /** Holds the colour of this player. */
+        private final int colour;
+        /** Holds the source of random choices. */
+        private final Random random;
+        /** Holds the executor to choose on, or null to choose straight away. */
+        private final ExecutorService executor;
+        /**
+         * Creates a new player.
+         *
+         * @param playerColour  the colour
+         * @param seed          the seed for the random choices
+         * @param chooser       the executor to choose moves on, or
+         *                      <code>null</code> to choose straight away
+         */
+        RandomPlayer(final int playerColour, final long seed,
+                final ExecutorService chooser) {
+            colour = playerColour;
+            random = new Random(seed);
+            executor = chooser;
+        }
+        @Override
+        public int getColour() {
+            return colour;
+        }
+        @Override
+        public boolean isArtificial() {
+            return true;
+        }
+        @Override
+        public MoveFuture requestMove(final Game game) {
+            if (executor == null) {
+                return MoveFuture.completed(choose(game));
+            }
+            final MoveFuture future = new MoveFuture();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    future.complete(choose(game));
+                }
+            });
+            return future;
+        }
+        /**
+         * Chooses a random legal move.
+         *
+         * @param game  the game
+         * @return      the move
+         */
+        private Move choose(final Game game) {
+            final List<Move> moves = game.getLegalMoves();
+            synchronized (random) {
+                return moves.get(random.nextInt(moves.size()));
+            }
+        }
+    }
+    /**
+     * A listener that records what it is told.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class RecordingListener
+            implements GameDriver.Listener {
+        /** Counts down as each game finishes. */
+        private final CountDownLatch finished;
+        /** Holds the moves performed, in order. */
+        private final List<Move> moves = new ArrayList<>();
+        /** Holds the first error reported, if any. */
+        private volatile Throwable error;
+        /**
+         * Creates a new listener.
+         *
+         * @param games  the number of games it will be told about
+         */
+        RecordingListener(final int games) {
+            finished = new CountDownLatch(games);
+        }
+        @Override
+        public void onMovePerformed(final Game game, final Player player,
+                final Move move) {
+            synchronized (moves) {
+                moves.add(move);
+            }
+        }
+        @Override
+        public void onGameOver(final Game game) {
+            finished.countDown();
+        }
+        @Override
+        public void onError(final Game game, final Throwable cause) {
+            if (error == null) {
+                error = cause;
+            }
+            finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import mullen.alex.jdf.variant.english.EnglishDraughtsGame;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GameScheduler}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestGameScheduler {
+    /** The number of games hosted at once in the tests. */
+    private static final int GAMES = 200;
+    /** The most seconds to wait for games to finish. */
+    private static final int TIMEOUT_SECONDS = 30;
+    /** The move deadline used by the tests, in milliseconds. */
+    private static final long DEADLINE_MILLIS = 50;
+    /**
+     * Tests many games hosted on two compute threads all play to the end and
+     * give their places back.
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testHostManyGames() throws InterruptedException {
+        final GameScheduler scheduler =
+                new GameScheduler(2, GAMES, GAMES, TimeUnit.SECONDS.toMillis(
+                        TIMEOUT_SECONDS));
+        try {
+            final Listener listener = new Listener(GAMES);
+            for (int i = 0; i < GAMES; i++) {
+                assertNotNull(scheduler.host(newGame(scheduler, 0),
+                        listener));
+            }
+            assertTrue(listener.finished.await(TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS));
+            assertNull(listener.error.get());
+            assertEquals(0, scheduler.getActiveSessions());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+    /**
+     * Tests games are refused once the most allowed are hosted, and accepted
+     * again once one is stopped.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testRefusesWhenSaturated() {
+        final GameScheduler scheduler = new GameScheduler(1, 1, 1,
+                TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        try {
+            final Listener listener = new Listener(2);
+            final GameScheduler.Session session = scheduler.host(
+                    newGame(scheduler, TimeUnit.SECONDS.toMillis(
+                            TIMEOUT_SECONDS)), listener);
+            assertNotNull(session);
+            assertTrue(scheduler.isSaturated());
+            assertNull(scheduler.host(newGame(scheduler, 0), listener));
+            session.stop();
+            assertEquals(0, scheduler.getActiveSessions());
+            assertTrue(session.isFinished());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+    /**
+     * Tests a computation that misses the deadline ends its game with a
+     * timeout and is interrupted.
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testDeadline() throws InterruptedException {
+        final GameScheduler scheduler = new GameScheduler(1, 1, 1,
+                DEADLINE_MILLIS);
+        try {
+            final Listener listener = new Listener(1);
+            assertNotNull(scheduler.host(newGame(scheduler,
+                    TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)), listener));
+            assertTrue(listener.finished.await(TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS));
+            assertTrue(listener.error.get() instanceof TimeoutException);
+            assertEquals(0, scheduler.getActiveSessions());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+    /**
+     * Tests requests that time out while queued behind a busy compute thread
+     * give their places in the queue back, so a new request still computes.
+     *
+     * @throws Exception  if the new request fails
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testTimedOutRequestsLeaveQueue() throws Exception {
+        final int queued = 3;
+        final GameScheduler scheduler = new GameScheduler(1, queued, queued,
+                DEADLINE_MILLIS);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            scheduler.compute(new Callable<Move>() {
+                @Override
+                public Move call() {
+                    // Keep the only compute thread busy, even once
+                    // interrupted, until the test is done.
+                    while (true) {
+                        try {
+                            blocked.await();
+                            return null;
+                        } catch (final InterruptedException e) {
+                            continue;
+                        }
+                    }
+                }
+            });
+            final Move move = new Move(new BoardPosition(1, 2),
+                    new BoardPosition(0, 3));
+            final Callable<Move> search = new Callable<Move>() {
+                @Override
+                public Move call() {
+                    return move;
+                }
+            };
+            for (int i = 0; i < queued; i++) {
+                try {
+                    scheduler.compute(search).get(TIMEOUT_SECONDS,
+                            TimeUnit.SECONDS);
+                    fail("request should have timed out");
+                } catch (final ExecutionException e) {
+                    assertTrue(e.getCause() instanceof TimeoutException);
+                }
+            }
+            // The futures fail before the scheduler hears of it, so give it
+            // a moment to take the requests off the queue.
+            final long end = System.nanoTime()
+                    + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (scheduler.getBacklog() > 0 && System.nanoTime() < end) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, scheduler.getBacklog());
+            assertFalse(scheduler.isSaturated());
+            final MoveFuture fresh = scheduler.compute(search);
+            blocked.countDown();
+            assertEquals(move, fresh.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            blocked.countDown();
+            scheduler.shutdown();
+        }
+    }
+    /**
+     * Creates a game between two players that think on the scheduler.
+     *
+     * @param scheduler    the scheduler
+     * @param thinkMillis  how long each player sleeps before choosing
+     * @return             the game
+     */
+    private static Game newGame(final GameScheduler scheduler,
+            final long thinkMillis) {
+        return new EnglishDraughtsGame(
+                new ScheduledPlayer(Piece.LIGHT, scheduler, thinkMillis),
+                new ScheduledPlayer(Piece.DARK, scheduler, thinkMillis));
+    }
+    /**
+     * A player that chooses the first legal move on a scheduler's compute
+     * threads, after sleeping for a while.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class ScheduledPlayer implements AsyncPlayer {
+        /** Holds the colour of this player. */
+        private final int colour;
+        /** Holds the scheduler to think on. */
+        private final GameScheduler scheduler;
+        /** Holds how long to sleep before choosing. */
+        private final long thinkMillis;
+        /**
+         * Creates a new player.
+         *
+         * @param playerColour     the colour
+         * @param playerScheduler  the scheduler to think on
+         * @param millis           how long to sleep before choosing
+         */
+        ScheduledPlayer(final int playerColour,
+                final GameScheduler playerScheduler, final long millis) {
+            colour = playerColour;
+            scheduler = playerScheduler;
+            thinkMillis = millis;
+        }
+        @Override
+        public int getColour() {
+            return colour;
+        }
+        @Override
+        public boolean isArtificial() {
+            return true;
+        }
+        @Override
+        public MoveFuture requestMove(final Game game) {
+            return scheduler.compute(new Callable<Move>() {
+                @Override
+                public Move call() throws InterruptedException {
+                    if (thinkMillis > 0) {
+                        Thread.sleep(thinkMillis);
+                    }
+                    final List<Move> moves = game.getLegalMoves();
+                    return moves.get(game.getPly() % moves.size());
+                }
+            });
+        }
+    }
+    /**
+     * A listener that counts finished games and keeps the first error.
+     *
+     * @author  Alex Mullen
+     */
+    private static final class Listener implements GameDriver.Listener {
+        /** Counts down as each game finishes. */
+        private final CountDownLatch finished;
+        /** Holds the first error reported, if any. */
+        private final AtomicReference<Throwable> error =
+                new AtomicReference<>();
+        /**
+         * Creates a new listener.
+         *
+         * @param games  the number of games it will be told about
+         */
+        Listener(final int games) {
+            finished = new CountDownLatch(games);
+        }
+        @Override
+        public void onMovePerformed(final Game game, final Player player,
+                final Move move) {
+            // Nothing to record.
+        }
+        @Override
+        public void onGameOver(final Game game) {
+            finished.countDown();
+        }
+        @Override
+        public void onError(final Game game, final Throwable cause) {
+            error.compareAndSet(null, cause);
+            finished.countDown();
+        }
+    }
+}
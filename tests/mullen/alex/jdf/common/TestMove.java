@@ -1,6 +1,10 @@
 package mullen.alex.jdf.common;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+
 import org.junit.Test;
 
 /**
@@ -23,4 +27,28 @@ public class TestMove {
         assertEquals(toPos, move.to);
         assertEquals(0, move.jumps.size());
     }
+    /**
+     * Tests moves are equal when they have the same positions and jumps.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testEqualsAndHashCode() {
+        final BoardPosition fromPos = new BoardPosition(1, 3);
+        final BoardPosition toPos = new BoardPosition(5, 3);
+        final Jump first = new Jump(fromPos, new BoardPosition(3, 5),
+                new BoardPosition(2, 4));
+        final Jump second = new Jump(new BoardPosition(3, 5), toPos,
+                new BoardPosition(4, 4));
+        final Move move = new Move(fromPos, toPos,
+                Arrays.asList(first, second));
+        final Move same = new Move(new BoardPosition(1, 3),
+                new BoardPosition(5, 3), Arrays.asList(
+                        new Jump(fromPos, new BoardPosition(3, 5),
+                                new BoardPosition(2, 4)), second));
+        assertEquals(move, same);
+        assertEquals(move.hashCode(), same.hashCode());
+        assertFalse(move.equals(new Move(fromPos, toPos)));
+        assertFalse(move.equals(new Move(fromPos, toPos,
+                Arrays.asList(second, first))));
+    }
 }
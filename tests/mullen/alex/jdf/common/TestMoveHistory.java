@@ -0,0 +1,169 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.variant.english.EnglishDraughtsMoveGenerator;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMovePerformer;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MoveHistory}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestMoveHistory {
+    /** The number of plies between snapshots used by the tests. */
+    private static final int INTERVAL = 4;
+    /** The most plies of random game each test plays. */
+    private static final int PLIES = 60;
+    /** The most plies of random game played by the long game test. */
+    private static final int LONG_PLIES = 1000;
+    /** The move generator to use for each test. */
+    private final MoveGenerator moveGen = new EnglishDraughtsMoveGenerator();
+    /** The move performer to use for each test. */
+    private final MovePerformer movePerformer =
+            new EnglishDraughtsMovePerformer();
+    /**
+     * Tests seeking to plies in a random order always gives the board that
+     * was there when the game was played.
+     */
+    @Test
+    public final void testSeekMatchesPlayedPositions() {
+        final Board board = newStartingBoard();
+        final MoveHistory history =
+                new MoveHistory(board, movePerformer, INTERVAL);
+        final List<Board> played = playRandomGame(board, history, PLIES);
+        final Random random = new Random(2);
+        for (int i = 0; i < PLIES * 4; i++) {
+            final int ply = random.nextInt(played.size());
+            history.seek(ply);
+            assertEquals(ply, history.getPly());
+            assertEquals(played.get(ply), board);
+        }
+    }
+    /**
+     * Tests undoing to the start and redoing to the end again passes through
+     * every played position.
+     */
+    @Test
+    public final void testUndoAndRedo() {
+        final Board board = newStartingBoard();
+        final MoveHistory history =
+                new MoveHistory(board, movePerformer, INTERVAL);
+        final List<Board> played = playRandomGame(board, history, PLIES);
+        history.seek(played.size() / 2);
+        while (history.undo()) {
+            assertEquals(played.get(history.getPly()), board);
+        }
+        assertEquals(0, history.getPly());
+        while (history.redo()) {
+            assertEquals(played.get(history.getPly()), board);
+        }
+        assertEquals(played.size() - 1, history.getPly());
+        assertFalse(history.redo());
+    }
+    /**
+     * Tests performing a move part way through the history discards the
+     * moves after it and keeps seeking correct.
+     */
+    @Test
+    public final void testPerformDiscardsLaterMoves() {
+        final Board board = newStartingBoard();
+        final MoveHistory history =
+                new MoveHistory(board, movePerformer, INTERVAL);
+        final List<Board> played = playRandomGame(board, history, PLIES);
+        final int ply = (INTERVAL * 2) + 1;
+        history.seek(ply);
+        final int colour = ply % 2 == 0 ? Piece.DARK : Piece.LIGHT;
+        final List<Move> moves = moveGen.findMoves(board, colour);
+        history.perform(moves.get(moves.size() - 1));
+        assertEquals(ply + 1, history.size());
+        final Board branched = new Board(board);
+        history.seek(0);
+        history.seek(ply + 1);
+        assertEquals(branched, board);
+        history.seek(ply);
+        assertEquals(played.get(ply), board);
+    }
+    /**
+     * Tests a long game keeps no more undo operations than the snapshot
+     * interval, while undoing to the start still passes through every played
+     * position.
+     */
+    @Test
+    public final void testLongGameBoundsUndoOperations() {
+        final Board board = newStartingBoard();
+        final MoveHistory history =
+                new MoveHistory(board, movePerformer, INTERVAL);
+        final List<Board> played =
+                playRandomGame(board, history, LONG_PLIES);
+        assertTrue(played.size() > PLIES);
+        assertTrue(history.getUndoDepth() <= INTERVAL);
+        while (history.undo()) {
+            assertTrue(history.getUndoDepth() <= INTERVAL);
+            assertEquals(played.get(history.getPly()), board);
+        }
+        assertEquals(0, history.getPly());
+    }
+    /**
+     * Tests seeking past the end of the history fails.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public final void testSeekOutOfRange() {
+        final Board board = newStartingBoard();
+        final MoveHistory history =
+                new MoveHistory(board, movePerformer, INTERVAL);
+        assertTrue(history.getMoves().isEmpty());
+        history.seek(1);
+    }
+    /**
+     * Plays a random game on the board, recording it in the history.
+     *
+     * @param board    the board
+     * @param history  the history
+     * @param plies    the most plies to play
+     * @return         copies of the board at every ply
+     */
+    private List<Board> playRandomGame(final Board board,
+            final MoveHistory history, final int plies) {
+        final Random random = new Random(1);
+        final List<Board> played = new ArrayList<>();
+        played.add(new Board(board));
+        int colour = Piece.DARK;
+        for (int i = 0; i < plies; i++) {
+            final List<Move> moves = moveGen.findMoves(board, colour);
+            if (moves.isEmpty()) {
+                break;
+            }
+            history.perform(moves.get(random.nextInt(moves.size())));
+            played.add(new Board(board));
+            colour = Piece.getOpposingColourOf(colour);
+        }
+        return played;
+    }
+    /**
+     * Creates an English draughts board in its starting position.
+     *
+     * @return  the board
+     */
+    private static Board newStartingBoard() {
+        final Board board = new Board(8, 8);
+        for (int x = 0; x < board.width; x++) {
+            for (int y = 0; y < board.height; y++) {
+                if ((x + y) % 2 == 1 && y < 3) {
+                    board.setPieceAt(x, y, new Piece(Piece.DARK, Piece.DOWN));
+                } else if ((x + y) % 2 == 1 && y > 4) {
+                    board.setPieceAt(x, y, new Piece(Piece.LIGHT, Piece.UP));
+                }
+            }
+        }
+        return board;
+    }
+}
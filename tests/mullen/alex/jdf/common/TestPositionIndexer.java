@@ -0,0 +1,90 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link PositionIndexer}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestPositionIndexer {
+    /** The pattern used for each test. */
+    private final BoardPattern pattern =
+            new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 8, 8);
+    /**
+     * Tests that every index maps to a distinct board that maps back to the
+     * same index.
+     */
+    @Test
+    public final void testUnrankThenRank() {
+        final PositionIndexer indexer =
+                new PositionIndexer(8, 8, pattern, 1, 1, 1, 0);
+        final Set<Board> boards = new HashSet<>();
+        for (long i = 0; i < indexer.size(); i++) {
+            final Board board = indexer.unrank(i);
+            assertEquals(i, indexer.rank(board));
+            boards.add(board);
+        }
+        assertEquals(indexer.size(), boards.size());
+    }
+    /**
+     * Tests the size matches the number of positions counted by hand.
+     * <p>
+     * A single dark man has 28 squares it can be on and a single light man
+     * has 28 squares too, less the one the dark man is on when it is not on
+     * its back row.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSizeWithOneManEach() {
+        final BoardPattern englishPattern =
+                new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 8, 8);
+        final PositionIndexer indexer =
+                new PositionIndexer(8, 8, englishPattern, 1, 0, 1, 0);
+        assertEquals(4 * 28 + 24 * 27, indexer.size());
+    }
+    /**
+     * Tests men on their crowning row are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testRankWithManOnCrowningRow() {
+        final PositionIndexer indexer =
+                new PositionIndexer(8, 8, pattern, 1, 0, 0, 0);
+        final Board board = new Board(8, 8);
+        board.setPieceAt(0, 7, new Piece(DARK, DOWN));
+        indexer.rank(board);
+    }
+    /**
+     * Tests boards with the wrong pieces are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testRankWithWrongPieces() {
+        final PositionIndexer indexer =
+                new PositionIndexer(8, 8, pattern, 1, 0, 0, 0);
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 0, new Piece(DARK, BOTH));
+        indexer.rank(board);
+    }
+    /**
+     * Tests the last index round trips on an International sized board.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testRankWithLargeBoard() {
+        final BoardPattern largePattern =
+                new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 10, 10);
+        final PositionIndexer indexer =
+                new PositionIndexer(10, 10, largePattern, 3, 1, 2, 2);
+        final Board board = indexer.unrank(indexer.size() - 1);
+        assertEquals(indexer.size() - 1, indexer.rank(board));
+        assertTrue(indexer.size() > 0);
+    }
+}
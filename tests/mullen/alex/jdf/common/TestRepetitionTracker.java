@@ -0,0 +1,93 @@
+package mullen.alex.jdf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RepetitionTracker}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestRepetitionTracker {
+    /**
+     * Tests repetitions are counted for the side to move since the last
+     * irreversible move only.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testCountRepetitions() {
+        final RepetitionTracker tracker = new RepetitionTracker(16);
+        tracker.push(1L, true);
+        tracker.push(2L, false);
+        tracker.push(1L, false);
+        tracker.push(2L, false);
+        tracker.push(1L, false);
+        assertEquals(2, tracker.countRepetitions());
+        assertEquals(4, tracker.getReversiblePlies());
+        // An irreversible move starts a new window.
+        tracker.push(2L, true);
+        tracker.push(1L, false);
+        assertEquals(0, tracker.countRepetitions());
+        assertEquals(1, tracker.getReversiblePlies());
+    }
+    /**
+     * Tests popping restores the previous position and its counts.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testPop() {
+        final RepetitionTracker tracker = new RepetitionTracker(16);
+        tracker.push(1L, true);
+        tracker.push(2L, false);
+        tracker.push(1L, false);
+        tracker.push(3L, true);
+        tracker.pop();
+        assertEquals(1L, tracker.getHash());
+        assertEquals(2, tracker.getReversiblePlies());
+        assertEquals(1, tracker.countRepetitions());
+        assertEquals(3, tracker.size());
+    }
+    /**
+     * Tests a position that would be reached is recognised as a repeat only
+     * when it occurred with the same side to move.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testWouldRepeat() {
+        final RepetitionTracker tracker = new RepetitionTracker(16);
+        tracker.push(1L, true);
+        tracker.push(2L, false);
+        tracker.push(3L, false);
+        assertTrue(tracker.wouldRepeat(2L));
+        assertFalse(tracker.wouldRepeat(1L));
+        tracker.push(4L, true);
+        assertFalse(tracker.wouldRepeat(3L));
+    }
+    /**
+     * Tests the window is reported incomplete once more positions have been
+     * pushed than fit and then popped back past.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testWindowCompleteAfterWrapping() {
+        final RepetitionTracker tracker = new RepetitionTracker(4);
+        tracker.push(0L, true);
+        for (int i = 1; i < 10; i++) {
+            tracker.push(i, false);
+        }
+        assertEquals(4, tracker.size());
+        assertEquals(9, tracker.getReversiblePlies());
+        assertFalse(tracker.isWindowComplete());
+        tracker.push(10L, true);
+        assertTrue(tracker.isWindowComplete());
+        tracker.pop();
+        tracker.pop();
+        tracker.pop();
+        tracker.pop();
+        assertEquals(0, tracker.size());
+        assertFalse(tracker.isWindowComplete());
+    }
+}
@@ -0,0 +1,114 @@
+package mullen.alex.jdf.notation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPattern;
+import mullen.alex.jdf.common.CheckeredBoardPattern;
+import mullen.alex.jdf.common.Piece;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FenNotation}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestFenNotation {
+    /** The notation for an English draughts board. */
+    private final FenNotation notation = new FenNotation(new SquareNumbering(
+            new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 8, 8),
+            8, 8));
+    /**
+     * Tests a position with kings is parsed onto the right squares.
+     */
+    @Test
+    public final void testParse() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(0, 0, new Piece(Piece.DARK, Piece.DOWN));
+        final int colour = notation.parse("W:W31,32,K15:B1,2,3", board);
+        assertEquals(Piece.LIGHT, colour);
+        assertNull(board.getPieceAt(0, 0));
+        final Piece king = board.getPieceAt(4, 3);
+        assertEquals(Piece.LIGHT, king.colour);
+        assertTrue(king.isCrowned());
+        assertEquals(Piece.UP, board.getPieceAt(6, 7).getMoveDirection());
+        assertEquals(Piece.DOWN, board.getPieceAt(1, 0).getMoveDirection());
+        assertEquals(6, countPieces(board));
+    }
+    /**
+     * Tests the starting position given as ranges formats back as the full
+     * list of squares and parses to the same board again.
+     */
+    @Test
+    public final void testRangesAndRoundTrip() {
+        final Board board = new Board(8, 8);
+        final int colour = notation.parse(" B:W21-32:B1-12. ", board);
+        assertEquals(Piece.DARK, colour);
+        assertEquals(24, countPieces(board));
+        final String fen = notation.format(board, colour);
+        assertEquals("B:W21,22,23,24,25,26,27,28,29,30,31,32"
+                + ":B1,2,3,4,5,6,7,8,9,10,11,12", fen);
+        final Board parsed = new Board(8, 8);
+        assertEquals(colour, notation.parse(fen, parsed));
+        assertEquals(board, parsed);
+    }
+    /**
+     * Tests crowning a piece of one parsed board does not crown the pieces
+     * of another.
+     */
+    @Test
+    public final void testPiecesNotShared() {
+        final Board first = new Board(8, 8);
+        notation.parse("B:W21:B1,5", first);
+        first.getPieceAt(1, 0).crown();
+        final Board second = new Board(8, 8);
+        notation.parse("B:W21:B1,5", second);
+        assertFalse(second.getPieceAt(1, 0).isCrowned());
+        assertFalse(second.getPieceAt(0, 1).isCrowned());
+        assertFalse(first.getPieceAt(0, 1).isCrowned());
+    }
+    /**
+     * Tests crowning the piece on one square of a range does not crown the
+     * pieces on the other squares of the range.
+     */
+    @Test
+    public final void testRangePiecesNotShared() {
+        final Board board = new Board(8, 8);
+        final int colour = notation.parse("B:W21:B1-3", board);
+        board.getPieceAt(1, 0).crown();
+        assertEquals("B:W21:BK1,2,3", notation.format(board, colour));
+    }
+    /**
+     * Tests a square that does not exist is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testSquareOutOfRange() {
+        notation.parse("W:W33:B1", new Board(8, 8));
+    }
+    /**
+     * Tests a position missing its squares is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testMalformed() {
+        notation.parse("W:W,:B1", new Board(8, 8));
+    }
+    /**
+     * Counts the pieces on a board.
+     *
+     * @param board  the board
+     * @return       the number of pieces
+     */
+    private static int countPieces(final Board board) {
+        int count = 0;
+        for (final Piece piece : board.pieces) {
+            if (piece != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,173 @@
+package mullen.alex.jdf.notation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.Piece;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedPosition}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestPackedPosition {
+    /**
+     * Tests English positions take three 32-bit masks and International ones
+     * twenty bytes.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSize() {
+        assertEquals(12, PackedPosition.forGame(
+                GameFixtures.newEnglishGame()).size());
+        assertEquals(20, PackedPosition.forGame(
+                GameFixtures.newInternationalGame()).size());
+    }
+    /**
+     * Tests the starting English position is packed as a mask per colour
+     * and the side to move is kept.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testEnglishMasks() {
+        final Game game = GameFixtures.newEnglishGame();
+        final PackedPosition packing = PackedPosition.forGame(game);
+        final ByteBuffer buffer = ByteBuffer.allocate(packing.size());
+        packing.encode(game.getBoard(), Piece.DARK, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertEquals(0x00000FFF, buffer.getInt());
+        assertEquals(0xFFF00000, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        buffer.flip();
+        final Board board = new Board(8, 8);
+        assertEquals(Piece.DARK, packing.decode(buffer, board));
+        assertEquals(game.getBoard(), board);
+        buffer.clear();
+        packing.encode(board, Piece.LIGHT, buffer);
+        buffer.flip();
+        assertEquals(Piece.LIGHT, packing.decode(buffer, board));
+        assertEquals(game.getBoard(), board);
+    }
+    /**
+     * Tests crowning a piece of one decoded board does not crown the pieces
+     * of another.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testPiecesNotShared() {
+        final Game game = GameFixtures.newEnglishGame();
+        final PackedPosition packing = PackedPosition.forGame(game);
+        final ByteBuffer buffer = ByteBuffer.allocate(packing.size());
+        packing.encode(game.getBoard(), Piece.DARK, buffer, 0);
+        final Board first = new Board(8, 8);
+        packing.decode(buffer, 0, first);
+        first.getPieceAt(1, 0).crown();
+        final Board second = new Board(8, 8);
+        packing.decode(buffer, 0, second);
+        assertEquals(game.getBoard(), second);
+        assertFalse(first.getPieceAt(3, 0).isCrowned());
+    }
+    /**
+     * Tests positions from random International games, kings included,
+     * decode to the positions they were encoded from.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testInternationalRoundTrip() {
+        final Game template = GameFixtures.newInternationalGame();
+        final PackedPosition packing = PackedPosition.forGame(template);
+        final ByteBuffer buffer = ByteBuffer.allocate(packing.size());
+        final Board decoded = new Board(10, 10);
+        final Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            final Game game = template.fork();
+            while (game.getResult() == null) {
+                final Board board = game.getBoard();
+                final int colour = game.getTurn().getColour();
+                buffer.clear();
+                packing.encode(board, colour, buffer);
+                buffer.flip();
+                assertEquals(colour, packing.decode(buffer, decoded));
+                assertEquals(board, decoded);
+                final List<Move> moves = game.getLegalMoves();
+                game.performMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+    /**
+     * Tests a run of positions encoded in bulk decodes in bulk, and at
+     * absolute indexes, to the same positions.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testBulkRoundTrip() {
+        final Game game = GameFixtures.newEnglishGame();
+        final PackedPosition packing = PackedPosition.forGame(game);
+        final int count = 30;
+        final Board[] boards = new Board[count];
+        final int[] colours = new int[count];
+        final Random random = new Random(6);
+        for (int i = 0; i < count; i++) {
+            if (game.getResult() != null) {
+                game.reset();
+            }
+            boards[i] = game.getBoard();
+            colours[i] = game.getTurn().getColour();
+            final List<Move> moves = game.getLegalMoves();
+            game.performMove(moves.get(random.nextInt(moves.size())));
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                (count + 1) * packing.size());
+        buffer.position(packing.size());
+        packing.encodeAll(boards, colours, 0, count, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        buffer.position(packing.size());
+        final Board[] decoded = new Board[count];
+        for (int i = 0; i < count; i++) {
+            decoded[i] = new Board(8, 8);
+        }
+        final int[] decodedColours = new int[count];
+        packing.decodeAll(buffer, decoded, decodedColours, 0, count);
+        assertEquals(0, buffer.remaining());
+        final Board board = new Board(8, 8);
+        for (int i = 0; i < count; i++) {
+            assertEquals(boards[i], decoded[i]);
+            assertEquals(colours[i], decodedColours[i]);
+            assertEquals(colours[i], packing.decode(buffer,
+                    (i + 1) * packing.size(), board));
+            assertEquals(boards[i], board);
+        }
+    }
+    /**
+     * Tests encoding more positions than a buffer has room for is rejected
+     * before anything is written.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testBulkOverflow() {
+        final Game game = GameFixtures.newEnglishGame();
+        final PackedPosition packing = PackedPosition.forGame(game);
+        final Board[] boards = {game.getBoard(), game.getBoard()};
+        final ByteBuffer buffer = ByteBuffer.allocate(packing.size());
+        try {
+            packing.encodeAll(boards, new int[2], 0, 2, buffer);
+            fail("expected an overflow");
+        } catch (final BufferOverflowException e) {
+            assertEquals(0, buffer.position());
+        }
+    }
+}
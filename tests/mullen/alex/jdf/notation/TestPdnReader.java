@@ -0,0 +1,210 @@
+package mullen.alex.jdf.notation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.Piece;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PdnReader} and {@link PdnWriter}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestPdnReader {
+    /** The number of random games written and read back. */
+    private static final int GAMES = 40;
+    /**
+     * Tests a hand written English game with tags, comments, variations and
+     * move numbers is read correctly.
+     *
+     * @throws IOException  if the game could not be read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testReadEnglishGame() throws IOException {
+        final String pdn = "[Event \"Club \\\"open\\\"\"]\n"
+                + "[Result \"1-0\"]\n\n"
+                + "1. 11-15 {the usual} 22-17 2. 8-11 (2. 9-13 22-18) 24-19!"
+                + " $1\n3. 15x24 ; a capture\n28x19 1-0\n\n"
+                + "[Event \"Second\"]\n\n1. 9-13 *\n";
+        final Game template = GameFixtures.newEnglishGame();
+        final PdnReader reader = new PdnReader(new StringReader(pdn),
+                template);
+        final GameRecord first = reader.read();
+        assertEquals("Club \"open\"", reader.getTags().get("Event"));
+        assertEquals(6, first.moves.size());
+        assertEquals(GameRecord.DARK_WIN, first.result);
+        assertEquals(1, first.moves.get(4).jumps.size());
+        final GameRecord second = reader.read();
+        assertEquals("Second", reader.getTags().get("Event"));
+        assertEquals(1, second.moves.size());
+        assertEquals(GameRecord.UNFINISHED, second.result);
+        assertNull(reader.read());
+        reader.close();
+    }
+    /**
+     * Tests a game set up from a FEN tag is replayed from that position, and
+     * the next game from the starting position again.
+     *
+     * @throws IOException  if the games could not be read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testReadSetUpGame() throws IOException {
+        final String pdn = "[SetUp \"1\"]\n[FEN \"W:W21,K32:B9\"]\n\n"
+                + "1. 21-17 9-13 2. 32-27 *\n\n"
+                + "[SetUp \"0\"]\n[FEN \"W:W21:B9\"]\n\n1. 9-13 *\n";
+        final PdnReader reader = new PdnReader(new StringReader(pdn),
+                GameFixtures.newEnglishGame());
+        final GameRecord setUp = reader.read();
+        assertEquals("W:W21,K32:B9", reader.getStartFen());
+        assertEquals(3, setUp.moves.size());
+        final GameRecord normal = reader.read();
+        assertNull(reader.getStartFen());
+        assertEquals(1, normal.moves.size());
+        reader.close();
+    }
+    /**
+     * Tests a malformed FEN tag is reported.
+     *
+     * @throws IOException  always
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = IOException.class)
+    public final void testMalformedFen() throws IOException {
+        new PdnReader(new StringReader("[FEN \"W:W99:B1\"]\n1. 1-5 *"),
+                GameFixtures.newEnglishGame()).read();
+    }
+    /**
+     * Tests an illegal move is reported.
+     *
+     * @throws IOException  always
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = IOException.class)
+    public final void testIllegalMove() throws IOException {
+        new PdnReader(new StringReader("1. 11-20 *"),
+                GameFixtures.newEnglishGame()).read();
+    }
+    /**
+     * Tests random English and International games read back as they were
+     * written.
+     *
+     * @throws IOException  if the games could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testRoundTrip() throws IOException {
+        for (final Game template : new Game[] {GameFixtures.newEnglishGame(),
+                GameFixtures.newInternationalGame()}) {
+            final List<GameRecord> records = playRandomGames(template);
+            final StringWriter text = new StringWriter();
+            final PdnWriter writer = new PdnWriter(text, template);
+            for (final GameRecord record : records) {
+                writer.write(record);
+            }
+            final PdnReader reader = new PdnReader(
+                    new StringReader(text.toString()), template);
+            for (final GameRecord record : records) {
+                final GameRecord read = reader.read();
+                assertEquals(record.moves, read.moves);
+                assertEquals(record.result, read.result);
+            }
+            assertNull(reader.read());
+        }
+    }
+    /**
+     * Tests reading a file in parallel chunks finds every game once.
+     *
+     * @throws Exception  if the file could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testReadAllInParallel() throws Exception {
+        final Game template = GameFixtures.newEnglishGame();
+        final List<GameRecord> records = playRandomGames(template);
+        final File file = File.createTempFile("games", ".pdn");
+        try {
+            try (Writer out = new OutputStreamWriter(
+                    new FileOutputStream(file), StandardCharsets.ISO_8859_1)) {
+                final PdnWriter writer = new PdnWriter(out, template);
+                final Map<String, String> tags = new LinkedHashMap<>();
+                for (int i = 0; i < records.size(); i++) {
+                    tags.put("Round", Integer.toString(i));
+                    writer.write(records.get(i), tags);
+                }
+            }
+            final List<GameRecord> read =
+                    Collections.synchronizedList(new ArrayList<GameRecord>());
+            final long count = PdnReader.readAll(file, template, 4,
+                    new PdnReader.RecordHandler() {
+                        @Override
+                        public void onRecord(final GameRecord record,
+                                final String startFen) {
+                            assertNull(startFen);
+                            read.add(record);
+                        }
+                    });
+            assertEquals(records.size(), count);
+            int moves = 0;
+            int readMoves = 0;
+            for (int i = 0; i < records.size(); i++) {
+                moves += records.get(i).moves.size();
+                readMoves += read.get(i).moves.size();
+            }
+            assertEquals(moves, readMoves);
+        } finally {
+            file.delete();
+        }
+    }
+    /**
+     * Plays random games from the starting position of a game.
+     *
+     * @param template  the game, which is forked for each game played
+     * @return          the games
+     */
+    private static List<GameRecord> playRandomGames(final Game template) {
+        final Random random = new Random(1);
+        final List<GameRecord> records = new ArrayList<>(GAMES);
+        for (int i = 0; i < GAMES; i++) {
+            final Game game = template.fork();
+            while (game.getResult() == null) {
+                final List<Move> moves = game.getLegalMoves();
+                game.performMove(moves.get(random.nextInt(moves.size())));
+            }
+            final int result;
+            if (game.getResult().isDraw()) {
+                result = GameRecord.DRAW;
+            } else if (game.getResult().getWinner().getColour()
+                    == Piece.DARK) {
+                result = GameRecord.DARK_WIN;
+            } else {
+                result = GameRecord.LIGHT_WIN;
+            }
+            records.add(new GameRecord(new ArrayList<>(game.getMoveHistory()),
+                    result));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,62 @@
+package mullen.alex.jdf.notation;
+
+import static org.junit.Assert.assertEquals;
+
+import mullen.alex.jdf.common.BoardPattern;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.CheckeredBoardPattern;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SquareNumbering}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestSquareNumbering {
+    /**
+     * Tests the squares of an English board are numbered from the top left
+     * black square.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testEnglishNumbering() {
+        final SquareNumbering numbering = new SquareNumbering(
+                new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 8, 8),
+                8, 8);
+        assertEquals(32, numbering.getSquareCount());
+        assertEquals(new BoardPosition(1, 0), numbering.getPosition(1));
+        assertEquals(new BoardPosition(7, 0), numbering.getPosition(4));
+        assertEquals(new BoardPosition(0, 1), numbering.getPosition(5));
+        assertEquals(new BoardPosition(6, 7), numbering.getPosition(32));
+        assertEquals(0, numbering.getSquare(0, 0));
+        for (int square = 1; square <= 32; square++) {
+            assertEquals(square,
+                    numbering.getSquare(numbering.getPosition(square)));
+        }
+    }
+    /**
+     * Tests an International board has fifty squares ending at the bottom
+     * right.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testInternationalNumbering() {
+        final SquareNumbering numbering = new SquareNumbering(
+                new CheckeredBoardPattern(BoardPattern.WHITE_SQUARE, 10, 10),
+                10, 10);
+        assertEquals(50, numbering.getSquareCount());
+        assertEquals(new BoardPosition(9, 0), numbering.getPosition(5));
+        assertEquals(new BoardPosition(0, 1), numbering.getPosition(6));
+        assertEquals(new BoardPosition(8, 9), numbering.getPosition(50));
+    }
+    /**
+     * Tests asking for a square that does not exist fails.
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = IndexOutOfBoundsException.class)
+    public final void testSquareOutOfRange() {
+        new SquareNumbering(new CheckeredBoardPattern(
+                BoardPattern.WHITE_SQUARE, 8, 8), 8, 8).getPosition(33);
+    }
+}
@@ -0,0 +1,86 @@
+package mullen.alex.jdf.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMoveGenerator;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMovePerformer;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link AlphaBetaSearcher}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestAlphaBetaSearcher {
+    /** The searcher to use for each test. */
+    private final AlphaBetaSearcher searcher = new AlphaBetaSearcher(
+            new EnglishDraughtsMoveGenerator(),
+            new EnglishDraughtsMovePerformer(), new LinearEvaluator(),
+            new TranspositionTable(1 << 16));
+    /**
+     * Tests capturing the last opposing piece is scored as a win a ply away
+     * and is chosen as the best move.
+     */
+    @Test
+    public final void testWinningCapture() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(2, 3, new Piece(DARK, DOWN));
+        board.setPieceAt(3, 4, new Piece(LIGHT, UP));
+        final Board original = new Board(board);
+        final int score = searcher.search(board, DARK, 3);
+        assertEquals(AlphaBetaSearcher.WIN_SCORE - 1, score);
+        assertEquals(new BoardPosition(4, 5), searcher.getBestMove().to);
+        // The board should not have been changed.
+        assertEquals(original, board);
+    }
+    /**
+     * Tests a side with no moves is scored as lost.
+     */
+    @Test
+    public final void testNoMoves() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(3, 4, new Piece(LIGHT, UP));
+        assertEquals(-AlphaBetaSearcher.WIN_SCORE,
+                searcher.search(board, DARK, 2));
+        assertTrue(AlphaBetaSearcher.isWinOrLoss(
+                -AlphaBetaSearcher.WIN_SCORE));
+    }
+    /**
+     * Tests a side a man up is scored ahead and a move is found.
+     */
+    @Test
+    public final void testMaterialAdvantage() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 0, new Piece(DARK, DOWN));
+        board.setPieceAt(3, 0, new Piece(DARK, DOWN));
+        board.setPieceAt(6, 7, new Piece(LIGHT, UP));
+        final int score = searcher.search(board, DARK, 4);
+        assertTrue(score > 0);
+        assertNotNull(searcher.getBestMove());
+        assertTrue(searcher.getNodesSearched() > 0);
+    }
+    /**
+     * Tests entries read back as they were stored.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testTableEntry() {
+        final TranspositionTable table = new TranspositionTable(16);
+        assertEquals(TranspositionTable.MISS, table.probe(42L));
+        table.store(42L, -1234, 7, TranspositionTable.LOWER_BOUND, 3);
+        final long entry = table.probe(42L);
+        assertEquals(-1234, TranspositionTable.getScore(entry));
+        assertEquals(7, TranspositionTable.getDepth(entry));
+        assertEquals(TranspositionTable.LOWER_BOUND,
+                TranspositionTable.getBound(entry));
+        assertEquals(3, TranspositionTable.getMove(entry));
+    }
+}
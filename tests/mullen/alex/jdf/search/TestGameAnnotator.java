@@ -0,0 +1,144 @@
+package mullen.alex.jdf.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.Piece;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GameAnnotator}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestGameAnnotator {
+    /**
+     * Tests every position and move of a random game is reported to the
+     * listener and the annotations are in the order played.
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testAnnotateRandomGame() throws InterruptedException {
+        final Game game = GameFixtures.newEnglishGame();
+        final Random random = new Random(9);
+        final Game played = game.fork();
+        while (played.getResult() == null) {
+            final List<Move> moves = played.getLegalMoves();
+            played.performMove(moves.get(random.nextInt(moves.size())));
+        }
+        final GameRecord record = new GameRecord(
+                new ArrayList<>(played.getMoveHistory()), GameRecord.DRAW);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final AtomicInteger positions = new AtomicInteger();
+            final AtomicInteger annotated = new AtomicInteger();
+            final GameAnnotator annotator = new GameAnnotator(game,
+                    new LinearEvaluator(), executor, 1 << 16,
+                    GameAnnotator.DEFAULT_BLUNDER_THRESHOLD);
+            final List<GameAnnotator.Annotation> annotations =
+                    annotator.annotate(record, 3, 0,
+                            new GameAnnotator.Listener() {
+                                @Override
+                                public void onPositionSearched(final int ply,
+                                        final int score, final Move best) {
+                                    positions.incrementAndGet();
+                                }
+                                @Override
+                                public void onMoveAnnotated(
+                                        final GameAnnotator.Annotation a) {
+                                    annotated.incrementAndGet();
+                                }
+                            });
+            final int plies = record.moves.size();
+            assertEquals(plies + 1, positions.get());
+            assertEquals(plies, annotated.get());
+            assertEquals(plies, annotations.size());
+            for (int i = 0; i < plies; i++) {
+                final GameAnnotator.Annotation annotation =
+                        annotations.get(i);
+                assertEquals(i, annotation.ply);
+                assertEquals(record.moves.get(i), annotation.move);
+                assertNotNull(annotation.bestMove);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Tests moving the last man next to an opposing man that captures it is
+     * flagged as a blunder and the capture is not.
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testBlunder() throws InterruptedException {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(2, 3, new Piece(Piece.DARK, Piece.DOWN));
+        board.setPieceAt(4, 5, new Piece(Piece.LIGHT, Piece.UP));
+        final Game game = GameFixtures.newEnglishGame();
+        final MoveGenerator generator = game.getMoveGenerator();
+        final Board after = new Board(board);
+        final Move blunder = findMove(generator.findMoves(after, Piece.DARK),
+                new BoardPosition(3, 4));
+        game.getMovePerformer().perform(blunder, after);
+        final Move capture = findMove(generator.findMoves(after, Piece.LIGHT),
+                new BoardPosition(2, 3));
+        final List<Move> moves = new ArrayList<>();
+        moves.add(blunder);
+        moves.add(capture);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final GameAnnotator annotator = new GameAnnotator(game,
+                    new LinearEvaluator(), executor, 1 << 12,
+                    GameAnnotator.DEFAULT_BLUNDER_THRESHOLD);
+            final List<GameAnnotator.Annotation> annotations =
+                    annotator.annotate(board, Piece.DARK, moves, 4, 1000,
+                            null);
+            assertTrue(annotations.get(0).blunder);
+            assertTrue(annotations.get(0).getSwing() < 0);
+            assertEquals(new BoardPosition(1, 4),
+                    annotations.get(0).bestMove.to);
+            assertFalse(annotations.get(1).blunder);
+            assertTrue(AlphaBetaSearcher.isWinOrLoss(
+                    annotations.get(1).playedScore));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * Finds the move to the specified position.
+     *
+     * @param moves  the moves
+     * @param to     the position
+     * @return       the move
+     */
+    private static Move findMove(final List<Move> moves,
+            final BoardPosition to) {
+        for (final Move move : moves) {
+            if (move.to.equals(to)) {
+                return move;
+            }
+        }
+        throw new AssertionError("no move to " + to);
+    }
+}
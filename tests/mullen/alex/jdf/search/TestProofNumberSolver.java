@@ -0,0 +1,98 @@
+package mullen.alex.jdf.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMoveGenerator;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMovePerformer;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link ProofNumberSolver}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestProofNumberSolver {
+    /** The solver to use for each test. */
+    private final ProofNumberSolver solver = new ProofNumberSolver(
+            new EnglishDraughtsMoveGenerator(),
+            new EnglishDraughtsMovePerformer(), 1 << 16);
+    /**
+     * Tests a side with no moves is solved as a loss.
+     */
+    @Test
+    public final void testSolveWithNoMoves() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(3, 4, new Piece(LIGHT, UP));
+        assertEquals(ProofNumberSolver.LOSS, solver.solve(board, DARK, 100));
+        assertNull(solver.getWinningMove());
+    }
+    /**
+     * Tests capturing the last opposing piece is solved as a win and the
+     * capture is given as the winning move.
+     */
+    @Test
+    public final void testSolveWithWinningCapture() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(2, 3, new Piece(DARK, DOWN));
+        board.setPieceAt(3, 4, new Piece(LIGHT, UP));
+        final Board original = new Board(board);
+        assertEquals(ProofNumberSolver.WIN, solver.solve(board, DARK, 100));
+        final Move winningMove = solver.getWinningMove();
+        assertEquals(new BoardPosition(4, 5), winningMove.to);
+        // The board should not have been changed.
+        assertEquals(original, board);
+    }
+    /**
+     * Tests a short forced sequence is solved as a loss for the side to move.
+     * <p>
+     * The light man is forced to move next to the dark king, which then
+     * captures it.
+     */
+    @Test
+    public final void testSolveWithForcedLoss() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(0, 7, new Piece(LIGHT, UP));
+        board.setPieceAt(2, 5, new Piece(DARK, BOTH));
+        assertEquals(ProofNumberSolver.LOSS,
+                solver.solve(board, LIGHT, 10000));
+    }
+    /**
+     * Tests the search stops when it runs out of nodes.
+     */
+    @Test
+    public final void testSolveWithNodeLimit() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 0, new Piece(DARK, BOTH));
+        board.setPieceAt(6, 5, new Piece(LIGHT, BOTH));
+        assertEquals(ProofNumberSolver.UNKNOWN,
+                solver.solve(board, DARK, 1000));
+        assertTrue(solver.getNodesSearched() <= 1002);
+    }
+    /**
+     * Tests lines cut off by the depth limit are given up on rather than
+     * searched again until the node budget runs out.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSolveWithDepthLimit() {
+        final ProofNumberSolver shallowSolver = new ProofNumberSolver(
+                new EnglishDraughtsMoveGenerator(),
+                new EnglishDraughtsMovePerformer(), 1 << 16, 6);
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 0, new Piece(DARK, BOTH));
+        board.setPieceAt(6, 5, new Piece(LIGHT, BOTH));
+        final long maxNodes = 1000000;
+        assertEquals(ProofNumberSolver.UNKNOWN,
+                shallowSolver.solve(board, DARK, maxNodes));
+        assertTrue(shallowSolver.getNodesSearched() < maxNodes);
+    }
+}
@@ -0,0 +1,77 @@
+package mullen.alex.jdf.search;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.ZobristHasher;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMoveGenerator;
+import mullen.alex.jdf.variant.english.EnglishDraughtsMovePerformer;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TranspositionTable}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestTranspositionTable {
+    /**
+     * Tests a table filled by a search loads back with the same entries.
+     *
+     * @throws IOException  if the snapshot could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSaveAndLoad() throws IOException {
+        final TranspositionTable table = new TranspositionTable(1 << 12);
+        final AlphaBetaSearcher searcher = new AlphaBetaSearcher(
+                new EnglishDraughtsMoveGenerator(),
+                new EnglishDraughtsMovePerformer(), new LinearEvaluator(),
+                table);
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 0, new Piece(Piece.DARK, Piece.DOWN));
+        board.setPieceAt(3, 0, new Piece(Piece.DARK, Piece.DOWN));
+        board.setPieceAt(4, 7, new Piece(Piece.LIGHT, Piece.UP));
+        board.setPieceAt(6, 7, new Piece(Piece.LIGHT, Piece.UP));
+        final int score = searcher.search(board, Piece.DARK, 6);
+        final File file = File.createTempFile("table", ".jdtt");
+        try {
+            table.save(file);
+            assertEquals(TranspositionTable.HEADER_SIZE
+                    + (16L * table.capacity()), file.length());
+            final TranspositionTable loaded = TranspositionTable.load(file);
+            assertEquals(table.capacity(), loaded.capacity());
+            final long hash = ZobristHasher.hash(board, Piece.DARK);
+            assertEquals(table.probe(hash), loaded.probe(hash));
+            assertEquals(score, TranspositionTable.getScore(
+                    loaded.probe(hash)));
+        } finally {
+            file.delete();
+        }
+    }
+    /**
+     * Tests a snapshot from a different hashing scheme is rejected.
+     *
+     * @throws IOException  if the snapshot could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = IOException.class)
+    public final void testRejectsOtherScheme() throws IOException {
+        final File file = File.createTempFile("table", ".jdtt");
+        try {
+            new TranspositionTable(16).save(file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(8);
+                raf.writeInt(ZobristHasher.SCHEME_VERSION + 1);
+            }
+            TranspositionTable.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package mullen.alex.jdf.training;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.notation.PackedPosition;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PositionDeduplicator}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestPositionDeduplicator {
+    /** The number of bytes in each record of the raw record tests. */
+    private static final int RECORD_SIZE = 12;
+    /**
+     * Tests records repeated across many runs, with filters small enough to
+     * give false positives, are each written once after the header.
+     *
+     * @throws IOException  if the files could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testDeduplicateRecords() throws IOException {
+        final Random random = new Random(7);
+        final byte[][] distinct = new byte[500][RECORD_SIZE];
+        for (final byte[] record : distinct) {
+            random.nextBytes(record);
+        }
+        final File input = File.createTempFile("records", ".bin");
+        final File output = File.createTempFile("unique", ".bin");
+        try {
+            try (OutputStream out = new FileOutputStream(input)) {
+                out.write(new byte[] {1, 2, 3});
+                for (int i = 0; i < 5000; i++) {
+                    // Half the records are drawn from a small set.
+                    if (i % 2 == 0) {
+                        out.write(distinct[random.nextInt(distinct.length)]);
+                    } else {
+                        out.write(distinct[(i / 2) % distinct.length]);
+                    }
+                }
+            }
+            final PositionDeduplicator deduplicator =
+                    new PositionDeduplicator(RECORD_SIZE, RECORD_SIZE, 100,
+                            1 << 12);
+            assertEquals(distinct.length,
+                    deduplicator.deduplicate(input, 3, output));
+            assertTrue(deduplicator.getSortedRecords() > 0);
+            final byte[] bytes = Files.readAllBytes(output.toPath());
+            assertEquals(3 + (distinct.length * RECORD_SIZE), bytes.length);
+            assertArrayEquals(new byte[] {1, 2, 3},
+                    Arrays.copyOf(bytes, 3));
+            final Set<String> written = new HashSet<>();
+            for (int offset = 3; offset < bytes.length;
+                    offset += RECORD_SIZE) {
+                written.add(Arrays.toString(Arrays.copyOfRange(bytes, offset,
+                        offset + RECORD_SIZE)));
+            }
+            for (final byte[] record : distinct) {
+                assertTrue(written.contains(Arrays.toString(record)));
+            }
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+    /**
+     * Tests records that appear once are written straight out in the order
+     * they were read, without being sorted.
+     *
+     * @throws IOException  if the files could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testUniqueRecordsSkipSorting() throws IOException {
+        final File input = File.createTempFile("records", ".bin");
+        final File output = File.createTempFile("unique", ".bin");
+        try {
+            final byte[] records = new byte[100 * RECORD_SIZE];
+            new Random(8).nextBytes(records);
+            Files.write(input.toPath(), records);
+            final PositionDeduplicator deduplicator =
+                    new PositionDeduplicator(RECORD_SIZE, RECORD_SIZE);
+            assertEquals(100, deduplicator.deduplicate(input, 0, output));
+            assertEquals(0, deduplicator.getSortedRecords());
+            assertArrayEquals(records, Files.readAllBytes(output.toPath()));
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+    /**
+     * Tests the positions reached after four plies of English draughts are
+     * counted the same as with a set of boards.
+     *
+     * @throws IOException  if the files could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testCountPositions() throws IOException {
+        final Game game = GameFixtures.newEnglishGame();
+        final PackedPosition packing = PackedPosition.forGame(game);
+        final Set<String> positions = new HashSet<>();
+        collect(game.getBoard(), game.getTurn().getColour(), 4, game,
+                packing, positions);
+        final File temp = File.createTempFile("positions", ".bin");
+        assertEquals(positions.size(),
+                PositionDeduplicator.countPositions(game, 4, temp));
+        assertTrue(!temp.exists());
+    }
+    /**
+     * Collects the packed positions at the ends of every line of a given
+     * length.
+     *
+     * @param board      the board
+     * @param colour     the colour whose turn it is
+     * @param depth      the number of plies left
+     * @param game       the game supplying the rules
+     * @param packing    the encoding of the positions
+     * @param positions  the set to add the positions to
+     */
+    private static void collect(final Board board, final int colour,
+            final int depth, final Game game, final PackedPosition packing,
+            final Set<String> positions) {
+        if (depth == 0) {
+            final ByteBuffer buffer = ByteBuffer.allocate(packing.size());
+            packing.encode(board, colour, buffer);
+            positions.add(Arrays.toString(buffer.array()));
+            return;
+        }
+        final List<Move> moves =
+                game.getMoveGenerator().findMoves(board, colour);
+        for (final Move move : moves) {
+            final PerformedMove performed =
+                    game.getMovePerformer().perform(move, board);
+            collect(board, Piece.getOpposingColourOf(colour), depth - 1, game,
+                    packing, positions);
+            performed.undo();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package mullen.alex.jdf.training;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.search.LinearEvaluator;
+import mullen.alex.jdf.variant.english.EnglishDraughtsGameBuilder;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SelfPlayGenerator} and {@link TrainingSampleFile}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestSelfPlayGenerator {
+    /**
+     * Tests games played on several threads write samples that read back as
+     * quiet positions with finished results.
+     *
+     * @throws Exception  if the file could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testGenerate() throws Exception {
+        final Game template = GameFixtures.newEnglishGame();
+        final SelfPlayGenerator generator = new SelfPlayGenerator(
+                new EnglishDraughtsGameBuilder(), new LinearEvaluator(), 2, 4,
+                0.1);
+        final File file = File.createTempFile("selfplay", ".jdft");
+        try {
+            final long samples = generator.generate(file, 8, 3, 1L);
+            assertTrue(samples > 0);
+            final TrainingSampleFile sampleFile =
+                    new TrainingSampleFile(file, template);
+            assertEquals(samples, sampleFile.size());
+            assertEquals(16 * samples + TrainingSampleFile.HEADER_SIZE,
+                    file.length());
+            final Board board = new Board(8, 8);
+            for (long i = 0; i < samples; i++) {
+                final int colour = sampleFile.getPosition(i, board);
+                assertTrue(colour == Piece.DARK || colour == Piece.LIGHT);
+                assertTrue(template.getMoveGenerator().hasAnyMove(board,
+                        colour));
+                final int result = sampleFile.getResult(i);
+                assertTrue(result == GameRecord.DARK_WIN
+                        || result == GameRecord.LIGHT_WIN
+                        || result == GameRecord.DRAW);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package mullen.alex.jdf.training;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameRecord;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.search.LinearEvaluator;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TexelTuner}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestTexelTuner {
+    /**
+     * Tests the evaluator scores a position as its weights times its
+     * features.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testFeaturesMatchEvaluation() {
+        final Game game = GameFixtures.newEnglishGame();
+        final int[] weights = {100, 300, 3, 7, 11};
+        final LinearEvaluator evaluator = new LinearEvaluator(weights);
+        final int[] features = new int[LinearEvaluator.FEATURE_COUNT];
+        final Random random = new Random(4);
+        while (game.getResult() == null) {
+            final Board board = game.getBoard();
+            final int colour = game.getTurn().getColour();
+            LinearEvaluator.extractFeatures(board, colour, features);
+            int expected = 0;
+            for (int i = 0; i < features.length; i++) {
+                expected += weights[i] * features[i];
+            }
+            assertEquals(expected, evaluator.evaluate(board, colour));
+            final List<Move> moves = game.getLegalMoves();
+            game.performMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+    /**
+     * Tests tuning on games always won by the side with more pieces lowers
+     * the error and raises the weight of a man.
+     *
+     * @throws Exception  if the file could not be written or read
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testTuneReducesError() throws Exception {
+        final Game template = GameFixtures.newEnglishGame();
+        final File file = File.createTempFile("samples", ".jdft");
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            try (TrainingSampleWriter writer =
+                    new TrainingSampleWriter(file, template)) {
+                final ByteBuffer buffer = ByteBuffer.allocate(
+                        writer.getSampleSize());
+                final Random random = new Random(5);
+                for (int i = 0; i < 200; i++) {
+                    final Game game = template.fork();
+                    while (game.getResult() == null) {
+                        final Board board = game.getBoard();
+                        buffer.clear();
+                        writer.encode(board, game.getTurn().getColour(), 0,
+                                getMaterialResult(board), buffer);
+                        buffer.flip();
+                        writer.write(buffer);
+                        final List<Move> moves = game.getLegalMoves();
+                        game.performMove(moves.get(random.nextInt(
+                                moves.size())));
+                    }
+                }
+            }
+            final TexelTuner tuner = new TexelTuner(
+                    new TrainingSampleFile(file, template), template, pool);
+            final int[] initial = {10, 10, 0, 0, 0};
+            final double initialError = tuner.computeError(toDoubles(initial));
+            final int[] tuned = tuner.tune(initial, 100, 2.0);
+            assertTrue(tuner.computeError(toDoubles(tuned)) < initialError);
+            assertTrue(tuned[LinearEvaluator.MEN]
+                    > initial[LinearEvaluator.MEN]);
+        } finally {
+            pool.shutdown();
+            file.delete();
+        }
+    }
+    /**
+     * Gets a result won by whichever side has more pieces.
+     *
+     * @param board  the board
+     * @return       the result
+     */
+    private static int getMaterialResult(final Board board) {
+        int balance = 0;
+        for (final Piece piece : board.pieces) {
+            if (piece != null) {
+                balance += piece.colour == Piece.DARK ? 1 : -1;
+            }
+        }
+        if (balance > 0) {
+            return GameRecord.DARK_WIN;
+        } else if (balance < 0) {
+            return GameRecord.LIGHT_WIN;
+        }
+        return GameRecord.DRAW;
+    }
+    /**
+     * Converts weights to doubles.
+     *
+     * @param weights  the weights
+     * @return         the converted weights
+     */
+    private static double[] toDoubles(final int[] weights) {
+        final double[] converted = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            converted[i] = weights[i];
+        }
+        return converted;
+    }
+}
@@ -0,0 +1,275 @@
+package mullen.alex.jdf.variant.english;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.BoardPosition;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameBuilder;
+import mullen.alex.jdf.common.GameEvent;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.GameListener;
+import mullen.alex.jdf.common.GamePool;
+import mullen.alex.jdf.common.Jump;
+import mullen.alex.jdf.common.Move;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link EnglishDraughtsGame}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestEnglishDraughtsGame {
+    /** The number of moves dark has from the starting position. */
+    private static final int STARTING_MOVES = 7;
+    /** The seed of a random game that ends in a draw after 103 plies. */
+    private static final long DRAWN_GAME_SEED = 18;
+    /**
+     * Tests the legal moves are only generated once for a position and match
+     * what the move generator finds.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testGetLegalMovesIsCached() {
+        final Game game = GameFixtures.newEnglishGame();
+        final List<Move> moves = game.getLegalMoves();
+        assertEquals(STARTING_MOVES, moves.size());
+        assertSame(moves, game.getLegalMoves());
+        assertEquals(game.getMoveGenerator().findMoves(game.getBoard(),
+                game.getTurn().getColour()).size(), moves.size());
+    }
+    /**
+     * Tests the legal moves are regenerated after a move is performed and
+     * after it is undone.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testGetLegalMovesAfterPerformAndUndo() {
+        final Game game = GameFixtures.newEnglishGame();
+        final List<Move> before = game.getLegalMoves();
+        game.performMove(before.get(0));
+        final List<Move> after = game.getLegalMoves();
+        assertNotSame(before, after);
+        assertEquals(game.getMoveGenerator().findMoves(game.getBoard(),
+                LIGHT).size(), after.size());
+        game.undoMove();
+        final List<Move> undone = game.getLegalMoves();
+        assertNotSame(after, undone);
+        assertEquals(STARTING_MOVES, undone.size());
+    }
+    /**
+     * Tests the legal moves cannot be modified.
+     */
+    @SuppressWarnings("static-method")
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testGetLegalMovesIsUnmodifiable() {
+        GameFixtures.newEnglishGame().getLegalMoves().clear();
+    }
+    /**
+     * Tests a move built from new positions is recognised as legal and can
+     * be performed.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testPerformEquivalentMove() {
+        final Game game = GameFixtures.newEnglishGame();
+        final Move legal = game.getLegalMoves().get(0);
+        final Move copy = new Move(new BoardPosition(legal.from.x,
+                legal.from.y), new BoardPosition(legal.to.x, legal.to.y),
+                new ArrayList<Jump>());
+        assertTrue(game.isLegalMove(copy));
+        game.performMove(copy);
+        assertEquals(LIGHT, game.getTurn().getColour());
+    }
+    /**
+     * Tests a move that breaks the rules is rejected without changing the
+     * game.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testPerformIllegalMove() {
+        final Game game = GameFixtures.newEnglishGame();
+        // A dark man moving backwards.
+        final Move illegal = new Move(new BoardPosition(1, 2),
+                new BoardPosition(0, 1));
+        assertFalse(game.isLegalMove(illegal));
+        assertFalse(game.isLegalMove(null));
+        try {
+            game.performMove(illegal);
+        } catch (final IllegalArgumentException e) {
+            assertEquals(DARK, game.getTurn().getColour());
+            assertEquals(STARTING_MOVES, game.getLegalMoves().size());
+            return;
+        }
+        throw new AssertionError("illegal move was performed");
+    }
+    /**
+     * Tests moves performed on a fork and on its parent do not affect each
+     * other.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testForkIsIndependent() {
+        final Game game = GameFixtures.newEnglishGame();
+        game.performMove(game.getLegalMoves().get(0));
+        final List<Move> moves = game.getLegalMoves();
+        final Game fork = game.fork();
+        assertEquals(game.getBoard(), fork.getBoard());
+        assertSame(game.getTurn(), fork.getTurn());
+        assertSame(moves, fork.getLegalMoves());
+        fork.performMove(fork.getLegalMoves().get(0));
+        assertEquals(LIGHT, game.getTurn().getColour());
+        assertFalse(game.getBoard().equals(fork.getBoard()));
+        game.performMove(game.getLegalMoves().get(1));
+        game.undoMove();
+        game.undoMove();
+        assertEquals(STARTING_MOVES, game.getLegalMoves().size());
+        // The fork cannot undo past the point it was forked at.
+        fork.undoMove();
+        fork.undoMove();
+        assertEquals(LIGHT, fork.getTurn().getColour());
+    }
+    /**
+     * Tests resetting a game part way through restores the starting position
+     * and turn and clears the history.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testReset() {
+        final Game game = GameFixtures.newEnglishGame();
+        final Board start = game.getBoard();
+        for (int i = 0; i < 3; i++) {
+            game.performMove(game.getLegalMoves().get(0));
+        }
+        game.reset();
+        assertEquals(start, game.getBoard());
+        assertEquals(DARK, game.getTurn().getColour());
+        assertEquals(STARTING_MOVES, game.getLegalMoves().size());
+        // Nothing left to undo.
+        game.undoMove();
+        assertEquals(start, game.getBoard());
+    }
+    /**
+     * Tests released games are reset and handed out again by a pool, and
+     * that the pool keeps no more than its limit.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testPool() {
+        final GameBuilder.Config config = GameFixtures.newConfig();
+        final GamePool pool = new EnglishDraughtsGameBuilder().createPool(
+                config, 1);
+        final Game first = pool.acquire();
+        final Game second = pool.acquire();
+        final Board start = first.getBoard();
+        first.performMove(first.getLegalMoves().get(0));
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.getIdleCount());
+        final Game reused = pool.acquire();
+        assertSame(first, reused);
+        assertEquals(start, reused.getBoard());
+        assertEquals(DARK, reused.getTurn().getColour());
+        assertEquals(0, pool.getIdleCount());
+    }
+    /**
+     * Tests a game released to a pool tells its old listeners nothing once
+     * it is acquired again.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testPoolRemovesListeners() {
+        final GameBuilder.Config config = GameFixtures.newConfig();
+        final GamePool pool = new EnglishDraughtsGameBuilder().createPool(
+                config, 1);
+        final Game game = pool.acquire();
+        final List<GameEvent> events = new ArrayList<>();
+        game.addGameListener(new GameListener() {
+            @Override
+            public void onGameEvent(final GameEvent event) {
+                events.add(event);
+            }
+        });
+        game.performMove(game.getLegalMoves().get(0));
+        assertEquals(1, events.size());
+        pool.release(game);
+        final Game reused = pool.acquire();
+        assertSame(game, reused);
+        reused.performMove(reused.getLegalMoves().get(0));
+        reused.undoMove();
+        reused.reset();
+        assertEquals(1, events.size());
+    }
+    /**
+     * Tests seeking and redoing through the history keep the turn and board
+     * in step with the moves.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSeekAndRedo() {
+        final Game game = GameFixtures.newEnglishGame();
+        final Board start = game.getBoard();
+        for (int i = 0; i < 3; i++) {
+            game.performMove(game.getLegalMoves().get(0));
+        }
+        final Board end = game.getBoard();
+        game.seekTo(1);
+        assertEquals(1, game.getPly());
+        assertEquals(LIGHT, game.getTurn().getColour());
+        game.redoMove();
+        game.redoMove();
+        assertEquals(end, game.getBoard());
+        assertEquals(LIGHT, game.getTurn().getColour());
+        game.redoMove();
+        assertEquals(3, game.getPly());
+        game.seekTo(0);
+        assertEquals(start, game.getBoard());
+        assertEquals(3, game.getMoveHistory().size());
+        // Performing a move from the start discards the rest.
+        game.performMove(game.getLegalMoves().get(1));
+        assertEquals(1, game.getMoveHistory().size());
+    }
+    /**
+     * Tests seeking about a game that ends in a draw gives the same result at
+     * every ply as when the ply was first reached.
+     */
+    @SuppressWarnings("static-method")
+    @Test
+    public final void testSeekKeepsDraws() {
+        final Game game = GameFixtures.newEnglishGame();
+        final Random random = new Random(DRAWN_GAME_SEED);
+        final List<Boolean> drawn = new ArrayList<>();
+        drawn.add(Boolean.FALSE);
+        while (game.getResult() == null) {
+            final List<Move> moves = game.getLegalMoves();
+            game.performMove(moves.get(random.nextInt(moves.size())));
+            drawn.add(Boolean.valueOf(game.getResult() != null
+                    && game.getResult().isDraw()));
+        }
+        final int end = game.getPly();
+        assertTrue(game.getResult().isDraw());
+        for (int i = 0; i <= end; i++) {
+            final int ply = random.nextInt(end + 1);
+            game.seekTo(ply);
+            assertEquals(drawn.get(ply).booleanValue(),
+                    game.getResult() != null && game.getResult().isDraw());
+        }
+        game.seekTo(end - 1);
+        game.redoMove();
+        assertTrue(game.getResult().isDraw());
+        game.seekTo(0);
+        game.seekTo(end);
+        assertTrue(game.getResult().isDraw());
+    }
+}
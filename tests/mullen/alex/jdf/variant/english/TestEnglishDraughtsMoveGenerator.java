@@ -12,6 +12,8 @@ import mullen.alex.jdf.common.Piece;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static mullen.alex.jdf.common.Piece.*;
 
 /**
@@ -319,4 +321,40 @@ public class TestEnglishDraughtsMoveGenerator {
         assertEquals(new BoardPosition(4, 7), secondMove.jumps.get(3).to);
         assertEquals(new BoardPosition(3, 6), secondMove.jumps.get(3).jumped);
     }
+    /**
+     * A test for making sure a man with every move blocked has no moves.
+     */
+    @Test
+    public final void testHasAnyMoveWithBlockedMan() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 7, lightPiece);
+        board.setPieceAt(0, 6, darkPiece);
+        board.setPieceAt(2, 6, darkPiece);
+        board.setPieceAt(3, 5, darkPiece);
+        assertFalse(moveGen.hasAnyMove(board, LIGHT));
+        assertTrue(moveGen.findMoves(board, LIGHT).isEmpty());
+        assertTrue(moveGen.hasAnyMove(board, DARK));
+    }
+    /**
+     * A test for making sure a man that can only jump has a move.
+     */
+    @Test
+    public final void testHasAnyMoveWithOnlyJump() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 7, lightPiece);
+        board.setPieceAt(0, 6, darkPiece);
+        board.setPieceAt(2, 6, darkPiece);
+        assertTrue(moveGen.hasAnyMove(board, LIGHT));
+        assertEquals(1, moveGen.findMoves(board, LIGHT).size());
+    }
+    /**
+     * A test for making sure a colour with no pieces has no moves.
+     */
+    @Test
+    public final void testHasAnyMoveWithNoPieces() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(1, 7, lightPieceCrowned);
+        assertFalse(moveGen.hasAnyMove(board, DARK));
+        assertTrue(moveGen.hasAnyMove(board, LIGHT));
+    }
 }
@@ -0,0 +1,125 @@
+package mullen.alex.jdf.variant.english;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Game;
+import mullen.alex.jdf.common.GameFixtures;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.UnmoveGenerator;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link EnglishDraughtsUnmoveGenerator}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestEnglishDraughtsUnmoveGenerator {
+    /** The unmove generator to use for each test. */
+    private final UnmoveGenerator unmoveGen =
+            new EnglishDraughtsUnmoveGenerator();
+    /** The move generator to use for checking predecessors. */
+    private final MoveGenerator moveGen = new EnglishDraughtsMoveGenerator();
+    /** The move performer to use for checking predecessors. */
+    private final MovePerformer movePerformer =
+            new EnglishDraughtsMovePerformer();
+    /**
+     * Tests a lone man has the two simple moves behind it as predecessors as
+     * well as the two single jumps over either a man or a king.
+     */
+    @Test
+    public final void testFindPredecessorsWithSingleMan() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(3, 4, new Piece(LIGHT, UP));
+        final List<Board> predecessors =
+                unmoveGen.findPredecessors(board, LIGHT);
+        assertEquals(6, predecessors.size());
+        assertPredecessorsLeadTo(board, LIGHT, predecessors);
+    }
+    /**
+     * Tests a king on the crowning row can also have been a man that just got
+     * crowned.
+     */
+    @Test
+    public final void testFindPredecessorsWithUnpromotion() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(2, 0, new Piece(LIGHT, BOTH));
+        final List<Board> predecessors =
+                unmoveGen.findPredecessors(board, LIGHT);
+        final Board expected = new Board(8, 8);
+        expected.setPieceAt(1, 1, new Piece(LIGHT, UP));
+        assertTrue(predecessors.contains(expected));
+        expected.setPieceAt(1, 1, new Piece(LIGHT, BOTH));
+        assertTrue(predecessors.contains(expected));
+        assertPredecessorsLeadTo(board, LIGHT, predecessors);
+    }
+    /**
+     * Tests a double jump can be un-captured with the jumped pieces restored.
+     */
+    @Test
+    public final void testFindPredecessorsWithDoubleJump() {
+        final Board board = new Board(8, 8);
+        board.setPieceAt(5, 1, new Piece(LIGHT, UP));
+        board.setPieceAt(0, 1, new Piece(DARK, DOWN));
+        final Board expected = new Board(8, 8);
+        expected.setPieceAt(1, 5, new Piece(LIGHT, UP));
+        expected.setPieceAt(2, 4, new Piece(DARK, DOWN));
+        expected.setPieceAt(4, 2, new Piece(DARK, DOWN));
+        expected.setPieceAt(0, 1, new Piece(DARK, DOWN));
+        final List<Board> predecessors =
+                unmoveGen.findPredecessors(board, LIGHT);
+        assertTrue(predecessors.contains(expected));
+        assertPredecessorsLeadTo(board, LIGHT, predecessors);
+    }
+    /**
+     * Tests that along a played game every position is a predecessor of the
+     * position that follows it and every predecessor found is genuine.
+     */
+    @Test
+    public final void testFindPredecessorsAlongGame() {
+        final Random random = new Random(1);
+        final Game game = GameFixtures.newEnglishGame();
+        while (game.getResult() == null) {
+            final Board before = game.getBoard();
+            final int colour = game.getTurn().getColour();
+            final List<Move> moves = moveGen.findMoves(before, colour);
+            game.performMove(moves.get(random.nextInt(moves.size())));
+            final Board after = game.getBoard();
+            final List<Board> predecessors =
+                    unmoveGen.findPredecessors(after, colour);
+            assertTrue(predecessors.contains(before));
+            assertPredecessorsLeadTo(after, colour, predecessors);
+        }
+    }
+    /**
+     * Asserts that each predecessor has a legal move leading to the board.
+     *
+     * @param board         the board
+     * @param colour        the colour that moved
+     * @param predecessors  the predecessors of the board
+     */
+    private void assertPredecessorsLeadTo(final Board board, final int colour,
+            final List<Board> predecessors) {
+        for (final Board predecessor : predecessors) {
+            boolean found = false;
+            for (final Move move : moveGen.findMoves(predecessor, colour)) {
+                final PerformedMove performed =
+                        movePerformer.perform(move, predecessor);
+                found |= board.equals(predecessor);
+                performed.undo();
+            }
+            assertTrue(found);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package mullen.alex.jdf.variant.international;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import mullen.alex.jdf.common.Board;
+import mullen.alex.jdf.common.Move;
+import mullen.alex.jdf.common.MoveGenerator;
+import mullen.alex.jdf.common.MovePerformer;
+import mullen.alex.jdf.common.MovePerformer.PerformedMove;
+import mullen.alex.jdf.common.Piece;
+import mullen.alex.jdf.common.UnmoveGenerator;
+
+import org.junit.Test;
+
+import static mullen.alex.jdf.common.Piece.*;
+
+/**
+ * Unit tests for {@link InternationalDraughtsUnmoveGenerator}.
+ *
+ * @author  Alex Mullen
+ */
+public class TestInternationalDraughtsUnmoveGenerator {
+    /** The width and height of the board. */
+    private static final int SIZE = 10;
+    /** The number of random positions checked. */
+    private static final int RANDOM_POSITIONS = 150;
+    /**
+     * The most pieces of each colour in a random position, which is also the
+     * most pieces un-captured, as a lone flying king has too many multiple
+     * un-captures to check them all.
+     */
+    private static final int MAX_PIECES = 2;
+    /** The unmove generator to use for each test. */
+    private final UnmoveGenerator unmoveGen =
+            new InternationalDraughtsUnmoveGenerator(MAX_PIECES);
+    /** The move generator to use for checking predecessors. */
+    private final MoveGenerator moveGen =
+            new InternationalDraughtsMoveGenerator();
+    /** The move performer to use for checking predecessors. */
+    private final MovePerformer movePerformer =
+            new InternationalDraughtsMovePerformer();
+    /**
+     * Tests a king that flew over a piece can be un-captured from any empty
+     * square behind the captured piece, with the piece restored.
+     */
+    @Test
+    public final void testFindPredecessorsWithFlyingKingUncapture() {
+        final Board board = new Board(SIZE, SIZE);
+        board.setPieceAt(7, 2, new Piece(LIGHT, BOTH));
+        final List<Board> predecessors =
+                unmoveGen.findPredecessors(board, LIGHT);
+        final Board expected = new Board(SIZE, SIZE);
+        expected.setPieceAt(4, 5, new Piece(DARK, DOWN));
+        for (int x = 0; x < 4; x++) {
+            expected.setPieceAt(x, 9 - x, new Piece(LIGHT, BOTH));
+            assertTrue(predecessors.contains(expected));
+            expected.setPieceAt(x, 9 - x, null);
+        }
+        assertPredecessorsLeadTo(board, LIGHT, predecessors);
+    }
+    /**
+     * Tests a man can be un-captured backwards, as men capture in every
+     * direction.
+     */
+    @Test
+    public final void testFindPredecessorsWithBackwardManCapture() {
+        final Board board = new Board(SIZE, SIZE);
+        board.setPieceAt(3, 6, new Piece(LIGHT, UP));
+        final List<Board> predecessors =
+                unmoveGen.findPredecessors(board, LIGHT);
+        final Board expected = new Board(SIZE, SIZE);
+        expected.setPieceAt(1, 4, new Piece(LIGHT, UP));
+        expected.setPieceAt(2, 5, new Piece(DARK, BOTH));
+        assertTrue(predecessors.contains(expected));
+        assertPredecessorsLeadTo(board, LIGHT, predecessors);
+    }
+    /**
+     * Tests a king on the tenth row can have been a man that was crowned by
+     * either a simple move or a capture ending there.
+     */
+    @Test
+    public final void testFindPredecessorsWithUnpromotion() {
+        final Board board = new Board(SIZE, SIZE);
+        board.setPieceAt(3, 0, new Piece(LIGHT, BOTH));
+        final List<Board> predecessors =
+                unmoveGen.findPredecessors(board, LIGHT);
+        final Board expected = new Board(SIZE, SIZE);
+        expected.setPieceAt(4, 1, new Piece(LIGHT, UP));
+        assertTrue(predecessors.contains(expected));
+        expected.setPieceAt(4, 1, null);
+        expected.setPieceAt(1, 2, new Piece(LIGHT, UP));
+        expected.setPieceAt(2, 1, new Piece(DARK, DOWN));
+        assertTrue(predecessors.contains(expected));
+        assertPredecessorsLeadTo(board, LIGHT, predecessors);
+    }
+    /**
+     * Tests that for random sparse positions, every position reached by a
+     * legal move lists the position it came from as a predecessor, and that
+     * every predecessor found is genuine.
+     */
+    @Test
+    public final void testFindPredecessorsOfRandomPositions() {
+        final Random random = new Random(1);
+        for (int i = 0; i < RANDOM_POSITIONS; i++) {
+            final Board before = createRandomBoard(random);
+            for (final int colour : new int[] {DARK, LIGHT}) {
+                for (final Move move : moveGen.findMoves(before, colour)) {
+                    final Board after = new Board(before);
+                    movePerformer.perform(move, after);
+                    final List<Board> predecessors =
+                            unmoveGen.findPredecessors(after, colour);
+                    assertTrue(predecessors.contains(before));
+                    assertPredecessorsLeadTo(after, colour, predecessors);
+                }
+            }
+        }
+    }
+    /**
+     * Creates a board with a few pieces of each colour on random dark
+     * squares, leaving no man on the row it would be crowned on.
+     *
+     * @param random  the source of randomness
+     * @return        the board
+     */
+    private static Board createRandomBoard(final Random random) {
+        final Board board = new Board(SIZE, SIZE);
+        for (final int colour : new int[] {DARK, LIGHT}) {
+            final int count = 1 + random.nextInt(MAX_PIECES);
+            for (int placed = 0; placed < count;) {
+                final int x = random.nextInt(SIZE);
+                final int y = random.nextInt(SIZE);
+                final boolean king = random.nextInt(3) == 0;
+                final int crowningRow = colour == DARK ? SIZE - 1 : 0;
+                if ((x + y) % 2 == 1 && board.getPieceAt(x, y) == null
+                        && (king || y != crowningRow)) {
+                    board.setPieceAt(x, y, new Piece(colour, king ? BOTH
+                            : colour == DARK ? DOWN : UP));
+                    placed++;
+                }
+            }
+        }
+        return board;
+    }
+    /**
+     * Asserts that each predecessor has a legal move leading to the board.
+     *
+     * @param board         the board
+     * @param colour        the colour that moved
+     * @param predecessors  the predecessors of the board
+     */
+    private void assertPredecessorsLeadTo(final Board board, final int colour,
+            final List<Board> predecessors) {
+        for (final Board predecessor : predecessors) {
+            boolean found = false;
+            for (final Move move : moveGen.findMoves(predecessor, colour)) {
+                final PerformedMove performed =
+                        movePerformer.perform(move, predecessor);
+                found |= board.equals(predecessor);
+                performed.undo();
+            }
+            assertTrue(found);
+        }
+    }
+}